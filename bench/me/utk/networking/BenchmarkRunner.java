@@ -0,0 +1,33 @@
+package me.utk.networking;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of this library with the GC profiler enabled.
+ * <p>
+ * The GC profiler reports the allocation rate of every benchmark, both per second and normalized per
+ * operation ({@code gc.alloc.rate.norm}), along with the number and duration of the collections it caused.
+ * Any arguments are parsed as regular JMH command line options, so for example {@code OldIO_ -p lines=16}
+ * only runs the OIO message path benchmarks with 16 lines per message.
+ * <p>
+ * The benchmarks are compiled along with the {@code src} directory, against {@code jmh-core} and
+ * with {@code jmh-generator-annprocess} as an annotation processor, by {@code bench/pom.xml}, which
+ * packages them into an executable {@code benchmarks.jar} with this class as its main class.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ * @see TransportBenchmark
+ */
+public class BenchmarkRunner {
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class).build()).run();
+    }
+}
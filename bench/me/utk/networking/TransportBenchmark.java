@@ -0,0 +1,149 @@
+package me.utk.networking;
+
+import me.utk.networking.nio.NewIO_Client;
+import me.utk.networking.nio.NewIO_Server;
+import me.utk.networking.oio.OldIO_Client;
+import me.utk.networking.oio.OldIO_Server;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loopback benchmarks which compare the OIO and NIO transports end to end, through the public API only.
+ * <p>
+ * Every trial starts a server and the given number of clients of the given transport on the loopback interface.
+ * {@link #throughput(Counters)} has every client send a round of messages of the given size to the server, and
+ * waits until the server has received all of them, so its {@code messages} and {@code bytes} counters are the
+ * sustained one-way throughput. {@link #roundTrip()} sends a single message from one client at a time (in turn)
+ * and waits for the server to echo it back, so its samples are the round trip latency of a single message.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ * @see BenchmarkRunner
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TransportBenchmark {
+    // Every round of the throughput benchmark sends at most this many bytes (and at most 64 messages) per client
+    private static final int MAX_ROUND_BYTES = 256 << 10, MAX_ROUND_MESSAGES = 64;
+    // A benchmark which has not heard back from the server within this long has lost messages, and fails
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    // The OIO transport only sweeps idle connections once per second by default, which would otherwise dominate every round
+    private static final ServerOptions SERVER_OPTIONS = ServerOptions.builder().pollIntervalMillis(1).pollTimeoutMillis(1).build();
+    private static final ClientOptions CLIENT_OPTIONS = ClientOptions.builder().pollIntervalMillis(1).pollTimeoutMillis(1).build();
+
+    private static final String SINK = "SINK", ECHO = "ECHO", END = "MESSAGE COMPLETE";
+
+    @Param({"oio", "nio"})
+    public String transport;
+    @Param({"16", "1024", "65536"})
+    public int messageSize;
+    @Param({"1", "16", "64"})
+    public int clients;
+
+    private ServerImplementation server;
+    private ClientImplementation[] connections;
+    private String[] sinkMessage, echoMessage;
+    private int roundMessages;
+
+    private final AtomicLong RECEIVED = new AtomicLong();
+    private volatile CompletableFuture<Void> echo;
+    private int nextClient = 0;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long messages, bytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        boolean isNewIO = "nio".equals(transport);
+        server = isNewIO ? NewIO_Server.defaultImplementation(0, SERVER_OPTIONS) : OldIO_Server.defaultImplementation(0, SERVER_OPTIONS);
+        server.enableAllConnections();
+        server.addMessageListener((source, message) -> {
+            if (ECHO.equals(message[0]))
+                source.sendMessages(message);
+            else
+                RECEIVED.incrementAndGet();
+        });
+
+        String payload = "x".repeat(messageSize);
+        sinkMessage = new String[]{SINK, payload, END};
+        echoMessage = new String[]{ECHO, payload, END};
+        roundMessages = Math.max(1, Math.min(MAX_ROUND_MESSAGES, MAX_ROUND_BYTES / messageSize));
+
+        connections = new ClientImplementation[clients];
+        for (int i = 0; i < clients; i++) {
+            ClientImplementation client = isNewIO ? NewIO_Client.defaultImplementation(CLIENT_OPTIONS) : OldIO_Client.defaultImplementation(CLIENT_OPTIONS);
+            client.addMessageListener((source, message) -> {
+                CompletableFuture<Void> pending = echo;
+                if (pending != null)
+                    pending.complete(null);
+            });
+            if (!client.connect("localhost", server.getAddress().getPort()))
+                throw new IllegalStateException("Unable to connect client " + i);
+            connections[i] = client;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (ClientImplementation client : connections)
+            if (client != null)
+                client.closeClient();
+        server.closeServer();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void throughput(Counters counters) throws TimeoutException {
+        long target = RECEIVED.get() + (long) roundMessages * clients;
+        for (ClientImplementation client : connections) {
+            for (int i = 0; i < roundMessages; i++)
+                client.sendMessages(sinkMessage);
+            client.flush();
+        }
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (RECEIVED.get() < target) {
+            if (System.nanoTime() - deadline > 0)
+                throw new TimeoutException((target - RECEIVED.get()) + " messages were never received");
+            Thread.yield();
+        }
+        counters.messages += (long) roundMessages * clients;
+        counters.bytes += (long) roundMessages * clients * messageSize;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void roundTrip() throws Exception {
+        CompletableFuture<Void> pending = new CompletableFuture<>();
+        echo = pending;
+        ClientImplementation client = connections[nextClient];
+        nextClient = (nextClient + 1) % clients;
+        client.sendMessages(echoMessage);
+        client.flush();
+        pending.get(TIMEOUT_NANOS, TimeUnit.NANOSECONDS);
+    }
+}
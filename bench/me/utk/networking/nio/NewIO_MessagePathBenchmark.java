@@ -0,0 +1,124 @@
+package me.utk.networking.nio;
+
+import me.utk.networking.BinaryCodec;
+import me.utk.networking.MessageUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microbenchmarks for the per-message paths of the NIO transport, without any channels involved.
+ * <p>
+ * Every benchmark handles a single message of the given number of lines of the given length, ended by
+ * the end message marker. The builder benchmark delivers each complete message straight to a
+ * {@link Blackhole} (as a message listener would), so no messages are ever queued between operations.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NewIO_MessagePathBenchmark {
+    public record Sample(long id, int count, String name, byte[] data) {
+    }
+
+    @Param({"1", "16", "256"})
+    public int lines;
+    @Param({"16", "1024"})
+    public int lineLength;
+
+    private String[] message;
+    private NewIO_MessageBuilder builder;
+    private Sample sample;
+    private ByteBuffer bytes, encodedLines, encodedFrames;
+    private final BinaryCodec<Sample> CODEC = BinaryCodec.of(Sample.class);
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        message = new String[lines + 1];
+        for (int i = 0; i < lines; i++)
+            message[i] = (char) ('a' + i % 26) + "x".repeat(lineLength - 1);
+        message[lines] = MessageUtil.END_MESSAGE.toString();
+        builder = new NewIO_MessageBuilder(complete -> {
+            blackhole.consume(complete);
+            return true;
+        }, null);
+        sample = new Sample(lines, lineLength, message[0], new byte[lineLength]);
+        bytes = ByteBuffer.wrap(new byte[lines * lineLength]);
+        encodedLines = NewIO_Util.encodeLines(0, message).asReadOnlyBuffer();
+        encodedFrames = NewIO_Util.encodeLines(NewIO_Util.PROTOCOL_VERSION, message).asReadOnlyBuffer();
+    }
+
+    @Benchmark
+    public void addLine(Blackhole blackhole) {
+        for (String line : message)
+            blackhole.consume(builder.addLine(line));
+    }
+
+    @Benchmark
+    public void fromString(Blackhole blackhole) {
+        for (String line : message)
+            blackhole.consume(MessageUtil.fromString(line));
+    }
+
+    @Benchmark
+    public ByteBuffer encodeLines() {
+        return NewIO_Util.encodeLines(0, message);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeFrames() {
+        return NewIO_Util.encodeLines(NewIO_Util.PROTOCOL_VERSION, message);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeControl() {
+        return NewIO_Util.encodeControl(NewIO_Util.PROTOCOL_VERSION, MessageUtil.PING);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeBytes() {
+        return NewIO_Util.encodeBytes(bytes);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeValue() {
+        return NewIO_Util.encodeValue(sample, CODEC);
+    }
+
+    // Decodes every line exactly as the selector thread does for protocol version 0
+    @Benchmark
+    public void readLines(Blackhole blackhole) throws IOException {
+        ByteBuffer buffer = encodedLines.duplicate();
+        while (NewIO_Util.peekLineLength(buffer) >= 0)
+            blackhole.consume(NewIO_Util.readUTF(buffer));
+    }
+
+    // Only finds the frame boundaries, since frame payloads are decoded as plain UTF-8
+    @Benchmark
+    public void peekFrames(Blackhole blackhole) throws IOException {
+        ByteBuffer buffer = encodedFrames.duplicate();
+        int length;
+        while ((length = NewIO_Util.peekFrameLength(buffer, Integer.MAX_VALUE)) >= 0) {
+            blackhole.consume(length);
+            buffer.position(buffer.position() + NewIO_Util.FRAME_HEADER_LENGTH + length);
+        }
+    }
+}
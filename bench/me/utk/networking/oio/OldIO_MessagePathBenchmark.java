@@ -0,0 +1,109 @@
+package me.utk.networking.oio;
+
+import me.utk.networking.BinaryCodec;
+import me.utk.networking.MessageUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microbenchmarks for the per-message paths of the OIO transport, without any sockets involved.
+ * <p>
+ * Every benchmark handles a single message of the given number of lines of the given length, ended by
+ * the end message marker. The builder benchmarks deliver each complete message straight to a
+ * {@link Blackhole} (as a message listener would), so no messages are ever queued between operations.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OldIO_MessagePathBenchmark {
+    public record Sample(long id, int count, String name, byte[] data) {
+    }
+
+    @Param({"1", "16", "256"})
+    public int lines;
+    @Param({"16", "1024"})
+    public int lineLength;
+
+    private String[] message;
+    private OldIO_MessageBuilder builder;
+    private Sample sample;
+    private ByteBuffer bytes;
+    private final BinaryCodec<Sample> CODEC = BinaryCodec.of(Sample.class);
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        message = new String[lines + 1];
+        for (int i = 0; i < lines; i++)
+            message[i] = (char) ('a' + i % 26) + "x".repeat(lineLength - 1);
+        message[lines] = MessageUtil.END_MESSAGE.toString();
+        builder = new OldIO_MessageBuilder(complete -> {
+            blackhole.consume(complete);
+            return true;
+        }, null);
+        sample = new Sample(lines, lineLength, message[0], new byte[lineLength]);
+        bytes = ByteBuffer.wrap(new byte[lines * lineLength]);
+    }
+
+    @Benchmark
+    public void addLine(Blackhole blackhole) {
+        for (String line : message)
+            blackhole.consume(builder.addLine(line));
+    }
+
+    @Benchmark
+    public void addFrame(Blackhole blackhole) {
+        for (int i = 0; i < lines; i++)
+            blackhole.consume(builder.addFrame(MessageUtil.NONE, message[i]));
+        blackhole.consume(builder.addFrame(MessageUtil.END_MESSAGE, ""));
+    }
+
+    @Benchmark
+    public void fromString(Blackhole blackhole) {
+        for (String line : message)
+            blackhole.consume(MessageUtil.fromString(line));
+    }
+
+    @Benchmark
+    public byte[] encodeLines() {
+        return OldIO_Util.encodeMessages(0, message);
+    }
+
+    @Benchmark
+    public byte[] encodeFrames() {
+        return OldIO_Util.encodeMessages(OldIO_Util.PROTOCOL_VERSION, message);
+    }
+
+    @Benchmark
+    public byte[] encodeControl() {
+        return OldIO_Util.encodeControl(OldIO_Util.PROTOCOL_VERSION, MessageUtil.PING);
+    }
+
+    @Benchmark
+    public byte[] encodeBytes() {
+        return OldIO_Util.encodeBytes(OldIO_Util.PROTOCOL_VERSION, bytes);
+    }
+
+    @Benchmark
+    public byte[] encodeValue() {
+        return OldIO_Util.encodeValue(OldIO_Util.PROTOCOL_VERSION, sample, CODEC);
+    }
+}
@@ -0,0 +1,533 @@
+package me.utk.networking;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A compact binary {@link Codec} for primitives, strings, byte arrays, enums, and records.
+ * <p>
+ * The following types are supported, along with any record whose components are all supported types:
+ * <ul>
+ * <li>{@code boolean} and {@code byte}, as a single byte
+ * <li>{@code short}, {@code char}, {@code float}, and {@code double}, as their fixed-width big-endian bytes
+ * <li>{@code int} and {@code long}, as zig-zag variable-length integers, so that small values take a single byte
+ * <li>{@code String}, as the variable-length size of its UTF-8 bytes, followed by those bytes
+ * <li>{@code byte[]}, as its variable-length size, followed by its bytes
+ * <li>{@code enum}s, as the variable-length ordinal of the constant
+ * <li>Records, as their components, in declaration order
+ * </ul>
+ * Every type other than a primitive may be {@code null}, which costs a single byte.
+ * Records may contain other records, including records of their own type.
+ * <p>
+ * No type information is written, so both sides must decode a message with a codec for the same type
+ * as the one it was encoded with. Records are constructed via their canonical constructor, so any
+ * validation in that constructor also applies to decoded values.
+ *
+ * @param <T> The type of the values which this codec encodes and decodes
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ * @see Codec
+ */
+public final class BinaryCodec<T> implements Codec<T> {
+    // Every codec (and every record component) of a given type shares the same format
+    private static final ClassValue<Format> FORMATS = new ClassValue<>() {
+        @Override
+        protected Format computeValue(Class<?> type) {
+            return createFormat(type);
+        }
+    };
+
+    private final Class<T> TYPE;
+    private final Format FORMAT;
+
+    private BinaryCodec(Class<T> type) {
+        TYPE = type;
+        FORMAT = FORMATS.get(type);
+    }
+
+    /**
+     * Returns a {@code BinaryCodec} for the given type.
+     * <p>
+     * Primitive types are encoded as their wrapper types, so {@code int.class} and {@code Integer.class}
+     * both return a codec for {@code Integer} values.
+     *
+     * @param type The type of the values to encode and decode
+     * @param <T>  The type of the values to encode and decode
+     * @return A {@code BinaryCodec} for the given type
+     * @throws IllegalArgumentException if the given type (or any of its record components) is not supported
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> BinaryCodec<T> of(Class<T> type) {
+        if (type.isPrimitive())
+            type = (Class<T>) MethodType.methodType(type).wrap().returnType();
+        checkSupported(type, new HashSet<>());
+        return new BinaryCodec<>(type);
+    }
+
+    /**
+     * Returns the type of the values which this codec encodes and decodes.
+     *
+     * @return The type of this codec's values
+     */
+    public Class<T> getType() {
+        return TYPE;
+    }
+
+    // ---------------------------------------- OVERRIDDEN METHODS ---------------------------------------- //
+
+    @Override
+    public int encodedLength(T value) {
+        return FORMAT.length(value);
+    }
+    @Override
+    public void encode(T value, ByteBuffer buffer) {
+        FORMAT.write(value, buffer);
+    }
+    @Override
+    public T decode(ByteBuffer buffer) {
+        try {
+            return TYPE.cast(FORMAT.read(buffer));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated " + TYPE.getName() + " value");
+        }
+    }
+
+    // ---------------------------------------- FORMATS ---------------------------------------- //
+
+    private interface Format {
+        int length(Object value);
+        void write(Object value, ByteBuffer buffer);
+        Object read(ByteBuffer buffer);
+    }
+
+    // Record components are only resolved on first use, so check them all up front
+    private static void checkSupported(Class<?> type, Set<Class<?>> checked) {
+        FORMATS.get(type); // throws if the type is not supported
+        if (type.isRecord() && checked.add(type))
+            for (RecordComponent component : type.getRecordComponents())
+                checkSupported(component.getType(), checked);
+    }
+
+    private static Format createFormat(Class<?> type) {
+        if (type.isPrimitive())
+            return primitiveFormat(type);
+        if (type == String.class)
+            return STRING_FORMAT;
+        if (type == byte[].class)
+            return BYTES_FORMAT;
+        if (type.isEnum())
+            return new EnumFormat(type);
+        if (type.isRecord())
+            return new NullableFormat(new RecordFormat(type));
+        Class<?> primitive = MethodType.methodType(type).unwrap().returnType();
+        if (primitive != type)
+            return new NullableFormat(primitiveFormat(primitive));
+        throw new IllegalArgumentException("Unsupported type: " + type.getName());
+    }
+
+    private static Format primitiveFormat(Class<?> type) {
+        if (type == boolean.class)
+            return BOOLEAN_FORMAT;
+        if (type == byte.class)
+            return BYTE_FORMAT;
+        if (type == short.class)
+            return SHORT_FORMAT;
+        if (type == char.class)
+            return CHAR_FORMAT;
+        if (type == int.class)
+            return INT_FORMAT;
+        if (type == long.class)
+            return LONG_FORMAT;
+        if (type == float.class)
+            return FLOAT_FORMAT;
+        if (type == double.class)
+            return DOUBLE_FORMAT;
+        throw new IllegalArgumentException("Unsupported type: " + type.getName());
+    }
+
+    private static final Format BOOLEAN_FORMAT = new Format() {
+        @Override
+        public int length(Object value) {
+            return 1;
+        }
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            buffer.put((byte) ((Boolean) value ? 1 : 0));
+        }
+        @Override
+        public Object read(ByteBuffer buffer) {
+            byte b = buffer.get();
+            if (b != 0 && b != 1)
+                throw new IllegalArgumentException("Malformed boolean: " + b);
+            return b == 1;
+        }
+    };
+    private static final Format BYTE_FORMAT = new Format() {
+        @Override
+        public int length(Object value) {
+            return 1;
+        }
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            buffer.put((Byte) value);
+        }
+        @Override
+        public Object read(ByteBuffer buffer) {
+            return buffer.get();
+        }
+    };
+    private static final Format SHORT_FORMAT = new Format() {
+        @Override
+        public int length(Object value) {
+            return 2;
+        }
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            buffer.putShort((Short) value);
+        }
+        @Override
+        public Object read(ByteBuffer buffer) {
+            return buffer.getShort();
+        }
+    };
+    private static final Format CHAR_FORMAT = new Format() {
+        @Override
+        public int length(Object value) {
+            return 2;
+        }
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            buffer.putChar((Character) value);
+        }
+        @Override
+        public Object read(ByteBuffer buffer) {
+            return buffer.getChar();
+        }
+    };
+    private static final Format INT_FORMAT = new Format() {
+        @Override
+        public int length(Object value) {
+            return varLongLength(zigZag((Integer) value));
+        }
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            putVarLong(buffer, zigZag((Integer) value));
+        }
+        @Override
+        public Object read(ByteBuffer buffer) {
+            long encoded = getVarLong(buffer);
+            if (encoded >>> 32 != 0)
+                throw new IllegalArgumentException("Malformed int");
+            return (int) (encoded >>> 1) ^ -(int) (encoded & 1);
+        }
+    };
+    private static final Format LONG_FORMAT = new Format() {
+        @Override
+        public int length(Object value) {
+            return varLongLength(zigZag((Long) value));
+        }
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            putVarLong(buffer, zigZag((Long) value));
+        }
+        @Override
+        public Object read(ByteBuffer buffer) {
+            long encoded = getVarLong(buffer);
+            return (encoded >>> 1) ^ -(encoded & 1);
+        }
+    };
+    private static final Format FLOAT_FORMAT = new Format() {
+        @Override
+        public int length(Object value) {
+            return 4;
+        }
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            buffer.putFloat((Float) value);
+        }
+        @Override
+        public Object read(ByteBuffer buffer) {
+            return buffer.getFloat();
+        }
+    };
+    private static final Format DOUBLE_FORMAT = new Format() {
+        @Override
+        public int length(Object value) {
+            return 8;
+        }
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            buffer.putDouble((Double) value);
+        }
+        @Override
+        public Object read(ByteBuffer buffer) {
+            return buffer.getDouble();
+        }
+    };
+
+    // Strings, byte arrays, and enums store null as a size (or ordinal) of 0, and everything else as 1 higher
+    private static final Format STRING_FORMAT = new Format() {
+        @Override
+        public int length(Object value) {
+            if (value == null)
+                return 1;
+            int length = utf8Length((String) value);
+            return varLongLength(length + 1L) + length;
+        }
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            if (value == null) {
+                buffer.put((byte) 0);
+                return;
+            }
+            String string = (String) value;
+            putVarLong(buffer, utf8Length(string) + 1L);
+            putUtf8(buffer, string);
+        }
+        @Override
+        public Object read(ByteBuffer buffer) {
+            int length = getSize(buffer);
+            if (length < 0)
+                return null;
+            String string;
+            if (buffer.hasArray()) {
+                // Decode straight from the received payload, without copying it first
+                string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+            } else {
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                string = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return string;
+        }
+    };
+    private static final Format BYTES_FORMAT = new Format() {
+        @Override
+        public int length(Object value) {
+            return value == null ? 1 : varLongLength(((byte[]) value).length + 1L) + ((byte[]) value).length;
+        }
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            if (value == null) {
+                buffer.put((byte) 0);
+                return;
+            }
+            byte[] bytes = (byte[]) value;
+            putVarLong(buffer, bytes.length + 1L);
+            buffer.put(bytes);
+        }
+        @Override
+        public Object read(ByteBuffer buffer) {
+            int length = getSize(buffer);
+            if (length < 0)
+                return null;
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return bytes;
+        }
+    };
+
+    private static class EnumFormat implements Format {
+        private final Object[] CONSTANTS;
+
+        private EnumFormat(Class<?> type) {
+            CONSTANTS = type.getEnumConstants();
+        }
+
+        @Override
+        public int length(Object value) {
+            return value == null ? 1 : varLongLength(((Enum<?>) value).ordinal() + 1L);
+        }
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            putVarLong(buffer, value == null ? 0 : ((Enum<?>) value).ordinal() + 1L);
+        }
+        @Override
+        public Object read(ByteBuffer buffer) {
+            long ordinal = getVarLong(buffer) - 1;
+            if (ordinal < -1 || ordinal >= CONSTANTS.length)
+                throw new IllegalArgumentException("Malformed enum ordinal: " + ordinal);
+            return ordinal < 0 ? null : CONSTANTS[(int) ordinal];
+        }
+    }
+
+    // Every other reference type is preceded by a single byte, which is 0 for null and 1 otherwise
+    private static class NullableFormat implements Format {
+        private final Format FORMAT;
+
+        private NullableFormat(Format format) {
+            FORMAT = format;
+        }
+
+        @Override
+        public int length(Object value) {
+            return value == null ? 1 : 1 + FORMAT.length(value);
+        }
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            buffer.put((byte) (value == null ? 0 : 1));
+            if (value != null)
+                FORMAT.write(value, buffer);
+        }
+        @Override
+        public Object read(ByteBuffer buffer) {
+            return (Boolean) BOOLEAN_FORMAT.read(buffer) ? FORMAT.read(buffer) : null;
+        }
+    }
+
+    private static class RecordFormat implements Format {
+        private final Class<?>[] COMPONENT_TYPES;
+        private final MethodHandle[] ACCESSORS;
+        private final MethodHandle CONSTRUCTOR;
+        // Resolved on first use, since a record may (indirectly) contain records of its own type
+        private volatile Format[] componentFormats = null;
+
+        private RecordFormat(Class<?> type) {
+            RecordComponent[] components = type.getRecordComponents();
+            COMPONENT_TYPES = new Class<?>[components.length];
+            ACCESSORS = new MethodHandle[components.length];
+            MethodType accessorType = MethodType.methodType(Object.class, Object.class);
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                for (int i = 0; i < components.length; i++) {
+                    COMPONENT_TYPES[i] = components[i].getType();
+                    components[i].getAccessor().setAccessible(true);
+                    ACCESSORS[i] = lookup.unreflect(components[i].getAccessor()).asType(accessorType);
+                }
+                Constructor<?> constructor = type.getDeclaredConstructor(COMPONENT_TYPES);
+                constructor.setAccessible(true);
+                CONSTRUCTOR = lookup.unreflectConstructor(constructor)
+                        .asSpreader(Object[].class, components.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                throw new IllegalArgumentException("Inaccessible record: " + type.getName(), e);
+            }
+        }
+
+        private Format[] componentFormats() {
+            Format[] formats = componentFormats;
+            if (formats == null) {
+                formats = new Format[COMPONENT_TYPES.length];
+                for (int i = 0; i < formats.length; i++)
+                    formats[i] = FORMATS.get(COMPONENT_TYPES[i]);
+                componentFormats = formats;
+            }
+            return formats;
+        }
+        private Object component(int index, Object value) {
+            try {
+                return (Object) ACCESSORS[index].invokeExact(value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalArgumentException(t);
+            }
+        }
+
+        @Override
+        public int length(Object value) {
+            Format[] formats = componentFormats();
+            int length = 0;
+            for (int i = 0; i < formats.length; i++)
+                length += formats[i].length(component(i, value));
+            return length;
+        }
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            Format[] formats = componentFormats();
+            for (int i = 0; i < formats.length; i++)
+                formats[i].write(component(i, value), buffer);
+        }
+        @Override
+        public Object read(ByteBuffer buffer) {
+            Format[] formats = componentFormats();
+            Object[] components = new Object[formats.length];
+            for (int i = 0; i < formats.length; i++)
+                components[i] = formats[i].read(buffer);
+            try {
+                return (Object) CONSTRUCTOR.invokeExact(components);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                // Decoded values are subject to the same validation as any other values of the record
+                throw new IllegalArgumentException("Rejected record: " + t.getMessage(), t);
+            }
+        }
+    }
+
+    // ---------------------------------------- ENCODING UTILITIES ---------------------------------------- //
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    private static int varLongLength(long value) {
+        return (63 - Long.numberOfLeadingZeros(value | 1)) / 7 + 1;
+    }
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Malformed variable-length integer");
+    }
+    // Returns -1 for null
+    private static int getSize(ByteBuffer buffer) {
+        long size = getVarLong(buffer) - 1;
+        if (size < -1 || size > buffer.remaining())
+            throw new IllegalArgumentException("Truncated value of size " + size);
+        return (int) size;
+    }
+
+    // Unpaired surrogates are encoded as '?', exactly as String.getBytes(UTF_8) does
+    private static int utf8Length(String string) {
+        int length = string.length();
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c >= 0x800) {
+                if (Character.isHighSurrogate(c) && i + 1 < string.length() && Character.isLowSurrogate(string.charAt(i + 1))) {
+                    length += 2; // 4 bytes for 2 chars
+                    i++;
+                } else if (!Character.isSurrogate(c))
+                    length += 2;
+            } else if (c >= 0x80)
+                length++;
+        }
+        return length;
+    }
+    private static void putUtf8(ByteBuffer buffer, String string) {
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80)
+                buffer.put((byte) c);
+            else if (c < 0x800)
+                buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            else if (!Character.isSurrogate(c))
+                buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            else if (Character.isHighSurrogate(c) && i + 1 < string.length() && Character.isLowSurrogate(string.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                buffer.put((byte) (0xF0 | codePoint >> 18)).put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                        .put((byte) (0x80 | codePoint >> 6 & 0x3F)).put((byte) (0x80 | codePoint & 0x3F));
+            } else
+                buffer.put((byte) '?');
+        }
+    }
+}
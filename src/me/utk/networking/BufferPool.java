@@ -0,0 +1,228 @@
+package me.utk.networking;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * A pool of heap arrays and direct buffers for transient I/O space, in power-of-two size classes from 256 B to 1 MiB.
+ * <p>
+ * Each platform thread keeps a small cache of the smaller size classes, so that a thread which repeatedly acquires
+ * and releases buffers (such as a selector or collector thread) rarely touches the shared queues. Virtual threads skip these
+ * caches, since there may be millions of them. Requests larger than the largest size class are simply allocated,
+ * and dropped on release.
+ * <p>
+ * Every buffer must be released exactly once, and never used after being released. When the
+ * {@code me.utk.networking.debugBuffers} system property is {@code true}, every acquired buffer is tracked until
+ * it is released: releasing a buffer twice throws an {@link IllegalStateException}, and buffers which are garbage
+ * collected without being released are reported along with where they were acquired.
+ * <p>
+ * A single pool is shared by both transports, so that they draw on the same memory and are tracked together.
+ * It is only public so that the transport packages can reach it, and is not meant for applications.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ */
+public final class BufferPool {
+    // ---------------------------------------- SHARED BUFFER POOL ---------------------------------------- //
+
+    public static final BufferPool SHARED = new BufferPool(Boolean.getBoolean("me.utk.networking.debugBuffers"));
+
+    // ---------------------------------------- PRIVATE INSTANCE VARIABLES ---------------------------------------- //
+
+    private static final int MIN_SIZE_SHIFT = 8, MAX_SIZE_SHIFT = 20; // 256 B to 1 MiB
+    private static final int MAX_CACHED_SIZE_SHIFT = 14; // 16 KiB
+    private static final int THREAD_CACHE_SLOTS = 2; // per size class
+    private static final int SHARED_BYTES_PER_CLASS = 2 << 20; // 2 MiB
+
+    // Thread#isVirtual() only exists on Java 21+
+    private static final Method IS_VIRTUAL;
+    static {
+        Method method;
+        try {
+            method = Thread.class.getMethod("isVirtual");
+        } catch (NoSuchMethodException e) {
+            method = null;
+        }
+        IS_VIRTUAL = method;
+    }
+
+    private final SizeClasses<byte[]> ARRAYS;
+    private final SizeClasses<ByteBuffer> DIRECT_BUFFERS;
+
+    // Only used in debug mode
+    private final boolean IS_DEBUG;
+    private final ReferenceQueue<Object> COLLECTED = new ReferenceQueue<>();
+    private final Map<TrackedReference, Throwable> OUTSTANDING = new ConcurrentHashMap<>();
+
+    // ---------------------------------------- PRIVATE CONSTRUCTOR ---------------------------------------- //
+
+    private BufferPool(boolean isDebug) {
+        IS_DEBUG = isDebug;
+        ARRAYS = new SizeClasses<>(byte[]::new, array -> array.length);
+        DIRECT_BUFFERS = new SizeClasses<>(ByteBuffer::allocateDirect, ByteBuffer::capacity);
+    }
+
+    // ---------------------------------------- PUBLIC METHODS ---------------------------------------- //
+
+    // The array may be longer than requested
+    public byte[] acquireArray(int minLength) {
+        return track(ARRAYS.acquire(minLength));
+    }
+    public void releaseArray(byte[] array) {
+        ARRAYS.release(untrack(array));
+    }
+
+    // The buffer is cleared, and its capacity may be larger than requested
+    public ByteBuffer acquireDirect(int minCapacity) {
+        return track(DIRECT_BUFFERS.acquire(minCapacity).clear());
+    }
+    // Must be the buffer itself, and not a slice or duplicate of it
+    public void releaseDirect(ByteBuffer buffer) {
+        DIRECT_BUFFERS.release(untrack(buffer));
+    }
+
+    // ---------------------------------------- PRIVATE HELPER CLASSES ---------------------------------------- //
+
+    private static class SizeClasses<B> {
+        private final IntFunction<B> ALLOCATOR;
+        private final ToIntFunction<B> CAPACITY;
+
+        private final ConcurrentLinkedQueue<B>[] SHARED_QUEUES;
+        private final AtomicInteger[] SHARED_COUNTS;
+        private final ThreadLocal<ThreadCache<B>> THREAD_CACHES;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private SizeClasses(IntFunction<B> allocator, ToIntFunction<B> capacity) {
+            ALLOCATOR = allocator;
+            CAPACITY = capacity;
+            int classes = MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1;
+            SHARED_QUEUES = new ConcurrentLinkedQueue[classes];
+            SHARED_COUNTS = new AtomicInteger[classes];
+            for (int i = 0; i < classes; i++) {
+                SHARED_QUEUES[i] = new ConcurrentLinkedQueue<>();
+                SHARED_COUNTS[i] = new AtomicInteger();
+            }
+            THREAD_CACHES = ThreadLocal.withInitial(() -> isVirtualThread() ? null : new ThreadCache<>());
+        }
+
+        private B acquire(int minCapacity) {
+            int sizeClass = sizeClass(minCapacity);
+            if (sizeClass < 0)
+                return ALLOCATOR.apply(minCapacity);
+            ThreadCache<B> cache = sizeClass <= MAX_CACHED_SIZE_SHIFT - MIN_SIZE_SHIFT ? THREAD_CACHES.get() : null;
+            B buffer = cache != null ? cache.poll(sizeClass) : null;
+            if (buffer == null) {
+                buffer = SHARED_QUEUES[sizeClass].poll();
+                if (buffer != null)
+                    SHARED_COUNTS[sizeClass].decrementAndGet();
+                else
+                    buffer = ALLOCATOR.apply(1 << (sizeClass + MIN_SIZE_SHIFT));
+            }
+            return buffer;
+        }
+        private void release(B buffer) {
+            int capacity = CAPACITY.applyAsInt(buffer);
+            int sizeClass = sizeClass(capacity);
+            // Anything outside of the size classes was never pooled in the first place
+            if (sizeClass < 0 || 1 << (sizeClass + MIN_SIZE_SHIFT) != capacity)
+                return;
+            ThreadCache<B> cache = sizeClass <= MAX_CACHED_SIZE_SHIFT - MIN_SIZE_SHIFT ? THREAD_CACHES.get() : null;
+            if (cache != null && cache.offer(sizeClass, buffer))
+                return;
+            if (SHARED_COUNTS[sizeClass].incrementAndGet() <= Math.max(2, SHARED_BYTES_PER_CLASS >> (sizeClass + MIN_SIZE_SHIFT)))
+                SHARED_QUEUES[sizeClass].offer(buffer);
+            else
+                SHARED_COUNTS[sizeClass].decrementAndGet();
+        }
+
+        // -1 iff too large to pool
+        private static int sizeClass(int capacity) {
+            int shift = Math.max(MIN_SIZE_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(1, capacity) - 1));
+            return shift > MAX_SIZE_SHIFT ? -1 : shift - MIN_SIZE_SHIFT;
+        }
+    }
+
+    // Only ever used by its own thread
+    private static class ThreadCache<B> {
+        private final Object[][] SLOTS = new Object[MAX_CACHED_SIZE_SHIFT - MIN_SIZE_SHIFT + 1][THREAD_CACHE_SLOTS];
+        private final int[] COUNTS = new int[MAX_CACHED_SIZE_SHIFT - MIN_SIZE_SHIFT + 1];
+
+        @SuppressWarnings("unchecked")
+        private B poll(int sizeClass) {
+            if (COUNTS[sizeClass] == 0)
+                return null;
+            int index = --COUNTS[sizeClass];
+            B buffer = (B) SLOTS[sizeClass][index];
+            SLOTS[sizeClass][index] = null;
+            return buffer;
+        }
+        private boolean offer(int sizeClass, B buffer) {
+            if (COUNTS[sizeClass] == THREAD_CACHE_SLOTS)
+                return false;
+            SLOTS[sizeClass][COUNTS[sizeClass]++] = buffer;
+            return true;
+        }
+    }
+
+    // Compares referents by identity, since buffers compare their contents
+    private static class TrackedReference extends WeakReference<Object> {
+        private final int HASH;
+
+        private TrackedReference(Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            HASH = System.identityHashCode(referent);
+        }
+
+        @Override
+        public int hashCode() {
+            return HASH;
+        }
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            Object referent = get();
+            return referent != null && o instanceof TrackedReference && referent == ((TrackedReference) o).get();
+        }
+    }
+
+    // ---------------------------------------- PRIVATE HELPER METHODS ---------------------------------------- //
+
+    private static boolean isVirtualThread() {
+        if (IS_VIRTUAL != null)
+            try {
+                return (Boolean) IS_VIRTUAL.invoke(Thread.currentThread());
+            } catch (ReflectiveOperationException ignored) {
+            }
+        return false;
+    }
+
+    private <B> B track(B buffer) {
+        if (!IS_DEBUG)
+            return buffer;
+        reportLeaks();
+        OUTSTANDING.put(new TrackedReference(buffer, COLLECTED), new Throwable("Acquired here"));
+        return buffer;
+    }
+    private <B> B untrack(B buffer) {
+        if (IS_DEBUG && OUTSTANDING.remove(new TrackedReference(buffer, null)) == null)
+            throw new IllegalStateException("Buffer was released twice, or was never acquired from this pool");
+        return buffer;
+    }
+    private void reportLeaks() {
+        Object collected;
+        while ((collected = COLLECTED.poll()) != null) {
+            Throwable site = OUTSTANDING.remove(collected);
+            if (site != null)
+                new IllegalStateException("Buffer was garbage collected without being released", site).printStackTrace();
+        }
+    }
+}
@@ -3,6 +3,11 @@ package me.utk.networking;
 import me.utk.networking.nio.NewIO_Client;
 import me.utk.networking.oio.OldIO_Client;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 
 /**
@@ -94,6 +99,83 @@ public abstract class Client {
     public static void sendMessages(String... messages) {
         instance.sendMessages(messages);
     }
+    /**
+     * Sends the given bytes to the server as a single binary message.
+     * <p>
+     * This method is a static wrapper for the {@link ClientImplementation#sendBytes(byte[])} method.
+     *
+     * @param bytes The bytes to send to the server
+     * @throws NullPointerException if the static {@link ClientImplementation} was not initialized
+     * @throws IllegalStateException if the connection does not support binary messages
+     * @see ClientImplementation
+     * @see ClientImplementation#sendBytes(byte[])
+     */
+    public static void sendBytes(byte[] bytes) {
+        instance.sendBytes(bytes);
+    }
+    /**
+     * Sends the remaining bytes of the given buffer to the server as a single binary message.
+     * <p>
+     * This method is a static wrapper for the {@link ClientImplementation#sendBytes(ByteBuffer)} method.
+     *
+     * @param bytes The buffer whose remaining bytes to send to the server
+     * @throws NullPointerException if the static {@link ClientImplementation} was not initialized
+     * @throws IllegalStateException if the connection does not support binary messages
+     * @see ClientImplementation
+     * @see ClientImplementation#sendBytes(ByteBuffer)
+     */
+    public static void sendBytes(ByteBuffer bytes) {
+        instance.sendBytes(bytes);
+    }
+    /**
+     * Encodes the given value with the given {@link Codec}, and sends it to the server as a single binary message.
+     * <p>
+     * This method is a static wrapper for the {@link ClientImplementation#send(Object, Codec)} method.
+     *
+     * @param value The value to send to the server
+     * @param codec The codec to encode the value with
+     * @param <T>   The type of the value
+     * @throws NullPointerException if the static {@link ClientImplementation} was not initialized
+     * @throws IllegalArgumentException if the value cannot be encoded by the given codec
+     * @throws IllegalStateException if the connection does not support binary messages
+     * @see ClientImplementation
+     * @see ClientImplementation#send(Object, Codec)
+     */
+    public static <T> void send(T value, Codec<? super T> codec) {
+        instance.send(value, codec);
+    }
+    /**
+     * Sends the contents of the given file to the server as a single stream, blocking until it is fully written.
+     * <p>
+     * This method is a static wrapper for the {@link ClientImplementation#sendFile(Path)} method.
+     *
+     * @param file The file to send to the server
+     * @throws IOException if the file cannot be read, or the connection fails or closes before the stream is written
+     * @throws NullPointerException if the static {@link ClientImplementation} was not initialized
+     * @throws IllegalStateException if the connection does not support streams
+     * @see ClientImplementation
+     * @see ClientImplementation#sendFile(Path)
+     */
+    public static void sendFile(Path file) throws IOException {
+        instance.sendFile(file);
+    }
+    /**
+     * Sends exactly {@code length} bytes of the given input stream to the server as a single stream,
+     * blocking until it is fully written.
+     * <p>
+     * This method is a static wrapper for the {@link ClientImplementation#sendStream(InputStream, long)} method.
+     *
+     * @param in     The input stream to send to the server
+     * @param length The number of bytes to send
+     * @throws IOException if the input stream ends early or fails, or the connection fails or closes before the stream is written
+     * @throws NullPointerException if the static {@link ClientImplementation} was not initialized
+     * @throws IllegalStateException if the connection does not support streams
+     * @see ClientImplementation
+     * @see ClientImplementation#sendStream(InputStream, long)
+     */
+    public static void sendStream(InputStream in, long length) throws IOException {
+        instance.sendStream(in, length);
+    }
     /**
      * Returns the {@link MessageBuilder} associated with this client.
      * <p>
@@ -108,6 +190,168 @@ public abstract class Client {
         return instance.getMessageBuilder();
     }
 
+    /**
+     * Registers a listener which is notified of every complete message received from the server.
+     * <p>
+     * This method is a static wrapper for the {@link ClientImplementation#addMessageListener(MessageListener)} method.
+     *
+     * @param listener The listener to register
+     * @throws NullPointerException if the static {@link ClientImplementation} was not initialized
+     * @see ClientImplementation
+     * @see ClientImplementation#addMessageListener(MessageListener)
+     */
+    public static void addMessageListener(MessageListener<ClientImplementation> listener) {
+        instance.addMessageListener(listener);
+    }
+    /**
+     * Unregisters a previously registered message listener.
+     * <p>
+     * This method is a static wrapper for the {@link ClientImplementation#removeMessageListener(MessageListener)} method.
+     *
+     * @param listener The listener to unregister
+     * @throws NullPointerException if the static {@link ClientImplementation} was not initialized
+     * @see ClientImplementation
+     * @see ClientImplementation#removeMessageListener(MessageListener)
+     */
+    public static void removeMessageListener(MessageListener<ClientImplementation> listener) {
+        instance.removeMessageListener(listener);
+    }
+    /**
+     * Registers a listener which is notified whenever this client connects to or disconnects from a server.
+     * <p>
+     * This method is a static wrapper for the {@link ClientImplementation#addConnectionListener(ConnectionListener)} method.
+     *
+     * @param listener The listener to register
+     * @throws NullPointerException if the static {@link ClientImplementation} was not initialized
+     * @see ClientImplementation
+     * @see ClientImplementation#addConnectionListener(ConnectionListener)
+     */
+    public static void addConnectionListener(ConnectionListener<ClientImplementation> listener) {
+        instance.addConnectionListener(listener);
+    }
+    /**
+     * Unregisters a previously registered connection listener.
+     * <p>
+     * This method is a static wrapper for the {@link ClientImplementation#removeConnectionListener(ConnectionListener)} method.
+     *
+     * @param listener The listener to unregister
+     * @throws NullPointerException if the static {@link ClientImplementation} was not initialized
+     * @see ClientImplementation
+     * @see ClientImplementation#removeConnectionListener(ConnectionListener)
+     */
+    public static void removeConnectionListener(ConnectionListener<ClientImplementation> listener) {
+        instance.removeConnectionListener(listener);
+    }
+    /**
+     * Sets the listener which receives every stream sent by the server, replacing any previous one.
+     * <p>
+     * This method is a static wrapper for the {@link ClientImplementation#setStreamListener(StreamListener)} method.
+     *
+     * @param listener The listener to set, or {@code null} to discard all streams
+     * @throws NullPointerException if the static {@link ClientImplementation} was not initialized
+     * @see ClientImplementation
+     * @see ClientImplementation#setStreamListener(StreamListener)
+     */
+    public static void setStreamListener(StreamListener<ClientImplementation> listener) {
+        instance.setStreamListener(listener);
+    }
+    /**
+     * Sets the listener which may receive any message sent by the server part by part, replacing any previous one.
+     * <p>
+     * This method is a static wrapper for the {@link ClientImplementation#setMessagePartListener(MessagePartListener)} method.
+     *
+     * @param listener The listener to set, or {@code null} to build every message in full
+     * @throws NullPointerException if the static {@link ClientImplementation} was not initialized
+     * @see ClientImplementation
+     * @see ClientImplementation#setMessagePartListener(MessagePartListener)
+     */
+    public static void setMessagePartListener(MessagePartListener<ClientImplementation> listener) {
+        instance.setMessagePartListener(listener);
+    }
+
+    /**
+     * Sets the policy for coalescing outbound data to the server into fewer, larger writes.
+     * <p>
+     * This method is a static wrapper for the {@link ClientImplementation#setFlushPolicy(int, long)} method.
+     *
+     * @param maxBufferedBytes The number of buffered bytes which triggers a write
+     * @param maxDelayMicros   The maximum number of microseconds data may be buffered for
+     * @throws NullPointerException if the static {@link ClientImplementation} was not initialized
+     * @see ClientImplementation
+     * @see ClientImplementation#setFlushPolicy(int, long)
+     */
+    public static void setFlushPolicy(int maxBufferedBytes, long maxDelayMicros) {
+        instance.setFlushPolicy(maxBufferedBytes, maxDelayMicros);
+    }
+    /**
+     * Immediately writes any buffered outbound data to the server.
+     * <p>
+     * This method is a static wrapper for the {@link ClientImplementation#flush()} method.
+     *
+     * @throws NullPointerException if the static {@link ClientImplementation} was not initialized
+     * @see ClientImplementation
+     * @see ClientImplementation#flush()
+     */
+    public static void flush() {
+        instance.flush();
+    }
+
+    /**
+     * Sets the policy for pinging the server.
+     * <p>
+     * This method is a static wrapper for the {@link ClientImplementation#setHeartbeatPolicy(int, int)} method.
+     *
+     * @param intervalMillis The number of milliseconds between pings
+     * @param maxMissedPongs The number of intervals a ping may go unanswered before the connection is closed
+     * @throws NullPointerException if the static {@link ClientImplementation} was not initialized
+     * @see ClientImplementation
+     * @see ClientImplementation#setHeartbeatPolicy(int, int)
+     */
+    public static void setHeartbeatPolicy(int intervalMillis, int maxMissedPongs) {
+        instance.setHeartbeatPolicy(intervalMillis, maxMissedPongs);
+    }
+    /**
+     * Returns the smoothed round trip time of the current connection, as measured by heartbeats.
+     * <p>
+     * This method is a static wrapper for the {@link ClientImplementation#getSmoothedRttMicros()} method.
+     *
+     * @return The smoothed round trip time in microseconds, or {@code -1} if no pong has been received
+     * on the current connection yet
+     * @throws NullPointerException if the static {@link ClientImplementation} was not initialized
+     * @see ClientImplementation
+     * @see ClientImplementation#getSmoothedRttMicros()
+     */
+    public static long getSmoothedRttMicros() {
+        return instance.getSmoothedRttMicros();
+    }
+    /**
+     * Sets the policy for compressing messages sent to the server.
+     * <p>
+     * This method is a static wrapper for the {@link ClientImplementation#setCompressionPolicy(int, int)} method.
+     *
+     * @param minMessageBytes The size in bytes below which messages are sent uncompressed
+     * @param level           The compression level, from 1 (fastest) to 9 (smallest)
+     * @throws NullPointerException if the static {@link ClientImplementation} was not initialized
+     * @see ClientImplementation
+     * @see ClientImplementation#setCompressionPolicy(int, int)
+     */
+    public static void setCompressionPolicy(int minMessageBytes, int level) {
+        instance.setCompressionPolicy(minMessageBytes, level);
+    }
+    /**
+     * Returns the live compression counters of this client.
+     * <p>
+     * This method is a static wrapper for the {@link ClientImplementation#getCompressionStats()} method.
+     *
+     * @return This client's {@code CompressionStats}
+     * @throws NullPointerException if the static {@link ClientImplementation} was not initialized
+     * @see ClientImplementation
+     * @see ClientImplementation#getCompressionStats()
+     */
+    public static CompressionStats getCompressionStats() {
+        return instance.getCompressionStats();
+    }
+
     /**
      * Sets the amount of time to wait for server connection before timing out.
      * <p>
@@ -153,6 +397,39 @@ public abstract class Client {
     public static boolean connect(String address, int port, String passcode) {
         return instance.connect(address, port, passcode);
     }
+    /**
+     * Attempts to connect to the specified network address without a passcode, without blocking the calling thread.
+     * <p>
+     * This method is a static wrapper for the {@link ClientImplementation#connectAsync(String, int)} method.
+     *
+     * @param address The IP address to connect to
+     * @param port    The network port to connect to
+     * @return A future which completes with {@code true} if the connection was accepted by the server,
+     * or with {@code false} otherwise
+     * @throws NullPointerException if the static {@link ClientImplementation} was not initialized
+     * @see ClientImplementation
+     * @see ClientImplementation#connectAsync(String, int)
+     */
+    public static CompletableFuture<Boolean> connectAsync(String address, int port) {
+        return instance.connectAsync(address, port);
+    }
+    /**
+     * Attempts to connect to the specified network address with the specified passcode, without blocking the calling thread.
+     * <p>
+     * This method is a static wrapper for the {@link ClientImplementation#connectAsync(String, int, String)} method.
+     *
+     * @param address  The IP address to connect to
+     * @param port     The network port to connect to
+     * @param passcode The passcode to use to connect
+     * @return A future which completes with {@code true} if the connection was accepted by the server,
+     * or with {@code false} otherwise
+     * @throws NullPointerException if the static {@link ClientImplementation} was not initialized
+     * @see ClientImplementation
+     * @see ClientImplementation#connectAsync(String, int, String)
+     */
+    public static CompletableFuture<Boolean> connectAsync(String address, int port, String passcode) {
+        return instance.connectAsync(address, port, passcode);
+    }
 
     /**
      * Closes all threads and resolves all objects in use by this client.
@@ -1,20 +1,47 @@
 package me.utk.networking;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * The framework for any client implementation in this API.
  * <p>
  * Any {@code ClientImplementation}s must implement the following methods:
  * <ul>
  * <li>{@link #sendMessages(String...)} sends the specified messages to the server
+ * <li>{@link #sendBytes(byte[])} and {@link #sendBytes(ByteBuffer)} send the specified bytes to the server
+ * <li>{@link #send(Object, Codec)} sends the specified value to the server, as encoded by the specified {@link Codec}
+ * <li>{@link #sendFile(Path)} and {@link #sendStream(InputStream, long)} stream the specified bytes to the server
  * <li>{@link #getMessageBuilder()} returns the {@link MessageBuilder} corresponding to this connection
+ * <li>{@link #addMessageListener(MessageListener)} registers a listener for messages from the server
+ * <li>{@link #removeMessageListener(MessageListener)} unregisters a listener for messages from the server
+ * <li>{@link #addConnectionListener(ConnectionListener)} registers a listener for server connections
+ * <li>{@link #removeConnectionListener(ConnectionListener)} unregisters a listener for server connections
+ * <li>{@link #setStreamListener(StreamListener)} sets the listener which receives streams from the server
+ * <li>{@link #setMessagePartListener(MessagePartListener)} sets the listener which receives messages from the server part by part
+ * <li>{@link #setFlushPolicy(int, long)} sets the policy for coalescing outbound data to the server
+ * <li>{@link #flush()} writes any buffered outbound data to the server
+ * <li>{@link #setHeartbeatPolicy(int, int)} sets how often the server is pinged, and when an unanswered connection is closed
+ * <li>{@link #getSmoothedRttMicros()} returns the smoothed round trip time to the server
+ * <li>{@link #setCompressionPolicy(int, int)} sets which messages to the server are compressed
+ * <li>{@link #getCompressionStats()} returns the compression counters of this client
  * <li>{@link #setConnectionTimeout(int)} sets the timeout duration of this client
  * <li>{@link #connect(String, int)} )} tries to connect this client to the specified network address
  * <li>{@link #connect(String, int, String)} tries to connect this client to the specified network address
+ * <li>{@link #connectAsync(String, int)} tries to connect this client without blocking the calling thread
+ * <li>{@link #connectAsync(String, int, String)} tries to connect this client without blocking the calling thread
  * </ul>
  *
  * @author Utkarsh Priyam
  * @version December 8, 2020
  * @see MessageBuilder
+ * @see MessageListener
+ * @see ConnectionListener
+ * @see StreamListener
+ * @see MessagePartListener
  */
 public interface ClientImplementation {
     /**
@@ -27,6 +54,87 @@ public interface ClientImplementation {
      * @see MessageBuilder#nextMessage()
      */
     void sendMessages(String... messages);
+    /**
+     * Sends the given bytes to the server as a single binary message, without any conversion.
+     * <p>
+     * The bytes are received via {@link MessageBuilder#nextBinaryMessage()}, and the
+     * sent binary messages are guaranteed to be received in exactly the same order as
+     * they were sent, unless specified otherwise in documentation.
+     *
+     * @param bytes The bytes to send to the server
+     * @throws IllegalStateException if the connection does not support binary messages
+     * (for example, because the server only supports an older messaging protocol)
+     * @see MessageBuilder#nextBinaryMessage()
+     */
+    void sendBytes(byte[] bytes);
+    /**
+     * Sends the remaining bytes of the given buffer to the server as a single binary message,
+     * without any conversion. The position of the given buffer is not modified.
+     * <p>
+     * The bytes are received via {@link MessageBuilder#nextBinaryMessage()}, and the
+     * sent binary messages are guaranteed to be received in exactly the same order as
+     * they were sent, unless specified otherwise in documentation.
+     *
+     * @param bytes The buffer whose remaining bytes to send to the server
+     * @throws IllegalStateException if the connection does not support binary messages
+     * (for example, because the server only supports an older messaging protocol)
+     * @see MessageBuilder#nextBinaryMessage()
+     */
+    void sendBytes(ByteBuffer bytes);
+    /**
+     * Encodes the given value with the given {@link Codec}, and sends it to the server as a single binary message.
+     * <p>
+     * The value is encoded straight into the outbound frame, without any intermediate {@code String[]} or
+     * {@code byte[]}. It is received via {@link MessageBuilder#nextMessage(Codec)}, in exactly the same order
+     * as all other binary messages sent to the server.
+     *
+     * @param value The value to send to the server
+     * @param codec The codec to encode the value with
+     * @param <T>   The type of the value
+     * @throws IllegalArgumentException if the value cannot be encoded by the given codec
+     * @throws IllegalStateException    if the connection does not support binary messages
+     *                                  (for example, because the server only supports an older messaging protocol)
+     * @see MessageBuilder#nextMessage(Codec)
+     * @see BinaryCodec
+     */
+    <T> void send(T value, Codec<? super T> codec);
+    /**
+     * Sends the contents of the given file to the server as a single stream.
+     * <p>
+     * The file is sent in chunks, in exactly the same order as all other data sent to the server, and is received by
+     * the server's {@link StreamListener} without ever being held in memory as a whole. Where the implementation
+     * supports it, the file is transferred straight from the file system to the socket without being copied.
+     * <p>
+     * This method blocks until the whole file has been written, and the file must not be modified until then.
+     *
+     * @param file The file to send to the server
+     * @throws IOException           if the file cannot be read, or the connection is closed before the whole file is written
+     * @throws IllegalStateException if the connection does not support streams
+     *                               (for example, because the server only supports an older messaging protocol)
+     * @see #sendStream(InputStream, long)
+     * @see ServerImplementation#setStreamListener(StreamListener)
+     */
+    void sendFile(Path file) throws IOException;
+    /**
+     * Sends exactly {@code length} bytes read from the given input stream to the server as a single stream.
+     * The input stream is not closed.
+     * <p>
+     * The bytes are sent in chunks as they are read, in exactly the same order as all other data sent to the server,
+     * and are received by the server's {@link StreamListener} without ever being held in memory as a whole.
+     * <p>
+     * This method blocks until all of the bytes have been written. If the input stream ends early or fails,
+     * the stream is aborted, and the server is notified that it is incomplete.
+     *
+     * @param in     The input stream to read the bytes from
+     * @param length The number of bytes to send
+     * @throws IOException           if the input stream cannot be read or ends before {@code length} bytes,
+     *                               or the connection is closed before all of the bytes are written
+     * @throws IllegalStateException if the connection does not support streams
+     *                               (for example, because the server only supports an older messaging protocol)
+     * @see #sendFile(Path)
+     * @see ServerImplementation#setStreamListener(StreamListener)
+     */
+    void sendStream(InputStream in, long length) throws IOException;
     /**
      * Returns the {@link MessageBuilder} associated with this client.
      * <p>
@@ -39,6 +147,147 @@ public interface ClientImplementation {
      */
     MessageBuilder getMessageBuilder();
 
+    /**
+     * Registers a listener which is notified of every complete message received from the server.
+     * <p>
+     * While at least one listener is registered with this client, messages are delivered
+     * to the listeners instead of being queued in this client's {@link MessageBuilder},
+     * as outlined in the {@link MessageListener} documentation. Listeners remain
+     * registered across connections.
+     *
+     * @param listener The listener to register
+     * @see #removeMessageListener(MessageListener)
+     * @see MessageListener
+     */
+    void addMessageListener(MessageListener<ClientImplementation> listener);
+    /**
+     * Unregisters a listener previously registered via {@link #addMessageListener(MessageListener)}.
+     *
+     * @param listener The listener to unregister
+     * @see #addMessageListener(MessageListener)
+     * @see MessageListener
+     */
+    void removeMessageListener(MessageListener<ClientImplementation> listener);
+    /**
+     * Registers a listener which is notified whenever this client connects
+     * to or disconnects from a server.
+     *
+     * @param listener The listener to register
+     * @see #removeConnectionListener(ConnectionListener)
+     * @see ConnectionListener
+     */
+    void addConnectionListener(ConnectionListener<ClientImplementation> listener);
+    /**
+     * Unregisters a listener previously registered via {@link #addConnectionListener(ConnectionListener)}.
+     *
+     * @param listener The listener to unregister
+     * @see #addConnectionListener(ConnectionListener)
+     * @see ConnectionListener
+     */
+    void removeConnectionListener(ConnectionListener<ClientImplementation> listener);
+    /**
+     * Sets the listener which receives every stream sent by the server, replacing any previous listener.
+     * <p>
+     * Streams which start arriving while no listener is set are read and discarded.
+     * The listener remains set across connections.
+     *
+     * @param listener The listener to set, or {@code null} to discard all streams
+     * @see StreamListener
+     * @see ServerSideClient#sendFile(Path)
+     * @see ServerSideClient#sendStream(InputStream, long)
+     */
+    void setStreamListener(StreamListener<ClientImplementation> listener);
+    /**
+     * Sets the listener which may receive any message sent by the server part by part, replacing any previous listener.
+     * <p>
+     * Messages which the listener takes are never built in full, so they never reach any {@link MessageListener}
+     * or the {@link MessageBuilder}. Messages which start arriving while no listener is set are built in full as usual.
+     * The listener remains set across connections.
+     *
+     * @param listener The listener to set, or {@code null} to build every message in full
+     * @see MessagePartListener
+     */
+    void setMessagePartListener(MessagePartListener<ClientImplementation> listener);
+
+    /**
+     * Sets the policy for coalescing outbound data to the server into fewer, larger writes.
+     * <p>
+     * Outbound data is buffered until at least {@code maxBufferedBytes} bytes are buffered, or until
+     * the oldest buffered data has waited {@code maxDelayMicros} microseconds, whichever comes first.
+     * The {@link #flush()} method can be used to write any buffered data immediately.
+     * <p>
+     * A non-positive {@code maxDelayMicros} disables coalescing, so that all data is written as soon as it is sent.
+     * This is the default policy.
+     *
+     * @param maxBufferedBytes The number of buffered bytes which triggers a write
+     * @param maxDelayMicros   The maximum number of microseconds data may be buffered for
+     * @see #flush()
+     */
+    void setFlushPolicy(int maxBufferedBytes, long maxDelayMicros);
+    /**
+     * Immediately writes any outbound data which is buffered as per the flush policy.
+     *
+     * @see #setFlushPolicy(int, long)
+     */
+    void flush();
+
+    /**
+     * Sets the policy for pinging the server.
+     * <p>
+     * Once every {@code intervalMillis} milliseconds, the server is sent a ping unless the last ping is
+     * still unanswered, and every pong updates the {@linkplain #getSmoothedRttMicros() round trip time}.
+     * If a ping goes unanswered for {@code maxMissedPongs} intervals, the connection is closed.
+     * While the heartbeat is active, the connection is only ever closed this way, rather than after
+     * a period of inactivity.
+     * <p>
+     * Heartbeats are disabled by default, and a non-positive interval disables them again.
+     * Servers which only support the original protocol are never pinged.
+     * <p>
+     * This policy applies to the current connection and all future connections of this client.
+     *
+     * @param intervalMillis The number of milliseconds between pings
+     * @param maxMissedPongs The number of intervals a ping may go unanswered before the connection is closed
+     * @see #getSmoothedRttMicros()
+     */
+    void setHeartbeatPolicy(int intervalMillis, int maxMissedPongs);
+    /**
+     * Returns the smoothed round trip time of the current connection, as measured by heartbeats.
+     * <p>
+     * Every pong updates the estimate as per RFC 6298, and each round trip is measured when the pong
+     * is read, so it also includes any delay in reading messages from the server.
+     *
+     * @return The smoothed round trip time in microseconds, or {@code -1} if no pong has been received
+     * on the current connection yet
+     * @see #setHeartbeatPolicy(int, int)
+     */
+    long getSmoothedRttMicros();
+
+    /**
+     * Sets the policy for compressing messages sent to the server.
+     * <p>
+     * Every message (or binary message) whose encoded size is at least {@code minMessageBytes} bytes is
+     * compressed with the specified {@link java.util.zip.Deflater} level, and then sent compressed if that
+     * made it smaller. Smaller messages are always sent uncompressed, since compression rarely pays off for them.
+     * Each connection reuses a single {@code Deflater} and {@code Inflater} for its lifetime.
+     * <p>
+     * Compression is disabled by default, and a non-positive level disables it again.
+     * Servers which did not negotiate compression during the handshake are always sent uncompressed messages.
+     * <p>
+     * This policy applies to the current connection and all future connections of this client.
+     *
+     * @param minMessageBytes The size in bytes below which messages are sent uncompressed
+     * @param level           The compression level, from 1 (fastest) to 9 (smallest)
+     * @see #getCompressionStats()
+     */
+    void setCompressionPolicy(int minMessageBytes, int level);
+    /**
+     * Returns the live compression counters of this client, covering all connections it has ever made.
+     *
+     * @return This client's {@code CompressionStats}
+     * @see #setCompressionPolicy(int, int)
+     */
+    CompressionStats getCompressionStats();
+
     /**
      * Sets the amount of time to wait for server connection before timing out.
      * <p>
@@ -65,6 +314,36 @@ public interface ClientImplementation {
      * @return {@code true} if the connection was accepted by the server; otherwise, {@code false}
      */
     boolean connect(String address, int port, String passcode);
+    /**
+     * Attempts to connect to the specified network address without a passcode, without blocking the calling thread.
+     * <p>
+     * This method is equivalent to {@link #connectAsync(String, int, String)} with an empty passcode.
+     *
+     * @param address The IP address to connect to
+     * @param port    The network port to connect to
+     * @return A future which completes with {@code true} if the connection was accepted by the server,
+     * or with {@code false} otherwise
+     * @see #connectAsync(String, int, String)
+     */
+    CompletableFuture<Boolean> connectAsync(String address, int port);
+    /**
+     * Attempts to connect to the specified network address with the specified passcode, without blocking the calling thread.
+     * <p>
+     * The returned future completes as soon as the server confirms the connection, or once the server rejects
+     * the connection, closes it, or fails to confirm it within the {@linkplain #setConnectionTimeout(int)
+     * connection timeout}. Any connection listeners are notified before the future completes. The future
+     * completes exceptionally if no connection to the specified network address can be opened at all.
+     * <p>
+     * As with {@link #connect(String, int, String)}, any existing connection of this client is closed first.
+     *
+     * @param address  The IP address to connect to
+     * @param port     The network port to connect to
+     * @param passcode The passcode to use to connect
+     * @return A future which completes with {@code true} if the connection was accepted by the server,
+     * or with {@code false} otherwise
+     * @see #connect(String, int, String)
+     */
+    CompletableFuture<Boolean> connectAsync(String address, int port, String passcode);
 
     /**
      * Closes all threads and resolves all objects in use by this client.
@@ -0,0 +1,278 @@
+package me.utk.networking;
+
+/**
+ * An immutable set of socket and timing options for a {@link ClientImplementation}.
+ * <p>
+ * {@code ClientOptions} are created via a {@link Builder}, which starts out with the default value of every option:
+ * <pre>{@code
+ * ClientOptions options = ClientOptions.builder().tcpNoDelay(true).receiveBufferSize(256 * 1024).build();
+ * }</pre>
+ * Every option applies to each connection made by the client, and can therefore be tuned
+ * for either latency or throughput per deployment. Options which only apply to some implementations
+ * are noted as such, and are ignored by all other implementations.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ * @see ServerOptions
+ * @see ClientImplementation
+ */
+public final class ClientOptions {
+    /**
+     * The default {@code ClientOptions}, which match the behavior of a client created without any options.
+     */
+    public static final ClientOptions DEFAULT = builder().build();
+
+    private final int SEND_BUFFER_SIZE, RECEIVE_BUFFER_SIZE;
+    private final boolean TCP_NO_DELAY, KEEP_ALIVE;
+    private final int POLL_TIMEOUT_MILLIS, POLL_INTERVAL_MILLIS;
+    private final int IDLE_TIMEOUT_MILLIS;
+    private final int MAX_FRAME_LENGTH;
+
+    private ClientOptions(Builder builder) {
+        SEND_BUFFER_SIZE = builder.sendBufferSize;
+        RECEIVE_BUFFER_SIZE = builder.receiveBufferSize;
+        TCP_NO_DELAY = builder.tcpNoDelay;
+        KEEP_ALIVE = builder.keepAlive;
+        POLL_TIMEOUT_MILLIS = builder.pollTimeoutMillis;
+        POLL_INTERVAL_MILLIS = builder.pollIntervalMillis;
+        IDLE_TIMEOUT_MILLIS = builder.idleTimeoutMillis;
+        MAX_FRAME_LENGTH = builder.maxFrameLength;
+    }
+
+    /**
+     * Creates a new {@link Builder}, with every option set to its default value.
+     *
+     * @return The newly created {@code Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the size of the send buffer ({@code SO_SNDBUF}) of each connection,
+     * where {@code 0} signifies the platform default.
+     *
+     * @return The send buffer size, in bytes
+     */
+    public int getSendBufferSize() {
+        return SEND_BUFFER_SIZE;
+    }
+    /**
+     * Returns the size of the receive buffer ({@code SO_RCVBUF}) of each connection,
+     * where {@code 0} signifies the platform default.
+     *
+     * @return The receive buffer size, in bytes
+     */
+    public int getReceiveBufferSize() {
+        return RECEIVE_BUFFER_SIZE;
+    }
+    /**
+     * Returns whether Nagle's algorithm is disabled ({@code TCP_NODELAY}) on each connection.
+     *
+     * @return {@code true} iff small writes are sent right away
+     */
+    public boolean isTcpNoDelay() {
+        return TCP_NO_DELAY;
+    }
+    /**
+     * Returns whether TCP keep-alive probes ({@code SO_KEEPALIVE}) are enabled on each connection.
+     *
+     * @return {@code true} iff keep-alive probes are enabled
+     */
+    public boolean isKeepAlive() {
+        return KEEP_ALIVE;
+    }
+    /**
+     * Returns how long a blocking read waits for input before the connection is polled again.
+     * <p>
+     * This option only applies to implementations which read from blocking sockets.
+     *
+     * @return The poll timeout, in milliseconds
+     */
+    public int getPollTimeoutMillis() {
+        return POLL_TIMEOUT_MILLIS;
+    }
+    /**
+     * Returns how often the connection is polled for new messages.
+     * <p>
+     * This option only applies to implementations which poll their connection on a schedule.
+     *
+     * @return The poll interval, in milliseconds
+     */
+    public int getPollIntervalMillis() {
+        return POLL_INTERVAL_MILLIS;
+    }
+    /**
+     * Returns how long a confirmed connection may go without receiving anything before it is closed.
+     * <p>
+     * This option only applies to implementations which poll their connection on a schedule.
+     * Connections with an active heartbeat instead time out once they miss too many pongs.
+     *
+     * @return The idle timeout, in milliseconds
+     */
+    public int getIdleTimeoutMillis() {
+        return IDLE_TIMEOUT_MILLIS;
+    }
+    /**
+     * Returns the largest frame payload which may be received on each connection.
+     * Any connection which announces a larger frame is closed before the frame is read.
+     *
+     * @return The maximum frame length, in bytes
+     */
+    public int getMaxFrameLength() {
+        return MAX_FRAME_LENGTH;
+    }
+
+    /**
+     * A builder for {@link ClientOptions}.
+     * <p>
+     * Every setter throws an {@link IllegalArgumentException} if given a value outside of its allowed range,
+     * and returns this builder otherwise, so that calls may be chained.
+     *
+     * @author Utkarsh Priyam
+     * @version December 8, 2020
+     * @see ClientOptions
+     */
+    public static final class Builder {
+        private int sendBufferSize = 0, receiveBufferSize = 0; // platform defaults
+        private boolean tcpNoDelay = false, keepAlive = false;
+        private int pollTimeoutMillis = 100;
+        private int pollIntervalMillis = 1000;
+        private int idleTimeoutMillis = 300000; // 5 mins
+        private int maxFrameLength = 16 << 20; // 16 MiB
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the size of the send buffer ({@code SO_SNDBUF}) of each connection.
+         *
+         * @param bytes The send buffer size (0 signifies the platform default)
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code bytes} is negative
+         */
+        public Builder sendBufferSize(int bytes) {
+            sendBufferSize = requireNonNegative(bytes, "sendBufferSize");
+            return this;
+        }
+        /**
+         * Sets the size of the receive buffer ({@code SO_RCVBUF}) of each connection.
+         * <p>
+         * The receive buffer is set before the socket connects,
+         * so that buffers larger than 64 KiB can be used from the start of the connection.
+         *
+         * @param bytes The receive buffer size (0 signifies the platform default)
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code bytes} is negative
+         */
+        public Builder receiveBufferSize(int bytes) {
+            receiveBufferSize = requireNonNegative(bytes, "receiveBufferSize");
+            return this;
+        }
+        /**
+         * Sets whether Nagle's algorithm is disabled ({@code TCP_NODELAY}) on each connection.
+         * <p>
+         * Disabling Nagle's algorithm lowers the latency of small messages, at the cost of sending more packets.
+         * The default is {@code false}.
+         *
+         * @param tcpNoDelay {@code true} to send small writes right away
+         * @return This {@code Builder}
+         */
+        public Builder tcpNoDelay(boolean tcpNoDelay) {
+            this.tcpNoDelay = tcpNoDelay;
+            return this;
+        }
+        /**
+         * Sets whether TCP keep-alive probes ({@code SO_KEEPALIVE}) are enabled on each connection.
+         * The default is {@code false}.
+         *
+         * @param keepAlive {@code true} to enable keep-alive probes
+         * @return This {@code Builder}
+         */
+        public Builder keepAlive(boolean keepAlive) {
+            this.keepAlive = keepAlive;
+            return this;
+        }
+        /**
+         * Sets how long a blocking read waits for input before the connection is polled again.
+         * The default is 100 milliseconds.
+         * <p>
+         * This option only applies to implementations which read from blocking sockets.
+         *
+         * @param millis The poll timeout, in milliseconds
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code millis} is not positive
+         */
+        public Builder pollTimeoutMillis(int millis) {
+            pollTimeoutMillis = requirePositive(millis, "pollTimeoutMillis");
+            return this;
+        }
+        /**
+         * Sets how often the connection is polled for new messages.
+         * The default is 1000 milliseconds.
+         * <p>
+         * This option only applies to implementations which poll their connection on a schedule.
+         *
+         * @param millis The poll interval, in milliseconds
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code millis} is not positive
+         */
+        public Builder pollIntervalMillis(int millis) {
+            pollIntervalMillis = requirePositive(millis, "pollIntervalMillis");
+            return this;
+        }
+        /**
+         * Sets how long a confirmed connection may go without receiving anything before it is closed.
+         * The default is 5 minutes.
+         * <p>
+         * This option only applies to implementations which poll their connection on a schedule.
+         *
+         * @param millis The idle timeout, in milliseconds
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code millis} is not positive
+         */
+        public Builder idleTimeoutMillis(int millis) {
+            idleTimeoutMillis = requirePositive(millis, "idleTimeoutMillis");
+            return this;
+        }
+        /**
+         * Sets the largest frame payload which may be received on each connection.
+         * The default is 16 MiB.
+         * <p>
+         * A peer which announces a larger frame, or a compressed frame which inflates to more than this,
+         * is disconnected before any memory is allocated for the frame, so that a single peer cannot exhaust the heap.
+         * Stream data is never buffered, so it is not limited by this,
+         * but every line and binary message sent to a peer must fit within the peer's maximum.
+         * Messages longer than this are never compressed when sent.
+         * This option only applies to connections which negotiate a framed protocol version.
+         *
+         * @param bytes The maximum frame length, in bytes
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code bytes} is not positive
+         */
+        public Builder maxFrameLength(int bytes) {
+            maxFrameLength = requirePositive(bytes, "maxFrameLength");
+            return this;
+        }
+
+        /**
+         * Creates new {@link ClientOptions} from the current state of this builder.
+         *
+         * @return The newly created {@code ClientOptions}
+         */
+        public ClientOptions build() {
+            return new ClientOptions(this);
+        }
+
+        private static int requireNonNegative(int value, String name) {
+            if (value < 0)
+                throw new IllegalArgumentException(name + " must not be negative: " + value);
+            return value;
+        }
+        private static int requirePositive(int value, String name) {
+            if (value <= 0)
+                throw new IllegalArgumentException(name + " must be positive: " + value);
+            return value;
+        }
+    }
+}
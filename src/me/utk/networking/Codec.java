@@ -0,0 +1,56 @@
+package me.utk.networking;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts values of a single type to and from the payload of a binary message.
+ * <p>
+ * Codecs let applications send and receive their own types directly, instead of formatting them into
+ * {@code String[]} messages and parsing them back out again. A value is encoded straight into the frame
+ * which is written to the connection, so {@link #encodedLength(Object)} must return the exact number of
+ * bytes that {@link #encode(Object, ByteBuffer)} writes. Likewise, a value is decoded straight from the
+ * payload which was read from the connection.
+ * <p>
+ * Encoded values are sent as binary messages, so they are received in exactly the same order as all other
+ * binary messages sent over the same connection, and require the same protocol version as binary messages.
+ * Implementations must be thread-safe, as a single codec may encode and decode for many connections at once.
+ *
+ * @param <T> The type of the values which this codec encodes and decodes
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ * @see BinaryCodec
+ * @see ServerSideClient#send(Object, Codec)
+ * @see ClientImplementation#send(Object, Codec)
+ * @see MessageBuilder#nextMessage(Codec)
+ */
+public interface Codec<T> {
+    /**
+     * Returns the exact number of bytes which {@link #encode(Object, ByteBuffer)} writes for the given value.
+     *
+     * @param value The value to encode
+     * @return The encoded length of the value, in bytes
+     * @throws IllegalArgumentException if the value cannot be encoded by this codec
+     */
+    int encodedLength(T value);
+    /**
+     * Writes the given value to the given buffer, starting at its current position.
+     * <p>
+     * The buffer has exactly {@link #encodedLength(Object) encodedLength(value)} bytes remaining,
+     * all of which must be written.
+     *
+     * @param value  The value to encode
+     * @param buffer The buffer to write the encoded value to
+     * @throws IllegalArgumentException if the value cannot be encoded by this codec
+     */
+    void encode(T value, ByteBuffer buffer);
+    /**
+     * Reads a single value from the given buffer, starting at its current position.
+     * <p>
+     * The buffer holds exactly one binary message, all of which should be consumed.
+     *
+     * @param buffer The buffer to read the encoded value from
+     * @return The decoded value
+     * @throws IllegalArgumentException if the buffer does not hold a value encoded by this codec
+     */
+    T decode(ByteBuffer buffer);
+}
@@ -0,0 +1,74 @@
+package me.utk.networking;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live compression counters, shared by every compressor of a single server or client of either transport.
+ * <p>
+ * The transports record into these counters directly, while applications only ever read them as {@link CompressionStats}.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ */
+public final class CompressionCounters implements CompressionStats {
+    // ---------------------------------------- PRIVATE INSTANCE VARIABLES ---------------------------------------- //
+
+    private final LongAdder MESSAGES_COMPRESSED = new LongAdder(), BYTES_BEFORE_COMPRESSION = new LongAdder();
+    private final LongAdder BYTES_AFTER_COMPRESSION = new LongAdder(), COMPRESSION_NANOS = new LongAdder();
+    private final LongAdder MESSAGES_DECOMPRESSED = new LongAdder(), BYTES_BEFORE_DECOMPRESSION = new LongAdder();
+    private final LongAdder BYTES_AFTER_DECOMPRESSION = new LongAdder(), DECOMPRESSION_NANOS = new LongAdder();
+
+    // ---------------------------------------- PUBLIC METHODS ---------------------------------------- //
+
+    // Messages which did not shrink still cost CPU time, but are sent uncompressed
+    public void compressed(int before, int after, long nanos) {
+        COMPRESSION_NANOS.add(nanos);
+        if (after >= before)
+            return;
+        MESSAGES_COMPRESSED.increment();
+        BYTES_BEFORE_COMPRESSION.add(before);
+        BYTES_AFTER_COMPRESSION.add(after);
+    }
+    public void decompressed(int before, int after, long nanos) {
+        MESSAGES_DECOMPRESSED.increment();
+        BYTES_BEFORE_DECOMPRESSION.add(before);
+        BYTES_AFTER_DECOMPRESSION.add(after);
+        DECOMPRESSION_NANOS.add(nanos);
+    }
+
+    // ---------------------------------------- OVERRIDDEN METHODS ---------------------------------------- //
+
+    @Override
+    public long getMessagesCompressed() {
+        return MESSAGES_COMPRESSED.sum();
+    }
+    @Override
+    public long getBytesBeforeCompression() {
+        return BYTES_BEFORE_COMPRESSION.sum();
+    }
+    @Override
+    public long getBytesAfterCompression() {
+        return BYTES_AFTER_COMPRESSION.sum();
+    }
+    @Override
+    public long getCompressionNanos() {
+        return COMPRESSION_NANOS.sum();
+    }
+
+    @Override
+    public long getMessagesDecompressed() {
+        return MESSAGES_DECOMPRESSED.sum();
+    }
+    @Override
+    public long getBytesBeforeDecompression() {
+        return BYTES_BEFORE_DECOMPRESSION.sum();
+    }
+    @Override
+    public long getBytesAfterDecompression() {
+        return BYTES_AFTER_DECOMPRESSION.sum();
+    }
+    @Override
+    public long getDecompressionNanos() {
+        return DECOMPRESSION_NANOS.sum();
+    }
+}
@@ -0,0 +1,80 @@
+package me.utk.networking;
+
+/**
+ * Cumulative counters for the per-message compression of a {@link ServerImplementation} or {@link ClientImplementation}.
+ * <p>
+ * Compression is only ever applied to messages sent over connections which negotiated it during the handshake,
+ * and only to messages at least as large as the threshold set by the compression policy. Every counter covers
+ * all connections of the server or client since it was created, and is updated live as messages are sent and
+ * received, so the ratio and cost of compression can be measured before deciding to enable it everywhere.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ * @see ServerImplementation#setCompressionPolicy(int, int)
+ * @see ClientImplementation#setCompressionPolicy(int, int)
+ */
+public interface CompressionStats {
+    /**
+     * Returns the number of outbound messages which were sent compressed.
+     * <p>
+     * Messages which were compressed but did not shrink are sent uncompressed, and are not counted here.
+     *
+     * @return The number of compressed outbound messages
+     */
+    long getMessagesCompressed();
+    /**
+     * Returns the total size of all compressed outbound messages before compression.
+     *
+     * @return The number of bytes before compression
+     */
+    long getBytesBeforeCompression();
+    /**
+     * Returns the total size of all compressed outbound messages after compression.
+     *
+     * @return The number of bytes after compression
+     */
+    long getBytesAfterCompression();
+    /**
+     * Returns the total CPU time spent compressing outbound messages,
+     * including messages which did not shrink and were therefore sent uncompressed.
+     *
+     * @return The number of nanoseconds spent compressing
+     */
+    long getCompressionNanos();
+
+    /**
+     * Returns the number of inbound messages which arrived compressed.
+     *
+     * @return The number of decompressed inbound messages
+     */
+    long getMessagesDecompressed();
+    /**
+     * Returns the total size of all compressed inbound messages before decompression.
+     *
+     * @return The number of bytes before decompression
+     */
+    long getBytesBeforeDecompression();
+    /**
+     * Returns the total size of all compressed inbound messages after decompression.
+     *
+     * @return The number of bytes after decompression
+     */
+    long getBytesAfterDecompression();
+    /**
+     * Returns the total CPU time spent decompressing inbound messages.
+     *
+     * @return The number of nanoseconds spent decompressing
+     */
+    long getDecompressionNanos();
+
+    /**
+     * Returns the ratio of the size of all compressed outbound messages before compression to their size after,
+     * or {@code 1} if no outbound messages have been compressed yet.
+     *
+     * @return The outbound compression ratio
+     */
+    default double getCompressionRatio() {
+        long after = getBytesAfterCompression();
+        return after == 0 ? 1 : (double) getBytesBeforeCompression() / after;
+    }
+}
@@ -0,0 +1,201 @@
+package me.utk.networking;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses outbound messages and decompresses inbound messages for a single connection,
+ * reusing one {@link Deflater} and one {@link Inflater} for the lifetime of the connection.
+ * <p>
+ * Every message is compressed on its own, so that messages may be compressed by whichever thread sends them.
+ * A compressed message is sent as a single compressed frame, whose payload is the 4-byte length of the frames
+ * it replaces, followed by those frames as raw deflate data. Compressed frames require protocol version 2,
+ * which is how both sides agree on compression during the handshake.
+ * <p>
+ * A compressed frame may claim to replace at most the maximum frame length of the connection, and must inflate
+ * to exactly the length it claims, so a peer can never make a small frame allocate more than an uncompressed frame
+ * could. Messages longer than the maximum frame length are therefore sent uncompressed.
+ * <p>
+ * The deflater and inflater are only created once they are first needed, since each holds native memory
+ * (a deflater holds about 256 KiB) until the connection is closed.
+ * <p>
+ * Both transports frame compressed messages identically, so they share this class, which is public for
+ * their sake alone. Applications configure compression through the servers and clients instead.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ */
+public final class Compressor {
+    // ---------------------------------------- PUBLIC CONSTANTS ---------------------------------------- //
+
+    // Lowest protocol version which supports compressed frames
+    public static final int PROTOCOL_VERSION = 2;
+
+    // ---------------------------------------- PRIVATE INSTANCE VARIABLES ---------------------------------------- //
+
+    // Type byte followed by 4-byte payload length, as in every frame
+    private static final int FRAME_HEADER_LENGTH = 5;
+    // Frame header followed by the 4-byte length of the decompressed frames
+    private static final int COMPRESSED_HEADER_LENGTH = FRAME_HEADER_LENGTH + 4;
+
+    private final CompressionCounters STATS;
+    private final int MAX_FRAME_LENGTH;
+
+    private final Object DEFLATER_LOCK = new Object(), INFLATER_LOCK = new Object();
+    private Deflater deflater = null; // guarded by DEFLATER_LOCK
+    private Inflater inflater = null; // guarded by INFLATER_LOCK
+    private final byte[] TRAILING_BYTE = new byte[1]; // guarded by INFLATER_LOCK
+    private volatile boolean isEnded = false;
+
+    private volatile int minMessageBytes = 0, level = 0; // compression is disabled by default
+
+    // ---------------------------------------- PUBLIC CONSTRUCTOR ---------------------------------------- //
+
+    public Compressor(CompressionCounters stats, int maxFrameLength) {
+        STATS = stats;
+        MAX_FRAME_LENGTH = maxFrameLength;
+    }
+
+    // ---------------------------------------- PUBLIC METHODS ---------------------------------------- //
+
+    // A non-positive level disables compression
+    public void setPolicy(int minMessageBytes, int level) {
+        this.minMessageBytes = Math.max(0, minMessageBytes);
+        this.level = Math.min(level, Deflater.BEST_COMPRESSION);
+    }
+
+    // Returns the frames themselves (or null, if null) unless compressing them makes them smaller
+    public byte[] compress(int protocolVersion, byte[] frames) {
+        if (frames == null)
+            return null;
+        byte[] compressed = compress(protocolVersion, frames, 0, frames.length);
+        return compressed != null ? compressed : frames;
+    }
+
+    /*
+     * Returns the frames themselves (or null, if null) unless compressing them makes them smaller
+     *
+     * The frames must be backed by an accessible array, as all encoded frames are
+     */
+    public ByteBuffer compress(int protocolVersion, ByteBuffer frames) {
+        if (frames == null)
+            return null;
+        byte[] compressed = compress(protocolVersion, frames.array(), frames.arrayOffset() + frames.position(), frames.remaining());
+        return compressed != null ? ByteBuffer.wrap(compressed) : frames;
+    }
+
+    /*
+     * Returns the frames which the first payloadLength bytes of the given array replace
+     *
+     * The frames are held by a pooled array, which the caller must release to BufferPool.SHARED
+     */
+    public ByteBuffer decompress(byte[] payload, int payloadLength) throws ProtocolException {
+        return decompress(ByteBuffer.wrap(payload, 0, payloadLength));
+    }
+
+    /*
+     * Returns the frames which the given payload of a compressed frame replaces, consuming the payload
+     *
+     * The payload may be direct, and the frames are held by a pooled array, which the caller must release
+     */
+    public ByteBuffer decompress(ByteBuffer payload) throws ProtocolException {
+        long start = System.nanoTime();
+        int compressedLength = payload.remaining();
+        if (compressedLength < 4)
+            throw new ProtocolException("Truncated compressed frame");
+        int length = payload.getInt();
+        // Checked before anything is allocated for the frames
+        if (length < 0)
+            throw new ProtocolException("Negative decompressed length");
+        if (length > MAX_FRAME_LENGTH)
+            throw new ProtocolException("Decompressed length " + length + " exceeds the maximum of " + MAX_FRAME_LENGTH);
+        byte[] frames = BufferPool.SHARED.acquireArray(length);
+        synchronized (INFLATER_LOCK) {
+            if (isEnded) {
+                BufferPool.SHARED.releaseArray(frames);
+                throw new ProtocolException("Connection closed");
+            }
+            if (inflater == null)
+                inflater = new Inflater(true);
+            inflater.reset();
+            inflater.setInput(payload);
+            try {
+                int read = 0;
+                while (read < length) {
+                    int inflated = inflater.inflate(frames, read, length - read);
+                    if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                        throw new ProtocolException("Truncated compressed frame");
+                    read += inflated;
+                }
+                // The deflate data must end exactly where the claimed length of frames does, with no input left over
+                if (!inflater.finished() && inflater.inflate(TRAILING_BYTE) != 0)
+                    throw new ProtocolException("Oversized compressed frame");
+                if (!inflater.finished() || inflater.getRemaining() != 0 || inflater.getBytesWritten() != length)
+                    throw new ProtocolException("Malformed compressed frame");
+            } catch (DataFormatException | ProtocolException e) {
+                BufferPool.SHARED.releaseArray(frames);
+                throw e instanceof ProtocolException ? (ProtocolException) e : new ProtocolException("Malformed compressed frame");
+            } finally {
+                payload.position(payload.limit());
+            }
+        }
+        STATS.decompressed(FRAME_HEADER_LENGTH + compressedLength, length, System.nanoTime() - start);
+        return ByteBuffer.wrap(frames, 0, length);
+    }
+
+    // Frees the native memory of the deflater and inflater, after which nothing is compressed or decompressed
+    public void end() {
+        isEnded = true;
+        synchronized (DEFLATER_LOCK) {
+            if (deflater != null)
+                deflater.end();
+        }
+        synchronized (INFLATER_LOCK) {
+            if (inflater != null)
+                inflater.end();
+        }
+    }
+
+    // ---------------------------------------- PRIVATE HELPER METHODS ---------------------------------------- //
+
+    // Returns the compressed frame in an array of exactly its length, or null if it would not be smaller
+    private byte[] compress(int protocolVersion, byte[] frames, int offset, int uncompressed) {
+        int level = this.level;
+        if (level <= 0 || protocolVersion < PROTOCOL_VERSION || uncompressed < minMessageBytes
+                || uncompressed <= COMPRESSED_HEADER_LENGTH || uncompressed > MAX_FRAME_LENGTH)
+            return null;
+        long start = System.nanoTime();
+        // The compressed frame is only sent if it is smaller, so there is no need to deflate any more than that
+        int limit = uncompressed - 1;
+        byte[] compressed = BufferPool.SHARED.acquireArray(limit);
+        try {
+            int length = COMPRESSED_HEADER_LENGTH;
+            synchronized (DEFLATER_LOCK) {
+                if (isEnded)
+                    return null;
+                if (deflater == null)
+                    deflater = new Deflater(level, true);
+                deflater.reset();
+                deflater.setLevel(level);
+                deflater.setInput(frames, offset, uncompressed);
+                deflater.finish();
+                while (!deflater.finished() && length < limit)
+                    length += deflater.deflate(compressed, length, limit - length);
+                if (!deflater.finished())
+                    length = uncompressed;
+            }
+            STATS.compressed(uncompressed, length, System.nanoTime() - start);
+            if (length >= uncompressed)
+                return null;
+            ByteBuffer.wrap(compressed).put(MessageUtil.COMPRESSED.toFrameType())
+                    .putInt(length - FRAME_HEADER_LENGTH).putInt(uncompressed);
+            return Arrays.copyOf(compressed, length);
+        } finally {
+            BufferPool.SHARED.releaseArray(compressed);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package me.utk.networking;
+
+/**
+ * A callback which is notified when a connection is established or severed.
+ * <p>
+ * Both methods have empty default implementations, so implementations only
+ * need to override the events they are interested in. Listeners are notified
+ * from implementation-specific threads, so any long-running work should be
+ * handed off to another thread.
+ *
+ * @param <C> The type of the connection
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ * @see MessageListener
+ */
+public interface ConnectionListener<C> {
+    /**
+     * Called once the specified connection has been established and verified.
+     *
+     * @param connection The newly established connection
+     */
+    default void onConnect(C connection) {
+    }
+    /**
+     * Called once the specified connection has been closed, by either side.
+     *
+     * @param connection The closed connection
+     */
+    default void onDisconnect(C connection) {
+    }
+}
@@ -0,0 +1,63 @@
+package me.utk.networking;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A concurrent registry of the verified clients of a server, keyed by their numeric connection IDs.
+ * <p>
+ * Registration, lookups, and membership queries never block one another. Iteration is weakly consistent,
+ * so it never throws a {@link java.util.ConcurrentModificationException} and never copies the registry.
+ * <p>
+ * Both transports keep their clients in this registry, which is why it is public, but it is not part of the
+ * API offered to applications, which only ever see its {@linkplain #view() unmodifiable view}.
+ *
+ * @param <C> The transport's own client type
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ */
+public final class ConnectionRegistry<C extends ServerSideClient> {
+    private final ConcurrentHashMap<Long, C> CLIENTS = new ConcurrentHashMap<>();
+
+    // Live, unmodifiable view of the registered clients
+    private final Set<ServerSideClient> VIEW = new AbstractSet<ServerSideClient>() {
+        @Override
+        public Iterator<ServerSideClient> iterator() {
+            return Collections.<ServerSideClient>unmodifiableCollection(CLIENTS.values()).iterator();
+        }
+        @Override
+        public int size() {
+            return CLIENTS.size();
+        }
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof ServerSideClient && CLIENTS.get(((ServerSideClient) o).getId()) == o;
+        }
+    };
+
+    public void register(C client) {
+        CLIENTS.put(client.getId(), client);
+    }
+    // true iff this call removed the client, so that exactly one caller handles its disconnection
+    public boolean unregister(C client) {
+        return CLIENTS.remove(client.getId(), client);
+    }
+
+    public C get(long id) {
+        return CLIENTS.get(id);
+    }
+    public int size() {
+        return CLIENTS.size();
+    }
+
+    public Collection<C> clients() {
+        return CLIENTS.values();
+    }
+    public Set<ServerSideClient> view() {
+        return VIEW;
+    }
+}
@@ -0,0 +1,130 @@
+package me.utk.networking;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Pings the other side of a single connection once every interval, and answers its pings in turn.
+ * <p>
+ * At most one ping is outstanding at a time, and every pong updates a smoothed round trip time
+ * (as per RFC 6298). Once {@code maxMissedPongs} intervals pass without a pong, the connection is
+ * considered dead. Pings and pongs only exist as frames, so heartbeats require protocol version 1.
+ * <p>
+ * Polled connections may leave a pong unread for much longer than the interval, so they are only
+ * considered dead once their reader has also {@linkplain #inputDrained() drained} all waiting input
+ * without finding the pong. Selector-driven connections read every pong as soon as it arrives, and are not polled.
+ * <p>
+ * Both transports keep the same heartbeat, so this class is public to make it reachable from their packages,
+ * and not for applications to use directly.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ */
+public final class Heartbeat {
+    // ---------------------------------------- PRIVATE INSTANCE VARIABLES ---------------------------------------- //
+
+    private final Consumer<MessageUtil> SEND_CONTROL;
+    private final Runnable ON_DEAD;
+    private final boolean IS_POLLED;
+    private final TimerWheel.Timeout BEAT = TimerWheel.SHARED.newTimeout(this::beat);
+
+    // All guarded by this
+    private int intervalMillis = 0; // 0 iff stopped
+    private int maxMissedPongs = 0, missedPongs = 0;
+    private boolean isPingOutstanding = false, isAwaitingDrain = false;
+    private long pingSentNanos = 0;
+
+    private volatile long smoothedRttNanos = -1;
+
+    // ---------------------------------------- PUBLIC CONSTRUCTOR ---------------------------------------- //
+
+    // onDead is called by the timer thread, or for polled connections, by whichever thread drains the input
+    public Heartbeat(Consumer<MessageUtil> sendControl, Runnable onDead, boolean isPolled) {
+        SEND_CONTROL = sendControl;
+        ON_DEAD = onDead;
+        IS_POLLED = isPolled;
+    }
+
+    // ---------------------------------------- PUBLIC METHODS ---------------------------------------- //
+
+    // A non-positive interval stops the heartbeat
+    public synchronized void start(int intervalMillis, int maxMissedPongs) {
+        stop();
+        if (intervalMillis <= 0)
+            return;
+        this.intervalMillis = intervalMillis;
+        this.maxMissedPongs = Math.max(1, maxMissedPongs);
+        missedPongs = 0;
+        isPingOutstanding = isAwaitingDrain = false;
+        BEAT.schedule(intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        intervalMillis = 0;
+        BEAT.cancel();
+    }
+
+    public synchronized boolean isActive() {
+        return intervalMillis > 0;
+    }
+
+    public void pingReceived() {
+        SEND_CONTROL.accept(MessageUtil.PONG);
+    }
+
+    public synchronized void pongReceived() {
+        if (!isPingOutstanding)
+            return;
+        long sample = System.nanoTime() - pingSentNanos;
+        long smoothed = smoothedRttNanos;
+        smoothedRttNanos = smoothed < 0 ? sample : smoothed + (sample - smoothed) / 8;
+        isPingOutstanding = isAwaitingDrain = false;
+        missedPongs = 0;
+    }
+
+    // Called by the reader of a polled connection whenever it has read all input waiting on the socket
+    public void inputDrained() {
+        synchronized (this) {
+            if (!isAwaitingDrain || intervalMillis <= 0)
+                return;
+            stop();
+        }
+        ON_DEAD.run();
+    }
+
+    // -1 iff no pong has been received yet
+    public long getSmoothedRttMicros() {
+        long smoothed = smoothedRttNanos;
+        return smoothed < 0 ? -1 : TimeUnit.NANOSECONDS.toMicros(smoothed);
+    }
+
+    // ---------------------------------------- PRIVATE HELPER METHODS ---------------------------------------- //
+
+    private void beat() {
+        boolean isDead;
+        synchronized (this) {
+            if (intervalMillis <= 0)
+                return;
+            BEAT.schedule(intervalMillis, TimeUnit.MILLISECONDS);
+            // The outstanding ping is not resent, since the stream already guarantees its delivery
+            isDead = isPingOutstanding;
+            if (isDead) {
+                if (++missedPongs < maxMissedPongs)
+                    return;
+                // The pong may still be waiting to be read
+                if (IS_POLLED) {
+                    isAwaitingDrain = true;
+                    return;
+                }
+                stop();
+            } else {
+                isPingOutstanding = true;
+                pingSentNanos = System.nanoTime();
+            }
+        }
+        if (isDead)
+            ON_DEAD.run();
+        else
+            SEND_CONTROL.accept(MessageUtil.PING);
+    }
+}
@@ -1,5 +1,8 @@
 package me.utk.networking;
 
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
 /**
  * A message builder which constructs messages from fragments sent over a network.
  * <p>
@@ -44,4 +47,91 @@ public interface MessageBuilder {
      * @see #hasMoreMessages()
      */
     String[] nextMessage();
+    /**
+     * Removes up to the given number of complete messages from the builder, and passes each of them to the given
+     * action, in the same order as {@link #nextMessage()} would have returned them.
+     * <p>
+     * Draining messages in batches lets implementations amortize the cost of removing each message, so this
+     * method is the preferred way for a consumer to process every message which is currently available.
+     * It is safe to call concurrently with other consumers, and none of the drained messages are ever
+     * returned by any other call. If the action throws an exception, the remaining messages which were
+     * already removed are still passed to the action, after which the first such exception is rethrown.
+     *
+     * @param action      The action to perform on each drained message
+     * @param maxMessages The maximum number of messages to drain
+     * @return The number of messages passed to the action
+     * @see #nextMessage()
+     */
+    default int drainTo(Consumer<String[]> action, int maxMessages) {
+        int drained = 0;
+        while (drained < maxMessages && hasMoreMessages()) {
+            action.accept(nextMessage());
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Returns {@code true} iff the {@link #nextBinaryMessage()} method will be able to
+     * return a binary message on its next call.
+     * <p>
+     * Binary messages are queued separately from {@code String[]} messages, so
+     * no ordering is guaranteed between the two kinds of messages.
+     *
+     * @return {@code true} if a call to the {@code nextBinaryMessage} method will be able
+     * to successfully return a binary message; otherwise, {@code false}
+     * @see #nextBinaryMessage()
+     */
+    boolean hasMoreBinaryMessages();
+    /**
+     * Returns a not-{@code null byte[]} containing the next binary message in the builder, if one exists.
+     * <p>
+     * Binary messages are sent as a single unit, so the returned array holds exactly the bytes that were sent.
+     * Callers can determine whether binary messages are available via the {@link #hasMoreBinaryMessages()} method.
+     * <p>
+     * If a binary message does not exist, this method's behavior is undefined, as with {@link #nextMessage()}.
+     *
+     * @return A {@code byte[]} representing a single binary message sent over the network,
+     * if one exists. Otherwise, behavior is undefined.
+     * @see #hasMoreBinaryMessages()
+     */
+    byte[] nextBinaryMessage();
+
+    /**
+     * Decodes the next binary message in the builder with the given {@link Codec}, if one exists.
+     * <p>
+     * The value is decoded straight from the received bytes, which must hold exactly one encoded value.
+     * If a binary message does not exist, this method's behavior is undefined, as with {@link #nextBinaryMessage()}.
+     *
+     * @param codec The codec which the value was encoded with
+     * @param <T>   The type of the decoded value
+     * @return The value held by the next binary message
+     * @throws IllegalArgumentException if the next binary message does not hold a value encoded by the given codec
+     * @see #hasMoreBinaryMessages()
+     * @see ServerSideClient#send(Object, Codec)
+     * @see ClientImplementation#send(Object, Codec)
+     */
+    default <T> T nextMessage(Codec<T> codec) {
+        ByteBuffer buffer = ByteBuffer.wrap(nextBinaryMessage());
+        T value = codec.decode(buffer);
+        if (buffer.hasRemaining())
+            throw new IllegalArgumentException(buffer.remaining() + " trailing bytes after decoded value");
+        return value;
+    }
+    /**
+     * Decodes the next binary message in the builder as a value of the given type, via a {@link BinaryCodec}.
+     * <p>
+     * This method is equivalent to {@code nextMessage(BinaryCodec.of(type))}.
+     *
+     * @param type The type of the value
+     * @param <T>  The type of the decoded value
+     * @return The value held by the next binary message
+     * @throws IllegalArgumentException if the given type is not supported by {@code BinaryCodec}, or if the
+     *                                  next binary message does not hold a value of the given type
+     * @see #nextMessage(Codec)
+     * @see BinaryCodec#of(Class)
+     */
+    default <T> T nextMessage(Class<T> type) {
+        return nextMessage(BinaryCodec.of(type));
+    }
 }
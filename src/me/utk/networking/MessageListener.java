@@ -0,0 +1,34 @@
+package me.utk.networking;
+
+/**
+ * A callback which is notified of every complete message received over a connection.
+ * <p>
+ * Message listeners provide a push-style alternative to polling a {@link MessageBuilder}.
+ * Listeners are notified from the implementation's reading thread as soon as a message
+ * is complete, so any long-running work should be handed off to another thread.
+ * <p>
+ * Once at least one {@code MessageListener} applies to a connection, complete messages
+ * received over that connection are delivered to the listeners instead of being queued
+ * in the connection's {@code MessageBuilder}. Removing all applicable listeners restores
+ * the default polling behavior for any subsequently received messages.
+ *
+ * @param <C> The type of the connection which received the message
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ * @see MessageBuilder
+ * @see ConnectionListener
+ */
+@FunctionalInterface
+public interface MessageListener<C> {
+    /**
+     * Called when a complete message is received over the specified connection.
+     * <p>
+     * The message is fragmented in exactly the same order and pattern as
+     * the message returned by {@link MessageBuilder#nextMessage()} would be.
+     *
+     * @param source  The connection which received the message
+     * @param message The complete message
+     * @see MessageBuilder#nextMessage()
+     */
+    void onMessage(C source, String[] message);
+}
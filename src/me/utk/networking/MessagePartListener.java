@@ -0,0 +1,52 @@
+package me.utk.networking;
+
+import java.util.function.Consumer;
+
+/**
+ * A callback which receives multi-part messages part by part, as the parts arrive, instead of as complete messages.
+ * <p>
+ * By default, every part of a message is held in memory until the message is complete, so a very large
+ * message needs at least that much memory before any of it reaches the application. As soon as the first
+ * part of a message arrives, a {@code MessagePartListener} can instead choose to receive that message
+ * incrementally by returning a {@link Consumer} of its parts, so that memory use is bounded by the size
+ * of a single part rather than the size of the whole message. Messages which the listener does not
+ * take are built in full, and delivered to {@link MessageListener}s or the {@link MessageBuilder} as usual.
+ * <p>
+ * Listeners and part consumers are notified from the implementation's reading thread, so any
+ * long-running work should be handed off to another thread (which should then bound its own backlog).
+ * Every part is passed to the consumer in exactly the same order and pattern as it would have
+ * been held by the complete {@code String[]} message returned by {@link MessageBuilder#nextMessage()}.
+ *
+ * @param <C> The type of the connection which received the message
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ * @see ServerImplementation#setMessagePartListener(MessagePartListener)
+ * @see ClientImplementation#setMessagePartListener(MessagePartListener)
+ * @see MessageListener
+ */
+@FunctionalInterface
+public interface MessagePartListener<C> {
+    /**
+     * Called when the first part of a message arrives over the specified connection, before it is passed anywhere.
+     * <p>
+     * If this method returns {@code null} or throws an exception, the message is built in full as usual.
+     * Otherwise, every part of the message (including the first) is passed to the returned consumer, and the
+     * message never reaches any {@code MessageListener} or {@code MessageBuilder}. If the consumer throws an
+     * exception, the rest of the message is discarded.
+     *
+     * @param source The connection which is receiving the message
+     * @return The consumer to pass the parts of the message to, or {@code null} to build the message in full
+     */
+    Consumer<String> onMessageStart(C source);
+    /**
+     * Called once the last part of a message taken by {@link #onMessageStart(Object)} has been passed to its consumer.
+     * <p>
+     * A message is incomplete if the connection was closed before the message was received in full,
+     * or if its consumer threw an exception. By default, this method does nothing.
+     *
+     * @param source     The connection which received the message
+     * @param isComplete {@code true} if every part of the message was passed to the consumer; otherwise, {@code false}
+     */
+    default void onMessageEnd(C source, boolean isComplete) {
+    }
+}
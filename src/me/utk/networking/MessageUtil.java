@@ -0,0 +1,158 @@
+package me.utk.networking;
+
+/**
+ * The control lines of the original line-based protocol, along with the frame types which every later protocol version
+ * writes in front of each frame.
+ * <p>
+ * Both transports speak the same protocol, so they share this enum. It is public so that the transport packages can
+ * reach it, but it is part of the wire format rather than the API.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ */
+public enum MessageUtil {
+    CONNECTION_CONFIRMATION, SERVER_CLOSED, CONNECTION_CLOSED, END_MESSAGE, BINARY_MESSAGE, PROTOCOL_VERSION, PING, PONG, COMPRESSED, STREAM_START, STREAM_DATA, STREAM_ABORT, NONE;
+
+    @Override
+    public String toString() {
+        switch (this) {
+            case CONNECTION_CONFIRMATION:
+                return "CONNECTION CONFIRMED";
+
+            case CONNECTION_CLOSED:
+                return "CONNECTION CLOSED";
+            case SERVER_CLOSED:
+                return "SERVER CLOSED";
+
+            case END_MESSAGE:
+                return "MESSAGE COMPLETE";
+            case BINARY_MESSAGE: // only exists as a frame type
+                return "BINARY MESSAGE";
+
+            case PROTOCOL_VERSION:
+                return "PROTOCOL";
+
+            case PING: // only exists as a frame type
+                return "PING";
+            case PONG: // only exists as a frame type
+                return "PONG";
+            case COMPRESSED: // only exists as a frame type
+                return "COMPRESSED";
+
+            case STREAM_START: // only exists as a frame type
+                return "STREAM START";
+            case STREAM_DATA: // only exists as a frame type
+                return "STREAM DATA";
+            case STREAM_ABORT: // only exists as a frame type
+                return "STREAM ABORT";
+
+            case NONE:
+            default:
+                return "";
+        }
+    }
+
+    public static MessageUtil fromString(String s) {
+        switch (s) {
+            case "CONNECTION CONFIRMED":
+                return CONNECTION_CONFIRMATION;
+
+            case "CONNECTION CLOSED":
+                return CONNECTION_CLOSED;
+            case "SERVER CLOSED":
+                return SERVER_CLOSED;
+
+            case "MESSAGE COMPLETE":
+                return END_MESSAGE;
+
+            default:
+                return NONE;
+        }
+    }
+
+    /*
+     * Frame type bytes used by protocol version 1 and above, where every frame
+     * is written as a type byte, a 4-byte payload length, and then the payload
+     */
+
+    public byte toFrameType() {
+        switch (this) {
+            case END_MESSAGE:
+                return 1;
+
+            case CONNECTION_CLOSED:
+                return 2;
+            case SERVER_CLOSED:
+                return 3;
+
+            case CONNECTION_CONFIRMATION:
+                return 4;
+            case PROTOCOL_VERSION:
+                return 5;
+
+            case BINARY_MESSAGE:
+                return 6;
+
+            case PING:
+                return 7;
+            case PONG:
+                return 8;
+
+            case COMPRESSED:
+                return 9;
+
+            case STREAM_START:
+                return 10;
+            case STREAM_DATA:
+                return 11;
+            case STREAM_ABORT:
+                return 12;
+
+            case NONE:
+            default:
+                return 0;
+        }
+    }
+
+    // null iff the type byte is not recognized
+    public static MessageUtil fromFrameType(byte b) {
+        switch (b) {
+            case 0:
+                return NONE;
+            case 1:
+                return END_MESSAGE;
+
+            case 2:
+                return CONNECTION_CLOSED;
+            case 3:
+                return SERVER_CLOSED;
+
+            case 4:
+                return CONNECTION_CONFIRMATION;
+            case 5:
+                return PROTOCOL_VERSION;
+
+            case 6:
+                return BINARY_MESSAGE;
+
+            case 7:
+                return PING;
+            case 8:
+                return PONG;
+
+            case 9:
+                return COMPRESSED;
+
+            case 10:
+                return STREAM_START;
+            case 11:
+                return STREAM_DATA;
+            case 12:
+                return STREAM_ABORT;
+
+            default:
+                return null;
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package me.utk.networking;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Passes the messages received over a single connection to its {@link MessagePartListener} part by part, one message at a time.
+ * <p>
+ * Parts are received on the reading (or selector) thread, but the connection may be closed from any thread, so every method
+ * is synchronized.
+ * <p>
+ * Both transports deliver message parts through this one class. It is public only because the transports live in
+ * their own packages, and applications have no use for it.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ */
+public final class PartReceiver<C> {
+    // ---------------------------------------- PRIVATE INSTANCE VARIABLES ---------------------------------------- //
+
+    private final C SOURCE;
+    private final Supplier<MessagePartListener<C>> LISTENER;
+
+    // The message in progress, whose consumer is null once it has thrown (and the rest of the message is discarded)
+    private MessagePartListener<C> listener = null;
+    private Consumer<String> consumer = null;
+    private boolean isClosed = false;
+
+    // ---------------------------------------- PUBLIC CONSTRUCTOR ---------------------------------------- //
+
+    // The listener is looked up again for every message, so that it can be replaced at any time
+    public PartReceiver(C source, Supplier<MessagePartListener<C>> listener) {
+        SOURCE = source;
+        LISTENER = listener;
+    }
+
+    // ---------------------------------------- PUBLIC METHODS ---------------------------------------- //
+
+    // true iff the listener took the message, in which case every part of it must be passed to this receiver
+    public synchronized boolean start() {
+        MessagePartListener<C> current = LISTENER.get();
+        if (isClosed || current == null)
+            return false;
+        try {
+            consumer = current.onMessageStart(SOURCE);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        if (consumer != null)
+            listener = current;
+        return consumer != null;
+    }
+
+    public synchronized void part(String part) {
+        if (consumer != null)
+            try {
+                consumer.accept(part);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                consumer = null;
+            }
+    }
+
+    public synchronized void end() {
+        if (listener != null)
+            end(consumer != null);
+    }
+
+    // Any message in progress can no longer be completed once the connection is closed
+    public synchronized void close() {
+        if (isClosed)
+            return;
+        if (listener != null)
+            end(false);
+        isClosed = true;
+    }
+
+    // ---------------------------------------- PRIVATE HELPER METHODS ---------------------------------------- //
+
+    private void end(boolean isComplete) {
+        MessagePartListener<C> ended = listener;
+        listener = null;
+        consumer = null;
+        try {
+            ended.onMessageEnd(SOURCE, isComplete);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
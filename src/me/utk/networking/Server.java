@@ -4,6 +4,7 @@ import me.utk.networking.nio.NewIO_Server;
 import me.utk.networking.oio.OldIO_Server;
 
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 /**
@@ -139,6 +140,174 @@ public abstract class Server {
     public static Set<ServerSideClient> getClients() {
         return instance.getClients();
     }
+    /**
+     * Returns a live, unmodifiable view of the {@link ServerSideClient}s corresponding to
+     * all clients which have successfully connected and been verified by this server.
+     * <p>
+     * This method is a static wrapper for the {@link ServerImplementation#getClientView()} method.
+     *
+     * @return A live view of the {@code ServerSideClient}s corresponding to this server's clients
+     * @throws NullPointerException if the static {@link ServerImplementation} was not initialized
+     * @see ServerImplementation
+     * @see ServerImplementation#getClientView()
+     * @see ServerSideClient
+     */
+    public static Set<ServerSideClient> getClientView() {
+        return instance.getClientView();
+    }
+    /**
+     * Returns the number of clients which have successfully connected and been verified by this server.
+     * <p>
+     * This method is a static wrapper for the {@link ServerImplementation#getClientCount()} method.
+     *
+     * @return The number of clients connected to this server
+     * @throws NullPointerException if the static {@link ServerImplementation} was not initialized
+     * @see ServerImplementation
+     * @see ServerImplementation#getClientCount()
+     */
+    public static int getClientCount() {
+        return instance.getClientCount();
+    }
+    /**
+     * Returns the connected client with the given connection ID.
+     * <p>
+     * This method is a static wrapper for the {@link ServerImplementation#getClient(long)} method.
+     *
+     * @param id The connection ID of the client
+     * @return The {@link ServerSideClient} with the given ID, or {@code null} if no such client is connected
+     * @throws NullPointerException if the static {@link ServerImplementation} was not initialized
+     * @see ServerImplementation
+     * @see ServerImplementation#getClient(long)
+     * @see ServerSideClient#getId()
+     */
+    public static ServerSideClient getClient(long id) {
+        return instance.getClient(id);
+    }
+    /**
+     * Sends the given messages to the connected client with the given connection ID.
+     * <p>
+     * This method is a static wrapper for the {@link ServerImplementation#sendTo(long, String...)} method.
+     *
+     * @param id       The connection ID of the client
+     * @param messages String messages to send to the client
+     * @return {@code true} if a client with the given ID is connected and the messages were queued for it;
+     * otherwise, {@code false}
+     * @throws NullPointerException if the static {@link ServerImplementation} was not initialized
+     * @see ServerImplementation
+     * @see ServerImplementation#sendTo(long, String...)
+     */
+    public static boolean sendTo(long id, String... messages) {
+        return instance.sendTo(id, messages);
+    }
+
+    /**
+     * Sends the given messages to every client connected to this server.
+     * <p>
+     * This method is a static wrapper for the {@link ServerImplementation#broadcast(String...)} method.
+     *
+     * @param messages String messages to send to all clients
+     * @return The number of clients the messages were queued for
+     * @throws NullPointerException if the static {@link ServerImplementation} was not initialized
+     * @see ServerImplementation
+     * @see ServerImplementation#broadcast(String...)
+     */
+    public static int broadcast(String... messages) {
+        return instance.broadcast(messages);
+    }
+    /**
+     * Sends the given messages to every client connected to this server which matches the given filter.
+     * <p>
+     * This method is a static wrapper for the {@link ServerImplementation#broadcast(Predicate, String...)} method.
+     *
+     * @param filter   The filter which clients must match to be sent the messages
+     * @param messages String messages to send to all matching clients
+     * @return The number of matching clients the messages were queued for
+     * @throws NullPointerException if the static {@link ServerImplementation} was not initialized
+     * @see ServerImplementation
+     * @see ServerImplementation#broadcast(Predicate, String...)
+     */
+    public static int broadcast(Predicate<ServerSideClient> filter, String... messages) {
+        return instance.broadcast(filter, messages);
+    }
+
+    /**
+     * Registers a listener which is notified of every complete message received from any client.
+     * <p>
+     * This method is a static wrapper for the {@link ServerImplementation#addMessageListener(MessageListener)} method.
+     *
+     * @param listener The listener to register
+     * @throws NullPointerException if the static {@link ServerImplementation} was not initialized
+     * @see ServerImplementation
+     * @see ServerImplementation#addMessageListener(MessageListener)
+     */
+    public static void addMessageListener(MessageListener<ServerSideClient> listener) {
+        instance.addMessageListener(listener);
+    }
+    /**
+     * Unregisters a previously registered message listener.
+     * <p>
+     * This method is a static wrapper for the {@link ServerImplementation#removeMessageListener(MessageListener)} method.
+     *
+     * @param listener The listener to unregister
+     * @throws NullPointerException if the static {@link ServerImplementation} was not initialized
+     * @see ServerImplementation
+     * @see ServerImplementation#removeMessageListener(MessageListener)
+     */
+    public static void removeMessageListener(MessageListener<ServerSideClient> listener) {
+        instance.removeMessageListener(listener);
+    }
+    /**
+     * Registers a listener which is notified whenever a client is verified by or disconnects from this server.
+     * <p>
+     * This method is a static wrapper for the {@link ServerImplementation#addConnectionListener(ConnectionListener)} method.
+     *
+     * @param listener The listener to register
+     * @throws NullPointerException if the static {@link ServerImplementation} was not initialized
+     * @see ServerImplementation
+     * @see ServerImplementation#addConnectionListener(ConnectionListener)
+     */
+    public static void addConnectionListener(ConnectionListener<ServerSideClient> listener) {
+        instance.addConnectionListener(listener);
+    }
+    /**
+     * Unregisters a previously registered connection listener.
+     * <p>
+     * This method is a static wrapper for the {@link ServerImplementation#removeConnectionListener(ConnectionListener)} method.
+     *
+     * @param listener The listener to unregister
+     * @throws NullPointerException if the static {@link ServerImplementation} was not initialized
+     * @see ServerImplementation
+     * @see ServerImplementation#removeConnectionListener(ConnectionListener)
+     */
+    public static void removeConnectionListener(ConnectionListener<ServerSideClient> listener) {
+        instance.removeConnectionListener(listener);
+    }
+    /**
+     * Sets the listener which receives every stream sent by any client, replacing any previous one.
+     * <p>
+     * This method is a static wrapper for the {@link ServerImplementation#setStreamListener(StreamListener)} method.
+     *
+     * @param listener The listener to set, or {@code null} to discard all streams
+     * @throws NullPointerException if the static {@link ServerImplementation} was not initialized
+     * @see ServerImplementation
+     * @see ServerImplementation#setStreamListener(StreamListener)
+     */
+    public static void setStreamListener(StreamListener<ServerSideClient> listener) {
+        instance.setStreamListener(listener);
+    }
+    /**
+     * Sets the listener which may receive any message sent by any client part by part, replacing any previous one.
+     * <p>
+     * This method is a static wrapper for the {@link ServerImplementation#setMessagePartListener(MessagePartListener)} method.
+     *
+     * @param listener The listener to set, or {@code null} to build every message in full
+     * @throws NullPointerException if the static {@link ServerImplementation} was not initialized
+     * @see ServerImplementation
+     * @see ServerImplementation#setMessagePartListener(MessagePartListener)
+     */
+    public static void setMessagePartListener(MessagePartListener<ServerSideClient> listener) {
+        instance.setMessagePartListener(listener);
+    }
 
     /**
      * Enables a randomly generated alpha-numeric passcode
@@ -194,6 +363,89 @@ public abstract class Server {
     public static void disablePasscode() {
         instance.disablePasscode();
     }
+    /**
+     * Sets the amount of time new connections have to send the right passcode before they are closed.
+     * <p>
+     * This method is a static wrapper for the {@link ServerImplementation#setHandshakeTimeout(int)} method.
+     *
+     * @param timeout Number of milliseconds until timeout
+     * @throws NullPointerException if the static {@link ServerImplementation} was not initialized
+     * @see ServerImplementation
+     * @see ServerImplementation#setHandshakeTimeout(int)
+     */
+    public static void setHandshakeTimeout(int timeout) {
+        instance.setHandshakeTimeout(timeout);
+    }
+
+    /**
+     * Sets the policy for coalescing outbound data to the clients of this server into fewer, larger writes.
+     * <p>
+     * This method is a static wrapper for the {@link ServerImplementation#setFlushPolicy(int, long)} method.
+     *
+     * @param maxBufferedBytes The number of buffered bytes which triggers a write
+     * @param maxDelayMicros   The maximum number of microseconds data may be buffered for
+     * @throws NullPointerException if the static {@link ServerImplementation} was not initialized
+     * @see ServerImplementation
+     * @see ServerImplementation#setFlushPolicy(int, long)
+     */
+    public static void setFlushPolicy(int maxBufferedBytes, long maxDelayMicros) {
+        instance.setFlushPolicy(maxBufferedBytes, maxDelayMicros);
+    }
+    /**
+     * Sets the bounds of the outbound queue of every client of this server.
+     * <p>
+     * This method is a static wrapper for the {@link ServerImplementation#setWriteBufferWatermarks(int, int)} method.
+     *
+     * @param lowWatermark  The number of queued bytes at which a client becomes writable again
+     * @param highWatermark The number of queued bytes above which a client stops being writable
+     * @throws NullPointerException if the static {@link ServerImplementation} was not initialized
+     * @see ServerImplementation
+     * @see ServerImplementation#setWriteBufferWatermarks(int, int)
+     */
+    public static void setWriteBufferWatermarks(int lowWatermark, int highWatermark) {
+        instance.setWriteBufferWatermarks(lowWatermark, highWatermark);
+    }
+    /**
+     * Sets the policy for pinging the clients of this server.
+     * <p>
+     * This method is a static wrapper for the {@link ServerImplementation#setHeartbeatPolicy(int, int)} method.
+     *
+     * @param intervalMillis The number of milliseconds between pings
+     * @param maxMissedPongs The number of intervals a ping may go unanswered before the client is closed
+     * @throws NullPointerException if the static {@link ServerImplementation} was not initialized
+     * @see ServerImplementation
+     * @see ServerImplementation#setHeartbeatPolicy(int, int)
+     */
+    public static void setHeartbeatPolicy(int intervalMillis, int maxMissedPongs) {
+        instance.setHeartbeatPolicy(intervalMillis, maxMissedPongs);
+    }
+    /**
+     * Sets the policy for compressing messages sent to the clients of this server.
+     * <p>
+     * This method is a static wrapper for the {@link ServerImplementation#setCompressionPolicy(int, int)} method.
+     *
+     * @param minMessageBytes The size in bytes below which messages are sent uncompressed
+     * @param level           The compression level, from 1 (fastest) to 9 (smallest)
+     * @throws NullPointerException if the static {@link ServerImplementation} was not initialized
+     * @see ServerImplementation
+     * @see ServerImplementation#setCompressionPolicy(int, int)
+     */
+    public static void setCompressionPolicy(int minMessageBytes, int level) {
+        instance.setCompressionPolicy(minMessageBytes, level);
+    }
+    /**
+     * Returns the live compression counters of this server.
+     * <p>
+     * This method is a static wrapper for the {@link ServerImplementation#getCompressionStats()} method.
+     *
+     * @return This server's {@code CompressionStats}
+     * @throws NullPointerException if the static {@link ServerImplementation} was not initialized
+     * @see ServerImplementation
+     * @see ServerImplementation#getCompressionStats()
+     */
+    public static CompressionStats getCompressionStats() {
+        return instance.getCompressionStats();
+    }
 
     /**
      * Permits new clients to attempt to connect to this server.
@@ -1,6 +1,7 @@
 package me.utk.networking;
 
 import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * The framework for any server implementation in this API.
@@ -9,10 +10,28 @@ import java.util.Set;
  * <ul>
  * <li>{@link #getAddress()} returns a {@link NetworkAddress} corresponding to this server
  * <li>{@link #getClients()} returns a set of all clients connected to this server
+ * <li>{@link #getClientView()} returns a live view of all clients connected to this server
+ * <li>{@link #getClientCount()} returns the number of clients connected to this server
+ * <li>{@link #getClient(long)} returns the connected client with the specified connection ID
+ * <li>{@link #sendTo(long, String...)} sends the specified messages to the client with the specified connection ID
+ * <li>{@link #broadcast(String...)} sends the specified messages to all clients
+ * <li>{@link #broadcast(Predicate, String...)} sends the specified messages to all matching clients
+ * <li>{@link #addMessageListener(MessageListener)} registers a listener for messages from all clients
+ * <li>{@link #removeMessageListener(MessageListener)} unregisters a listener for messages from all clients
+ * <li>{@link #addConnectionListener(ConnectionListener)} registers a listener for client connections
+ * <li>{@link #removeConnectionListener(ConnectionListener)} unregisters a listener for client connections
+ * <li>{@link #setStreamListener(StreamListener)} sets the listener which receives streams from all clients
+ * <li>{@link #setMessagePartListener(MessagePartListener)} sets the listener which receives messages from all clients part by part
  * <li>{@link #enablePasscode()} enables a randomly generated passcode to connect to this server
  * <li>{@link #enablePasscode(int)} )} enables a randomly generated passcode to connect to this server
  * <li>{@link #enablePasscode(String)} )} enables the specified passcode to connect to this server
  * <li>{@link #disablePasscode()} disables any passcode to connect to this server
+ * <li>{@link #setHandshakeTimeout(int)} sets how long new connections have to send the passcode
+ * <li>{@link #setFlushPolicy(int, long)} sets the policy for coalescing outbound data to clients
+ * <li>{@link #setWriteBufferWatermarks(int, int)} sets the bounds of each client's outbound queue
+ * <li>{@link #setHeartbeatPolicy(int, int)} sets how often clients are pinged, and when unanswered clients are closed
+ * <li>{@link #setCompressionPolicy(int, int)} sets which messages to clients are compressed
+ * <li>{@link #getCompressionStats()} returns the compression counters of this server
  * <li>{@link #enableNewConnections()} enables new connections to this server
  * <li>{@link #disableNewConnections()} disables new connections to this server
  * <li>{@link #enableAllConnections()} enables all connections to this server
@@ -24,6 +43,10 @@ import java.util.Set;
  * @author Utkarsh Priyam
  * @version December 8, 2020
  * @see NetworkAddress
+ * @see MessageListener
+ * @see ConnectionListener
+ * @see StreamListener
+ * @see MessagePartListener
  */
 public interface ServerImplementation {
     /**
@@ -51,6 +74,144 @@ public interface ServerImplementation {
      * @see ServerSideClient
      */
     Set<ServerSideClient> getClients();
+    /**
+     * Returns a live, unmodifiable view of the {@link ServerSideClient}s corresponding to
+     * all clients which have successfully connected and been verified by this server.
+     * <p>
+     * Unlike {@link #getClients()}, this method does not copy the clients of this server, so it is
+     * cheap to call even with many clients connected. The returned set reflects clients connecting
+     * and disconnecting while it is in use, and iterating over it never throws a
+     * {@link java.util.ConcurrentModificationException}, but an iteration may or may not
+     * include clients which connect or disconnect during that iteration.
+     *
+     * @return A live view of the {@code ServerSideClient}s corresponding to this server's clients
+     * @see #getClients()
+     * @see ServerSideClient
+     */
+    Set<ServerSideClient> getClientView();
+    /**
+     * Returns the number of clients which have successfully connected and been verified by this server.
+     *
+     * @return The number of clients connected to this server
+     * @see #getClientView()
+     */
+    int getClientCount();
+    /**
+     * Returns the connected client with the given connection ID, as returned by {@link ServerSideClient#getId()}.
+     *
+     * @param id The connection ID of the client
+     * @return The {@code ServerSideClient} with the given ID, or {@code null} if no such client is connected
+     * @see ServerSideClient#getId()
+     * @see #sendTo(long, String...)
+     */
+    ServerSideClient getClient(long id);
+    /**
+     * Sends the given messages to the connected client with the given connection ID.
+     * <p>
+     * This method is equivalent to calling {@link ServerSideClient#sendMessages(String...)}
+     * on the client returned by {@link #getClient(long)}, if there is one.
+     *
+     * @param id       The connection ID of the client
+     * @param messages String messages to send to the client
+     * @return {@code true} if a client with the given ID is connected and the messages were queued for it;
+     * otherwise, {@code false}
+     * @see #getClient(long)
+     * @see ServerSideClient#sendMessages(String...)
+     */
+    boolean sendTo(long id, String... messages);
+
+    /**
+     * Sends the given messages to every client connected to this server.
+     * <p>
+     * This method is equivalent to calling {@link ServerSideClient#sendMessages(String...)} on
+     * every client in {@link #getClients()}, except that implementations may encode the messages
+     * only once and send them to many clients in parallel. The messages are sent to every client
+     * by the time this method returns, subject to each client's flush policy.
+     * <p>
+     * Clients which are not {@linkplain ServerSideClient#isWritable() writable} reject the messages, as per
+     * {@link ServerSideClient#sendMessages(String...)}, and are not counted.
+     *
+     * @param messages String messages to send to all clients
+     * @return The number of clients the messages were queued for
+     * @see #broadcast(Predicate, String...)
+     * @see ServerSideClient#sendMessages(String...)
+     */
+    int broadcast(String... messages);
+    /**
+     * Sends the given messages to every client connected to this server which matches the given filter.
+     * <p>
+     * This method is equivalent to calling {@link ServerSideClient#sendMessages(String...)} on
+     * every matching client in {@link #getClients()}, except that implementations may encode the
+     * messages only once and send them to many clients in parallel. As such, the filter may be
+     * called concurrently from multiple threads.
+     *
+     * @param filter   The filter which clients must match to be sent the messages
+     * @param messages String messages to send to all matching clients
+     * @return The number of matching clients the messages were queued for
+     * @see #broadcast(String...)
+     * @see ServerSideClient#sendMessages(String...)
+     */
+    int broadcast(Predicate<ServerSideClient> filter, String... messages);
+
+    /**
+     * Registers a listener which is notified of every complete message received from any client.
+     * <p>
+     * While at least one listener is registered with this server, messages are delivered to
+     * this server's and the sending client's listeners instead of being queued in the sending
+     * client's {@link MessageBuilder}, as outlined in the {@link MessageListener} documentation.
+     *
+     * @param listener The listener to register
+     * @see #removeMessageListener(MessageListener)
+     * @see ServerSideClient#addMessageListener(MessageListener)
+     * @see MessageListener
+     */
+    void addMessageListener(MessageListener<ServerSideClient> listener);
+    /**
+     * Unregisters a listener previously registered via {@link #addMessageListener(MessageListener)}.
+     *
+     * @param listener The listener to unregister
+     * @see #addMessageListener(MessageListener)
+     * @see MessageListener
+     */
+    void removeMessageListener(MessageListener<ServerSideClient> listener);
+    /**
+     * Registers a listener which is notified whenever a client is verified by
+     * or disconnects from this server.
+     *
+     * @param listener The listener to register
+     * @see #removeConnectionListener(ConnectionListener)
+     * @see ConnectionListener
+     */
+    void addConnectionListener(ConnectionListener<ServerSideClient> listener);
+    /**
+     * Unregisters a listener previously registered via {@link #addConnectionListener(ConnectionListener)}.
+     *
+     * @param listener The listener to unregister
+     * @see #addConnectionListener(ConnectionListener)
+     * @see ConnectionListener
+     */
+    void removeConnectionListener(ConnectionListener<ServerSideClient> listener);
+    /**
+     * Sets the listener which receives every stream sent by any client, replacing any previous listener.
+     * <p>
+     * Streams which start arriving while no listener is set are read and discarded.
+     *
+     * @param listener The listener to set, or {@code null} to discard all streams
+     * @see StreamListener
+     * @see ClientImplementation#sendFile(java.nio.file.Path)
+     * @see ClientImplementation#sendStream(java.io.InputStream, long)
+     */
+    void setStreamListener(StreamListener<ServerSideClient> listener);
+    /**
+     * Sets the listener which may receive any message sent by any client part by part, replacing any previous listener.
+     * <p>
+     * Messages which the listener takes are never built in full, so they never reach any {@link MessageListener}
+     * or the client's {@link MessageBuilder}. Messages which start arriving while no listener is set are built in full as usual.
+     *
+     * @param listener The listener to set, or {@code null} to build every message in full
+     * @see MessagePartListener
+     */
+    void setMessagePartListener(MessagePartListener<ServerSideClient> listener);
 
     /**
      * Enables a randomly generated alpha-numeric passcode
@@ -99,6 +260,93 @@ public interface ServerImplementation {
      * @see #enablePasscode(String)
      */
     void disablePasscode();
+    /**
+     * Sets the amount of time new connections have to send the right passcode before they are closed.
+     * <p>
+     * A non-positive input signifies the implementation-specific default timeout duration.
+     *
+     * @param timeout Number of milliseconds until timeout
+     * @see #enablePasscode(String)
+     */
+    void setHandshakeTimeout(int timeout);
+
+    /**
+     * Sets the policy for coalescing outbound data to the clients of this server into fewer, larger writes.
+     * <p>
+     * Outbound data is buffered until at least {@code maxBufferedBytes} bytes are buffered, or until
+     * the oldest buffered data has waited {@code maxDelayMicros} microseconds, whichever comes first.
+     * The {@link ServerSideClient#flush()} method can be used to write any buffered data immediately.
+     * <p>
+     * A non-positive {@code maxDelayMicros} disables coalescing, so that all data is written as soon as it is sent.
+     * This is the default policy.
+     * <p>
+     * This policy applies to all current and future clients of this server.
+     *
+     * @param maxBufferedBytes The number of buffered bytes which triggers a write
+     * @param maxDelayMicros   The maximum number of microseconds data may be buffered for
+     * @see ServerSideClient#flush()
+     */
+    void setFlushPolicy(int maxBufferedBytes, long maxDelayMicros);
+    /**
+     * Sets the bounds of the outbound queue of every client of this server.
+     * <p>
+     * Once more than {@code highWatermark} bytes are queued for a client, that client stops being
+     * {@linkplain ServerSideClient#isWritable() writable} and rejects further messages until its queue
+     * has drained to {@code lowWatermark} bytes. A single message larger than the high watermark
+     * is still accepted while the queue is writable. Implementation-specific defaults apply until
+     * this method is called.
+     * <p>
+     * These bounds apply to all current and future clients of this server.
+     *
+     * @param lowWatermark  The number of queued bytes at which a client becomes writable again
+     * @param highWatermark The number of queued bytes above which a client stops being writable
+     * @see ServerSideClient#isWritable()
+     * @see ServerSideClient#sendAsync(String...)
+     */
+    void setWriteBufferWatermarks(int lowWatermark, int highWatermark);
+    /**
+     * Sets the policy for pinging the clients of this server.
+     * <p>
+     * Once every {@code intervalMillis} milliseconds, each client is sent a ping unless its last ping is
+     * still unanswered, and every pong updates that client's {@linkplain ServerSideClient#getSmoothedRttMicros()
+     * round trip time}. A client which leaves a ping unanswered for {@code maxMissedPongs} intervals is closed.
+     * Clients with an active heartbeat are only ever closed this way, rather than after a period of inactivity.
+     * <p>
+     * Heartbeats are disabled by default, and a non-positive interval disables them again.
+     * Clients which only support the original protocol are never pinged.
+     * <p>
+     * This policy applies to all current and future clients of this server.
+     *
+     * @param intervalMillis The number of milliseconds between pings
+     * @param maxMissedPongs The number of intervals a ping may go unanswered before the client is closed
+     * @see ServerSideClient#getSmoothedRttMicros()
+     */
+    void setHeartbeatPolicy(int intervalMillis, int maxMissedPongs);
+    /**
+     * Sets the policy for compressing messages sent to the clients of this server.
+     * <p>
+     * Every message (or binary message) whose encoded size is at least {@code minMessageBytes} bytes is
+     * compressed with the specified {@link java.util.zip.Deflater} level, and then sent compressed if that
+     * made it smaller. Smaller messages are always sent uncompressed, since compression rarely pays off for them.
+     * Each client reuses a single {@code Deflater} and {@code Inflater} for the lifetime of its connection.
+     * <p>
+     * Compression is disabled by default, and a non-positive level disables it again.
+     * Clients which did not negotiate compression during the handshake are always sent uncompressed messages.
+     * <p>
+     * This policy applies to all current and future clients of this server.
+     *
+     * @param minMessageBytes The size in bytes below which messages are sent uncompressed
+     * @param level           The compression level, from 1 (fastest) to 9 (smallest)
+     * @see #getCompressionStats()
+     */
+    void setCompressionPolicy(int minMessageBytes, int level);
+    /**
+     * Returns the live compression counters of this server, covering all clients it has ever had.
+     *
+     * @return This server's {@code CompressionStats}
+     * @see #setCompressionPolicy(int, int)
+     */
+    CompressionStats getCompressionStats();
 
     /**
      * Permits new clients to attempt to connect to this server.
@@ -0,0 +1,390 @@
+package me.utk.networking;
+
+/**
+ * An immutable set of socket and timing options for a {@link ServerImplementation}.
+ * <p>
+ * {@code ServerOptions} are created via a {@link Builder}, which starts out with the default value of every option:
+ * <pre>{@code
+ * ServerOptions options = ServerOptions.builder().backlog(1024).tcpNoDelay(true).build();
+ * }</pre>
+ * Every option applies to all connections accepted by the server, and can therefore be tuned
+ * for either latency or throughput per deployment. Options which only apply to some implementations
+ * are noted as such, and are ignored by all other implementations.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ * @see ClientOptions
+ * @see ServerImplementation
+ */
+public final class ServerOptions {
+    /**
+     * The default {@code ServerOptions}, which match the behavior of a server created without any options.
+     */
+    public static final ServerOptions DEFAULT = builder().build();
+
+    private final int BACKLOG;
+    private final int SEND_BUFFER_SIZE, RECEIVE_BUFFER_SIZE;
+    private final boolean TCP_NO_DELAY, KEEP_ALIVE;
+    private final int POLL_TIMEOUT_MILLIS, POLL_INTERVAL_MILLIS;
+    private final int IDLE_TIMEOUT_MILLIS;
+    private final int MAX_FRAME_LENGTH;
+    private final int MAX_MESSAGES_PER_TURN, MAX_BYTES_PER_TURN;
+    private final int ACCEPTORS;
+
+    private ServerOptions(Builder builder) {
+        BACKLOG = builder.backlog;
+        SEND_BUFFER_SIZE = builder.sendBufferSize;
+        RECEIVE_BUFFER_SIZE = builder.receiveBufferSize;
+        TCP_NO_DELAY = builder.tcpNoDelay;
+        KEEP_ALIVE = builder.keepAlive;
+        POLL_TIMEOUT_MILLIS = builder.pollTimeoutMillis;
+        POLL_INTERVAL_MILLIS = builder.pollIntervalMillis;
+        IDLE_TIMEOUT_MILLIS = builder.idleTimeoutMillis;
+        MAX_FRAME_LENGTH = builder.maxFrameLength;
+        MAX_MESSAGES_PER_TURN = builder.maxMessagesPerTurn;
+        MAX_BYTES_PER_TURN = builder.maxBytesPerTurn;
+        ACCEPTORS = builder.acceptors;
+    }
+
+    /**
+     * Creates a new {@link Builder}, with every option set to its default value.
+     *
+     * @return The newly created {@code Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the maximum number of incoming connections which may wait to be accepted,
+     * where {@code 0} signifies the platform default.
+     *
+     * @return The backlog of the server's listening sockets
+     */
+    public int getBacklog() {
+        return BACKLOG;
+    }
+    /**
+     * Returns the size of the send buffer ({@code SO_SNDBUF}) of each accepted connection,
+     * where {@code 0} signifies the platform default.
+     *
+     * @return The send buffer size, in bytes
+     */
+    public int getSendBufferSize() {
+        return SEND_BUFFER_SIZE;
+    }
+    /**
+     * Returns the size of the receive buffer ({@code SO_RCVBUF}) of each accepted connection,
+     * where {@code 0} signifies the platform default.
+     *
+     * @return The receive buffer size, in bytes
+     */
+    public int getReceiveBufferSize() {
+        return RECEIVE_BUFFER_SIZE;
+    }
+    /**
+     * Returns whether Nagle's algorithm is disabled ({@code TCP_NODELAY}) on each accepted connection.
+     *
+     * @return {@code true} iff small writes are sent right away
+     */
+    public boolean isTcpNoDelay() {
+        return TCP_NO_DELAY;
+    }
+    /**
+     * Returns whether TCP keep-alive probes ({@code SO_KEEPALIVE}) are enabled on each accepted connection.
+     *
+     * @return {@code true} iff keep-alive probes are enabled
+     */
+    public boolean isKeepAlive() {
+        return KEEP_ALIVE;
+    }
+    /**
+     * Returns how long a blocking read waits for input before moving on to the next connection.
+     * <p>
+     * This option only applies to implementations which read from blocking sockets.
+     *
+     * @return The poll timeout, in milliseconds
+     */
+    public int getPollTimeoutMillis() {
+        return POLL_TIMEOUT_MILLIS;
+    }
+    /**
+     * Returns how often connections are polled for new messages.
+     * <p>
+     * This option only applies to implementations which poll their connections on a schedule.
+     *
+     * @return The poll interval, in milliseconds
+     */
+    public int getPollIntervalMillis() {
+        return POLL_INTERVAL_MILLIS;
+    }
+    /**
+     * Returns how long a verified connection may go without sending anything before it is closed.
+     * <p>
+     * Connections with an active heartbeat instead time out once they miss too many pongs.
+     *
+     * @return The idle timeout, in milliseconds
+     */
+    public int getIdleTimeoutMillis() {
+        return IDLE_TIMEOUT_MILLIS;
+    }
+    /**
+     * Returns the largest frame payload which may be received on each accepted connection.
+     * Any connection which announces a larger frame is closed before the frame is read.
+     *
+     * @return The maximum frame length, in bytes
+     */
+    public int getMaxFrameLength() {
+        return MAX_FRAME_LENGTH;
+    }
+    /**
+     * Returns the maximum number of messages read from any one connection before moving on to the next connection.
+     * <p>
+     * This option only applies to implementations which poll their connections on a schedule.
+     *
+     * @return The maximum number of messages read per turn
+     */
+    public int getMaxMessagesPerTurn() {
+        return MAX_MESSAGES_PER_TURN;
+    }
+    /**
+     * Returns the maximum number of bytes read from any one connection before moving on to the next connection.
+     * <p>
+     * This option only applies to implementations which poll their connections on a schedule.
+     *
+     * @return The maximum number of bytes read per turn
+     */
+    public int getMaxBytesPerTurn() {
+        return MAX_BYTES_PER_TURN;
+    }
+    /**
+     * Returns the number of threads accepting incoming connections.
+     * <p>
+     * This option only applies to implementations which accept connections on blocking sockets.
+     *
+     * @return The number of acceptor threads
+     */
+    public int getAcceptors() {
+        return ACCEPTORS;
+    }
+
+    /**
+     * A builder for {@link ServerOptions}.
+     * <p>
+     * Every setter throws an {@link IllegalArgumentException} if given a value outside of its allowed range,
+     * and returns this builder otherwise, so that calls may be chained.
+     *
+     * @author Utkarsh Priyam
+     * @version December 8, 2020
+     * @see ServerOptions
+     */
+    public static final class Builder {
+        private int backlog = 0; // platform default
+        private int sendBufferSize = 0, receiveBufferSize = 0; // platform defaults
+        private boolean tcpNoDelay = false, keepAlive = false;
+        private int pollTimeoutMillis = 100;
+        private int pollIntervalMillis = 1000;
+        private int idleTimeoutMillis = 300000; // 5 mins
+        private int maxFrameLength = 16 << 20; // 16 MiB
+        private int maxMessagesPerTurn = 64;
+        private int maxBytesPerTurn = 64 * 1024; // 64 KiB
+        private int acceptors = 1;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the maximum number of incoming connections which may wait to be accepted.
+         *
+         * @param backlog The backlog (0 signifies the platform default)
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code backlog} is negative
+         */
+        public Builder backlog(int backlog) {
+            this.backlog = requireNonNegative(backlog, "backlog");
+            return this;
+        }
+        /**
+         * Sets the size of the send buffer ({@code SO_SNDBUF}) of each accepted connection.
+         *
+         * @param bytes The send buffer size (0 signifies the platform default)
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code bytes} is negative
+         */
+        public Builder sendBufferSize(int bytes) {
+            sendBufferSize = requireNonNegative(bytes, "sendBufferSize");
+            return this;
+        }
+        /**
+         * Sets the size of the receive buffer ({@code SO_RCVBUF}) of each accepted connection.
+         * <p>
+         * The receive buffer is set on the listening sockets, before they are bound,
+         * so that buffers larger than 64 KiB can be used from the start of each connection.
+         *
+         * @param bytes The receive buffer size (0 signifies the platform default)
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code bytes} is negative
+         */
+        public Builder receiveBufferSize(int bytes) {
+            receiveBufferSize = requireNonNegative(bytes, "receiveBufferSize");
+            return this;
+        }
+        /**
+         * Sets whether Nagle's algorithm is disabled ({@code TCP_NODELAY}) on each accepted connection.
+         * <p>
+         * Disabling Nagle's algorithm lowers the latency of small messages, at the cost of sending more packets.
+         * The default is {@code false}.
+         *
+         * @param tcpNoDelay {@code true} to send small writes right away
+         * @return This {@code Builder}
+         */
+        public Builder tcpNoDelay(boolean tcpNoDelay) {
+            this.tcpNoDelay = tcpNoDelay;
+            return this;
+        }
+        /**
+         * Sets whether TCP keep-alive probes ({@code SO_KEEPALIVE}) are enabled on each accepted connection.
+         * The default is {@code false}.
+         *
+         * @param keepAlive {@code true} to enable keep-alive probes
+         * @return This {@code Builder}
+         */
+        public Builder keepAlive(boolean keepAlive) {
+            this.keepAlive = keepAlive;
+            return this;
+        }
+        /**
+         * Sets how long a blocking read waits for input before moving on to the next connection.
+         * The default is 100 milliseconds.
+         * <p>
+         * This option only applies to implementations which read from blocking sockets.
+         *
+         * @param millis The poll timeout, in milliseconds
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code millis} is not positive
+         */
+        public Builder pollTimeoutMillis(int millis) {
+            pollTimeoutMillis = requirePositive(millis, "pollTimeoutMillis");
+            return this;
+        }
+        /**
+         * Sets how often connections are polled for new messages.
+         * The default is 1000 milliseconds.
+         * <p>
+         * This option only applies to implementations which poll their connections on a schedule.
+         *
+         * @param millis The poll interval, in milliseconds
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code millis} is not positive
+         */
+        public Builder pollIntervalMillis(int millis) {
+            pollIntervalMillis = requirePositive(millis, "pollIntervalMillis");
+            return this;
+        }
+        /**
+         * Sets how long a verified connection may go without sending anything before it is closed.
+         * The default is 5 minutes.
+         *
+         * @param millis The idle timeout, in milliseconds
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code millis} is not positive
+         */
+        public Builder idleTimeoutMillis(int millis) {
+            idleTimeoutMillis = requirePositive(millis, "idleTimeoutMillis");
+            return this;
+        }
+        /**
+         * Sets the largest frame payload which may be received on each accepted connection.
+         * The default is 16 MiB.
+         * <p>
+         * A peer which announces a larger frame, or a compressed frame which inflates to more than this,
+         * is disconnected before any memory is allocated for the frame, so that a single peer cannot exhaust the heap.
+         * Stream data is never buffered, so it is not limited by this,
+         * but every line and binary message sent to a peer must fit within the peer's maximum.
+         * Messages longer than this are never compressed when sent.
+         * This option only applies to connections which negotiate a framed protocol version.
+         *
+         * @param bytes The maximum frame length, in bytes
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code bytes} is not positive
+         */
+        public Builder maxFrameLength(int bytes) {
+            maxFrameLength = requirePositive(bytes, "maxFrameLength");
+            return this;
+        }
+        /**
+         * Sets the maximum number of messages read from any one connection before moving on to the next connection.
+         * The default is 64 messages.
+         * <p>
+         * Connections with more input waiting are continued in round-robin order, so that a connection
+         * which sends continuously cannot delay the messages of every other connection. Whichever of
+         * this limit and the {@linkplain #maxBytesPerTurn(int) byte limit} is reached first ends the turn,
+         * although the message or binary message being read at that point is always read in full.
+         * <p>
+         * This option only applies to implementations which poll their connections on a schedule.
+         *
+         * @param messages The maximum number of messages read per turn
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code messages} is not positive
+         */
+        public Builder maxMessagesPerTurn(int messages) {
+            maxMessagesPerTurn = requirePositive(messages, "maxMessagesPerTurn");
+            return this;
+        }
+        /**
+         * Sets the maximum number of bytes read from any one connection before moving on to the next connection.
+         * The default is 64 KiB.
+         * <p>
+         * This option only applies to implementations which poll their connections on a schedule.
+         *
+         * @param bytes The maximum number of bytes read per turn
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code bytes} is not positive
+         * @see #maxMessagesPerTurn(int)
+         */
+        public Builder maxBytesPerTurn(int bytes) {
+            maxBytesPerTurn = requirePositive(bytes, "maxBytesPerTurn");
+            return this;
+        }
+        /**
+         * Sets the number of threads accepting incoming connections.
+         * The default is a single acceptor.
+         * <p>
+         * Where the platform supports the {@code SO_REUSEPORT} socket option (such as on Linux), one listening
+         * socket is opened per acceptor, all on the same port, so that the operating system spreads incoming
+         * connections across them, and the {@linkplain #backlog(int) backlog} applies to each of them.
+         * Otherwise, every acceptor shares a single listening socket. Either way, all of the accepted connections
+         * share a single connection registry, and the server has a single {@link NetworkAddress}.
+         * <p>
+         * This option only applies to implementations which accept connections on blocking sockets.
+         *
+         * @param acceptors The number of acceptor threads
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code acceptors} is not positive
+         */
+        public Builder acceptors(int acceptors) {
+            this.acceptors = requirePositive(acceptors, "acceptors");
+            return this;
+        }
+
+        /**
+         * Creates new {@link ServerOptions} from the current state of this builder.
+         *
+         * @return The newly created {@code ServerOptions}
+         */
+        public ServerOptions build() {
+            return new ServerOptions(this);
+        }
+
+        private static int requireNonNegative(int value, String name) {
+            if (value < 0)
+                throw new IllegalArgumentException(name + " must not be negative: " + value);
+            return value;
+        }
+        private static int requirePositive(int value, String name) {
+            if (value <= 0)
+                throw new IllegalArgumentException(name + " must be positive: " + value);
+            return value;
+        }
+    }
+}
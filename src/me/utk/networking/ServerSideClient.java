@@ -1,16 +1,46 @@
 package me.utk.networking;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * A client for a server-side application.
  * <p>
  * This class provides utility methods for sending messages to the client
- * and receiving messages from the client (via a {@link MessageBuilder}).
+ * and receiving messages from the client (via a {@link MessageBuilder}
+ * or a {@link MessageListener}).
  *
  * @author Utkarsh Priyam
  * @version December 8, 2020
  * @see MessageBuilder
+ * @see MessageListener
  */
 public interface ServerSideClient {
+    /**
+     * Returns the connection ID of this client.
+     * <p>
+     * Connection IDs are assigned by the server when a client connects, and are never
+     * reused by that server, even after the client disconnects.
+     *
+     * @return The connection ID of this client
+     * @see ServerImplementation#getClient(long)
+     * @see ServerImplementation#sendTo(long, String...)
+     */
+    long getId();
+    /**
+     * Returns the smoothed round trip time of this client's connection, as measured by heartbeats.
+     * <p>
+     * Every pong updates the estimate as per RFC 6298, and each round trip is measured when the pong is
+     * read, so it also includes any delay in reading messages from this client. Heartbeats require a
+     * framed protocol, so clients which only support the original protocol never report a round trip time.
+     *
+     * @return The smoothed round trip time in microseconds, or {@code -1} if no pong has been received yet
+     * @see ServerImplementation#setHeartbeatPolicy(int, int)
+     */
+    long getSmoothedRttMicros();
     /**
      * Sends the given messages to the specified client,
      * using implementation-specific messaging protocols.
@@ -18,11 +48,133 @@ public interface ServerSideClient {
      * The sent messages are guaranteed to be received in
      * exactly the same order as they were sent, unless
      * specified otherwise in documentation.
+     * <p>
+     * Messages are accepted or rejected whole: a message may be sent over several calls, up to and including
+     * the end message marker, and whether this client is {@linkplain #isWritable() writable} is only checked
+     * by the call which starts the message. The rest of the message is then queued or rejected along with its
+     * start, regardless of writability, so that the client never receives part of a message.
      *
      * @param messages String messages to send to client
+     * @return {@code true} if the messages were queued; {@code false} if they were rejected, because
+     * their message was started while this client was not writable, this client is closed, or the
+     * messages cannot be encoded
+     * @see #sendAsync(String...)
      * @see MessageBuilder#nextMessage()
      */
-    void sendMessages(String... messages);
+    boolean sendMessages(String... messages);
+    /**
+     * Sends the given messages to the specified client without blocking the calling thread,
+     * using implementation-specific messaging protocols.
+     * <p>
+     * The messages are queued and written by the implementation's I/O threads, in exactly the same
+     * order as all other messages sent to this client. The messages are accepted or rejected whole, exactly
+     * as by {@link #sendMessages(String...)}, and if rejected, the returned future completes exceptionally.
+     *
+     * @param messages String messages to send to client
+     * @return A future which completes once the messages are written, or completes
+     * exceptionally if the messages are rejected or cannot be written
+     * @see #isWritable()
+     * @see ServerImplementation#setWriteBufferWatermarks(int, int)
+     */
+    CompletableFuture<Void> sendAsync(String... messages);
+    /**
+     * Returns whether this client currently accepts more outbound data.
+     * <p>
+     * A client stops being writable once more data is queued for it than the server's high watermark,
+     * typically because the client is reading slowly, and becomes writable again once its queue drains
+     * to the server's low watermark.
+     *
+     * @return {@code true} if messages started now will be queued for this client; otherwise, {@code false}
+     * @see ServerImplementation#setWriteBufferWatermarks(int, int)
+     */
+    boolean isWritable();
+    /**
+     * Sends the given bytes to the client as a single binary message, without any conversion.
+     * <p>
+     * The bytes are received via {@link MessageBuilder#nextBinaryMessage()}, and the
+     * sent binary messages are guaranteed to be received in exactly the same order as
+     * they were sent, unless specified otherwise in documentation.
+     *
+     * @param bytes The bytes to send to the client
+     * @throws IllegalStateException if the connection does not support binary messages
+     * (for example, because the client only supports an older messaging protocol)
+     * @see MessageBuilder#nextBinaryMessage()
+     */
+    void sendBytes(byte[] bytes);
+    /**
+     * Sends the remaining bytes of the given buffer to the client as a single binary message,
+     * without any conversion. The position of the given buffer is not modified.
+     * <p>
+     * The bytes are received via {@link MessageBuilder#nextBinaryMessage()}, and the
+     * sent binary messages are guaranteed to be received in exactly the same order as
+     * they were sent, unless specified otherwise in documentation.
+     *
+     * @param bytes The buffer whose remaining bytes to send to the client
+     * @throws IllegalStateException if the connection does not support binary messages
+     * (for example, because the client only supports an older messaging protocol)
+     * @see MessageBuilder#nextBinaryMessage()
+     */
+    void sendBytes(ByteBuffer bytes);
+    /**
+     * Encodes the given value with the given {@link Codec}, and sends it to the client as a single binary message.
+     * <p>
+     * The value is encoded straight into the outbound frame, without any intermediate {@code String[]} or
+     * {@code byte[]}. It is received via {@link MessageBuilder#nextMessage(Codec)}, in exactly the same order
+     * as all other binary messages sent to the client.
+     *
+     * @param value The value to send to the client
+     * @param codec The codec to encode the value with
+     * @param <T>   The type of the value
+     * @throws IllegalArgumentException if the value cannot be encoded by the given codec
+     * @throws IllegalStateException    if the connection does not support binary messages
+     *                                  (for example, because the client only supports an older messaging protocol)
+     * @see MessageBuilder#nextMessage(Codec)
+     * @see BinaryCodec
+     */
+    <T> void send(T value, Codec<? super T> codec);
+    /**
+     * Sends the contents of the given file to the client as a single stream.
+     * <p>
+     * The file is sent in chunks, in exactly the same order as all other data sent to the client, and is received by
+     * the client's {@link StreamListener} without ever being held in memory as a whole. Where the implementation
+     * supports it, the file is transferred straight from the file system to the socket without being copied.
+     * <p>
+     * This method blocks until the whole file has been written, and the file must not be modified until then.
+     *
+     * @param file The file to send to the client
+     * @throws IOException           if the file cannot be read, or the connection is closed before the whole file is written
+     * @throws IllegalStateException if the connection does not support streams
+     *                               (for example, because the client only supports an older messaging protocol)
+     * @see #sendStream(InputStream, long)
+     * @see ClientImplementation#setStreamListener(StreamListener)
+     */
+    void sendFile(Path file) throws IOException;
+    /**
+     * Sends exactly {@code length} bytes read from the given input stream to the client as a single stream.
+     * The input stream is not closed.
+     * <p>
+     * The bytes are sent in chunks as they are read, in exactly the same order as all other data sent to the client,
+     * and are received by the client's {@link StreamListener} without ever being held in memory as a whole.
+     * <p>
+     * This method blocks until all of the bytes have been written. If the input stream ends early or fails,
+     * the stream is aborted, and the client is notified that it is incomplete.
+     *
+     * @param in     The input stream to read the bytes from
+     * @param length The number of bytes to send
+     * @throws IOException           if the input stream cannot be read or ends before {@code length} bytes,
+     *                               or the connection is closed before all of the bytes are written
+     * @throws IllegalStateException if the connection does not support streams
+     *                               (for example, because the client only supports an older messaging protocol)
+     * @see #sendFile(Path)
+     * @see ClientImplementation#setStreamListener(StreamListener)
+     */
+    void sendStream(InputStream in, long length) throws IOException;
+    /**
+     * Immediately writes any outbound data to this client which is buffered as per the server's flush policy.
+     *
+     * @see ServerImplementation#setFlushPolicy(int, long)
+     */
+    void flush();
     /**
      * Returns the {@link MessageBuilder} associated with this client.
      * <p>
@@ -34,4 +186,45 @@ public interface ServerSideClient {
      * @see MessageBuilder
      */
     MessageBuilder getMessageBuilder();
+
+    /**
+     * Registers a listener which is notified of every complete message received from this client.
+     * <p>
+     * While at least one listener is registered with this client or its server, messages are
+     * delivered to those listeners instead of being queued in this client's {@link MessageBuilder},
+     * as outlined in the {@link MessageListener} documentation.
+     *
+     * @param listener The listener to register
+     * @see #removeMessageListener(MessageListener)
+     * @see ServerImplementation#addMessageListener(MessageListener)
+     * @see MessageListener
+     */
+    void addMessageListener(MessageListener<ServerSideClient> listener);
+    /**
+     * Unregisters a listener previously registered via {@link #addMessageListener(MessageListener)}.
+     *
+     * @param listener The listener to unregister
+     * @see #addMessageListener(MessageListener)
+     * @see MessageListener
+     */
+    void removeMessageListener(MessageListener<ServerSideClient> listener);
+    /**
+     * Registers a listener which is notified when this client disconnects.
+     * <p>
+     * Since this client is already connected, only the listener's
+     * {@link ConnectionListener#onDisconnect(Object)} method is ever called.
+     *
+     * @param listener The listener to register
+     * @see #removeConnectionListener(ConnectionListener)
+     * @see ConnectionListener
+     */
+    void addConnectionListener(ConnectionListener<ServerSideClient> listener);
+    /**
+     * Unregisters a listener previously registered via {@link #addConnectionListener(ConnectionListener)}.
+     *
+     * @param listener The listener to unregister
+     * @see #addConnectionListener(ConnectionListener)
+     * @see ConnectionListener
+     */
+    void removeConnectionListener(ConnectionListener<ServerSideClient> listener);
 }
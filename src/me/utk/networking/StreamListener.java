@@ -0,0 +1,51 @@
+package me.utk.networking;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A callback which receives the streams sent over a connection, such as those sent via
+ * {@link ClientImplementation#sendFile(java.nio.file.Path)} or {@link ServerSideClient#sendStream(java.io.InputStream, long)}.
+ * <p>
+ * Streams are never held in memory as a whole. As soon as a stream starts arriving, the listener
+ * chooses where its bytes should go by returning a {@link WritableByteChannel} (for example, a
+ * {@link java.nio.channels.FileChannel}), and every chunk of the stream is written to that channel
+ * as soon as it is read, so memory use is bounded by the chunk size rather than the stream size.
+ * <p>
+ * Listeners are notified from the implementation's reading thread, and chunks are written to the returned
+ * channel on that same thread, so the channel should be a blocking channel which accepts every byte written
+ * to it. Any other messages sent over the connection while a stream is arriving are still received in order.
+ *
+ * @param <C> The type of the connection which received the stream
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ * @see ServerImplementation#setStreamListener(StreamListener)
+ * @see ClientImplementation#setStreamListener(StreamListener)
+ */
+@FunctionalInterface
+public interface StreamListener<C> {
+    /**
+     * Called when a stream starts arriving over the specified connection, before any of its bytes are read.
+     * <p>
+     * The returned channel is closed once the stream ends, whether or not it was received in full.
+     * If this method returns {@code null} or throws an exception, the stream is read and discarded.
+     *
+     * @param source The connection which is receiving the stream
+     * @param length The total length of the stream, in bytes
+     * @return The channel to write the bytes of the stream to, or {@code null} to discard the stream
+     * @throws IOException if the channel cannot be opened
+     */
+    WritableByteChannel onStreamStart(C source, long length) throws IOException;
+    /**
+     * Called once a stream has ended and the channel returned by {@link #onStreamStart(Object, long)} has been closed.
+     * <p>
+     * A stream is incomplete if the sender aborted it, if the connection was closed before it was received
+     * in full, if no channel was returned for it, or if its bytes could not be written to the channel. The
+     * channel then holds at most a prefix of the stream. By default, this method does nothing.
+     *
+     * @param source     The connection which received the stream
+     * @param isComplete {@code true} if every byte of the stream was written to the channel; otherwise, {@code false}
+     */
+    default void onStreamEnd(C source, boolean isComplete) {
+    }
+}
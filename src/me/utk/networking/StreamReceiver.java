@@ -0,0 +1,126 @@
+package me.utk.networking;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.function.Supplier;
+
+/**
+ * Receives the streams sent over a single connection, one at a time.
+ * <p>
+ * Every part of a stream is written to the channel chosen by the {@link StreamListener} as soon as it is read,
+ * so no stream is ever held in memory. Parts are received on the reading (or selector) thread, but the connection
+ * may be closed from any thread, so every method is synchronized.
+ * <p>
+ * Streams arrive the same way over both transports, which therefore share this class. It is public for their sake
+ * alone, and applications receive streams through a {@code StreamListener} instead.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ */
+public final class StreamReceiver<C> {
+    // ---------------------------------------- PRIVATE INSTANCE VARIABLES ---------------------------------------- //
+
+    private final C SOURCE;
+    private final Supplier<StreamListener<C>> LISTENER;
+
+    // The stream in progress, whose listener and channel may both be null if the stream is being discarded
+    private StreamListener<C> listener = null;
+    private WritableByteChannel channel = null;
+    private long remaining = -1; // -1 iff no stream is in progress
+    private boolean isClosed = false;
+
+    // ---------------------------------------- PUBLIC CONSTRUCTOR ---------------------------------------- //
+
+    // The listener is looked up again for every stream, so that it can be replaced at any time
+    public StreamReceiver(C source, Supplier<StreamListener<C>> listener) {
+        SOURCE = source;
+        LISTENER = listener;
+    }
+
+    // ---------------------------------------- PUBLIC METHODS ---------------------------------------- //
+
+    public synchronized void start(long length) throws ProtocolException {
+        if (isClosed)
+            return;
+        if (remaining >= 0)
+            throw new ProtocolException("Stream started while another stream is in progress");
+        if (length < 0)
+            throw new ProtocolException("Negative stream length");
+        remaining = length;
+        listener = LISTENER.get();
+        if (listener != null)
+            try {
+                channel = listener.onStreamStart(SOURCE, length);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        if (remaining == 0)
+            end(channel != null);
+    }
+
+    // Consumes the given part of a stream data frame, which may only be a fraction of the whole frame
+    public synchronized void data(ByteBuffer part) throws ProtocolException {
+        if (isClosed)
+            return;
+        if (remaining < part.remaining())
+            throw new ProtocolException(remaining < 0 ? "Stream data without a stream" : "Stream data past the end of the stream");
+        remaining -= part.remaining();
+        if (channel != null)
+            try {
+                while (part.hasRemaining())
+                    channel.write(part);
+            } catch (IOException e) {
+                // The rest of the stream is still read, to keep the connection in sync, but it is discarded
+                closeChannel();
+            }
+        if (remaining == 0)
+            end(channel != null);
+    }
+
+    public synchronized void abort() throws ProtocolException {
+        if (isClosed)
+            return;
+        if (remaining < 0)
+            throw new ProtocolException("Stream aborted without a stream");
+        end(false);
+    }
+
+    // Any stream in progress can no longer be completed once the connection is closed
+    public synchronized void close() {
+        if (isClosed)
+            return;
+        if (remaining >= 0)
+            end(false);
+        isClosed = true;
+    }
+
+    // ---------------------------------------- PRIVATE HELPER METHODS ---------------------------------------- //
+
+    private void end(boolean isComplete) {
+        if (channel != null && !closeChannel())
+            isComplete = false;
+        StreamListener<C> ended = listener;
+        listener = null;
+        remaining = -1;
+        if (ended != null)
+            try {
+                ended.onStreamEnd(SOURCE, isComplete);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+    }
+
+    // true iff success
+    private boolean closeChannel() {
+        WritableByteChannel closed = channel;
+        channel = null;
+        try {
+            closed.close();
+            return true;
+        } catch (IOException ignored) {
+        }
+        return false;
+    }
+}
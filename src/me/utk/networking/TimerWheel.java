@@ -0,0 +1,152 @@
+package me.utk.networking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timing wheel (as described by Varghese and Lauck) for connection deadlines, driven by a single daemon thread.
+ * <p>
+ * Every pending timeout is kept in the bucket of the tick it expires on, so scheduling, rescheduling and cancelling
+ * a timeout are all O(1), no matter how many timeouts are pending, and each tick only visits a single bucket.
+ * Timeouts fire within one tick of their deadline, on the timer thread, so their tasks must be short and never block.
+ * <p>
+ * A single wheel (and thread) is shared by the connection deadlines and heartbeats of both transports.
+ * It is only public so that the transport packages can reach it, and is not meant for applications.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ */
+public final class TimerWheel {
+    // ---------------------------------------- SHARED TIMER WHEEL ---------------------------------------- //
+
+    // 10ms ticks and 512 buckets -> one turn of the wheel every 5.12 secs
+    public static final TimerWheel SHARED = new TimerWheel("Networking-timer", TimeUnit.MILLISECONDS.toNanos(10), 512);
+
+    // ---------------------------------------- PRIVATE INSTANCE VARIABLES ---------------------------------------- //
+
+    private final long TICK_NANOS;
+    private final long START_TIME;
+    private final int MASK;
+
+    // All guarded by this
+    private final Timeout[] BUCKETS; // heads of doubly linked lists
+    private long currentTick = 0; // the next tick to expire
+
+    // ---------------------------------------- PRIVATE CONSTRUCTOR ---------------------------------------- //
+
+    private TimerWheel(String name, long tickNanos, int buckets) {
+        TICK_NANOS = Math.max(1, tickNanos);
+        // Round up to a power of two, so that ticks are mapped to buckets with a mask
+        int size = Integer.highestOneBit(Math.max(1, buckets - 1)) << 1;
+        BUCKETS = new Timeout[size];
+        MASK = size - 1;
+        START_TIME = System.nanoTime();
+
+        Thread thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // ---------------------------------------- PUBLIC HELPER CLASSES ---------------------------------------- //
+
+    /**
+     * A reusable timeout for a single task, which is pending from when it is scheduled until it fires or is cancelled
+     */
+    public static final class Timeout {
+        private final TimerWheel WHEEL;
+        private final Runnable TASK;
+
+        // All guarded by the wheel
+        private long deadlineTick = -1; // -1 iff not pending
+        private Timeout previous = null, next = null;
+
+        private Timeout(TimerWheel wheel, Runnable task) {
+            WHEEL = wheel;
+            TASK = task;
+        }
+
+        // Replaces any deadline this timeout already had
+        public void schedule(long delay, TimeUnit unit) {
+            WHEEL.schedule(this, unit.toNanos(delay));
+        }
+        public void cancel() {
+            WHEEL.cancel(this);
+        }
+    }
+
+    // ---------------------------------------- PUBLIC METHODS ---------------------------------------- //
+
+    public Timeout newTimeout(Runnable task) {
+        return new Timeout(this, task);
+    }
+
+    // ---------------------------------------- PRIVATE HELPER METHODS ---------------------------------------- //
+
+    private synchronized void schedule(Timeout timeout, long delayNanos) {
+        if (timeout.deadlineTick >= 0)
+            unlink(timeout);
+        // Round up, so that no timeout ever fires before its deadline
+        long elapsed = System.nanoTime() - START_TIME + Math.max(0, delayNanos);
+        long tick = Math.max(currentTick, (elapsed + TICK_NANOS - 1) / TICK_NANOS);
+        int bucket = (int) (tick & MASK);
+        timeout.deadlineTick = tick;
+        timeout.previous = null;
+        timeout.next = BUCKETS[bucket];
+        if (BUCKETS[bucket] != null)
+            BUCKETS[bucket].previous = timeout;
+        BUCKETS[bucket] = timeout;
+    }
+
+    private synchronized void cancel(Timeout timeout) {
+        if (timeout.deadlineTick >= 0)
+            unlink(timeout);
+    }
+
+    // Must hold the lock on this
+    private void unlink(Timeout timeout) {
+        if (timeout.previous != null)
+            timeout.previous.next = timeout.next;
+        else
+            BUCKETS[(int) (timeout.deadlineTick & MASK)] = timeout.next;
+        if (timeout.next != null)
+            timeout.next.previous = timeout.previous;
+        timeout.deadlineTick = -1;
+        timeout.previous = timeout.next = null;
+    }
+
+    private void run() {
+        List<Timeout> expired = new ArrayList<>();
+        long tick = 0;
+        while (true) {
+            // Wait for the next tick, catching up on any ticks missed in the meantime
+            long wait;
+            while ((wait = START_TIME + tick * TICK_NANOS - System.nanoTime()) > 0)
+                LockSupport.parkNanos(wait);
+
+            synchronized (this) {
+                // Timeouts in this bucket which are due on later turns of the wheel are left in place
+                Timeout timeout = BUCKETS[(int) (tick & MASK)];
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    if (timeout.deadlineTick <= tick) {
+                        unlink(timeout);
+                        expired.add(timeout);
+                    }
+                    timeout = next;
+                }
+                currentTick = ++tick;
+            }
+
+            // Tasks run without holding the lock, so that they may reschedule themselves
+            for (Timeout timeout : expired)
+                try {
+                    timeout.TASK.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            expired.clear();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package me.utk.networking.load;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent histogram of latencies, in nanoseconds, with a bounded relative error.
+ * <p>
+ * Values below 256 are counted exactly. Every larger value is counted in one of 128 equally sized buckets
+ * per power of two, so any reported percentile is at most 1/128 (about 0.8%) above the true value,
+ * while the whole histogram takes a fixed amount of memory no matter how many values are recorded.
+ * The maximum is tracked exactly. Values may be recorded from any number of threads at once.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ * @see LoadReport
+ */
+public final class LatencyHistogram {
+    // Every power of two (past the exactly counted values) is split into 2^SUB_BUCKET_BITS buckets
+    private static final int SUB_BUCKET_BITS = 7, SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // The highest shift is that of the highest power of two in a long
+    private static final int BUCKET_COUNT = (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT + 2 * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray COUNTS = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong TOTAL_COUNT = new AtomicLong(), TOTAL_NANOS = new AtomicLong(), MAX_NANOS = new AtomicLong();
+
+    /**
+     * Records a single latency.
+     *
+     * @param nanos The latency, in nanoseconds (negative values are recorded as 0)
+     */
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        COUNTS.incrementAndGet(indexOf(nanos));
+        TOTAL_COUNT.incrementAndGet();
+        TOTAL_NANOS.addAndGet(nanos);
+        MAX_NANOS.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Returns the number of recorded latencies.
+     *
+     * @return The number of recorded latencies
+     */
+    public long getCount() {
+        return TOTAL_COUNT.get();
+    }
+    /**
+     * Returns the highest recorded latency, or {@code 0} if none were recorded.
+     *
+     * @return The highest recorded latency, in nanoseconds
+     */
+    public long getMaxNanos() {
+        return MAX_NANOS.get();
+    }
+    /**
+     * Returns the mean of the recorded latencies, or {@code 0} if none were recorded.
+     *
+     * @return The mean recorded latency, in nanoseconds
+     */
+    public double getMeanNanos() {
+        long count = TOTAL_COUNT.get();
+        return count == 0 ? 0 : (double) TOTAL_NANOS.get() / count;
+    }
+    /**
+     * Returns the latency below which the given percentage of recorded latencies lie,
+     * or {@code 0} if none were recorded.
+     * <p>
+     * The returned latency is the highest value counted in the same bucket as the
+     * true percentile, so it is never below the true percentile.
+     *
+     * @param percentile The percentile, from {@code 0} to {@code 100} (inclusive)
+     * @return The latency at the given percentile, in nanoseconds
+     * @throws IllegalArgumentException if {@code percentile} is not between {@code 0} and {@code 100}
+     */
+    public long getNanosAtPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100))
+            throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+        long count = TOTAL_COUNT.get();
+        if (count == 0)
+            return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * count)), seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += COUNTS.get(i);
+            if (seen >= target)
+                return Math.min(highestValueAt(i), MAX_NANOS.get());
+        }
+        return MAX_NANOS.get();
+    }
+
+    /**
+     * Returns the mean, the 50th, 90th, 99th, 99.9th, and 99.99th percentiles, and the maximum of the recorded latencies,
+     * in microseconds.
+     *
+     * @return A single-line summary of this histogram
+     */
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1f p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f p99.99=%.1f max=%.1f (us)", getCount(),
+                getMeanNanos() / 1000, micros(getNanosAtPercentile(50)), micros(getNanosAtPercentile(90)), micros(getNanosAtPercentile(99)),
+                micros(getNanosAtPercentile(99.9)), micros(getNanosAtPercentile(99.99)), micros(getMaxNanos()));
+    }
+
+    // ---------------------------------------- PRIVATE HELPER METHODS ---------------------------------------- //
+
+    private static double micros(long nanos) {
+        return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    // Values below 2 * SUB_BUCKET_COUNT are their own index, and every larger value keeps only its top SUB_BUCKET_BITS + 1 bits
+    private static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT)
+            return (int) value;
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+    private static long highestValueAt(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT)
+            return index;
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long mantissa = index - (long) shift * SUB_BUCKET_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
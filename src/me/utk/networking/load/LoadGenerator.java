@@ -0,0 +1,538 @@
+package me.utk.networking.load;
+
+import me.utk.networking.ClientImplementation;
+import me.utk.networking.ClientOptions;
+import me.utk.networking.MessageListener;
+import me.utk.networking.ServerImplementation;
+import me.utk.networking.ServerOptions;
+import me.utk.networking.nio.NewIO_Client;
+import me.utk.networking.nio.NewIO_Server;
+import me.utk.networking.oio.OldIO_Client;
+import me.utk.networking.oio.OldIO_Server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A load generator which runs a server and any number of clients over the loopback interface, and reports
+ * the throughput and latency distribution of the messages they exchange.
+ * <p>
+ * Every client sends messages of the configured shape at a fixed rate, on a schedule which does not depend on
+ * how quickly earlier messages were answered. Depending on the {@link Workload}, the server either echoes every
+ * message back to its sender or broadcasts it to every client. Each message carries the time at which it was
+ * scheduled to be sent, so that its latency can be corrected for coordinated omission, as described in
+ * {@link LoadReport}. Messages sent during the warmup period are exchanged as usual, but not measured.
+ * <p>
+ * A {@code LoadGenerator} is created via a {@link Builder}:
+ * <pre>{@code
+ * LoadReport report = LoadGenerator.builder().clients(2000).messagesPerSecond(10).durationSeconds(60).build().run();
+ * }</pre>
+ * It can also be run from the command line, with any of the options listed by {@code --help}.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ * @see LoadReport
+ * @see LatencyHistogram
+ */
+public final class LoadGenerator {
+    /**
+     * The transport implementations which the server and the clients can use.
+     */
+    public enum Transport {
+        /**
+         * The implementations based on Java's old IO API, as created by {@link OldIO_Server} and {@link OldIO_Client}.
+         */
+        OLD_IO,
+        /**
+         * The implementations based on Java's new IO API, as created by {@link NewIO_Server} and {@link NewIO_Client}.
+         */
+        NEW_IO
+    }
+
+    /**
+     * The ways in which the server can answer each message.
+     */
+    public enum Workload {
+        /**
+         * The server sends every message back to the client which sent it.
+         */
+        ECHO,
+        /**
+         * The server sends every message to every client (including the client which sent it).
+         */
+        BROADCAST
+    }
+
+    // Clients connect in batches of this size, so that the server's accept backlog is never overrun
+    private static final int CONNECT_BATCH_SIZE = 128;
+    // Messages which have not been received within this long after the last one was sent are lost
+    private static final long DRAIN_NANOS = TimeUnit.SECONDS.toNanos(10);
+    // Messages are only scheduled once the clients have connected, and the senders have had time to start
+    private static final long START_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final String END_MESSAGE = "MESSAGE COMPLETE";
+
+    private final Transport SERVER_TRANSPORT, CLIENT_TRANSPORT;
+    private final ServerOptions SERVER_OPTIONS;
+    private final ClientOptions CLIENT_OPTIONS;
+    private final Workload WORKLOAD;
+    private final int CLIENTS, LINES, LINE_LENGTH, SENDER_THREADS;
+    private final double MESSAGES_PER_SECOND;
+    private final int WARMUP_SECONDS, DURATION_SECONDS;
+
+    private LoadGenerator(Builder builder) {
+        SERVER_TRANSPORT = builder.serverTransport;
+        CLIENT_TRANSPORT = builder.clientTransport;
+        SERVER_OPTIONS = builder.serverOptions;
+        CLIENT_OPTIONS = builder.clientOptions;
+        WORKLOAD = builder.workload;
+        CLIENTS = builder.clients;
+        LINES = builder.lines;
+        LINE_LENGTH = builder.lineLength;
+        SENDER_THREADS = builder.senderThreads > 0 ? builder.senderThreads : Math.min(CLIENTS, Runtime.getRuntime().availableProcessors());
+        MESSAGES_PER_SECOND = builder.messagesPerSecond;
+        WARMUP_SECONDS = builder.warmupSeconds;
+        DURATION_SECONDS = builder.durationSeconds;
+    }
+
+    /**
+     * Creates a new {@link Builder}, with every option set to its default value.
+     *
+     * @return The newly created {@code Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // ---------------------------------------- PRIVATE HELPER CLASSES ---------------------------------------- //
+
+    // Only messages scheduled within [START, END) are measured
+    private static class Measurement {
+        private final long START, END;
+        private final AtomicLong SENT = new AtomicLong(), RECEIVED = new AtomicLong();
+        private final LatencyHistogram CORRECTED = new LatencyHistogram(), UNCORRECTED = new LatencyHistogram();
+
+        private Measurement(long start, long end) {
+            START = start;
+            END = end;
+        }
+
+        private boolean isMeasured(long scheduledNanos) {
+            return scheduledNanos - START >= 0 && scheduledNanos - END < 0;
+        }
+
+        // The first line of every message holds the times at which it was scheduled and sent
+        private void received(String[] message, long receivedNanos) {
+            int space = message[0].indexOf(' ');
+            long scheduledNanos = Long.parseLong(message[0].substring(0, space)), sentNanos = Long.parseLong(message[0].substring(space + 1));
+            if (!isMeasured(scheduledNanos))
+                return;
+            CORRECTED.record(receivedNanos - scheduledNanos);
+            UNCORRECTED.record(receivedNanos - sentNanos);
+            RECEIVED.incrementAndGet(); // only used to tell when every message has arrived
+        }
+    }
+
+    // ---------------------------------------- PUBLIC METHODS ---------------------------------------- //
+
+    /**
+     * Starts the server, connects every client, runs the workload for the warmup and measurement periods,
+     * waits for any outstanding messages, and closes every connection.
+     * <p>
+     * The calling thread blocks for the whole run, which takes at least as long as the warmup and measurement periods.
+     *
+     * @return The results of the run
+     * @throws IllegalStateException if any client cannot connect to the server
+     * @throws InterruptedException  if the calling thread is interrupted during the run
+     */
+    public LoadReport run() throws InterruptedException {
+        ServerImplementation server = SERVER_TRANSPORT == Transport.NEW_IO ? NewIO_Server.defaultImplementation(0, SERVER_OPTIONS)
+                : OldIO_Server.defaultImplementation(0, SERVER_OPTIONS);
+        List<ClientImplementation> clients = new ArrayList<>();
+        Measurement current;
+        long expected;
+        try {
+            server.enableAllConnections();
+            if (WORKLOAD == Workload.ECHO)
+                server.addMessageListener((source, message) -> source.sendMessages(message));
+            else
+                server.addMessageListener((source, message) -> server.broadcast(message));
+
+            // Every listener sees the same measurement, which is only created once every client has connected
+            AtomicReference<Measurement> measurement = new AtomicReference<>();
+            connectClients(server.getAddress().getPort(), clients, (source, message) -> measurement.get().received(message, System.nanoTime()));
+
+            long start = System.nanoTime() + START_DELAY_NANOS, measurementStart = start + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+            current = new Measurement(measurementStart, measurementStart + TimeUnit.SECONDS.toNanos(DURATION_SECONDS));
+            measurement.set(current);
+
+            Thread[] senders = new Thread[SENDER_THREADS];
+            for (int i = 0; i < SENDER_THREADS; i++) {
+                List<ClientImplementation> assigned = clients.subList(i * clients.size() / SENDER_THREADS, (i + 1) * clients.size() / SENDER_THREADS);
+                int offset = i * clients.size() / SENDER_THREADS;
+                senders[i] = new Thread(() -> sendMessages(assigned, offset, start, current), "LoadGenerator-sender-" + i);
+                senders[i].start();
+            }
+            for (Thread sender : senders)
+                sender.join();
+
+            // Every message is received once by its sender, or once by every client
+            expected = current.SENT.get() * (WORKLOAD == Workload.ECHO ? 1 : clients.size());
+            long drainDeadline = System.nanoTime() + DRAIN_NANOS;
+            while (current.RECEIVED.get() < expected && System.nanoTime() - drainDeadline < 0)
+                Thread.sleep(10);
+        } finally {
+            for (ClientImplementation client : clients)
+                client.closeClient();
+            server.closeServer();
+        }
+
+        // Only reported once every connection is closed, so that no more messages can arrive while it is read
+        String description = String.format("%s: %d %s clients -> %s server, %s msg/s per client, %d x %d B lines, %d s warmup",
+                WORKLOAD, clients.size(), CLIENT_TRANSPORT, SERVER_TRANSPORT, MESSAGES_PER_SECOND, LINES, LINE_LENGTH, WARMUP_SECONDS);
+        return new LoadReport(description, DURATION_SECONDS, current.SENT.get(), expected, current.CORRECTED.getCount(), current.CORRECTED, current.UNCORRECTED);
+    }
+
+    // ---------------------------------------- PRIVATE HELPER METHODS ---------------------------------------- //
+
+    private void connectClients(int port, List<ClientImplementation> clients, MessageListener<ClientImplementation> listener)
+            throws InterruptedException {
+        for (int batchStart = 0; batchStart < CLIENTS; batchStart += CONNECT_BATCH_SIZE) {
+            List<CompletableFuture<Boolean>> connections = new ArrayList<>();
+            for (int i = batchStart; i < Math.min(CLIENTS, batchStart + CONNECT_BATCH_SIZE); i++) {
+                ClientImplementation client = CLIENT_TRANSPORT == Transport.NEW_IO ? NewIO_Client.defaultImplementation(CLIENT_OPTIONS)
+                        : OldIO_Client.defaultImplementation(CLIENT_OPTIONS);
+                client.addMessageListener(listener);
+                clients.add(client);
+                connections.add(client.connectAsync("localhost", port));
+            }
+            for (CompletableFuture<Boolean> connection : connections)
+                try {
+                    if (!connection.get())
+                        throw new IllegalStateException("Unable to connect client " + clients.size() + " to the server");
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Unable to connect client " + clients.size() + " to the server", e.getCause());
+                }
+        }
+    }
+
+    // Every message is sent as soon as possible after its scheduled time, however late that is, so that no message is ever omitted
+    private void sendMessages(List<ClientImplementation> clients, int offset, long start, Measurement measurement) {
+        String[] template = new String[LINES + 2];
+        Arrays.fill(template, 1, LINES + 1, "x".repeat(LINE_LENGTH));
+        template[LINES + 1] = END_MESSAGE;
+
+        // Clients are spread evenly over each interval, so that they do not all send at once
+        double interval = TimeUnit.SECONDS.toNanos(1) / MESSAGES_PER_SECOND;
+        long[] sent = new long[clients.size()];
+        while (true) {
+            long now = System.nanoTime(), next = Long.MAX_VALUE;
+            boolean isDone = true;
+            for (int i = 0; i < clients.size(); i++) {
+                double phase = interval * (offset + i) / CLIENTS;
+                long scheduled;
+                while ((scheduled = start + (long) (phase + sent[i] * interval)) - measurement.END < 0 && scheduled - now <= 0) {
+                    String[] message = template.clone();
+                    message[0] = scheduled + " " + System.nanoTime();
+                    clients.get(i).sendMessages(message);
+                    if (measurement.isMeasured(scheduled))
+                        measurement.SENT.incrementAndGet();
+                    sent[i]++;
+                }
+                if (scheduled - measurement.END < 0) {
+                    isDone = false;
+                    next = Math.min(next, scheduled);
+                }
+            }
+            if (isDone)
+                return;
+            LockSupport.parkNanos(next - System.nanoTime());
+        }
+    }
+
+    // ---------------------------------------- COMMAND LINE ---------------------------------------- //
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java me.utk.networking.load.LoadGenerator [options]",
+            "  --server oio|nio           server transport (default oio)",
+            "  --client oio|nio           client transport (default oio)",
+            "  --workload echo|broadcast  how the server answers each message (default echo)",
+            "  --clients N                number of clients (default 1000)",
+            "  --rate R                   messages per second sent by each client (default 10)",
+            "  --lines N                  payload lines per message (default 1)",
+            "  --line-length N            characters per payload line (default 64)",
+            "  --warmup S                 unmeasured warmup, in seconds (default 5)",
+            "  --duration S               measurement period, in seconds (default 30)",
+            "  --sender-threads N         threads sending messages (default: one per processor)",
+            "  --poll-interval MS         OIO poll interval of the server and clients (default: as per the options)");
+
+    /**
+     * Runs a load generator configured by the given command line options, and prints its report.
+     *
+     * @param args The command line options, as listed by {@code --help}
+     * @throws InterruptedException if the main thread is interrupted during the run
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Builder builder = builder();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if ("--help".equals(args[i])) {
+                    System.out.println(USAGE);
+                    return;
+                }
+                if (i + 1 == args.length)
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                String value = args[++i];
+                switch (args[i - 1]) {
+                    case "--server":
+                        builder.serverTransport(parseTransport(value));
+                        break;
+                    case "--client":
+                        builder.clientTransport(parseTransport(value));
+                        break;
+                    case "--workload":
+                        builder.workload(Workload.valueOf(value.toUpperCase()));
+                        break;
+                    case "--clients":
+                        builder.clients(Integer.parseInt(value));
+                        break;
+                    case "--rate":
+                        builder.messagesPerSecond(Double.parseDouble(value));
+                        break;
+                    case "--lines":
+                        builder.lines(Integer.parseInt(value));
+                        break;
+                    case "--line-length":
+                        builder.lineLength(Integer.parseInt(value));
+                        break;
+                    case "--warmup":
+                        builder.warmupSeconds(Integer.parseInt(value));
+                        break;
+                    case "--duration":
+                        builder.durationSeconds(Integer.parseInt(value));
+                        break;
+                    case "--sender-threads":
+                        builder.senderThreads(Integer.parseInt(value));
+                        break;
+                    case "--poll-interval":
+                        int millis = Integer.parseInt(value);
+                        builder.serverOptions(ServerOptions.builder().pollIntervalMillis(millis).pollTimeoutMillis(millis).build());
+                        builder.clientOptions(ClientOptions.builder().pollIntervalMillis(millis).pollTimeoutMillis(millis).build());
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+                }
+            }
+        } catch (IllegalArgumentException e) { // includes NumberFormatException
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return;
+        }
+        System.out.println(builder.build().run());
+    }
+
+    private static Transport parseTransport(String value) {
+        switch (value) {
+            case "oio":
+                return Transport.OLD_IO;
+            case "nio":
+                return Transport.NEW_IO;
+            default:
+                throw new IllegalArgumentException("Unknown transport: " + value);
+        }
+    }
+
+    // ---------------------------------------- BUILDER ---------------------------------------- //
+
+    /**
+     * A builder for {@link LoadGenerator}s.
+     * <p>
+     * Every setter throws an {@link IllegalArgumentException} if given a value outside of its allowed range,
+     * and returns this builder otherwise, so that calls may be chained.
+     *
+     * @author Utkarsh Priyam
+     * @version December 8, 2020
+     * @see LoadGenerator
+     */
+    public static final class Builder {
+        private Transport serverTransport = Transport.OLD_IO, clientTransport = Transport.OLD_IO;
+        private ServerOptions serverOptions = ServerOptions.DEFAULT;
+        private ClientOptions clientOptions = ClientOptions.DEFAULT;
+        private Workload workload = Workload.ECHO;
+        private int clients = 1000;
+        private double messagesPerSecond = 10;
+        private int lines = 1, lineLength = 64;
+        private int warmupSeconds = 5, durationSeconds = 30;
+        private int senderThreads = 0; // one per processor
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the transport of the server. The default is {@link Transport#OLD_IO}.
+         *
+         * @param transport The transport of the server
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code transport} is {@code null}
+         */
+        public Builder serverTransport(Transport transport) {
+            serverTransport = requireNonNull(transport, "serverTransport");
+            return this;
+        }
+        /**
+         * Sets the transport of every client. The default is {@link Transport#OLD_IO}.
+         *
+         * @param transport The transport of the clients
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code transport} is {@code null}
+         */
+        public Builder clientTransport(Transport transport) {
+            clientTransport = requireNonNull(transport, "clientTransport");
+            return this;
+        }
+        /**
+         * Sets the options of the server, such as those of a production deployment. The default is {@link ServerOptions#DEFAULT}.
+         *
+         * @param options The options of the server
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code options} is {@code null}
+         */
+        public Builder serverOptions(ServerOptions options) {
+            serverOptions = requireNonNull(options, "serverOptions");
+            return this;
+        }
+        /**
+         * Sets the options of every client. The default is {@link ClientOptions#DEFAULT}.
+         *
+         * @param options The options of the clients
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code options} is {@code null}
+         */
+        public Builder clientOptions(ClientOptions options) {
+            clientOptions = requireNonNull(options, "clientOptions");
+            return this;
+        }
+        /**
+         * Sets how the server answers each message. The default is {@link Workload#ECHO}.
+         *
+         * @param workload The workload
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code workload} is {@code null}
+         */
+        public Builder workload(Workload workload) {
+            this.workload = requireNonNull(workload, "workload");
+            return this;
+        }
+        /**
+         * Sets the number of clients. The default is 1000.
+         *
+         * @param clients The number of clients
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code clients} is not positive
+         */
+        public Builder clients(int clients) {
+            this.clients = requirePositive(clients, "clients");
+            return this;
+        }
+        /**
+         * Sets the number of messages which every client sends per second. The default is 10.
+         *
+         * @param rate The number of messages per second per client
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code rate} is not positive
+         */
+        public Builder messagesPerSecond(double rate) {
+            if (!(rate > 0))
+                throw new IllegalArgumentException("messagesPerSecond must be positive: " + rate);
+            messagesPerSecond = rate;
+            return this;
+        }
+        /**
+         * Sets the number of payload lines in every message, which are followed by the end message marker. The default is 1.
+         *
+         * @param lines The number of payload lines
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code lines} is not positive
+         */
+        public Builder lines(int lines) {
+            this.lines = requirePositive(lines, "lines");
+            return this;
+        }
+        /**
+         * Sets the number of (ASCII) characters in every payload line. The default is 64.
+         *
+         * @param length The number of characters per payload line
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code length} is negative
+         */
+        public Builder lineLength(int length) {
+            if (length < 0)
+                throw new IllegalArgumentException("lineLength must not be negative: " + length);
+            lineLength = length;
+            return this;
+        }
+        /**
+         * Sets the length of the unmeasured warmup period. The default is 5 seconds.
+         *
+         * @param seconds The length of the warmup period, in seconds
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code seconds} is negative
+         */
+        public Builder warmupSeconds(int seconds) {
+            if (seconds < 0)
+                throw new IllegalArgumentException("warmupSeconds must not be negative: " + seconds);
+            warmupSeconds = seconds;
+            return this;
+        }
+        /**
+         * Sets the length of the measurement period. The default is 30 seconds.
+         *
+         * @param seconds The length of the measurement period, in seconds
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code seconds} is not positive
+         */
+        public Builder durationSeconds(int seconds) {
+            durationSeconds = requirePositive(seconds, "durationSeconds");
+            return this;
+        }
+        /**
+         * Sets the number of threads which send the clients' messages, each for an equal share of the clients.
+         * The default is one thread per available processor (but no more than one per client).
+         *
+         * @param threads The number of sending threads
+         * @return This {@code Builder}
+         * @throws IllegalArgumentException if {@code threads} is not positive
+         */
+        public Builder senderThreads(int threads) {
+            senderThreads = requirePositive(threads, "senderThreads");
+            return this;
+        }
+
+        /**
+         * Creates a new {@link LoadGenerator} from the current state of this builder.
+         *
+         * @return The newly created {@code LoadGenerator}
+         */
+        public LoadGenerator build() {
+            return new LoadGenerator(this);
+        }
+
+        private static <T> T requireNonNull(T value, String name) {
+            if (value == null)
+                throw new IllegalArgumentException(name + " must not be null");
+            return value;
+        }
+        private static int requirePositive(int value, String name) {
+            if (value <= 0)
+                throw new IllegalArgumentException(name + " must be positive: " + value);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package me.utk.networking.load;
+
+/**
+ * The results of a single {@link LoadGenerator} run, covering only the messages sent during its measurement period.
+ * <p>
+ * Every latency is recorded twice. The corrected latency of a message is measured from the time at which the
+ * message was scheduled to be sent, while its uncorrected latency is measured from the time at which it was
+ * actually sent. A stalled connection or server delays sending just as much as it delays receiving, so only
+ * the corrected latencies account for coordinated omission (the messages which should have been sent
+ * during a stall, but were not), and only they should be used for percentiles.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ * @see LoadGenerator
+ * @see LatencyHistogram
+ */
+public final class LoadReport {
+    private final String DESCRIPTION;
+    private final double SECONDS;
+    private final long SENT, EXPECTED, RECEIVED;
+    private final LatencyHistogram CORRECTED, UNCORRECTED;
+
+    LoadReport(String description, double seconds, long sent, long expected, long received, LatencyHistogram corrected, LatencyHistogram uncorrected) {
+        DESCRIPTION = description;
+        SECONDS = seconds;
+        SENT = sent;
+        EXPECTED = expected;
+        RECEIVED = received;
+        CORRECTED = corrected;
+        UNCORRECTED = uncorrected;
+    }
+
+    /**
+     * Returns the length of the measurement period.
+     *
+     * @return The length of the measurement period, in seconds
+     */
+    public double getSeconds() {
+        return SECONDS;
+    }
+    /**
+     * Returns the number of messages sent by all clients during the measurement period.
+     *
+     * @return The number of messages sent
+     */
+    public long getSentCount() {
+        return SENT;
+    }
+    /**
+     * Returns the number of messages which the clients received (as echoes or broadcasts) for
+     * the messages sent during the measurement period.
+     *
+     * @return The number of messages received
+     */
+    public long getReceivedCount() {
+        return RECEIVED;
+    }
+    /**
+     * Returns the number of messages which the clients should have received but did not,
+     * before the run ended.
+     *
+     * @return The number of messages lost
+     */
+    public long getLostCount() {
+        return Math.max(0, EXPECTED - RECEIVED);
+    }
+    /**
+     * Returns the number of messages received per second over the measurement period.
+     *
+     * @return The receive throughput, in messages per second
+     */
+    public double getThroughput() {
+        return RECEIVED / SECONDS;
+    }
+    /**
+     * Returns the latencies measured from the time at which each message was scheduled to be sent.
+     *
+     * @return The latency histogram corrected for coordinated omission
+     */
+    public LatencyHistogram getCorrectedLatencies() {
+        return CORRECTED;
+    }
+    /**
+     * Returns the latencies measured from the time at which each message was actually sent.
+     *
+     * @return The latency histogram which is not corrected for coordinated omission
+     */
+    public LatencyHistogram getUncorrectedLatencies() {
+        return UNCORRECTED;
+    }
+
+    /**
+     * Returns a human-readable, multi-line summary of this report.
+     *
+     * @return A summary of this report
+     */
+    @Override
+    public String toString() {
+        return DESCRIPTION + System.lineSeparator()
+                + String.format("sent=%d (%.1f msg/s) received=%d (%.1f msg/s) lost=%d over %.1f s", SENT, SENT / SECONDS,
+                RECEIVED, getThroughput(), getLostCount(), SECONDS) + System.lineSeparator()
+                + "corrected:   " + CORRECTED + System.lineSeparator()
+                + "uncorrected: " + UNCORRECTED;
+    }
+}
@@ -0,0 +1,73 @@
+package me.utk.networking.nio;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.function.Consumer;
+
+/**
+ * Accepts incoming connections on a non-blocking {@link ServerSocketChannel} from a {@link NewIO_SelectorLoop},
+ * so that the server needs no thread of its own for accepting.
+ * <p>
+ * While new connections are not being accepted, the channel is kept registered with no interest at all, so that
+ * incoming connections wait in the backlog instead of waking the selector. Interest is only ever changed while
+ * holding this acceptor's lock, so that enabling and disabling from other threads can never race the loop.
+ */
+class NewIO_Acceptor {
+    // ---------------------------------------- PRIVATE INSTANCE VARIABLES ---------------------------------------- //
+
+    // Bounds each turn, so that a connection storm cannot starve the other channels on the same loop
+    private static final int MAX_ACCEPTS_PER_TURN = 64;
+
+    private final ServerSocketChannel CHANNEL;
+    private final Consumer<SocketChannel> HANDLER;
+
+    // Both guarded by this
+    private SelectionKey key = null; // null until registered by the loop
+    private boolean isAccepting = false;
+
+    // ---------------------------------------- PACKAGE-PRIVATE CONSTRUCTOR ---------------------------------------- //
+
+    NewIO_Acceptor(ServerSocketChannel channel, Consumer<SocketChannel> handler) throws IOException {
+        CHANNEL = channel;
+        HANDLER = handler;
+        CHANNEL.configureBlocking(false);
+    }
+
+    // ---------------------------------------- PACKAGE-PRIVATE METHODS ---------------------------------------- //
+
+    // Only called by the selector loop
+    synchronized void register(Selector selector) throws ClosedChannelException {
+        key = CHANNEL.register(selector, isAccepting ? SelectionKey.OP_ACCEPT : 0, this);
+    }
+
+    // Takes effect on the next select, so the caller must wake the selector loop afterwards
+    synchronized void setAccepting(boolean accepting) {
+        isAccepting = accepting;
+        if (key != null && key.isValid())
+            key.interestOps(accepting ? SelectionKey.OP_ACCEPT : 0);
+    }
+
+    // Only called by the selector loop
+    void handleAccept() {
+        for (int i = 0; i < MAX_ACCEPTS_PER_TURN; i++) {
+            SocketChannel channel;
+            synchronized (this) {
+                // New connections may have been disabled since the channel was selected
+                if (!isAccepting)
+                    return;
+                try {
+                    channel = CHANNEL.accept();
+                } catch (IOException e) {
+                    return; // closed, or out of file descriptors, in which case the next select retries
+                }
+            }
+            if (channel == null)
+                return;
+            HANDLER.accept(channel);
+        }
+    }
+}
@@ -1,12 +1,62 @@
 package me.utk.networking.nio;
 
 import me.utk.networking.ClientImplementation;
+import me.utk.networking.ClientOptions;
 
+/**
+ * A utility class which provides a default implementation of {@link ClientImplementation}
+ * using Java's New IO API.
+ * <p>
+ * This class provides a default implementation of {@code ClientImplementation}, which can be
+ * created and accessed via the {@code defaultImplementation} methods provided by this class.
+ * <p>
+ * The implementation-specific details of this default implementation can be found
+ * in the documentation of the {@link #defaultImplementation()} method.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ * @see #defaultImplementation()
+ * @see #defaultImplementation(ClientOptions)
+ * @see ClientOptions
+ * @see ClientImplementation
+ */
 public abstract class NewIO_Client {
     private NewIO_Client() {
     }
 
+    /**
+     * Creates a new {@link ClientImplementation}.
+     * <p>
+     * The default implementation of the {@code ClientImplementation} meets all of the guarantees
+     * and conditions required by the {@code ClientImplementation} definition.
+     * <p>
+     * Unlike the Old IO implementation, creating a new default {@code ClientImplementation}
+     * does not launch any helper threads of its own. Instead, every client created by this
+     * method shares a single daemon selector thread, which reads messages from the server
+     * as soon as they arrive. The {@link ClientImplementation#closeClient()} method should
+     * still be called to close the client's connection.
+     *
+     * @return The newly generated {@code ClientImplementation}
+     * @see ClientImplementation
+     */
     public static ClientImplementation defaultImplementation() {
-        return null;
+        return defaultImplementation(ClientOptions.DEFAULT);
+    }
+    /**
+     * Creates a new {@link ClientImplementation} with the specified {@link ClientOptions}.
+     * <p>
+     * This implementation differs from the {@link #defaultImplementation()} implementation only
+     * in the socket options of its connection, as specified by the given {@code ClientOptions}.
+     * Since the connection is never polled, the poll interval, poll timeout and idle timeout
+     * of the {@code ClientOptions} are ignored.
+     *
+     * @param options The options to create the client with
+     * @return The newly generated {@code ClientImplementation}
+     * @see #defaultImplementation()
+     * @see ClientOptions
+     * @see ClientImplementation
+     */
+    public static ClientImplementation defaultImplementation(ClientOptions options) {
+        return new NewIO_ClientImplementation(options);
     }
 }
@@ -0,0 +1,333 @@
+package me.utk.networking.nio;
+
+import me.utk.networking.ClientImplementation;
+import me.utk.networking.ClientOptions;
+import me.utk.networking.Codec;
+import me.utk.networking.CompressionCounters;
+import me.utk.networking.CompressionStats;
+import me.utk.networking.ConnectionListener;
+import me.utk.networking.MessageListener;
+import me.utk.networking.MessagePartListener;
+import me.utk.networking.MessageUtil;
+import me.utk.networking.PartReceiver;
+import me.utk.networking.StreamListener;
+import me.utk.networking.StreamReceiver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class NewIO_ClientImplementation implements ClientImplementation {
+    // ---------------------------------------- SHARED SELECTOR LOOP ---------------------------------------- //
+
+    private static NewIO_SelectorLoop sharedSelectorLoop = null;
+
+    /**
+     * Returns the selector loop shared by every NIO client in this JVM, creating it if necessary.
+     * The loop runs on a daemon thread, so it never keeps the Java Runtime Environment alive.
+     */
+    private static synchronized NewIO_SelectorLoop getSharedSelectorLoop() {
+        if (sharedSelectorLoop == null)
+            try {
+                sharedSelectorLoop = new NewIO_SelectorLoop("NewIO_Client-selector", true);
+            } catch (IOException e) {
+                e.printStackTrace();
+                throw new IllegalStateException("Unable to initialize selector for ClientImplementation");
+            }
+        return sharedSelectorLoop;
+    }
+
+    // ---------------------------------------- PRIVATE INSTANCE VARIABLES ---------------------------------------- //
+
+    private final ClientOptions OPTIONS;
+    private volatile ServerConnection connection = null;
+    private volatile NewIO_MessageBuilder builder = null;
+
+    private int connectionTimeoutMillis;
+    private volatile int maxBufferedBytes = 0;
+    private volatile long maxFlushDelayMicros = 0;
+    private volatile int heartbeatIntervalMillis = 0, maxMissedPongs = 0; // heartbeats are disabled by default
+    private volatile int minCompressedBytes = 0, compressionLevel = 0; // compression is disabled by default
+    private final CompressionCounters COMPRESSION_STATS = new CompressionCounters();
+
+    private final List<MessageListener<ClientImplementation>> MESSAGE_LISTENERS = new CopyOnWriteArrayList<>();
+    private final List<ConnectionListener<ClientImplementation>> CONNECTION_LISTENERS = new CopyOnWriteArrayList<>();
+    private volatile StreamListener<ClientImplementation> streamListener = null;
+    private volatile MessagePartListener<ClientImplementation> messagePartListener = null;
+
+    // ---------------------------------------- PACKAGE-PRIVATE CONSTRUCTOR ---------------------------------------- //
+
+    NewIO_ClientImplementation(ClientOptions options) {
+        OPTIONS = options;
+        setConnectionTimeout(0);
+    }
+
+    // ---------------------------------------- PRIVATE HELPER CLASSES ---------------------------------------- //
+
+    private class ServerConnection extends NewIO_Connection {
+        private final PartReceiver<ClientImplementation> PARTS = new PartReceiver<>(NewIO_ClientImplementation.this, () -> messagePartListener);
+        private final NewIO_MessageBuilder BUILDER = new NewIO_MessageBuilder(NewIO_ClientImplementation.this::dispatchMessage, PARTS);
+        private final StreamReceiver<ClientImplementation> STREAMS = new StreamReceiver<>(NewIO_ClientImplementation.this, () -> streamListener);
+        private final CompletableFuture<Boolean> CONFIRMATION = new CompletableFuture<>();
+        private final String ADDRESS;
+        private final int PORT;
+        private volatile boolean isEstablished = false;
+        private int negotiatedProtocolVersion = 0;
+
+        ServerConnection(SocketChannel channel, String address, int port) throws IOException {
+            super(channel, COMPRESSION_STATS, OPTIONS.getMaxFrameLength());
+            ADDRESS = address;
+            PORT = port;
+        }
+
+        @Override
+        void frameReceived(MessageUtil type, String payload) {
+            // Anything other than the protocol version and confirmation is ignored until the connection is verified
+            if (!CONFIRMATION.isDone()) {
+                int version = NewIO_Util.parseProtocolLine(payload);
+                if (version >= 0)
+                    negotiatedProtocolVersion = Math.min(version, NewIO_Util.PROTOCOL_VERSION);
+                else if (type == MessageUtil.CONNECTION_CONFIRMATION) {
+                    // Everything after the confirmation uses the negotiated protocol version
+                    setProtocolVersion(negotiatedProtocolVersion);
+                    CONFIRMATION.complete(true);
+                }
+                return;
+            }
+            if (BUILDER.addFrame(type, payload) == MessageUtil.CONNECTION_CLOSED)
+                close();
+        }
+
+        @Override
+        void binaryFrameReceived(byte[] payload) {
+            if (CONFIRMATION.isDone())
+                BUILDER.addBinaryMessage(payload);
+        }
+
+        @Override
+        StreamReceiver<?> streamFrameReceived() {
+            return CONFIRMATION.isDone() ? STREAMS : null;
+        }
+
+        @Override
+        void connectionClosed() {
+            STREAMS.close();
+            PARTS.close();
+            // A connection closed before the channel even connected was never accepted by any server
+            if (!wasConnected())
+                CONFIRMATION.completeExceptionally(new IllegalStateException("Unable to connect to " + ADDRESS + ":" + PORT));
+            else
+                CONFIRMATION.complete(false);
+            if (connection == this) {
+                connection = null;
+                builder = null;
+            }
+            if (isEstablished)
+                NewIO_Util.notifyListeners(CONNECTION_LISTENERS, listener -> listener.onDisconnect(NewIO_ClientImplementation.this));
+        }
+    }
+
+    // ---------------------------------------- PRIVATE HELPER METHODS ---------------------------------------- //
+
+    // true iff delivered to at least one listener
+    private boolean dispatchMessage(String[] message) {
+        if (MESSAGE_LISTENERS.isEmpty())
+            return false;
+        NewIO_Util.notifyListeners(MESSAGE_LISTENERS, listener -> listener.onMessage(this, message));
+        return true;
+    }
+
+    private void closeConnection() {
+        ServerConnection current = connection;
+        if (current != null) {
+            current.sendControl(MessageUtil.CONNECTION_CLOSED);
+            current.close();
+        }
+    }
+
+    // ---------------------------------------- OVERRIDDEN METHODS ---------------------------------------- //
+
+    @Override
+    public void sendMessages(String... messages) {
+        ServerConnection current = connection;
+        if (current != null)
+            current.sendLines(messages);
+    }
+    @Override
+    public void sendBytes(byte[] bytes) {
+        sendBytes(ByteBuffer.wrap(bytes));
+    }
+    @Override
+    public void sendBytes(ByteBuffer bytes) {
+        ServerConnection current = connection;
+        if (current != null)
+            current.sendBinary(bytes);
+    }
+    @Override
+    public <T> void send(T value, Codec<? super T> codec) {
+        ServerConnection current = connection;
+        if (current != null)
+            current.sendValue(value, codec);
+    }
+    @Override
+    public void sendFile(Path file) throws IOException {
+        ServerConnection current = connection;
+        if (current == null)
+            throw new IOException("Connection closed");
+        current.sendFile(file);
+    }
+    @Override
+    public void sendStream(InputStream in, long length) throws IOException {
+        ServerConnection current = connection;
+        if (current == null)
+            throw new IOException("Connection closed");
+        current.sendStream(in, length);
+    }
+    @Override
+    public void flush() {
+        ServerConnection current = connection;
+        if (current != null)
+            current.flush();
+    }
+    @Override
+    public NewIO_MessageBuilder getMessageBuilder() {
+        return builder;
+    }
+
+    @Override
+    public void addMessageListener(MessageListener<ClientImplementation> listener) {
+        if (listener != null)
+            MESSAGE_LISTENERS.add(listener);
+    }
+    @Override
+    public void removeMessageListener(MessageListener<ClientImplementation> listener) {
+        MESSAGE_LISTENERS.remove(listener);
+    }
+    @Override
+    public void addConnectionListener(ConnectionListener<ClientImplementation> listener) {
+        if (listener != null)
+            CONNECTION_LISTENERS.add(listener);
+    }
+    @Override
+    public void removeConnectionListener(ConnectionListener<ClientImplementation> listener) {
+        CONNECTION_LISTENERS.remove(listener);
+    }
+    @Override
+    public void setStreamListener(StreamListener<ClientImplementation> listener) {
+        streamListener = listener;
+    }
+    @Override
+    public void setMessagePartListener(MessagePartListener<ClientImplementation> listener) {
+        messagePartListener = listener;
+    }
+
+    @Override
+    public void setFlushPolicy(int maxBufferedBytes, long maxDelayMicros) {
+        this.maxBufferedBytes = maxBufferedBytes;
+        maxFlushDelayMicros = maxDelayMicros;
+        ServerConnection current = connection;
+        if (current != null)
+            current.setFlushPolicy(maxBufferedBytes, maxDelayMicros);
+    }
+    @Override
+    public void setHeartbeatPolicy(int intervalMillis, int maxMissedPongs) {
+        heartbeatIntervalMillis = intervalMillis;
+        this.maxMissedPongs = maxMissedPongs;
+        ServerConnection current = connection;
+        if (current != null && current.isEstablished)
+            current.setHeartbeatPolicy(intervalMillis, maxMissedPongs);
+    }
+    @Override
+    public long getSmoothedRttMicros() {
+        ServerConnection current = connection;
+        return current != null ? current.getSmoothedRttMicros() : -1;
+    }
+    @Override
+    public void setCompressionPolicy(int minMessageBytes, int level) {
+        minCompressedBytes = minMessageBytes;
+        compressionLevel = level;
+        ServerConnection current = connection;
+        if (current != null)
+            current.setCompressionPolicy(minMessageBytes, level);
+    }
+    @Override
+    public CompressionStats getCompressionStats() {
+        return COMPRESSION_STATS;
+    }
+
+    @Override
+    public void setConnectionTimeout(int timeout) {
+        connectionTimeoutMillis = timeout <= 0 ? 300000 : timeout; // default value -> 300 secs = 5 mins
+    }
+
+    @Override
+    public boolean connect(String address, int port) {
+        return connect(address, port, "");
+    }
+    @Override
+    public boolean connect(String address, int port, String passcode) {
+        try {
+            return connectAsync(address, port, passcode).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalStateException)
+                throw (IllegalStateException) e.getCause();
+        } catch (InterruptedException ignored) {
+        }
+        return false;
+    }
+    @Override
+    public CompletableFuture<Boolean> connectAsync(String address, int port) {
+        return connectAsync(address, port, "");
+    }
+    @Override
+    public CompletableFuture<Boolean> connectAsync(String address, int port, String passcode) {
+        closeConnection();
+
+        // The channel finishes connecting on the selector thread, which queues the handshake until then
+        ServerConnection current;
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            // Set before connecting, so that buffers larger than 64 KiB can be used from the start
+            NewIO_Util.configureChannel(channel, OPTIONS.isTcpNoDelay(), OPTIONS.isKeepAlive(), OPTIONS.getSendBufferSize(), OPTIONS.getReceiveBufferSize());
+            current = new ServerConnection(channel, address, port);
+            // Only takes effect once the handshake negotiates compression
+            current.setCompressionPolicy(minCompressedBytes, compressionLevel);
+            channel.connect(new InetSocketAddress(address, port));
+        } catch (IOException | RuntimeException e) {
+            if (channel != null)
+                NewIO_Util.closeChannel(channel);
+            return CompletableFuture.failedFuture(new IllegalStateException("Unable to connect to " + address + ":" + port));
+        }
+        connection = current;
+        getSharedSelectorLoop().register(current);
+        current.sendHandshakeLines(NewIO_Util.protocolLine(NewIO_Util.PROTOCOL_VERSION), passcode);
+
+        // Completed on the selector thread as soon as the confirmation is read, before any later frame is handled
+        return current.CONFIRMATION.completeOnTimeout(false, connectionTimeoutMillis, TimeUnit.MILLISECONDS).thenApply(confirmed -> {
+            if (!confirmed) {
+                current.close();
+                return false;
+            }
+            current.setFlushPolicy(maxBufferedBytes, maxFlushDelayMicros);
+            builder = current.BUILDER;
+            current.isEstablished = true;
+            current.setHeartbeatPolicy(heartbeatIntervalMillis, maxMissedPongs);
+            NewIO_Util.notifyListeners(CONNECTION_LISTENERS, listener -> listener.onConnect(this));
+            return true;
+        });
+    }
+
+    @Override
+    public void closeClient() {
+        closeConnection();
+    }
+}
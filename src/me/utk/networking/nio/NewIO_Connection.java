@@ -0,0 +1,844 @@
+package me.utk.networking.nio;
+
+import me.utk.networking.BufferPool;
+import me.utk.networking.Codec;
+import me.utk.networking.CompressionCounters;
+import me.utk.networking.Compressor;
+import me.utk.networking.Heartbeat;
+import me.utk.networking.MessageUtil;
+import me.utk.networking.StreamReceiver;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A non-blocking {@link SocketChannel} serviced by a {@link NewIO_SelectorLoop}.
+ * <p>
+ * The channel may still be connecting when the connection is registered with the selector loop,
+ * in which case any outbound data is queued until the selector thread finishes the connect.
+ * <p>
+ * Inbound bytes are decoded into lines or frames (depending on the negotiated protocol version)
+ * on the selector thread as soon as they arrive. Outbound data is coalesced as per the flush policy,
+ * and then written immediately when the socket can accept it, or queued and flushed by the
+ * selector thread once the socket becomes writable again.
+ * <p>
+ * Once more than the high watermark of bytes are queued, the connection stops being writable and rejects
+ * all data other than control messages until the selector thread has drained it to the low watermark.
+ * <p>
+ * Every frame header is checked against the maximum frame length as soon as it arrives, and the connection is closed
+ * if the frame is longer, before the read buffer is ever grown to hold it. Stream data frames are exempt, since they
+ * are never buffered in full.
+ * <p>
+ * Pings are answered on the selector thread as soon as they are read, and never reach the subclass.
+ * Compressed frames are decompressed on the selector thread, and only the frames they hold reach the subclass.
+ * <p>
+ * Streams are sent one at a time, by the calling thread, which queues at most two chunks at a time and blocks until
+ * they are written. Files are queued as regions which are transferred straight from the file system to the socket.
+ * Stream data is handed to the subclass's stream receiver as soon as it is read, so its frames never need to fit
+ * into the read buffer.
+ * <p>
+ * The read buffer and the coalescing buffer are pooled direct buffers, so the socket reads and writes them without
+ * an intermediate copy. The read buffer is only held while a partial line or frame is waiting for the rest of its
+ * bytes, and the coalescing buffer only until it is written, so idle connections hold no buffers at all.
+ */
+abstract class NewIO_Connection {
+    // ---------------------------------------- SHARED FLUSH SERVICE ---------------------------------------- //
+
+    private static final ScheduledExecutorService FLUSH_SERVICE = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "NewIO-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // ---------------------------------------- PRIVATE INSTANCE VARIABLES ---------------------------------------- //
+
+    private static final int INITIAL_READ_BUFFER_SIZE = 8192;
+    private static final int INITIAL_COALESCE_BUFFER_SIZE = 8192;
+
+    private final SocketChannel CHANNEL;
+    private SelectionKey key = null;
+    private NewIO_SelectorLoop loop = null;
+
+    // Only used by the selector thread (and by close), guarded by READ_LOCK, and null while no bytes are left over
+    private final ReentrantLock READ_LOCK = new ReentrantLock();
+    private ByteBuffer readBuffer = null;
+    private int streamDataRemaining = 0; // bytes of the current stream data frame which are yet to be read
+    // ByteBuffers and FileRegions, of which only coalescing buffers and stream chunks are direct, and released to the pool once written
+    private final ArrayDeque<Object> WRITE_QUEUE = new ArrayDeque<>();
+
+    // Only one stream is sent at a time, so that the chunks of different streams are never interleaved
+    private final Object STREAM_LOCK = new Object();
+
+    // Data held back by the flush policy, guarded by WRITE_QUEUE
+    private ByteBuffer coalesceBuffer = null;
+    private boolean isFlushScheduled = false;
+    private volatile int maxBufferedBytes = 0;
+    private volatile long maxDelayMicros = 0;
+
+    // Futures of pending writes, completed once every byte up to their end offset is written, guarded by WRITE_QUEUE
+    private final ArrayDeque<PendingFuture> PENDING_FUTURES = new ArrayDeque<>();
+    private long enqueuedBytes = 0, writtenBytes = 0;
+    private boolean isWritable = true;
+    private boolean isMessageOpen = false, isOpenMessageRejected = false;
+    private boolean isHeld = false; // nothing is written while held, guarded by WRITE_QUEUE
+    private boolean isClosing = false; // nothing more is queued or read while closing, guarded by WRITE_QUEUE
+    private volatile long lowWatermark = Long.MAX_VALUE, highWatermark = Long.MAX_VALUE;
+
+    private final AtomicBoolean IS_CLOSED = new AtomicBoolean(false);
+    private volatile boolean wasConnected = false; // whether the channel had connected by the time it was closed
+
+    // Every connection starts on protocol version 0 until the handshake negotiates otherwise
+    private volatile int protocolVersion = 0;
+
+    private final Heartbeat HEARTBEAT = new Heartbeat(this::sendControl, this::close, false);
+    private final Compressor COMPRESSOR;
+    private final int MAX_FRAME_LENGTH;
+
+    // ---------------------------------------- PACKAGE-PRIVATE CONSTRUCTOR ---------------------------------------- //
+
+    NewIO_Connection(SocketChannel channel, CompressionCounters compressionStats, int maxFrameLength) throws IOException {
+        CHANNEL = channel;
+        CHANNEL.configureBlocking(false);
+        COMPRESSOR = new Compressor(compressionStats, maxFrameLength);
+        MAX_FRAME_LENGTH = maxFrameLength;
+    }
+
+    // ---------------------------------------- PRIVATE HELPER CLASSES ---------------------------------------- //
+
+    private static class PendingFuture {
+        private final long END_OFFSET;
+        private final CompletableFuture<Void> FUTURE;
+
+        private PendingFuture(long endOffset, CompletableFuture<Void> future) {
+            END_OFFSET = endOffset;
+            FUTURE = future;
+        }
+    }
+
+    // A region of a file which is queued instead of its bytes, and closed by its sender rather than by this connection
+    private static class FileRegion {
+        private final FileChannel FILE;
+        private final long END;
+        private long position;
+
+        private FileRegion(FileChannel file, long position, int length) {
+            FILE = file;
+            this.position = position;
+            END = position + length;
+        }
+
+        private long transferTo(SocketChannel channel) throws IOException {
+            long transferred = FILE.transferTo(position, END - position, channel);
+            // Nothing is transferred both when the socket is full and when the file was truncated
+            if (transferred == 0 && FILE.size() <= position)
+                throw new EOFException("File was truncated while being sent");
+            position += transferred;
+            return transferred;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkSource {
+        // Either a ByteBuffer or a FileRegion, holding exactly the given bytes of the stream
+        Object read(long position, int length) throws IOException;
+    }
+
+    // ---------------------------------------- ABSTRACT CALLBACKS ---------------------------------------- //
+
+    /**
+     * Called on the selector thread for every complete line or frame received on this connection.
+     * For protocol version 0, the type is derived from the line itself, which is also the payload.
+     */
+    abstract void frameReceived(MessageUtil type, String payload);
+    /**
+     * Called on the selector thread for every binary frame received on this connection
+     */
+    abstract void binaryFrameReceived(byte[] payload);
+
+    /**
+     * Called on the selector thread for every stream frame (or part of a stream data frame) received on this connection.
+     * Returns the receiver to hand the frame to, or null if streams are not accepted yet, in which case the frame is discarded.
+     */
+    abstract StreamReceiver<?> streamFrameReceived();
+
+    /**
+     * Called exactly once, on whichever thread closes this connection, which should also close its stream receiver
+     */
+    abstract void connectionClosed();
+
+    // ---------------------------------------- PACKAGE-PRIVATE METHODS ---------------------------------------- //
+
+    SocketChannel getChannel() {
+        return CHANNEL;
+    }
+
+    boolean isClosed() {
+        return IS_CLOSED.get();
+    }
+    // Only meaningful once closed, since the channel no longer reports whether it was connected by then
+    boolean wasConnected() {
+        return wasConnected;
+    }
+
+    int getProtocolVersion() {
+        return protocolVersion;
+    }
+    void setProtocolVersion(int protocolVersion) {
+        this.protocolVersion = protocolVersion;
+    }
+
+    // Heartbeats only exist as frames, so they are never started on protocol version 0
+    void setHeartbeatPolicy(int intervalMillis, int maxMissedPongs) {
+        if (protocolVersion != 0 && !isClosed())
+            HEARTBEAT.start(intervalMillis, maxMissedPongs);
+    }
+    boolean isHeartbeatActive() {
+        return HEARTBEAT.isActive();
+    }
+    // -1 iff no pong has been received yet
+    long getSmoothedRttMicros() {
+        return HEARTBEAT.getSmoothedRttMicros();
+    }
+
+    // Compressed frames are only ever sent once protocol version 2 has been negotiated
+    void setCompressionPolicy(int minMessageBytes, int level) {
+        COMPRESSOR.setPolicy(minMessageBytes, level);
+    }
+
+    // Only called by the selector thread
+    void registered(NewIO_SelectorLoop loop, SelectionKey key) {
+        this.loop = loop;
+        this.key = key;
+        // Lines may have been queued before the key existed
+        synchronized (WRITE_QUEUE) {
+            if (!WRITE_QUEUE.isEmpty() && CHANNEL.isConnected() && !isHeld)
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    // Only called by the selector thread, once a pending connect can be finished
+    void handleConnect() {
+        try {
+            if (!CHANNEL.finishConnect())
+                return;
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        // Lines may have been queued while the channel was connecting
+        synchronized (WRITE_QUEUE) {
+            key.interestOps(WRITE_QUEUE.isEmpty() || isHeld ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    // true iff the lines were queued
+    boolean sendLines(String... lines) {
+        int version = protocolVersion;
+        return send(COMPRESSOR.compress(version, NewIO_Util.encodeLines(version, lines)), null, false, true, NewIO_Util.leavesMessageOpen(lines));
+    }
+    // The future completes once the lines are written, or exceptionally if they are rejected or cannot be written
+    CompletableFuture<Void> sendLinesAsync(String... lines) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        int version = protocolVersion;
+        send(COMPRESSOR.compress(version, NewIO_Util.encodeLines(version, lines)), future, false, true, NewIO_Util.leavesMessageOpen(lines));
+        return future;
+    }
+    // Control messages are never rejected, and never held back by the flush policy
+    void sendControl(MessageUtil type) {
+        send(NewIO_Util.encodeControl(protocolVersion, type), null, true);
+    }
+    // Lines pre-encoded (and, where negotiated, pre-compressed) for every protocol version, as indexed by version, and shared between connections
+    boolean sendEncoded(ByteBuffer[] encoded, boolean leavesMessageOpen) {
+        ByteBuffer buffer = encoded[protocolVersion];
+        return send(buffer == null ? null : buffer.duplicate(), null, false, true, leavesMessageOpen);
+    }
+    // Binary messages only exist as frames, so they cannot be sent over protocol version 0
+    void sendBinary(ByteBuffer bytes) {
+        if (protocolVersion == 0)
+            throw new IllegalStateException("Binary messages require protocol version 1");
+        send(COMPRESSOR.compress(protocolVersion, NewIO_Util.encodeBytes(bytes)), null, false);
+    }
+    <T> void sendValue(T value, Codec<? super T> codec) {
+        if (protocolVersion == 0)
+            throw new IllegalStateException("Binary messages require protocol version 1");
+        send(COMPRESSOR.compress(protocolVersion, NewIO_Util.encodeValue(value, codec)), null, false);
+    }
+    // Always protocol version 0, for the connection handshake
+    void sendHandshakeLines(String... lines) {
+        send(NewIO_Util.encodeLines(lines), null, true);
+    }
+
+    // Data is still queued as usual while writes are held, but none of it is written until they are resumed
+    void holdWrites() {
+        synchronized (WRITE_QUEUE) {
+            isHeld = true;
+        }
+    }
+    void resumeWrites() {
+        synchronized (WRITE_QUEUE) {
+            isHeld = false;
+            if (!WRITE_QUEUE.isEmpty() && key != null && CHANNEL.isConnected())
+                try {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    loop.wakeup();
+                } catch (CancelledKeyException ignored) {
+                }
+        }
+    }
+
+    /*
+     * Closes once everything queued so far has been written, or once NewIO_Util.CLOSE_LINGER_MILLIS have passed,
+     * so that a final control frame is not discarded along with the rest of the queue by close
+     */
+    void closeAfterDrain() {
+        synchronized (WRITE_QUEUE) {
+            if (isClosing)
+                return;
+            flushCoalesceBuffer();
+            if (!isClosed() && !WRITE_QUEUE.isEmpty() && !isHeld && key != null && CHANNEL.isConnected())
+                try {
+                    // Only the final frames are of interest now, so nothing more is read
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    loop.wakeup();
+                    isClosing = true;
+                    FLUSH_SERVICE.schedule(this::close, NewIO_Util.CLOSE_LINGER_MILLIS, TimeUnit.MILLISECONDS);
+                    return;
+                } catch (CancelledKeyException ignored) {
+                }
+        }
+        close();
+    }
+
+    void sendFile(Path file) throws IOException {
+        requireStreams();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            sendStream(channel.size(), (position, length) -> {
+                // The peer expects every byte of every chunk, so a truncated file must be caught before its chunk is queued
+                if (channel.size() < position + length)
+                    throw new EOFException("File was truncated while being sent");
+                return new FileRegion(channel, position, length);
+            });
+        }
+    }
+    void sendStream(InputStream in, long length) throws IOException {
+        requireStreams();
+        if (length < 0)
+            throw new IllegalArgumentException("Negative stream length: " + length);
+        // Reads straight into the pooled chunks, without closing the stream
+        ReadableByteChannel source = Channels.newChannel(in);
+        sendStream(length, (position, chunkLength) -> {
+            ByteBuffer chunk = BufferPool.SHARED.acquireDirect(chunkLength);
+            chunk.limit(chunkLength);
+            try {
+                while (chunk.hasRemaining())
+                    if (source.read(chunk) < 0)
+                        throw new EOFException("Stream ended after " + (position + chunk.position()) + " of " + length + " bytes");
+            } catch (IOException | RuntimeException e) {
+                BufferPool.SHARED.releaseDirect(chunk);
+                throw e;
+            }
+            return chunk.flip();
+        });
+    }
+
+    // Streams only exist as frames, so they cannot be sent before protocol version 3
+    private void requireStreams() {
+        if (protocolVersion < NewIO_Util.STREAM_PROTOCOL_VERSION)
+            throw new IllegalStateException("Streams require protocol version " + NewIO_Util.STREAM_PROTOCOL_VERSION);
+    }
+
+    // Each chunk is read while the previous one is being written, so at most two chunks are ever queued
+    private void sendStream(long length, ChunkSource source) throws IOException {
+        synchronized (STREAM_LOCK) {
+            CompletableFuture<Void> previous = sendStreamFrame(NewIO_Util.encodeStreamStart(length), null);
+            boolean isSent = false;
+            try {
+                for (long position = 0; position < length; ) {
+                    int chunkLength = (int) Math.min(length - position, NewIO_Util.MAX_STREAM_CHUNK_LENGTH);
+                    Object chunk = source.read(position, chunkLength);
+                    CompletableFuture<Void> next = sendStreamFrame(NewIO_Util.encodeStreamDataHeader(chunkLength), chunk);
+                    NewIO_Util.awaitWrite(previous);
+                    previous = next;
+                    position += chunkLength;
+                }
+                NewIO_Util.awaitWrite(previous);
+                isSent = true;
+            } finally {
+                // Chunks which are already queued are still written (so their files must stay open until then), and the abort follows them
+                if (!isSent)
+                    sendStreamFrame(NewIO_Util.encodeControl(protocolVersion, MessageUtil.STREAM_ABORT), null).exceptionally(e -> null).join();
+            }
+        }
+    }
+
+    // Stream frames are paced by their sender instead, so like control messages they are never rejected or held back
+    private CompletableFuture<Void> sendStreamFrame(ByteBuffer header, Object chunk) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        List<CompletableFuture<Void>> completed;
+        boolean isRejected;
+        synchronized (WRITE_QUEUE) {
+            isRejected = isClosed();
+            if (!isRejected) {
+                enqueuedBytes += header.remaining() + (chunk == null ? 0 : remaining(chunk));
+                PENDING_FUTURES.add(new PendingFuture(enqueuedBytes, future));
+                if (enqueuedBytes - writtenBytes > highWatermark)
+                    isWritable = false;
+                // Anything held back by the flush policy was sent before the stream frame
+                flushCoalesceBuffer();
+                write(header);
+                if (chunk != null)
+                    write(chunk);
+            } else if (chunk != null)
+                recycle(chunk);
+            completed = takeCompletedFutures();
+        }
+        completed.forEach(completedFuture -> completedFuture.complete(null));
+        if (isRejected)
+            future.completeExceptionally(new IOException("Connection closed"));
+        return future;
+    }
+
+    boolean isWritable() {
+        synchronized (WRITE_QUEUE) {
+            return isWritable && !isClosed();
+        }
+    }
+    void setWatermarks(long lowWatermark, long highWatermark) {
+        synchronized (WRITE_QUEUE) {
+            this.highWatermark = Math.max(0, highWatermark);
+            this.lowWatermark = Math.min(Math.max(0, lowWatermark), this.highWatermark);
+            if (!isWritable && enqueuedBytes - writtenBytes <= this.lowWatermark)
+                isWritable = true;
+        }
+    }
+
+    void setFlushPolicy(int maxBufferedBytes, long maxDelayMicros) {
+        this.maxBufferedBytes = Math.max(0, maxBufferedBytes);
+        this.maxDelayMicros = Math.max(0, maxDelayMicros);
+        // Anything buffered under the old policy should not wait on the new one
+        if (maxDelayMicros <= 0)
+            flush();
+    }
+
+    void flush() {
+        List<CompletableFuture<Void>> completed;
+        synchronized (WRITE_QUEUE) {
+            flushCoalesceBuffer();
+            completed = takeCompletedFutures();
+        }
+        completed.forEach(future -> future.complete(null));
+    }
+
+    private boolean send(ByteBuffer buffer, CompletableFuture<Void> future, boolean isControl) {
+        return send(buffer, future, isControl, false, false);
+    }
+    /*
+     * Returns whether the buffer was queued
+     *
+     * Lines are accepted or rejected a whole message at a time, since applications may send a message over several
+     * calls: only lines which start a message are checked against the watermarks, and the rest of that message shares
+     * their outcome, so that the peer never receives part of a message (which would merge into the next one). Lines
+     * which cannot be encoded still reject the rest of their message.
+     */
+    private boolean send(ByteBuffer buffer, CompletableFuture<Void> future, boolean isControl, boolean isLines, boolean leavesMessageOpen) {
+        List<CompletableFuture<Void>> completed;
+        boolean isRejected, isShut;
+        synchronized (WRITE_QUEUE) {
+            boolean isAdmitted = isControl || (isLines && isMessageOpen ? !isOpenMessageRejected : isWritable);
+            isShut = isClosed() || isClosing;
+            isRejected = buffer == null || isShut || !isAdmitted;
+            // Sending no lines at all neither starts nor ends a message
+            if (isLines && (buffer == null || buffer.hasRemaining())) {
+                isMessageOpen = leavesMessageOpen;
+                isOpenMessageRejected = isRejected;
+            }
+            if (!isRejected) {
+                enqueuedBytes += buffer.remaining();
+                if (future != null)
+                    PENDING_FUTURES.add(new PendingFuture(enqueuedBytes, future));
+                if (enqueuedBytes - writtenBytes > highWatermark)
+                    isWritable = false;
+                coalesce(buffer, isControl);
+            }
+            completed = takeCompletedFutures();
+        }
+        completed.forEach(completedFuture -> completedFuture.complete(null));
+        if (isRejected && future != null) {
+            if (buffer == null)
+                future.completeExceptionally(new IllegalArgumentException("Messages cannot be encoded"));
+            else
+                future.completeExceptionally(isShut ? new IOException("Connection closed") : new IllegalStateException("Outbound queue is full"));
+        }
+        return !isRejected;
+    }
+
+    // Must hold the WRITE_QUEUE lock
+    private void coalesce(ByteBuffer buffer, boolean isControl) {
+        long delay = maxDelayMicros;
+        int maxBytes = maxBufferedBytes;
+        // Large writes skip the buffer entirely if nothing is waiting ahead of them
+        if (coalesceBuffer == null && (isControl || delay <= 0 || buffer.remaining() >= maxBytes)) {
+            write(buffer);
+            return;
+        }
+        if (coalesceBuffer == null)
+            coalesceBuffer = BufferPool.SHARED.acquireDirect(Math.max(INITIAL_COALESCE_BUFFER_SIZE, buffer.remaining()));
+        else if (coalesceBuffer.remaining() < buffer.remaining()) {
+            ByteBuffer larger = BufferPool.SHARED.acquireDirect(Math.max(2 * coalesceBuffer.capacity(), coalesceBuffer.position() + buffer.remaining()));
+            larger.put(coalesceBuffer.flip());
+            BufferPool.SHARED.releaseDirect(coalesceBuffer);
+            coalesceBuffer = larger;
+        }
+        coalesceBuffer.put(buffer);
+
+        if (isControl || delay <= 0 || coalesceBuffer.position() >= maxBytes)
+            flushCoalesceBuffer();
+        else if (!isFlushScheduled) {
+            isFlushScheduled = true;
+            FLUSH_SERVICE.schedule(this::flush, delay, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    // Must hold the WRITE_QUEUE lock
+    private void flushCoalesceBuffer() {
+        isFlushScheduled = false;
+        if (coalesceBuffer == null)
+            return;
+        ByteBuffer buffer = coalesceBuffer.flip();
+        coalesceBuffer = null;
+        write(buffer);
+    }
+
+    // Must hold the WRITE_QUEUE lock, and the returned futures must be completed after releasing it
+    private List<CompletableFuture<Void>> takeCompletedFutures() {
+        if (!isWritable && enqueuedBytes - writtenBytes <= lowWatermark)
+            isWritable = true;
+        if (PENDING_FUTURES.isEmpty() || PENDING_FUTURES.peek().END_OFFSET > writtenBytes)
+            return Collections.emptyList();
+        List<CompletableFuture<Void>> completed = new ArrayList<>();
+        while (!PENDING_FUTURES.isEmpty() && PENDING_FUTURES.peek().END_OFFSET <= writtenBytes)
+            completed.add(PENDING_FUTURES.poll().FUTURE);
+        return completed;
+    }
+
+    // Must hold the WRITE_QUEUE lock
+    private void write(Object pending) {
+        if (isClosed()) {
+            recycle(pending);
+            return;
+        }
+        // Try to write immediately if nothing else is waiting to be written
+        boolean isConnected = CHANNEL.isConnected();
+        if (WRITE_QUEUE.isEmpty() && isConnected && !isHeld) {
+            try {
+                writtenBytes += transfer(pending);
+            } catch (IOException e) {
+                recycle(pending);
+                close();
+                return;
+            }
+            if (remaining(pending) == 0) {
+                recycle(pending);
+                return;
+            }
+        }
+        WRITE_QUEUE.add(pending);
+        // Let the selector thread finish the write once the socket is writable again
+        if (key != null && isConnected && !isHeld)
+            try {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                loop.wakeup();
+            } catch (CancelledKeyException ignored) {
+            }
+    }
+
+    // Must hold the WRITE_QUEUE lock
+    private long transfer(Object pending) throws IOException {
+        if (pending instanceof FileRegion)
+            return ((FileRegion) pending).transferTo(CHANNEL);
+        return CHANNEL.write((ByteBuffer) pending);
+    }
+    private static long remaining(Object pending) {
+        if (pending instanceof FileRegion)
+            return ((FileRegion) pending).END - ((FileRegion) pending).position;
+        return ((ByteBuffer) pending).remaining();
+    }
+    // Must hold the WRITE_QUEUE lock
+    private static void recycle(Object pending) {
+        if (pending instanceof ByteBuffer && ((ByteBuffer) pending).isDirect())
+            BufferPool.SHARED.releaseDirect((ByteBuffer) pending);
+    }
+
+    // Only called by the selector thread
+    void handleRead() {
+        READ_LOCK.lock();
+        try {
+            if (readBuffer == null)
+                readBuffer = BufferPool.SHARED.acquireDirect(INITIAL_READ_BUFFER_SIZE);
+            int read;
+            try {
+                read = CHANNEL.read(readBuffer);
+            } catch (IOException e) {
+                read = -1;
+            }
+            if (read < 0) {
+                close();
+                releaseReadBuffer();
+                return;
+            }
+
+            readBuffer.flip();
+            try {
+                // The protocol version is checked for every unit, since the handshake can switch it mid-buffer
+                while (!isClosed() && readNext())
+                    ;
+                // Make sure a full line or frame can always fit into the buffer
+                long required = requiredBufferSize();
+                if (isClosed() || !readBuffer.hasRemaining())
+                    releaseReadBuffer();
+                else if (readBuffer.capacity() < required) {
+                    if (required > Integer.MAX_VALUE)
+                        throw new ProtocolException("Frame too long to buffer");
+                    ByteBuffer larger = BufferPool.SHARED.acquireDirect((int) required);
+                    larger.put(readBuffer);
+                    releaseReadBuffer();
+                    readBuffer = larger;
+                } else
+                    readBuffer.compact();
+            } catch (IOException e) { // malformed line or frame
+                close();
+                releaseReadBuffer();
+            }
+        } finally {
+            READ_LOCK.unlock();
+        }
+        // A concurrent close may have given up on the lock after the buffer was kept above
+        if (isClosed())
+            tryReleaseReadBuffer();
+    }
+
+    // Never blocks, since close may be called while holding the WRITE_QUEUE lock, which the selector thread takes while reading
+    private void tryReleaseReadBuffer() {
+        if (READ_LOCK.tryLock())
+            try {
+                releaseReadBuffer();
+            } finally {
+                READ_LOCK.unlock();
+            }
+    }
+    // Must hold the READ_LOCK
+    private void releaseReadBuffer() {
+        if (readBuffer != null)
+            BufferPool.SHARED.releaseDirect(readBuffer);
+        readBuffer = null;
+    }
+
+    // true iff a full line or frame was read
+    private boolean readNext() throws IOException {
+        if (protocolVersion == 0) {
+            if (NewIO_Util.peekLineLength(readBuffer) < 0)
+                return false;
+            String line = NewIO_Util.readUTF(readBuffer);
+            frameReceived(MessageUtil.fromString(line), line);
+            return true;
+        }
+
+        // Stream data is handed over as it arrives, rather than once its whole frame is buffered
+        if (streamDataRemaining > 0)
+            return readStreamData();
+        if (readBuffer.remaining() >= NewIO_Util.FRAME_HEADER_LENGTH
+                && readBuffer.get(readBuffer.position()) == MessageUtil.STREAM_DATA.toFrameType()) {
+            readBuffer.get();
+            streamDataRemaining = readBuffer.getInt();
+            if (streamDataRemaining < 0)
+                throw new ProtocolException("Negative frame length");
+            return true;
+        }
+
+        int length = NewIO_Util.peekFrameLength(readBuffer, MAX_FRAME_LENGTH);
+        if (length < 0)
+            return false;
+        MessageUtil type = MessageUtil.fromFrameType(readBuffer.get());
+        if (type == null)
+            throw new ProtocolException("Unknown frame type");
+        readBuffer.getInt();
+        if (type == MessageUtil.STREAM_START) {
+            if (length != Long.BYTES)
+                throw new ProtocolException("Malformed stream start frame");
+            long streamLength = readBuffer.getLong();
+            StreamReceiver<?> streams = streamFrameReceived();
+            if (streams != null)
+                streams.start(streamLength);
+            return true;
+        }
+        if (type == MessageUtil.STREAM_ABORT) {
+            readBuffer.position(readBuffer.position() + length);
+            StreamReceiver<?> streams = streamFrameReceived();
+            if (streams != null)
+                streams.abort();
+            return true;
+        }
+        // Heartbeats carry no payload yet, so any payload is skipped without being decoded
+        if (type == MessageUtil.PING || type == MessageUtil.PONG) {
+            readBuffer.position(readBuffer.position() + length);
+            if (type == MessageUtil.PING)
+                HEARTBEAT.pingReceived();
+            else
+                HEARTBEAT.pongReceived();
+            return true;
+        }
+        if (type == MessageUtil.COMPRESSED) {
+            ByteBuffer payload = readBuffer.slice();
+            payload.limit(length);
+            readBuffer.position(readBuffer.position() + length);
+            ByteBuffer frames = COMPRESSOR.decompress(payload);
+            try {
+                readCompressedFrames(frames);
+            } finally {
+                BufferPool.SHARED.releaseArray(frames.array());
+            }
+            return true;
+        }
+        dispatchFrame(type, readBuffer, length);
+        return true;
+    }
+
+    // false iff no bytes of the current stream data frame have arrived yet
+    private boolean readStreamData() throws ProtocolException {
+        int length = Math.min(streamDataRemaining, readBuffer.remaining());
+        if (length == 0)
+            return false;
+        ByteBuffer part = readBuffer.slice();
+        part.limit(length);
+        readBuffer.position(readBuffer.position() + length);
+        streamDataRemaining -= length;
+        StreamReceiver<?> streams = streamFrameReceived();
+        if (streams != null)
+            streams.data(part);
+        return true;
+    }
+
+    // Compressed frames only ever hold whole messages, so they may only contain message frames
+    private void readCompressedFrames(ByteBuffer frames) throws IOException {
+        while (frames.hasRemaining() && !isClosed()) {
+            if (frames.remaining() < NewIO_Util.FRAME_HEADER_LENGTH)
+                throw new ProtocolException("Truncated frame in compressed frame");
+            MessageUtil type = MessageUtil.fromFrameType(frames.get());
+            int length = frames.getInt();
+            if (type != MessageUtil.NONE && type != MessageUtil.END_MESSAGE && type != MessageUtil.BINARY_MESSAGE)
+                throw new ProtocolException("Unexpected frame type in compressed frame");
+            if (length < 0 || length > frames.remaining())
+                throw new ProtocolException("Truncated frame in compressed frame");
+            dispatchFrame(type, frames, length);
+        }
+    }
+
+    // Consumes the payload of the given length from the buffer
+    private void dispatchFrame(MessageUtil type, ByteBuffer buffer, int length) {
+        if (type == MessageUtil.BINARY_MESSAGE) {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            binaryFrameReceived(bytes);
+            return;
+        }
+        String payload;
+        if (buffer.hasArray()) {
+            payload = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            // Direct buffers can only be decoded from a copy
+            byte[] bytes = BufferPool.SHARED.acquireArray(length);
+            buffer.get(bytes, 0, length);
+            payload = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            BufferPool.SHARED.releaseArray(bytes);
+        }
+        frameReceived(type, type == MessageUtil.NONE ? payload : type.toString());
+    }
+
+    // Any frame header left in the buffer has already been checked by peekFrameLength, but the sum may still overflow an int
+    private long requiredBufferSize() {
+        if (protocolVersion == 0)
+            return 2 + (readBuffer.remaining() >= 2 ? readBuffer.getShort(readBuffer.position()) & 0xFFFF : 0);
+        if (readBuffer.remaining() < NewIO_Util.FRAME_HEADER_LENGTH)
+            return NewIO_Util.FRAME_HEADER_LENGTH;
+        return (long) NewIO_Util.FRAME_HEADER_LENGTH + readBuffer.getInt(readBuffer.position() + 1);
+    }
+
+    // Only called by the selector thread
+    void handleWrite() {
+        List<CompletableFuture<Void>> completed;
+        boolean isDrained = false;
+        synchronized (WRITE_QUEUE) {
+            try {
+                while (!WRITE_QUEUE.isEmpty() && !isHeld) {
+                    Object pending = WRITE_QUEUE.peek();
+                    writtenBytes += transfer(pending);
+                    if (remaining(pending) > 0)
+                        break;
+                    recycle(WRITE_QUEUE.poll());
+                }
+                if (isClosing && WRITE_QUEUE.isEmpty())
+                    isDrained = true;
+                else if (WRITE_QUEUE.isEmpty() || isHeld)
+                    key.interestOps(SelectionKey.OP_READ);
+            } catch (IOException e) {
+                close();
+            } catch (CancelledKeyException ignored) {
+            }
+            completed = takeCompletedFutures();
+        }
+        completed.forEach(future -> future.complete(null));
+        if (isDrained)
+            close();
+    }
+
+    void close() {
+        if (!IS_CLOSED.compareAndSet(false, true))
+            return;
+        HEARTBEAT.stop();
+        COMPRESSOR.end();
+        if (key != null)
+            key.cancel();
+        wasConnected = CHANNEL.isConnected();
+        NewIO_Util.closeChannel(CHANNEL);
+        List<PendingFuture> failed;
+        synchronized (WRITE_QUEUE) {
+            for (Object pending : WRITE_QUEUE)
+                recycle(pending);
+            WRITE_QUEUE.clear();
+            if (coalesceBuffer != null)
+                recycle(coalesceBuffer);
+            coalesceBuffer = null;
+            failed = new ArrayList<>(PENDING_FUTURES);
+            PENDING_FUTURES.clear();
+        }
+        // The selector thread releases the read buffer itself if it is (or is about to be) reading
+        if (!READ_LOCK.isHeldByCurrentThread())
+            tryReleaseReadBuffer();
+        for (PendingFuture pending : failed)
+            pending.FUTURE.completeExceptionally(new IOException("Connection closed"));
+        connectionClosed();
+    }
+}
@@ -0,0 +1,99 @@
+package me.utk.networking.nio;
+
+import me.utk.networking.MessageUtil;
+import me.utk.networking.PartReceiver;
+
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+class NewIO_MessageBuilder implements me.utk.networking.MessageBuilder {
+    // Filled by a selector thread while being drained by application threads
+    private final Queue<String[]> MESSAGES = new ConcurrentLinkedQueue<>();
+    private final ArrayList<String> LINES = new ArrayList<>();
+    private final Queue<byte[]> BINARY_MESSAGES = new ConcurrentLinkedQueue<>();
+
+    private static final String[] CAST_ARRAY = new String[0];
+
+    // Returns true iff the message was delivered to listeners, in which case it is not queued
+    private final Predicate<String[]> DISPATCHER;
+    // Receives the messages which its listener takes part by part, which are then never held in LINES
+    private final PartReceiver<?> PARTS;
+    private boolean isPassingParts = false;
+
+    NewIO_MessageBuilder() {
+        this(null, null);
+    }
+    NewIO_MessageBuilder(Predicate<String[]> dispatcher, PartReceiver<?> parts) {
+        DISPATCHER = dispatcher;
+        PARTS = parts;
+    }
+
+    // Protocol version 0, where control lines are sent in-band
+    public MessageUtil addLine(String line) {
+        return addFrame(MessageUtil.fromString(line), line);
+    }
+
+    // Protocol version 1+, where the type of every frame is sent out-of-band
+    public MessageUtil addFrame(MessageUtil type, String payload) {
+        if (type == MessageUtil.NONE) {
+            // Only the first part of a message decides where the rest of it goes
+            if (LINES.isEmpty() && !isPassingParts && PARTS != null)
+                isPassingParts = PARTS.start();
+            if (isPassingParts)
+                PARTS.part(payload);
+            else
+                LINES.add(payload);
+        } else if (isPassingParts) {
+            if (type == MessageUtil.END_MESSAGE)
+                PARTS.part("" + MessageUtil.END_MESSAGE);
+            PARTS.end();
+            isPassingParts = false;
+        } else if (!LINES.isEmpty()) {
+            if (type == MessageUtil.END_MESSAGE)
+                LINES.add("" + MessageUtil.END_MESSAGE);
+            String[] message = LINES.toArray(CAST_ARRAY);
+            LINES.clear();
+            if (DISPATCHER == null || !DISPATCHER.test(message))
+                MESSAGES.add(message);
+        }
+        return type;
+    }
+
+    // Binary messages are always complete, and do not interrupt any partially received message
+    public MessageUtil addBinaryMessage(byte[] payload) {
+        BINARY_MESSAGES.add(payload);
+        return MessageUtil.BINARY_MESSAGE;
+    }
+
+    @Override
+    public boolean hasMoreMessages() {
+        return !MESSAGES.isEmpty();
+    }
+    @Override
+    public String[] nextMessage() {
+        return MESSAGES.remove();
+    }
+    @Override
+    public int drainTo(Consumer<String[]> action, int maxMessages) {
+        // Messages are removed one at a time, so none are left undelivered if the action throws
+        int drained = 0;
+        String[] message;
+        while (drained < maxMessages && (message = MESSAGES.poll()) != null) {
+            drained++;
+            action.accept(message);
+        }
+        return drained;
+    }
+
+    @Override
+    public boolean hasMoreBinaryMessages() {
+        return !BINARY_MESSAGES.isEmpty();
+    }
+    @Override
+    public byte[] nextBinaryMessage() {
+        return BINARY_MESSAGES.remove();
+    }
+}
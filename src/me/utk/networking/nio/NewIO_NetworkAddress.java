@@ -0,0 +1,55 @@
+package me.utk.networking.nio;
+
+import me.utk.networking.NetworkAddress;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
+
+// @inheritDoc
+class NewIO_NetworkAddress implements NetworkAddress {
+    private final InetAddress ADDRESS;
+    private final int PORT;
+
+    /**
+     * Constructs a new {@code NetworkAddress} corresponding to the specified {@link ServerSocketChannel}.
+     * <p>
+     * The default implementation prioritizes {@link InetAddress#getLocalHost()} over
+     * the channel's bound address for defining the server's IP address. More
+     * details can be found with the {@link #getAddress()} method.
+     *
+     * @param serverChannel The bound {@code ServerSocketChannel} whose IP address to identify
+     * @throws IOException If the channel's bound address cannot be determined
+     * @see #getAddress()
+     * @see InetAddress#getLocalHost()
+     * @see ServerSocketChannel#getLocalAddress()
+     */
+    NewIO_NetworkAddress(ServerSocketChannel serverChannel) throws IOException {
+        InetSocketAddress local = (InetSocketAddress) serverChannel.getLocalAddress();
+        InetAddress temp;
+        try {
+            temp = InetAddress.getLocalHost();
+        } catch (UnknownHostException ignored) {
+            temp = local.getAddress();
+        }
+        ADDRESS = temp;
+        PORT = local.getPort();
+    }
+
+    @Override // @inheritDoc
+    public InetAddress getAddress() {
+        return ADDRESS;
+    }
+
+    @Override // @inheritDoc
+    public int getPort() {
+        return PORT;
+    }
+
+    @Override // @inheritDoc
+    public String toString() {
+        return ADDRESS + ":" + PORT;
+    }
+}
@@ -0,0 +1,161 @@
+package me.utk.networking.nio;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single thread multiplexing any number of {@link NewIO_Connection}s via one {@link Selector}.
+ * <p>
+ * Reading from an idle connection costs nothing: the thread only ever
+ * touches connections which the selector reports as ready.
+ * <p>
+ * Any failure while servicing a connection only closes that connection, so that
+ * a single misbehaving peer can never stall every other connection on the thread.
+ * <p>
+ * A server's {@link NewIO_Acceptor} may be registered with one of its loops as well,
+ * in which case incoming connections are accepted on that loop's thread.
+ */
+class NewIO_SelectorLoop {
+    // ---------------------------------------- PRIVATE INSTANCE VARIABLES ---------------------------------------- //
+
+    private static final long LINGER_SELECT_MILLIS = 10;
+
+    private final Selector SELECTOR;
+    private final Queue<NewIO_Connection> PENDING_REGISTRATIONS = new ConcurrentLinkedQueue<>();
+    private final Queue<NewIO_Acceptor> PENDING_ACCEPTORS = new ConcurrentLinkedQueue<>();
+    private volatile boolean loopTerminationCondition = false;
+    private volatile long terminationNanos = 0;
+
+    // ---------------------------------------- PACKAGE-PRIVATE CONSTRUCTOR ---------------------------------------- //
+
+    NewIO_SelectorLoop(String name, boolean daemon) throws IOException {
+        SELECTOR = Selector.open();
+        Thread thread = new Thread(this::run, name);
+        thread.setDaemon(daemon);
+        thread.start();
+    }
+
+    // ---------------------------------------- PRIVATE HELPER METHODS ---------------------------------------- //
+
+    private void run() {
+        // Loop until loop is terminated, and no connection is still writing its final frames
+        while (!loopTerminationCondition || isLingering()) {
+            try {
+                // Nothing wakes the selector as lingering connections close, so they are checked on regularly
+                if (loopTerminationCondition)
+                    SELECTOR.select(LINGER_SELECT_MILLIS);
+                else
+                    SELECTOR.select();
+            } catch (IOException e) {
+                break;
+            }
+            registerPendingAcceptors();
+            registerPendingConnections();
+
+            Iterator<SelectionKey> it = SELECTOR.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+                if (key.attachment() instanceof NewIO_Acceptor) {
+                    if (key.isValid() && key.isAcceptable())
+                        ((NewIO_Acceptor) key.attachment()).handleAccept();
+                    continue;
+                }
+                NewIO_Connection connection = (NewIO_Connection) key.attachment();
+                try {
+                    if (key.isConnectable())
+                        connection.handleConnect();
+                    if (key.isValid() && key.isReadable())
+                        connection.handleRead();
+                    if (key.isValid() && key.isWritable())
+                        connection.handleWrite();
+                } catch (CancelledKeyException e) {
+                    connection.close();
+                } catch (RuntimeException | OutOfMemoryError e) {
+                    e.printStackTrace();
+                    connection.close();
+                }
+            }
+        }
+
+        // Close any connections still owned by this loop (acceptors are closed along with their servers)
+        for (SelectionKey key : new ArrayList<>(SELECTOR.keys()))
+            if (key.attachment() instanceof NewIO_Connection)
+                ((NewIO_Connection) key.attachment()).close();
+        PENDING_ACCEPTORS.clear();
+        registerPendingConnections();
+        try {
+            SELECTOR.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Whether any connection is still writing its final frames, and may still do so before the loop closes
+    private boolean isLingering() {
+        if (System.nanoTime() - terminationNanos >= TimeUnit.MILLISECONDS.toNanos(NewIO_Util.CLOSE_LINGER_MILLIS))
+            return false;
+        for (SelectionKey key : SELECTOR.keys())
+            if (key.isValid() && key.attachment() instanceof NewIO_Connection)
+                return true;
+        return false;
+    }
+
+    private void registerPendingConnections() {
+        NewIO_Connection connection;
+        while ((connection = PENDING_REGISTRATIONS.poll()) != null) {
+            if (loopTerminationCondition) {
+                connection.close();
+                continue;
+            }
+            try {
+                // Channels which are still connecting only become readable once they are connected
+                int ops = connection.getChannel().isConnectionPending() ? SelectionKey.OP_CONNECT : SelectionKey.OP_READ;
+                SelectionKey key = connection.getChannel().register(SELECTOR, ops, connection);
+                connection.registered(this, key);
+            } catch (ClosedChannelException e) {
+                connection.close();
+            }
+        }
+    }
+
+    private void registerPendingAcceptors() {
+        NewIO_Acceptor acceptor;
+        while ((acceptor = PENDING_ACCEPTORS.poll()) != null)
+            try {
+                acceptor.register(SELECTOR);
+            } catch (ClosedChannelException ignored) {
+                // The server was closed before its acceptor was registered
+            }
+    }
+
+    // ---------------------------------------- PACKAGE-PRIVATE METHODS ---------------------------------------- //
+
+    void register(NewIO_Connection connection) {
+        PENDING_REGISTRATIONS.add(connection);
+        SELECTOR.wakeup();
+    }
+
+    void register(NewIO_Acceptor acceptor) {
+        PENDING_ACCEPTORS.add(acceptor);
+        SELECTOR.wakeup();
+    }
+
+    void wakeup() {
+        SELECTOR.wakeup();
+    }
+
+    // Connections closing after draining their queues are given until their linger passes
+    void close() {
+        terminationNanos = System.nanoTime();
+        loopTerminationCondition = true;
+        SELECTOR.wakeup();
+    }
+}
@@ -1,15 +1,122 @@
 package me.utk.networking.nio;
 
 import me.utk.networking.ServerImplementation;
+import me.utk.networking.ServerOptions;
 
+/**
+ * A utility class which provides a default implementation of {@link ServerImplementation}
+ * using Java's New IO API.
+ * <p>
+ * This class provides a default implementation of {@code ServerImplementation}, which can be
+ * created and accessed via the {@code defaultImplementation} methods provided by this class.
+ * <p>
+ * The implementation-specific details of this default implementation can be found
+ * in the documentation of the {@link #defaultImplementation(int, int)} method.
+ *
+ * @author Utkarsh Priyam
+ * @version December 8, 2020
+ * @see #defaultImplementation()
+ * @see #defaultImplementation(int)
+ * @see #defaultImplementation(int, int)
+ * @see #defaultImplementation(int, ServerOptions)
+ * @see #defaultImplementation(int, int, ServerOptions)
+ * @see ServerOptions
+ * @see ServerImplementation
+ */
 public abstract class NewIO_Server {
     private NewIO_Server() {
     }
 
+    /**
+     * Creates a new {@link ServerImplementation} with a randomly generated connection port.
+     * <p>
+     * The implementation-specific details of default implementation can be found
+     * in the documentation of the {@link #defaultImplementation(int, int)} method.
+     *
+     * @return The newly generated {@code ServerImplementation}
+     * @throws IllegalStateException If the {@code ServerImplementation} cannot be created
+     * @see #defaultImplementation(int, int)
+     * @see ServerImplementation
+     */
     public static ServerImplementation defaultImplementation() {
         return defaultImplementation(0);
     }
+    /**
+     * Creates a new {@link ServerImplementation} with the specified connection port
+     * and one selector thread per available processor.
+     * <p>
+     * The implementation-specific details of default implementation can be found
+     * in the documentation of the {@link #defaultImplementation(int, int)} method.
+     *
+     * @param port The port to create the server on (0 creates on a random port)
+     * @return The newly generated {@code ServerImplementation}
+     * @throws IllegalStateException If the {@code ServerImplementation} cannot be created
+     * @see #defaultImplementation(int, int)
+     * @see ServerImplementation
+     */
     public static ServerImplementation defaultImplementation(int port) {
-        return null;
+        return defaultImplementation(port, Runtime.getRuntime().availableProcessors());
+    }
+    /**
+     * Creates a new {@link ServerImplementation} with the specified connection port and {@link ServerOptions},
+     * and one selector thread per available processor.
+     * <p>
+     * The implementation-specific details of default implementation can be found
+     * in the documentation of the {@link #defaultImplementation(int, int, ServerOptions)} method.
+     *
+     * @param port    The port to create the server on (0 creates on a random port)
+     * @param options The options to create the server with
+     * @return The newly generated {@code ServerImplementation}
+     * @throws IllegalStateException If the {@code ServerImplementation} cannot be created
+     * @see #defaultImplementation(int, int, ServerOptions)
+     * @see ServerImplementation
+     */
+    public static ServerImplementation defaultImplementation(int port, ServerOptions options) {
+        return defaultImplementation(port, Runtime.getRuntime().availableProcessors(), options);
+    }
+    /**
+     * Creates a new {@link ServerImplementation} with the specified connection port
+     * and the specified number of selector threads.
+     * <p>
+     * The default implementation of the {@code ServerImplementation} meets all of the guarantees
+     * and conditions required by the {@code ServerImplementation} definition.
+     * <p>
+     * Of primary importance, creating a new default {@code ServerImplementation} launches
+     * the specified number of selector threads which verify and communicate with clients,
+     * the first of which also accepts incoming connections, so no thread is dedicated to accepting.
+     * Each accepted client is assigned to a single selector thread, and messages are read from it
+     * only when the selector reports that it has data available. Idle connections are timed out
+     * by a single timer thread shared by every server and client.
+     * The selector threads can only be stopped via the {@link ServerImplementation#closeServer()} method.
+     *
+     * @param port            The port to create the server on (0 creates on a random port)
+     * @param selectorThreads The number of selector threads to service clients with (at least 1)
+     * @return The newly generated {@code ServerImplementation}
+     * @throws IllegalStateException If the {@code ServerImplementation} cannot be created
+     * @see ServerImplementation
+     */
+    public static ServerImplementation defaultImplementation(int port, int selectorThreads) {
+        return defaultImplementation(port, selectorThreads, ServerOptions.DEFAULT);
+    }
+    /**
+     * Creates a new {@link ServerImplementation} with the specified connection port, the specified
+     * number of selector threads, and the specified {@link ServerOptions}.
+     * <p>
+     * This implementation differs from the {@link #defaultImplementation(int, int)} implementation only
+     * in the socket options and idle timeout of its connections, as specified by the given
+     * {@code ServerOptions}. Since clients are never polled, the poll interval and poll timeout
+     * of the {@code ServerOptions} are ignored.
+     *
+     * @param port            The port to create the server on (0 creates on a random port)
+     * @param selectorThreads The number of selector threads to service clients with (at least 1)
+     * @param options         The options to create the server with
+     * @return The newly generated {@code ServerImplementation}
+     * @throws IllegalStateException If the {@code ServerImplementation} cannot be created
+     * @see #defaultImplementation(int, int)
+     * @see ServerOptions
+     * @see ServerImplementation
+     */
+    public static ServerImplementation defaultImplementation(int port, int selectorThreads, ServerOptions options) {
+        return new NewIO_ServerImplementation(port, selectorThreads, options);
     }
 }
@@ -0,0 +1,435 @@
+package me.utk.networking.nio;
+
+import me.utk.networking.CompressionCounters;
+import me.utk.networking.Compressor;
+import me.utk.networking.CompressionStats;
+import me.utk.networking.ConnectionListener;
+import me.utk.networking.ConnectionRegistry;
+import me.utk.networking.MessageListener;
+import me.utk.networking.MessagePartListener;
+import me.utk.networking.MessageUtil;
+import me.utk.networking.ServerImplementation;
+import me.utk.networking.ServerOptions;
+import me.utk.networking.ServerSideClient;
+import me.utk.networking.StreamListener;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+class NewIO_ServerImplementation implements ServerImplementation {
+    // ---------------------------------------- PRIVATE INSTANCE VARIABLES ---------------------------------------- //
+
+    private static final long DEFAULT_HANDSHAKE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(300); // 5 mins
+
+    private final ServerOptions OPTIONS;
+    private final long CONNECTION_TIMEOUT_NANOS;
+
+    private final ServerSocketChannel SERVER_CHANNEL;
+    private final NewIO_SelectorLoop[] SELECTOR_LOOPS;
+    private final NewIO_Acceptor ACCEPTOR; // registered with the first selector loop
+    private int nextSelectorLoop = 0; // only used by the first selector loop
+
+    private final Set<NewIO_ServerSideClient> ATTEMPTING_CONNECTIONS = ConcurrentHashMap.newKeySet();
+    private final ConnectionRegistry<NewIO_ServerSideClient> VERIFIED_CONNECTIONS = new ConnectionRegistry<>();
+    private final AtomicLong NEXT_CONNECTION_ID = new AtomicLong();
+
+    private volatile boolean isAcceptingAnyConnections = false; // new connections are tracked by the acceptor
+
+    private volatile String connectionPasscode = ""; // default is no passcode
+    private volatile long handshakeTimeoutNanos = DEFAULT_HANDSHAKE_TIMEOUT_NANOS;
+    private volatile int maxBufferedBytes = 0;
+    private volatile long maxFlushDelayMicros = 0;
+    private volatile int lowWatermark = 512 * 1024, highWatermark = 1024 * 1024;
+    private volatile int heartbeatIntervalMillis = 0, maxMissedPongs = 0; // heartbeats are disabled by default
+    private volatile int minCompressedBytes = 0, compressionLevel = 0; // compression is disabled by default
+    private final CompressionCounters COMPRESSION_STATS = new CompressionCounters();
+    private final Compressor BROADCAST_COMPRESSOR;
+
+    private final List<MessageListener<ServerSideClient>> MESSAGE_LISTENERS = new CopyOnWriteArrayList<>();
+    private final List<ConnectionListener<ServerSideClient>> CONNECTION_LISTENERS = new CopyOnWriteArrayList<>();
+    private volatile StreamListener<ServerSideClient> streamListener = null;
+    private volatile MessagePartListener<ServerSideClient> messagePartListener = null;
+
+    private final NewIO_NetworkAddress ADDRESS;
+
+    // ---------------------------------------- PACKAGE-PRIVATE CONSTRUCTOR ---------------------------------------- //
+
+    NewIO_ServerImplementation(int port, int selectorThreads, ServerOptions options) {
+        OPTIONS = options;
+        BROADCAST_COMPRESSOR = new Compressor(COMPRESSION_STATS, options.getMaxFrameLength());
+        CONNECTION_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(options.getIdleTimeoutMillis());
+
+        /*
+         * Create and bind new ServerSocketChannel during initialization, along with one
+         * selector loop per requested thread for servicing the accepted connections, and
+         * an acceptor for accepting incoming connections on the first selector loop
+         *
+         * The receive buffer size is set before binding, so that accepted channels inherit it from the start
+         */
+        try {
+            SERVER_CHANNEL = ServerSocketChannel.open();
+            if (options.getReceiveBufferSize() > 0)
+                SERVER_CHANNEL.setOption(StandardSocketOptions.SO_RCVBUF, options.getReceiveBufferSize());
+            SERVER_CHANNEL.bind(new InetSocketAddress(port), options.getBacklog());
+            ADDRESS = new NewIO_NetworkAddress(SERVER_CHANNEL);
+
+            SELECTOR_LOOPS = new NewIO_SelectorLoop[Math.max(1, selectorThreads)];
+            for (int i = 0; i < SELECTOR_LOOPS.length; i++)
+                SELECTOR_LOOPS[i] = new NewIO_SelectorLoop("NewIO_Server-" + ADDRESS.getPort() + "-selector-" + i, false);
+            ACCEPTOR = new NewIO_Acceptor(SERVER_CHANNEL, this::acceptConnection);
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new IllegalStateException("Unable to initialize ServerImplementation for Server class");
+        }
+
+        /*
+         * Incoming connections are accepted by the first selector loop, without a thread of their own, and
+         * handed off to every selector loop in turn. The acceptor only selects incoming connections while
+         * new connections are being accepted, so they otherwise wait in the backlog.
+         */
+        SELECTOR_LOOPS[0].register(ACCEPTOR);
+    }
+
+    // ---------------------------------------- PACKAGE-PRIVATE CALLBACKS ---------------------------------------- //
+
+    /**
+     * Verifies the passcode sent by the given attempting connection, moving it to the verified connections
+     * if the passcode is correct, and closing it otherwise, so that each connection only ever gets a single guess
+     */
+    void verifyConnection(NewIO_ServerSideClient client, String passcode) {
+        // Hold the first passcode until connections are being verified again
+        if (!isAcceptingAnyConnections) {
+            if (client.getPendingPasscode() == null)
+                client.setPendingPasscode(passcode);
+            return;
+        }
+        client.setPendingPasscode(null);
+        if (!connectionPasscode.isEmpty() && !connectionPasscode.equalsIgnoreCase(passcode)) {
+            client.close();
+            return;
+        }
+        // Only one thread may move the client over
+        if (!ATTEMPTING_CONNECTIONS.remove(client))
+            return;
+        client.markVerified();
+        client.scheduleDeadline(CONNECTION_TIMEOUT_NANOS);
+        // The handshake lines are queued ahead of any broadcast, but only written once the client is registered,
+        // so that the client is visible to the server as soon as it is confirmed
+        client.holdWrites();
+        // Legacy clients never announce a protocol version, so they stay on version 0
+        int announcedVersion = client.getAnnouncedProtocolVersion();
+        if (announcedVersion < 0)
+            client.sendHandshakeLines("" + MessageUtil.CONNECTION_CONFIRMATION);
+        else {
+            int protocolVersion = Math.min(announcedVersion, NewIO_Util.PROTOCOL_VERSION);
+            client.sendHandshakeLines(NewIO_Util.protocolLine(protocolVersion), "" + MessageUtil.CONNECTION_CONFIRMATION);
+            client.setProtocolVersion(protocolVersion);
+        }
+        VERIFIED_CONNECTIONS.register(client);
+        client.resumeWrites();
+        // Applied after the client is visible, so that a concurrent policy change cannot be missed
+        client.setFlushPolicy(maxBufferedBytes, maxFlushDelayMicros);
+        client.setWatermarks(lowWatermark, highWatermark);
+        client.setHeartbeatPolicy(heartbeatIntervalMillis, maxMissedPongs);
+        client.setCompressionPolicy(minCompressedBytes, compressionLevel);
+        NewIO_Util.notifyListeners(CONNECTION_LISTENERS, listener -> listener.onConnect(client));
+    }
+
+    void connectionClosed(NewIO_ServerSideClient client) {
+        client.cancelDeadline();
+        ATTEMPTING_CONNECTIONS.remove(client);
+        if (VERIFIED_CONNECTIONS.unregister(client)) {
+            NewIO_Util.notifyListeners(CONNECTION_LISTENERS, listener -> listener.onDisconnect(client));
+            client.notifyDisconnected();
+        }
+    }
+
+    /**
+     * Closes the given client if it missed the handshake deadline or has not sent anything for the idle timeout,
+     * and otherwise pushes its deadline back to when it could next be missed
+     * <p>
+     * Receiving data only updates the client's last activity time, rather than rescheduling
+     * its deadline every time, so idle deadlines are only ever pushed back here.
+     */
+    void deadlineExpired(NewIO_ServerSideClient client) {
+        if (client.isClosed())
+            return;
+        long now = System.nanoTime();
+        if (!client.isVerified()) {
+            long remaining = handshakeTimeoutNanos - (now - client.getAcceptTime());
+            // Pending connections only time out while connections are being verified
+            if (remaining > 0)
+                client.scheduleDeadline(remaining);
+            else if (!isAcceptingAnyConnections)
+                client.scheduleDeadline(TimeUnit.SECONDS.toNanos(1));
+            else if (ATTEMPTING_CONNECTIONS.remove(client)) // otherwise, the client is concurrently being verified
+                client.close();
+            return;
+        }
+        // Clients with an active heartbeat instead time out once they miss too many pongs
+        long remaining = CONNECTION_TIMEOUT_NANOS - (now - client.getLastActivityTime());
+        if (client.isHeartbeatActive())
+            client.scheduleDeadline(CONNECTION_TIMEOUT_NANOS);
+        else if (remaining > 0)
+            client.scheduleDeadline(remaining);
+        else {
+            client.sendControl(MessageUtil.CONNECTION_CLOSED);
+            client.closeAfterDrain();
+        }
+    }
+
+    List<MessageListener<ServerSideClient>> getMessageListeners() {
+        return MESSAGE_LISTENERS;
+    }
+    // null iff streams are discarded
+    StreamListener<ServerSideClient> getStreamListener() {
+        return streamListener;
+    }
+    // null iff every message is built in full
+    MessagePartListener<ServerSideClient> getMessagePartListener() {
+        return messagePartListener;
+    }
+
+    // ---------------------------------------- PRIVATE HELPER METHODS ---------------------------------------- //
+
+    /**
+     * Hands off a newly accepted channel to the next selector loop as an attempting connection
+     * <p>
+     * Only called by the first selector loop, via the acceptor
+     */
+    private void acceptConnection(SocketChannel channel) {
+        NewIO_ServerSideClient client;
+        try {
+            NewIO_Util.configureChannel(channel, OPTIONS.isTcpNoDelay(), OPTIONS.isKeepAlive(), OPTIONS.getSendBufferSize(), 0);
+            client = new NewIO_ServerSideClient(NEXT_CONNECTION_ID.incrementAndGet(), channel, this, COMPRESSION_STATS, OPTIONS.getMaxFrameLength());
+        } catch (IOException e) {
+            NewIO_Util.closeChannel(channel);
+            return;
+        }
+        ATTEMPTING_CONNECTIONS.add(client);
+        client.scheduleDeadline(handshakeTimeoutNanos);
+        SELECTOR_LOOPS[nextSelectorLoop].register(client);
+        nextSelectorLoop = (nextSelectorLoop + 1) % SELECTOR_LOOPS.length;
+    }
+
+    /**
+     * Generate a random alphanumeric string of the given length
+     * Capitalization doesn't matter
+     */
+    private String randomAlphaNumeric(int length) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            int charInd = (int) (36 * Math.random());
+            if (charInd < 10)
+                builder.append(charInd);
+            else
+                builder.append((char) ('A' + charInd - 10));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Close all connections and give specified reason
+     */
+    private void closeAllConnections(MessageUtil reason) {
+        for (NewIO_ServerSideClient client : ATTEMPTING_CONNECTIONS) {
+            client.sendControl(reason);
+            client.closeAfterDrain();
+        }
+        for (NewIO_ServerSideClient client : VERIFIED_CONNECTIONS.clients()) {
+            client.sendControl(reason);
+            client.closeAfterDrain();
+        }
+    }
+
+    // ---------------------------------------- OVERRIDDEN METHODS ---------------------------------------- //
+
+    @Override
+    public NewIO_NetworkAddress getAddress() {
+        return ADDRESS;
+    }
+
+    @Override
+    public Set<ServerSideClient> getClients() {
+        return new HashSet<>(VERIFIED_CONNECTIONS.view());
+    }
+    @Override
+    public Set<ServerSideClient> getClientView() {
+        return VERIFIED_CONNECTIONS.view();
+    }
+    @Override
+    public int getClientCount() {
+        return VERIFIED_CONNECTIONS.size();
+    }
+    @Override
+    public NewIO_ServerSideClient getClient(long id) {
+        return VERIFIED_CONNECTIONS.get(id);
+    }
+    @Override
+    public boolean sendTo(long id, String... messages) {
+        NewIO_ServerSideClient client = VERIFIED_CONNECTIONS.get(id);
+        return client != null && client.sendMessages(messages);
+    }
+
+    @Override
+    public int broadcast(String... messages) {
+        return broadcast(null, messages);
+    }
+    @Override
+    public int broadcast(Predicate<ServerSideClient> filter, String... messages) {
+        // Encode the messages once per protocol version rather than once per client
+        ByteBuffer[] encoded = new ByteBuffer[NewIO_Util.PROTOCOL_VERSION + 1];
+        for (int version = 0; version < encoded.length; version++) {
+            ByteBuffer buffer = NewIO_Util.encodeLines(version, messages);
+            // Likewise, compress them once for every client which negotiated compression
+            buffer = BROADCAST_COMPRESSOR.compress(version, buffer);
+            encoded[version] = buffer == null ? null : buffer.asReadOnlyBuffer();
+        }
+        boolean leavesMessageOpen = NewIO_Util.leavesMessageOpen(messages);
+        AtomicInteger queued = new AtomicInteger();
+        NewIO_Util.fanOut(VERIFIED_CONNECTIONS.clients(), client -> {
+            if ((filter == null || filter.test(client)) && client.sendEncoded(encoded, leavesMessageOpen))
+                queued.incrementAndGet();
+        });
+        return queued.get();
+    }
+
+    @Override
+    public void addMessageListener(MessageListener<ServerSideClient> listener) {
+        if (listener != null)
+            MESSAGE_LISTENERS.add(listener);
+    }
+    @Override
+    public void removeMessageListener(MessageListener<ServerSideClient> listener) {
+        MESSAGE_LISTENERS.remove(listener);
+    }
+    @Override
+    public void addConnectionListener(ConnectionListener<ServerSideClient> listener) {
+        if (listener != null)
+            CONNECTION_LISTENERS.add(listener);
+    }
+    @Override
+    public void removeConnectionListener(ConnectionListener<ServerSideClient> listener) {
+        CONNECTION_LISTENERS.remove(listener);
+    }
+    @Override
+    public void setStreamListener(StreamListener<ServerSideClient> listener) {
+        streamListener = listener;
+    }
+    @Override
+    public void setMessagePartListener(MessagePartListener<ServerSideClient> listener) {
+        messagePartListener = listener;
+    }
+
+    @Override
+    public String enablePasscode() {
+        return enablePasscode(randomAlphaNumeric(6));
+    }
+    @Override
+    public String enablePasscode(int length) {
+        return enablePasscode(randomAlphaNumeric(length));
+    }
+    @Override
+    public String enablePasscode(String code) {
+        return code != null ? connectionPasscode = code : connectionPasscode;
+    }
+    @Override
+    public void disablePasscode() {
+        connectionPasscode = "";
+    }
+    @Override
+    public void setHandshakeTimeout(int timeout) {
+        handshakeTimeoutNanos = timeout <= 0 ? DEFAULT_HANDSHAKE_TIMEOUT_NANOS : TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    @Override
+    public void setFlushPolicy(int maxBufferedBytes, long maxDelayMicros) {
+        this.maxBufferedBytes = maxBufferedBytes;
+        maxFlushDelayMicros = maxDelayMicros;
+        for (NewIO_ServerSideClient client : VERIFIED_CONNECTIONS.clients())
+            client.setFlushPolicy(maxBufferedBytes, maxDelayMicros);
+    }
+    @Override
+    public void setWriteBufferWatermarks(int lowWatermark, int highWatermark) {
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        for (NewIO_ServerSideClient client : VERIFIED_CONNECTIONS.clients())
+            client.setWatermarks(lowWatermark, highWatermark);
+    }
+    @Override
+    public void setHeartbeatPolicy(int intervalMillis, int maxMissedPongs) {
+        heartbeatIntervalMillis = intervalMillis;
+        this.maxMissedPongs = maxMissedPongs;
+        for (NewIO_ServerSideClient client : VERIFIED_CONNECTIONS.clients())
+            client.setHeartbeatPolicy(intervalMillis, maxMissedPongs);
+    }
+    @Override
+    public void setCompressionPolicy(int minMessageBytes, int level) {
+        minCompressedBytes = minMessageBytes;
+        compressionLevel = level;
+        BROADCAST_COMPRESSOR.setPolicy(minMessageBytes, level);
+        for (NewIO_ServerSideClient client : VERIFIED_CONNECTIONS.clients())
+            client.setCompressionPolicy(minMessageBytes, level);
+    }
+    @Override
+    public CompressionStats getCompressionStats() {
+        return COMPRESSION_STATS;
+    }
+
+    @Override
+    public void enableNewConnections() {
+        if (isAcceptingAnyConnections) {
+            ACCEPTOR.setAccepting(true);
+            SELECTOR_LOOPS[0].wakeup();
+        }
+    }
+    @Override
+    public void disableNewConnections() {
+        ACCEPTOR.setAccepting(false);
+        SELECTOR_LOOPS[0].wakeup();
+    }
+
+    @Override
+    public void enableAllConnections() {
+        isAcceptingAnyConnections = true;
+        enableNewConnections();
+        // Verify any passcodes which arrived while connections were disabled
+        for (NewIO_ServerSideClient client : ATTEMPTING_CONNECTIONS) {
+            String passcode = client.getPendingPasscode();
+            if (passcode != null)
+                verifyConnection(client, passcode);
+        }
+    }
+    @Override
+    public void disableAllConnections() {
+        isAcceptingAnyConnections = false;
+        disableNewConnections();
+    }
+
+    @Override
+    public void closeAllConnections() {
+        closeAllConnections(MessageUtil.CONNECTION_CLOSED);
+    }
+    @Override
+    public void closeServer() {
+        closeAllConnections(MessageUtil.SERVER_CLOSED);
+        ACCEPTOR.setAccepting(false);
+        NewIO_Util.closeChannel(SERVER_CHANNEL);
+        for (NewIO_SelectorLoop loop : SELECTOR_LOOPS)
+            loop.close();
+        BROADCAST_COMPRESSOR.end();
+    }
+}
@@ -0,0 +1,210 @@
+package me.utk.networking.nio;
+
+import me.utk.networking.Codec;
+import me.utk.networking.CompressionCounters;
+import me.utk.networking.ConnectionListener;
+import me.utk.networking.MessageListener;
+import me.utk.networking.MessageUtil;
+import me.utk.networking.PartReceiver;
+import me.utk.networking.ServerSideClient;
+import me.utk.networking.StreamReceiver;
+import me.utk.networking.TimerWheel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+class NewIO_ServerSideClient extends NewIO_Connection implements ServerSideClient {
+    private final long ID;
+    private final NewIO_ServerImplementation SERVER;
+    private final NewIO_MessageBuilder BUILDER;
+    private final StreamReceiver<ServerSideClient> STREAMS;
+    private final PartReceiver<ServerSideClient> PARTS;
+
+    private volatile boolean isVerified = false;
+    private volatile String pendingPasscode = null;
+    private volatile int announcedProtocolVersion = -1;
+    private final long ACCEPT_TIME;
+    private volatile long lastActivityTime;
+    private final TimerWheel.Timeout DEADLINE; // the handshake deadline, and then the idle deadline
+
+    private final List<MessageListener<ServerSideClient>> MESSAGE_LISTENERS = new CopyOnWriteArrayList<>();
+    private final List<ConnectionListener<ServerSideClient>> CONNECTION_LISTENERS = new CopyOnWriteArrayList<>();
+
+    NewIO_ServerSideClient(long id, SocketChannel channel, NewIO_ServerImplementation server, CompressionCounters compressionStats,
+                           int maxFrameLength) throws IOException {
+        super(channel, compressionStats, maxFrameLength);
+        ID = id;
+        SERVER = server;
+        PARTS = new PartReceiver<>(this, server::getMessagePartListener);
+        BUILDER = new NewIO_MessageBuilder(this::dispatchMessage, PARTS);
+        STREAMS = new StreamReceiver<>(this, server::getStreamListener);
+        ACCEPT_TIME = lastActivityTime = System.nanoTime();
+        DEADLINE = TimerWheel.SHARED.newTimeout(() -> server.deadlineExpired(this));
+    }
+
+    boolean isVerified() {
+        return isVerified;
+    }
+    void markVerified() {
+        isVerified = true;
+        lastActivityTime = System.nanoTime();
+    }
+
+    // Passcode which arrived while the server was not accepting any connections
+    String getPendingPasscode() {
+        return pendingPasscode;
+    }
+    void setPendingPasscode(String passcode) {
+        pendingPasscode = passcode;
+    }
+
+    // -1 iff the client did not announce a protocol version before its passcode
+    int getAnnouncedProtocolVersion() {
+        return announcedProtocolVersion;
+    }
+
+    long getAcceptTime() {
+        return ACCEPT_TIME;
+    }
+    long getLastActivityTime() {
+        return lastActivityTime;
+    }
+
+    void scheduleDeadline(long delayNanos) {
+        DEADLINE.schedule(delayNanos, TimeUnit.NANOSECONDS);
+    }
+    void cancelDeadline() {
+        DEADLINE.cancel();
+    }
+
+    // true iff delivered to at least one listener
+    private boolean dispatchMessage(String[] message) {
+        List<MessageListener<ServerSideClient>> serverListeners = SERVER.getMessageListeners();
+        if (serverListeners.isEmpty() && MESSAGE_LISTENERS.isEmpty())
+            return false;
+        NewIO_Util.notifyListeners(serverListeners, listener -> listener.onMessage(this, message));
+        NewIO_Util.notifyListeners(MESSAGE_LISTENERS, listener -> listener.onMessage(this, message));
+        return true;
+    }
+
+    void notifyDisconnected() {
+        NewIO_Util.notifyListeners(CONNECTION_LISTENERS, listener -> listener.onDisconnect(this));
+    }
+
+    @Override
+    void frameReceived(MessageUtil type, String payload) {
+        lastActivityTime = System.nanoTime();
+        if (!isVerified) {
+            // Clients may announce a protocol version right before their passcode
+            if (announcedProtocolVersion < 0) {
+                int version = NewIO_Util.parseProtocolLine(payload);
+                if (version >= 0) {
+                    announcedProtocolVersion = version;
+                    return;
+                }
+            }
+            SERVER.verifyConnection(this, payload);
+            return;
+        }
+        if (BUILDER.addFrame(type, payload) == MessageUtil.CONNECTION_CLOSED)
+            close();
+    }
+
+    @Override
+    void binaryFrameReceived(byte[] payload) {
+        lastActivityTime = System.nanoTime();
+        if (isVerified)
+            BUILDER.addBinaryMessage(payload);
+    }
+
+    @Override
+    StreamReceiver<?> streamFrameReceived() {
+        lastActivityTime = System.nanoTime();
+        return isVerified ? STREAMS : null;
+    }
+
+    @Override
+    void connectionClosed() {
+        STREAMS.close();
+        PARTS.close();
+        SERVER.connectionClosed(this);
+    }
+
+    @Override
+    public long getId() {
+        return ID;
+    }
+
+    @Override
+    public long getSmoothedRttMicros() {
+        return super.getSmoothedRttMicros();
+    }
+
+    @Override
+    public boolean sendMessages(String... messages) {
+        return sendLines(messages);
+    }
+    @Override
+    public CompletableFuture<Void> sendAsync(String... messages) {
+        return sendLinesAsync(messages);
+    }
+    @Override
+    public boolean isWritable() {
+        return super.isWritable();
+    }
+    @Override
+    public void sendBytes(byte[] bytes) {
+        sendBytes(ByteBuffer.wrap(bytes));
+    }
+    @Override
+    public void sendBytes(ByteBuffer bytes) {
+        sendBinary(bytes);
+    }
+    @Override
+    public <T> void send(T value, Codec<? super T> codec) {
+        sendValue(value, codec);
+    }
+    @Override
+    public void sendFile(Path file) throws IOException {
+        super.sendFile(file);
+    }
+    @Override
+    public void sendStream(InputStream in, long length) throws IOException {
+        super.sendStream(in, length);
+    }
+    @Override
+    public void flush() {
+        super.flush();
+    }
+
+    @Override
+    public NewIO_MessageBuilder getMessageBuilder() {
+        return BUILDER;
+    }
+
+    @Override
+    public void addMessageListener(MessageListener<ServerSideClient> listener) {
+        if (listener != null)
+            MESSAGE_LISTENERS.add(listener);
+    }
+    @Override
+    public void removeMessageListener(MessageListener<ServerSideClient> listener) {
+        MESSAGE_LISTENERS.remove(listener);
+    }
+    @Override
+    public void addConnectionListener(ConnectionListener<ServerSideClient> listener) {
+        if (listener != null)
+            CONNECTION_LISTENERS.add(listener);
+    }
+    @Override
+    public void removeConnectionListener(ConnectionListener<ServerSideClient> listener) {
+        CONNECTION_LISTENERS.remove(listener);
+    }
+}
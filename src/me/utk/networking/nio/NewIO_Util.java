@@ -0,0 +1,274 @@
+package me.utk.networking.nio;
+
+import me.utk.networking.Codec;
+import me.utk.networking.Compressor;
+import me.utk.networking.MessageUtil;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UTFDataFormatException;
+import java.net.ProtocolException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+abstract class NewIO_Util {
+    private NewIO_Util() {
+    }
+
+    // Same limit as DataOutputStream#writeUTF, since the length is written as an unsigned short
+    static final int MAX_LINE_LENGTH = 65535;
+
+    // Highest protocol version supported by this implementation
+    static final int PROTOCOL_VERSION = 3;
+    // Lowest protocol version which supports compressed frames
+    static final int COMPRESSION_PROTOCOL_VERSION = Compressor.PROTOCOL_VERSION;
+    // Lowest protocol version which supports streams
+    static final int STREAM_PROTOCOL_VERSION = 3;
+    // Streams are sent as data frames of at most this many bytes, at most two of which are queued at a time
+    static final int MAX_STREAM_CHUNK_LENGTH = 256 << 10;
+    // Type byte followed by 4-byte payload length
+    static final int FRAME_HEADER_LENGTH = 5;
+    // Connections closed by the server wait at most this long for their final frames to be written
+    static final long CLOSE_LINGER_MILLIS = 1000;
+
+    /*
+     * Protocol version 0 writes lines in the same "modified UTF-8" format produced by DataOutputStream#writeUTF,
+     * and protocol version 1 writes frames of a type byte, a 4-byte payload length, and a UTF-8 payload,
+     * both of which keep the NIO transport wire-compatible with the OIO transport.
+     */
+
+    // null iff any line is too long to be encoded
+    static ByteBuffer encodeLines(int protocolVersion, String... lines) {
+        if (protocolVersion == 0)
+            return encodeLines(lines);
+        byte[][] payloads = new byte[lines.length][];
+        int total = 0;
+        for (int i = 0; i < lines.length; i++) {
+            // The end message marker is still how applications end a message, so translate it into a frame
+            boolean isEnd = MessageUtil.END_MESSAGE.toString().equals(lines[i]);
+            payloads[i] = isEnd ? null : lines[i].getBytes(StandardCharsets.UTF_8);
+            total += FRAME_HEADER_LENGTH + (isEnd ? 0 : payloads[i].length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        for (byte[] payload : payloads)
+            if (payload == null)
+                buffer.put(MessageUtil.END_MESSAGE.toFrameType()).putInt(0);
+            else
+                buffer.put(MessageUtil.NONE.toFrameType()).putInt(payload.length).put(payload);
+        return buffer.flip();
+    }
+    // Applications may send a message over several calls, which only end the message once they end with its marker
+    static boolean leavesMessageOpen(String... lines) {
+        return lines.length > 0 && !MessageUtil.END_MESSAGE.toString().equals(lines[lines.length - 1]);
+    }
+    // Control frames have no payload, so each one is only ever encoded once and then shared through duplicates
+    private static final ByteBuffer[] CONTROL_FRAMES = new ByteBuffer[MessageUtil.values().length];
+    static {
+        for (MessageUtil type : MessageUtil.values())
+            CONTROL_FRAMES[type.ordinal()] = ByteBuffer.allocate(FRAME_HEADER_LENGTH).put(type.toFrameType()).putInt(0).flip().asReadOnlyBuffer();
+    }
+
+    static ByteBuffer encodeControl(int protocolVersion, MessageUtil type) {
+        if (protocolVersion == 0)
+            return encodeLines("" + type);
+        return CONTROL_FRAMES[type.ordinal()].duplicate();
+    }
+
+    static ByteBuffer encodeBytes(ByteBuffer bytes) {
+        ByteBuffer buffer = ByteBuffer.allocate(FRAME_HEADER_LENGTH + bytes.remaining());
+        buffer.put(MessageUtil.BINARY_MESSAGE.toFrameType()).putInt(bytes.remaining()).put(bytes.duplicate());
+        return buffer.flip();
+    }
+    // Encodes the value straight into its binary message frame
+    static <T> ByteBuffer encodeValue(T value, Codec<? super T> codec) {
+        int length = codec.encodedLength(value);
+        if (length < 0)
+            throw new IllegalArgumentException("Negative encoded length: " + length);
+        ByteBuffer buffer = ByteBuffer.allocate(FRAME_HEADER_LENGTH + length);
+        buffer.put(MessageUtil.BINARY_MESSAGE.toFrameType()).putInt(length);
+        ByteBuffer payload = buffer.slice();
+        codec.encode(value, payload);
+        if (payload.hasRemaining())
+            throw new IllegalArgumentException("Codec wrote " + payload.remaining() + " bytes fewer than its encoded length");
+        return buffer.position(0);
+    }
+
+    // The payload of a stream start frame is the 8-byte length of the whole stream
+    static ByteBuffer encodeStreamStart(long length) {
+        return ByteBuffer.allocate(FRAME_HEADER_LENGTH + Long.BYTES).put(MessageUtil.STREAM_START.toFrameType()).putInt(Long.BYTES).putLong(length).flip();
+    }
+    // Stream data frames are written as this header, directly followed by the chunk itself
+    static ByteBuffer encodeStreamDataHeader(int length) {
+        return ByteBuffer.allocate(FRAME_HEADER_LENGTH).put(MessageUtil.STREAM_DATA.toFrameType()).putInt(length).flip();
+    }
+
+    // Always protocol version 0, as used during connection handshakes
+    static ByteBuffer encodeLines(String... lines) {
+        int total = 0;
+        for (String line : lines) {
+            int length = utfLength(line);
+            if (length > MAX_LINE_LENGTH)
+                return null;
+            total += 2 + length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        for (String line : lines)
+            writeUTF(buffer, line);
+        return buffer.flip();
+    }
+
+    static int utfLength(String line) {
+        int length = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F)
+                length++;
+            else if (c <= 0x07FF)
+                length += 2;
+            else
+                length += 3;
+        }
+        return length;
+    }
+
+    static void writeUTF(ByteBuffer buffer, String line) {
+        int lengthPosition = buffer.position();
+        buffer.putShort((short) 0); // placeholder for length
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F)
+                buffer.put((byte) c);
+            else if (c <= 0x07FF) {
+                buffer.put((byte) (0xC0 | ((c >> 6) & 0x1F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                buffer.put((byte) (0xE0 | ((c >> 12) & 0x0F)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        buffer.putShort(lengthPosition, (short) (buffer.position() - lengthPosition - 2));
+    }
+
+    // -1 iff the buffer does not yet hold a full line
+    static int peekLineLength(ByteBuffer buffer) {
+        if (buffer.remaining() < 2)
+            return -1;
+        int length = buffer.getShort(buffer.position()) & 0xFFFF;
+        return buffer.remaining() < 2 + length ? -1 : length;
+    }
+
+    // -1 iff the buffer does not yet hold a full frame, but the length is checked as soon as the header arrives
+    static int peekFrameLength(ByteBuffer buffer, int maxFrameLength) throws ProtocolException {
+        if (buffer.remaining() < FRAME_HEADER_LENGTH)
+            return -1;
+        int length = buffer.getInt(buffer.position() + 1);
+        if (length < 0)
+            throw new ProtocolException("Negative frame length");
+        if (length > maxFrameLength)
+            throw new ProtocolException("Frame length " + length + " exceeds the maximum of " + maxFrameLength);
+        return buffer.remaining() < (long) FRAME_HEADER_LENGTH + length ? -1 : length;
+    }
+
+    static String protocolLine(int protocolVersion) {
+        return MessageUtil.PROTOCOL_VERSION + " " + protocolVersion;
+    }
+    // -1 iff the line is not a protocol version line
+    static int parseProtocolLine(String line) {
+        String prefix = MessageUtil.PROTOCOL_VERSION + " ";
+        if (line == null || !line.startsWith(prefix))
+            return -1;
+        try {
+            return Math.max(0, Integer.parseInt(line.substring(prefix.length())));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Reads one full line, which must be available as per peekLineLength
+    static String readUTF(ByteBuffer buffer) throws UTFDataFormatException {
+        int length = buffer.getShort() & 0xFFFF, end = buffer.position() + length;
+        char[] chars = new char[length];
+        int count = 0;
+        while (buffer.position() < end) {
+            int a = buffer.get() & 0xFF;
+            if (a < 0x80)
+                chars[count++] = (char) a;
+            else if ((a & 0xE0) == 0xC0 && buffer.position() < end) {
+                int b = buffer.get() & 0xFF;
+                if ((b & 0xC0) != 0x80)
+                    throw new UTFDataFormatException("Malformed input around byte " + buffer.position());
+                chars[count++] = (char) (((a & 0x1F) << 6) | (b & 0x3F));
+            } else if ((a & 0xF0) == 0xE0 && buffer.position() + 1 < end) {
+                int b = buffer.get() & 0xFF, c = buffer.get() & 0xFF;
+                if ((b & 0xC0) != 0x80 || (c & 0xC0) != 0x80)
+                    throw new UTFDataFormatException("Malformed input around byte " + buffer.position());
+                chars[count++] = (char) (((a & 0x0F) << 12) | ((b & 0x3F) << 6) | (c & 0x3F));
+            } else
+                throw new UTFDataFormatException("Malformed input around byte " + buffer.position());
+        }
+        return new String(chars, 0, count);
+    }
+
+    // Broadcasts to at least this many clients are sent in parallel
+    private static final int PARALLEL_BROADCAST_THRESHOLD = 64;
+
+    // Returns once the action has been applied to every target
+    static <T> void fanOut(Collection<T> targets, Consumer<T> action) {
+        if (targets.size() >= PARALLEL_BROADCAST_THRESHOLD)
+            targets.parallelStream().forEach(action);
+        else
+            targets.forEach(action);
+    }
+
+    // Exceptions thrown by listeners must not kill the selector threads
+    static <L> void notifyListeners(Iterable<L> listeners, Consumer<L> notification) {
+        for (L listener : listeners)
+            try {
+                notification.accept(listener);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+    }
+
+    // Blocks until the write completes, reporting any failure as the IOException it (typically) was
+    static void awaitWrite(CompletableFuture<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a write");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // true iff success
+    static boolean closeChannel(Channel channel) {
+        try {
+            channel.close();
+            return true;
+        } catch (IOException ignored) {
+        }
+        return false;
+    }
+
+    // Buffer sizes of 0 leave the platform default in place
+    static void configureChannel(SocketChannel channel, boolean tcpNoDelay, boolean keepAlive, int sendBufferSize, int receiveBufferSize) throws IOException {
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, tcpNoDelay);
+        channel.setOption(StandardSocketOptions.SO_KEEPALIVE, keepAlive);
+        if (sendBufferSize > 0)
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, sendBufferSize);
+        if (receiveBufferSize > 0)
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+    }
+}
@@ -1,12 +1,13 @@
 package me.utk.networking.oio;
 
 import me.utk.networking.ClientImplementation;
+import me.utk.networking.ClientOptions;
 
 /**
  * A utility class which provides a default implementation of {@link ClientImplementation}.
  * <p>
  * This class provides a default implementation of {@code ClientImplementation}, which can be
- * created and accessed via the {@code defaultImplementation} method provided by this class.
+ * created and accessed via the {@code defaultImplementation} methods provided by this class.
  * <p>
  * The implementation-specific details of this default implementation can be found
  * in the documentation of the {@link #defaultImplementation()} method.
@@ -14,6 +15,8 @@ import me.utk.networking.ClientImplementation;
  * @author Utkarsh Priyam
  * @version December 8, 2020
  * @see #defaultImplementation()
+ * @see #defaultImplementation(ClientOptions)
+ * @see ClientOptions
  * @see ClientImplementation
  */
 public abstract class OldIO_Client {
@@ -34,6 +37,22 @@ public abstract class OldIO_Client {
      * @see ClientImplementation
      */
     public static ClientImplementation defaultImplementation() {
-        return new OldIO_ClientImplementation();
+        return defaultImplementation(ClientOptions.DEFAULT);
+    }
+    /**
+     * Creates a new {@link ClientImplementation} with the specified {@link ClientOptions}.
+     * <p>
+     * This implementation differs from the {@link #defaultImplementation()} implementation only
+     * in the socket options of its connection, and in the timing of its message collection thread,
+     * as specified by the given {@code ClientOptions}.
+     *
+     * @param options The options to create the client with
+     * @return The newly generated {@code ClientImplementation}
+     * @see #defaultImplementation()
+     * @see ClientOptions
+     * @see ClientImplementation
+     */
+    public static ClientImplementation defaultImplementation(ClientOptions options) {
+        return new OldIO_ClientImplementation(options);
     }
 }
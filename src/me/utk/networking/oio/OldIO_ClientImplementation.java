@@ -1,10 +1,29 @@
 package me.utk.networking.oio;
 
 import me.utk.networking.ClientImplementation;
-import me.utk.util.misc.ThreadUtil;
+import me.utk.networking.ClientOptions;
+import me.utk.networking.Codec;
+import me.utk.networking.CompressionCounters;
+import me.utk.networking.Compressor;
+import me.utk.networking.CompressionStats;
+import me.utk.networking.ConnectionListener;
+import me.utk.networking.Heartbeat;
+import me.utk.networking.MessageListener;
+import me.utk.networking.MessagePartListener;
+import me.utk.networking.MessageUtil;
+import me.utk.networking.PartReceiver;
+import me.utk.networking.StreamListener;
+import me.utk.networking.StreamReceiver;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -13,94 +32,247 @@ class OldIO_ClientImplementation implements ClientImplementation {
     // ---------------------------------------- PRIVATE INSTANCE VARIABLES ---------------------------------------- //
 
     private Socket client = null;
+    private volatile OldIO_OutboundBuffer outbound = null;
+    private int maxBufferedBytes = 0;
+    private long maxFlushDelayMicros = 0;
     private OldIO_MessageBuilder builder = null;
-    private final ThreadUtil.ThreadLocker CLIENT_IMPLEMENTATION_LOCKER = new ThreadUtil.ThreadLocker();
+    private int protocolVersion = 0;
 
-    private boolean isVerifyingConnection = false;
-    private final ScheduledExecutorService CONNECTION_VERIFICATION_SERVICE;
-    private int timeoutCounter;
+    private final ClientOptions OPTIONS;
+    private volatile long lastActivityTime;
+    private volatile Heartbeat heartbeat = null;
+    private volatile int heartbeatIntervalMillis = 0, maxMissedPongs = 0; // heartbeats are disabled by default
+    private volatile Compressor compressor = null;
+    private volatile int minCompressedBytes = 0, compressionLevel = 0; // compression is disabled by default
+    private final CompressionCounters COMPRESSION_STATS = new CompressionCounters();
+    private volatile StreamReceiver<ClientImplementation> streams = null;
+    private volatile PartReceiver<ClientImplementation> parts = null;
 
     private final ScheduledExecutorService SERVER_MESSAGE_COLLECTION_SERVICE;
 
-    private int connectionTimeoutSeconds;
+    private long connectionTimeoutMillis;
+
+    private final List<MessageListener<ClientImplementation>> MESSAGE_LISTENERS = new CopyOnWriteArrayList<>();
+    private final List<ConnectionListener<ClientImplementation>> CONNECTION_LISTENERS = new CopyOnWriteArrayList<>();
+    private volatile StreamListener<ClientImplementation> streamListener = null;
+    private volatile MessagePartListener<ClientImplementation> messagePartListener = null;
 
     // ---------------------------------------- PACKAGE-PRIVATE CONSTRUCTOR ---------------------------------------- //
 
-    OldIO_ClientImplementation() {
+    OldIO_ClientImplementation(ClientOptions options) {
+        OPTIONS = options;
+        long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(options.getIdleTimeoutMillis());
         setConnectionTimeout(0);
-        CONNECTION_VERIFICATION_SERVICE = Executors.newSingleThreadScheduledExecutor();
-        CONNECTION_VERIFICATION_SERVICE.scheduleAtFixedRate(
-                () -> {
-                    if (!isVerifyingConnection)
-                        synchronized (CONNECTION_VERIFICATION_SERVICE) {
-                            try {
-                                CONNECTION_VERIFICATION_SERVICE.wait();
-                            } catch (InterruptedException ignored) {
-                            }
-                        }
-
-                    if (checkConnectionConfirmation()) {
-                        isVerifyingConnection = false;
-                        synchronized (CLIENT_IMPLEMENTATION_LOCKER) {
-                            CLIENT_IMPLEMENTATION_LOCKER.notifyAll();
-                        }
-                    } else if (++timeoutCounter >= connectionTimeoutSeconds) { // default value -> 300 secs = 5 mins
-                        closeSocket();
-                        isVerifyingConnection = false;
-                        synchronized (CLIENT_IMPLEMENTATION_LOCKER) {
-                            CLIENT_IMPLEMENTATION_LOCKER.notifyAll();
-                        }
-                    }
-                },
-                0L,
-                1000L,
-                TimeUnit.MILLISECONDS
-        );
-
         SERVER_MESSAGE_COLLECTION_SERVICE = Executors.newSingleThreadScheduledExecutor();
         SERVER_MESSAGE_COLLECTION_SERVICE.scheduleAtFixedRate(
                 () -> {
-                    if (client != null) {
-                        timeoutCounter = OldIO_Util.readMessages(client, builder, timeoutCounter);
-                        if (timeoutCounter > 300)
+                    // Messages are only read once the connection has been confirmed
+                    Heartbeat currentHeartbeat = heartbeat;
+                    Compressor currentCompressor = compressor;
+                    StreamReceiver<ClientImplementation> currentStreams = streams;
+                    if (client != null && builder != null && currentHeartbeat != null && currentCompressor != null && currentStreams != null) {
+                        // There is only one connection to read from, so there is no need to limit each turn
+                        int result = OldIO_Util.readMessages(client, protocolVersion, builder, currentHeartbeat, currentCompressor, currentStreams,
+                                OPTIONS.getMaxFrameLength(), Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, false);
+                        if (result == OldIO_Util.READ_CLOSED) {
+                            closeSocket();
+                            return;
+                        }
+                        long now = System.nanoTime();
+                        if (result != OldIO_Util.READ_IDLE)
+                            lastActivityTime = now;
+                        // Backed up input is still waiting on the socket, and may hold the pong
+                        if (result != OldIO_Util.READ_BACKED_UP)
+                            currentHeartbeat.inputDrained();
+                        // With an active heartbeat, the connection instead times out once too many pongs are missed
+                        if (now - lastActivityTime > idleTimeoutNanos && !currentHeartbeat.isActive())
                             closeSocket();
                     }
                 },
                 0L,
-                1000L, // check once every 1s
+                options.getPollIntervalMillis(), // check once every poll interval (1s by default)
                 TimeUnit.MILLISECONDS
         );
     }
 
     // ---------------------------------------- PRIVATE HELPER METHODS ---------------------------------------- //
 
-    private boolean checkConnectionConfirmation() {
-        return client != null && OldIO_MessageUtil.CONNECTION_CONFIRMATION.toString().equals(OldIO_Util.readLine(client));
+    // Waits for the server to confirm the connection, failing as soon as the server replies with anything else
+    private boolean checkConnectionConfirmation(long deadlineNanos) {
+        String line = OldIO_Util.readLine(client, deadlineNanos);
+        // Servers supporting framed protocols announce the negotiated version right before confirming
+        int version = OldIO_Util.parseProtocolLine(line);
+        if (version >= 0) {
+            protocolVersion = version;
+            line = OldIO_Util.readLine(client, deadlineNanos);
+        }
+        return MessageUtil.CONNECTION_CONFIRMATION.toString().equals(line);
     }
 
-    private void closeSocket() {
+    // Called by both the message collection service and the user, so only one of them may close the socket
+    private synchronized void closeSocket() {
         if (client != null) {
+            // The builder only exists once the connection has been confirmed
+            boolean wasConnected = builder != null;
+            if (heartbeat != null)
+                heartbeat.stop();
             OldIO_Util.closeSocketUntilSuccess(client);
+            if (outbound != null)
+                outbound.close();
+            if (compressor != null)
+                compressor.end();
+            if (streams != null)
+                streams.close();
+            if (parts != null)
+                parts.close();
             client = null;
+            outbound = null;
             builder = null;
+            heartbeat = null;
+            compressor = null;
+            streams = null;
+            parts = null;
+            if (wasConnected)
+                OldIO_Util.notifyListeners(CONNECTION_LISTENERS, listener -> listener.onDisconnect(this));
         }
     }
 
+    // Only used right before closing the socket, so it waits for the control message to be written
+    private void sendControl(MessageUtil type) {
+        OldIO_OutboundBuffer current = outbound;
+        if (current != null)
+            OldIO_Util.awaitQuietly(current.writeControl(OldIO_Util.encodeControl(protocolVersion, type)));
+    }
+
+    // Returns the frames unchanged if there is no connection to compress them for
+    private byte[] compress(byte[] frames) {
+        Compressor current = compressor;
+        return current != null ? current.compress(protocolVersion, frames) : frames;
+    }
+
+    // true iff delivered to at least one listener
+    private boolean dispatchMessage(String[] message) {
+        if (MESSAGE_LISTENERS.isEmpty())
+            return false;
+        OldIO_Util.notifyListeners(MESSAGE_LISTENERS, listener -> listener.onMessage(this, message));
+        return true;
+    }
+
     // ---------------------------------------- OVERRIDDEN METHODS ---------------------------------------- //
 
     @Override
     public void sendMessages(String... messages) {
-        if (client != null)
-            OldIO_Util.sendMessages(client, messages);
+        OldIO_OutboundBuffer current = outbound;
+        if (current != null)
+            current.write(compress(OldIO_Util.encodeMessages(protocolVersion, messages)));
+    }
+    @Override
+    public void sendBytes(byte[] bytes) {
+        sendBytes(ByteBuffer.wrap(bytes));
+    }
+    @Override
+    public void sendBytes(ByteBuffer bytes) {
+        OldIO_OutboundBuffer current = outbound;
+        if (current != null)
+            current.write(compress(OldIO_Util.encodeBytes(protocolVersion, bytes)));
+    }
+    @Override
+    public <T> void send(T value, Codec<? super T> codec) {
+        OldIO_OutboundBuffer current = outbound;
+        if (current != null)
+            current.write(compress(OldIO_Util.encodeValue(protocolVersion, value, codec)));
+    }
+    @Override
+    public void sendFile(Path file) throws IOException {
+        OldIO_OutboundBuffer current = outbound;
+        if (current == null)
+            throw new IOException("Connection closed");
+        OldIO_Util.sendFile(current, protocolVersion, file);
+    }
+    @Override
+    public void sendStream(InputStream in, long length) throws IOException {
+        OldIO_OutboundBuffer current = outbound;
+        if (current == null)
+            throw new IOException("Connection closed");
+        OldIO_Util.sendStream(current, protocolVersion, in, length);
+    }
+    @Override
+    public void flush() {
+        OldIO_OutboundBuffer current = outbound;
+        if (current != null)
+            current.flush();
     }
     @Override
     public OldIO_MessageBuilder getMessageBuilder() {
         return builder;
     }
 
+    @Override
+    public void addMessageListener(MessageListener<ClientImplementation> listener) {
+        if (listener != null)
+            MESSAGE_LISTENERS.add(listener);
+    }
+    @Override
+    public void removeMessageListener(MessageListener<ClientImplementation> listener) {
+        MESSAGE_LISTENERS.remove(listener);
+    }
+    @Override
+    public void addConnectionListener(ConnectionListener<ClientImplementation> listener) {
+        if (listener != null)
+            CONNECTION_LISTENERS.add(listener);
+    }
+    @Override
+    public void removeConnectionListener(ConnectionListener<ClientImplementation> listener) {
+        CONNECTION_LISTENERS.remove(listener);
+    }
+    @Override
+    public void setStreamListener(StreamListener<ClientImplementation> listener) {
+        streamListener = listener;
+    }
+    @Override
+    public void setMessagePartListener(MessagePartListener<ClientImplementation> listener) {
+        messagePartListener = listener;
+    }
+
+    @Override
+    public void setFlushPolicy(int maxBufferedBytes, long maxDelayMicros) {
+        this.maxBufferedBytes = maxBufferedBytes;
+        maxFlushDelayMicros = maxDelayMicros;
+        OldIO_OutboundBuffer current = outbound;
+        if (current != null)
+            current.setFlushPolicy(maxBufferedBytes, maxDelayMicros);
+    }
+    @Override
+    public void setHeartbeatPolicy(int intervalMillis, int maxMissedPongs) {
+        heartbeatIntervalMillis = intervalMillis;
+        this.maxMissedPongs = maxMissedPongs;
+        Heartbeat current = heartbeat;
+        // Heartbeats only exist as frames, so they are never started on protocol version 0
+        if (current != null && protocolVersion != 0)
+            current.start(intervalMillis, maxMissedPongs);
+    }
+    @Override
+    public long getSmoothedRttMicros() {
+        Heartbeat current = heartbeat;
+        return current != null ? current.getSmoothedRttMicros() : -1;
+    }
+
+    @Override
+    public void setCompressionPolicy(int minMessageBytes, int level) {
+        minCompressedBytes = minMessageBytes;
+        compressionLevel = level;
+        Compressor current = compressor;
+        if (current != null)
+            current.setPolicy(minMessageBytes, level);
+    }
+    @Override
+    public CompressionStats getCompressionStats() {
+        return COMPRESSION_STATS;
+    }
+
     @Override
     public void setConnectionTimeout(int timeout) {
-        connectionTimeoutSeconds = timeout <= 0 ? 300 : timeout / 1000 + 1;
+        connectionTimeoutMillis = timeout <= 0 ? 300000 : timeout; // default value -> 300 secs = 5 mins
     }
 
     @Override
@@ -110,43 +282,65 @@ class OldIO_ClientImplementation implements ClientImplementation {
     @Override
     public boolean connect(String address, int port, String passcode) {
         if (client != null) {
-            sendMessages("" + OldIO_MessageUtil.CONNECTION_CLOSED);
+            sendControl(MessageUtil.CONNECTION_CLOSED);
             closeSocket();
         }
         try {
-            client = new Socket(address, port);
-            client.setSoTimeout(100);
+            client = new Socket();
+            // Set before connecting, so that buffers larger than 64 KiB can be used from the start
+            if (OPTIONS.getReceiveBufferSize() > 0)
+                client.setReceiveBufferSize(OPTIONS.getReceiveBufferSize());
+            client.connect(new InetSocketAddress(address, port));
+            OldIO_Util.configureSocket(client, OPTIONS.getPollTimeoutMillis(), OPTIONS.isTcpNoDelay(), OPTIONS.isKeepAlive(), OPTIONS.getSendBufferSize());
         } catch (IOException e) {
+            if (client != null)
+                OldIO_Util.closeSocket(client);
             client = null;
             throw new IllegalStateException("Unable to connect to " + address + ":" + port);
         }
-        sendMessages(passcode);
+        // Announce the highest supported protocol version along with the passcode
+        protocolVersion = 0;
+        OldIO_Util.sendMessages(client, OldIO_Util.protocolLine(OldIO_Util.PROTOCOL_VERSION), passcode);
 
-        timeoutCounter = 0;
-        isVerifyingConnection = true;
-        synchronized (CONNECTION_VERIFICATION_SERVICE) {
-            CONNECTION_VERIFICATION_SERVICE.notifyAll();
-        }
-        synchronized (CLIENT_IMPLEMENTATION_LOCKER) {
-            try {
-                CLIENT_IMPLEMENTATION_LOCKER.wait();
-            } catch (InterruptedException ignored) {
-            }
-        }
-
-        if (client == null)
+        // The confirmation is read on this thread as soon as it arrives
+        if (!checkConnectionConfirmation(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(connectionTimeoutMillis))) {
+            closeSocket();
             return false;
+        }
 
-        builder = new OldIO_MessageBuilder();
-        timeoutCounter = 0;
+        Compressor currentCompressor = new Compressor(COMPRESSION_STATS, OPTIONS.getMaxFrameLength());
+        currentCompressor.setPolicy(minCompressedBytes, compressionLevel);
+        compressor = currentCompressor;
+        OldIO_OutboundBuffer current = new OldIO_OutboundBuffer(client);
+        current.setFlushPolicy(maxBufferedBytes, maxFlushDelayMicros);
+        outbound = current;
+        // Dead connections are closed by the message collection service, which owns the socket
+        int version = protocolVersion;
+        heartbeat = new Heartbeat(type -> current.writeControl(OldIO_Util.encodeControl(version, type)), this::closeSocket, true);
+        streams = new StreamReceiver<>(this, () -> streamListener);
+        parts = new PartReceiver<>(this, () -> messagePartListener);
+        builder = new OldIO_MessageBuilder(this::dispatchMessage, parts);
+        lastActivityTime = System.nanoTime();
+        if (version != 0)
+            heartbeat.start(heartbeatIntervalMillis, maxMissedPongs);
+        OldIO_Util.notifyListeners(CONNECTION_LISTENERS, listener -> listener.onConnect(this));
         return true;
     }
 
+    @Override
+    public CompletableFuture<Boolean> connectAsync(String address, int port) {
+        return connectAsync(address, port, "");
+    }
+    @Override
+    public CompletableFuture<Boolean> connectAsync(String address, int port, String passcode) {
+        // Blocking sockets need a thread to wait on, but it is a virtual thread where available
+        return CompletableFuture.supplyAsync(() -> connect(address, port, passcode), OldIO_Util::startConnectionThread);
+    }
+
     @Override
     public void closeClient() {
-        CONNECTION_VERIFICATION_SERVICE.shutdownNow();
         SERVER_MESSAGE_COLLECTION_SERVICE.shutdownNow();
-        sendMessages("" + OldIO_MessageUtil.CONNECTION_CLOSED);
+        sendControl(MessageUtil.CONNECTION_CLOSED);
         closeSocket();
     }
 }
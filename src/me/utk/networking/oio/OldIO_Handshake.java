@@ -0,0 +1,116 @@
+package me.utk.networking.oio;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+/**
+ * The handshake state of a single attempting connection, which is polled for its handshake lines without ever
+ * blocking for more than a millisecond.
+ * <p>
+ * Bytes which the socket reports as {@linkplain InputStream#available() available} are read, and they are
+ * gathered here until a full line has arrived, so that one thread can verify any number of connections at once
+ * without a slow (or silent) client ever holding it up. Nothing past the end of a line is read, so the connection
+ * can be handed over to the usual blocking reads as soon as it is verified.
+ * <p>
+ * A socket whose peer has closed it reports nothing as available either, so whenever nothing is, a single byte is
+ * read with a timeout of one millisecond instead. A closed connection is then noticed on the very next poll,
+ * rather than lingering until its handshake deadline.
+ */
+class OldIO_Handshake {
+    // ---------------------------------------- PRIVATE INSTANCE VARIABLES ---------------------------------------- //
+
+    private final Socket SOCKET;
+    private final long DEADLINE_NANOS;
+
+    // Only used by the polling thread
+    private final byte[] LENGTH = new byte[2];
+    private byte[] line = null; // null while the length is still being read
+    private int read = 0;
+    private int protocolVersion = 0;
+    private boolean isVerified = false;
+
+    // ---------------------------------------- PACKAGE-PRIVATE CONSTRUCTOR ---------------------------------------- //
+
+    OldIO_Handshake(Socket socket, long deadlineNanos) {
+        SOCKET = socket;
+        DEADLINE_NANOS = deadlineNanos;
+    }
+
+    // ---------------------------------------- PACKAGE-PRIVATE METHODS ---------------------------------------- //
+
+    Socket getSocket() {
+        return SOCKET;
+    }
+
+    boolean isExpired(long nowNanos) {
+        return !isVerified && nowNanos - DEADLINE_NANOS >= 0;
+    }
+
+    int getProtocolVersion() {
+        return protocolVersion;
+    }
+    void setProtocolVersion(int protocolVersion) {
+        this.protocolVersion = protocolVersion;
+    }
+
+    boolean isVerified() {
+        return isVerified;
+    }
+    void verified() {
+        isVerified = true;
+    }
+
+    /**
+     * Returns the next full line, once it has arrived, and otherwise reads whatever part of it is
+     * available and returns null, blocking for at most a millisecond either way
+     *
+     * @throws IOException if the socket is closed or the line is malformed
+     */
+    String pollLine() throws IOException {
+        InputStream in = SOCKET.getInputStream();
+        while (true) {
+            byte[] target = line == null ? LENGTH : line;
+            int available = in.available(), count;
+            if (available > 0)
+                count = in.read(target, read, Math.min(available, target.length - read));
+            else if ((count = probe(in, target)) == 0)
+                return null;
+            if (count < 0)
+                throw new IOException("Connection closed during handshake");
+            read += count;
+            if (read < target.length)
+                continue;
+            if (line == null) {
+                line = new byte[2 + ((LENGTH[0] & 0xFF) << 8 | LENGTH[1] & 0xFF)];
+                line[0] = LENGTH[0];
+                line[1] = LENGTH[1];
+                if (line.length > 2)
+                    continue;
+            }
+            // The line is complete, so decode it exactly as DataInputStream#readUTF would have
+            byte[] complete = line;
+            line = null;
+            read = 0;
+            return new DataInputStream(new ByteArrayInputStream(complete)).readUTF();
+        }
+    }
+
+    // ---------------------------------------- PRIVATE HELPER METHODS ---------------------------------------- //
+
+    // Returns 1 if a byte arrived, 0 if none did within a millisecond, and -1 if the peer has closed the connection
+    private int probe(InputStream in, byte[] target) throws IOException {
+        int soTimeout = SOCKET.getSoTimeout();
+        SOCKET.setSoTimeout(1);
+        try {
+            return in.read(target, read, 1);
+        } catch (SocketTimeoutException e) {
+            return 0;
+        } finally {
+            SOCKET.setSoTimeout(soTimeout);
+        }
+    }
+}
@@ -1,32 +1,132 @@
 package me.utk.networking.oio;
 
-import java.util.LinkedList;
+import me.utk.networking.MessageUtil;
+import me.utk.networking.PartReceiver;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A message builder which is filled by a single reading thread at a time, while being drained by any number of application threads.
+ * <p>
+ * Complete messages are queued in bounded lock-free rings. Once a ring is full, further messages wait in
+ * an overflow queue which only the reading thread uses, and the reading thread stops reading from the socket
+ * until the application has made room again, so that a slow consumer pushes back on its peer through TCP
+ * instead of growing the queue without bound.
+ * <p>
+ * Messages taken by a {@link me.utk.networking.MessagePartListener} are passed on part by part as they are read,
+ * and are never held here at all.
+ */
 class OldIO_MessageBuilder implements me.utk.networking.MessageBuilder {
-    private final LinkedList<String[]> MESSAGES = new LinkedList<>();
-    private final LinkedList<String> LINES = new LinkedList<>();
+    private static final int MESSAGE_CAPACITY = 1024, BINARY_MESSAGE_CAPACITY = 256;
+
+    private final OldIO_RingBuffer<String[]> MESSAGES = new OldIO_RingBuffer<>(MESSAGE_CAPACITY);
+    private final OldIO_RingBuffer<byte[]> BINARY_MESSAGES = new OldIO_RingBuffer<>(BINARY_MESSAGE_CAPACITY);
+
+    // Only used by the reading thread
+    private final ArrayList<String> LINES = new ArrayList<>();
+    private final ArrayDeque<String[]> OVERFLOW = new ArrayDeque<>();
+    private final ArrayDeque<byte[]> BINARY_OVERFLOW = new ArrayDeque<>();
 
     private static final String[] CAST_ARRAY = new String[0];
 
-    public OldIO_MessageUtil addLine(String line) {
-        OldIO_MessageUtil type = OldIO_MessageUtil.fromString(line);
-        if (type == OldIO_MessageUtil.NONE)
-            LINES.add(line);
-        else if (!LINES.isEmpty()) {
-            if (type == OldIO_MessageUtil.END_MESSAGE)
-                LINES.add("" + OldIO_MessageUtil.END_MESSAGE);
-            MESSAGES.add(LINES.toArray(CAST_ARRAY));
+    // Returns true iff the message was delivered to listeners, in which case it is not queued
+    private final Predicate<String[]> DISPATCHER;
+    // Receives the messages which its listener takes part by part, which are then never held in LINES
+    private final PartReceiver<?> PARTS;
+    private boolean isPassingParts = false;
+
+    OldIO_MessageBuilder() {
+        this(null, null);
+    }
+    OldIO_MessageBuilder(Predicate<String[]> dispatcher, PartReceiver<?> parts) {
+        DISPATCHER = dispatcher;
+        PARTS = parts;
+    }
+
+    // Protocol version 0, where control lines are sent in-band
+    public MessageUtil addLine(String line) {
+        return addFrame(MessageUtil.fromString(line), line);
+    }
+
+    // Protocol version 1+, where the type of every frame is sent out-of-band
+    public MessageUtil addFrame(MessageUtil type, String payload) {
+        if (type == MessageUtil.NONE) {
+            // Only the first part of a message decides where the rest of it goes
+            if (LINES.isEmpty() && !isPassingParts && PARTS != null)
+                isPassingParts = PARTS.start();
+            if (isPassingParts)
+                PARTS.part(payload);
+            else
+                LINES.add(payload);
+        } else if (isPassingParts) {
+            if (type == MessageUtil.END_MESSAGE)
+                PARTS.part("" + MessageUtil.END_MESSAGE);
+            PARTS.end();
+            isPassingParts = false;
+        } else if (!LINES.isEmpty()) {
+            if (type == MessageUtil.END_MESSAGE)
+                LINES.add("" + MessageUtil.END_MESSAGE);
+            String[] message = LINES.toArray(CAST_ARRAY);
             LINES.clear();
+            if (DISPATCHER == null || !DISPATCHER.test(message))
+                queue(MESSAGES, OVERFLOW, message);
         }
         return type;
     }
 
+    // Binary messages are always complete, and do not interrupt any partially received message
+    public MessageUtil addBinaryMessage(byte[] payload) {
+        queue(BINARY_MESSAGES, BINARY_OVERFLOW, payload);
+        return MessageUtil.BINARY_MESSAGE;
+    }
+
+    // Only called by the reading thread, which should stop reading while this is true
+    boolean isBackedUp() {
+        flushOverflow(MESSAGES, OVERFLOW);
+        flushOverflow(BINARY_MESSAGES, BINARY_OVERFLOW);
+        return !OVERFLOW.isEmpty() || !BINARY_OVERFLOW.isEmpty();
+    }
+
+    // Messages only skip the overflow while it is empty, so that they stay in order
+    private static <E> void queue(OldIO_RingBuffer<E> ring, ArrayDeque<E> overflow, E message) {
+        flushOverflow(ring, overflow);
+        if (!overflow.isEmpty() || !ring.offer(message))
+            overflow.add(message);
+    }
+    private static <E> void flushOverflow(OldIO_RingBuffer<E> ring, ArrayDeque<E> overflow) {
+        while (!overflow.isEmpty() && ring.offer(overflow.peek()))
+            overflow.poll();
+    }
+
     @Override
     public boolean hasMoreMessages() {
         return !MESSAGES.isEmpty();
     }
     @Override
     public String[] nextMessage() {
-        return MESSAGES.removeFirst();
+        String[] message = MESSAGES.poll();
+        if (message == null)
+            throw new NoSuchElementException();
+        return message;
+    }
+    @Override
+    public int drainTo(Consumer<String[]> action, int maxMessages) {
+        return MESSAGES.drainTo(action, maxMessages);
+    }
+
+    @Override
+    public boolean hasMoreBinaryMessages() {
+        return !BINARY_MESSAGES.isEmpty();
+    }
+    @Override
+    public byte[] nextBinaryMessage() {
+        byte[] message = BINARY_MESSAGES.poll();
+        if (message == null)
+            throw new NoSuchElementException();
+        return message;
     }
 }
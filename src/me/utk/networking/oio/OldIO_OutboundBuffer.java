@@ -0,0 +1,340 @@
+package me.utk.networking.oio;
+
+import me.utk.networking.BufferPool;
+import me.utk.networking.MessageUtil;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded, multi-producer outbound queue for a single {@link Socket}, drained by a writer thread of its own.
+ * <p>
+ * Callers never block on the socket: data is queued and written by a writer thread, which also coalesces
+ * many small writes into one syscall. Queued data is handed to the writer once at least {@code maxBufferedBytes}
+ * bytes are waiting, once the oldest waiting data has waited {@code maxDelayMicros} microseconds, or when
+ * {@link #flush()} is called, whichever comes first. A non-positive delay hands data over immediately.
+ * <p>
+ * Once more than the high watermark of bytes are queued, the queue stops being writable and rejects all data
+ * other than control messages until the writer has drained it to the low watermark. Lines are accepted or rejected
+ * a whole message at a time, since applications may send a message over several calls: only lines which start a
+ * message are checked, and the rest of that message shares their outcome, so that the peer never receives part of
+ * a message (which would merge into the next one).
+ * <p>
+ * Writes to a blocking socket block for as long as its peer stops reading, so each queue is drained on a writer
+ * thread of its own, which only runs while the queue has data released to it. A peer which stops reading therefore
+ * only ever holds up its own queue (until it reads again or the socket is closed), and never the writes of any
+ * other connection. Writer threads are virtual threads where the runtime supports them (Java 21+), and are
+ * otherwise daemon platform threads, which are reused by later writes once they are done.
+ * <p>
+ * Streams are written one at a time, by the calling thread, which queues at most two pooled chunks at a time
+ * and blocks until they are written, so a stream never holds more than two chunks in memory.
+ */
+class OldIO_OutboundBuffer {
+    // ---------------------------------------- SHARED SERVICES ---------------------------------------- //
+
+    private static final ScheduledExecutorService FLUSH_SERVICE = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "OldIO-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Never bounded, since every draining queue needs a thread of its own (see above)
+    private static final ExecutorService WRITER_SERVICE = newWriterService();
+
+    // Executors#newVirtualThreadPerTaskExecutor() only exists on Java 21+
+    private static ExecutorService newWriterService() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "OldIO-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // ---------------------------------------- PRIVATE HELPER CLASSES ---------------------------------------- //
+
+    // Only the first LENGTH bytes are written, since pooled arrays may be longer than their contents
+    private static class PendingWrite {
+        private final byte[] BYTES;
+        private final int LENGTH;
+        private final CompletableFuture<Void> FUTURE;
+
+        private PendingWrite(byte[] bytes, int length, CompletableFuture<Void> future) {
+            BYTES = bytes;
+            LENGTH = length;
+            FUTURE = future;
+        }
+    }
+
+    @FunctionalInterface
+    interface ChunkReader {
+        // Reads exactly the given bytes of the stream into the array, starting at the given offset
+        void read(byte[] chunk, int offset, long position, int length) throws IOException;
+    }
+
+    // ---------------------------------------- PRIVATE INSTANCE VARIABLES ---------------------------------------- //
+
+    // Writes are coalesced up to this size, unless a single write is larger
+    private static final int MAX_COALESCED_WRITE = 65536;
+
+    private final Socket SOCKET;
+
+    // Only one stream is written at a time, so that the chunks of different streams are never interleaved
+    private final Object STREAM_LOCK = new Object();
+
+    // All guarded by this
+    private final ArrayDeque<PendingWrite> QUEUE = new ArrayDeque<>();
+    private int releasedWrites = 0, unreleasedBytes = 0;
+    private long queuedBytes = 0;
+    private boolean isWritable = true, isDraining = false, isFlushScheduled = false, isClosed = false;
+    private boolean isMessageOpen = false, isOpenMessageRejected = false;
+    private boolean isHeld = false;
+
+    private volatile int maxBufferedBytes = 0;
+    private volatile long maxDelayMicros = 0;
+    private volatile long lowWatermark = Long.MAX_VALUE, highWatermark = Long.MAX_VALUE;
+
+    // ---------------------------------------- PACKAGE-PRIVATE CONSTRUCTOR ---------------------------------------- //
+
+    OldIO_OutboundBuffer(Socket socket) {
+        SOCKET = socket;
+    }
+
+    // ---------------------------------------- PACKAGE-PRIVATE METHODS ---------------------------------------- //
+
+    void setFlushPolicy(int maxBufferedBytes, long maxDelayMicros) {
+        this.maxBufferedBytes = Math.max(0, maxBufferedBytes);
+        this.maxDelayMicros = Math.max(0, maxDelayMicros);
+        // Anything buffered under the old policy should not wait on the new one
+        if (maxDelayMicros <= 0)
+            flush();
+    }
+
+    synchronized void setWatermarks(long lowWatermark, long highWatermark) {
+        this.highWatermark = Math.max(0, highWatermark);
+        this.lowWatermark = Math.min(Math.max(0, lowWatermark), this.highWatermark);
+        if (!isWritable && queuedBytes <= this.lowWatermark)
+            isWritable = true;
+    }
+
+    synchronized boolean isWritable() {
+        return isWritable && !isClosed;
+    }
+
+    // The future completes once the bytes are written, or exceptionally if they are rejected or cannot be written
+    CompletableFuture<Void> write(byte[] bytes) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        enqueue(bytes, future, false, false, false);
+        return future;
+    }
+    /*
+     * Returns whether the encoded lines are queued, with the future as per write
+     *
+     * The lines are accepted or rejected along with the rest of the message they continue, if any
+     */
+    boolean writeLines(byte[] bytes, boolean leavesMessageOpen, CompletableFuture<Void> future) {
+        return enqueue(bytes, future, false, true, leavesMessageOpen);
+    }
+    // Control messages are never rejected, and never held back by the flush policy
+    CompletableFuture<Void> writeControl(byte[] bytes) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        enqueue(bytes, future, true, false, false);
+        return future;
+    }
+
+    // Blocks until the whole stream is written, reading each chunk while the previous one is being written
+    void writeStream(long length, ChunkReader reader) throws IOException {
+        synchronized (STREAM_LOCK) {
+            CompletableFuture<Void> previous = writeControl(OldIO_Util.encodeStreamStart(length));
+            boolean isWritten = false;
+            try {
+                for (long position = 0; position < length; ) {
+                    int chunkLength = (int) Math.min(length - position, OldIO_Util.MAX_STREAM_CHUNK_LENGTH);
+                    CompletableFuture<Void> next = writeStreamChunk(reader, position, chunkLength);
+                    OldIO_Util.awaitWrite(previous);
+                    previous = next;
+                    position += chunkLength;
+                }
+                OldIO_Util.awaitWrite(previous);
+                isWritten = true;
+            } finally {
+                // Chunks which are already queued are still written, and the abort follows them
+                if (!isWritten)
+                    writeControl(OldIO_Util.encodeControl(OldIO_Util.STREAM_PROTOCOL_VERSION, MessageUtil.STREAM_ABORT)).exceptionally(e -> null).join();
+            }
+        }
+    }
+
+    // Stream chunks are paced by their sender instead, so like control messages they are never rejected or held back
+    private CompletableFuture<Void> writeStreamChunk(ChunkReader reader, long position, int length) throws IOException {
+        byte[] frame = BufferPool.SHARED.acquireArray(OldIO_Util.FRAME_HEADER_LENGTH + length);
+        try {
+            ByteBuffer.wrap(frame).put(MessageUtil.STREAM_DATA.toFrameType()).putInt(length);
+            reader.read(frame, OldIO_Util.FRAME_HEADER_LENGTH, position, length);
+        } catch (IOException | RuntimeException e) {
+            BufferPool.SHARED.releaseArray(frame);
+            throw e;
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        // The frame is no longer used once it is written, or once it can no longer be written
+        future.whenComplete((result, failure) -> BufferPool.SHARED.releaseArray(frame));
+        enqueue(frame, OldIO_Util.FRAME_HEADER_LENGTH + length, future, true, false, false);
+        return future;
+    }
+
+    synchronized void flush() {
+        isFlushScheduled = false;
+        releasedWrites = QUEUE.size();
+        unreleasedBytes = 0;
+        startDraining();
+    }
+
+    // Writes are still queued and released as usual while held, but none are written until the queue is resumed
+    synchronized void hold() {
+        isHeld = true;
+    }
+    synchronized void resume() {
+        isHeld = false;
+        startDraining();
+    }
+
+    // Anything still queued is failed, since it can no longer be written
+    void close() {
+        List<PendingWrite> failed;
+        synchronized (this) {
+            isClosed = true;
+            failed = new ArrayList<>(QUEUE);
+            QUEUE.clear();
+            releasedWrites = unreleasedBytes = 0;
+            queuedBytes = 0;
+        }
+        for (PendingWrite write : failed)
+            write.FUTURE.completeExceptionally(new IOException("Connection closed"));
+    }
+
+    // ---------------------------------------- PRIVATE HELPER METHODS ---------------------------------------- //
+
+    // Must hold this
+    private void startDraining() {
+        if (releasedWrites > 0 && !isDraining && !isHeld) {
+            isDraining = true;
+            WRITER_SERVICE.execute(this::drain);
+        }
+    }
+
+    // Lines which cannot be encoded still reject the rest of their message
+    private boolean enqueue(byte[] bytes, CompletableFuture<Void> future, boolean isControl, boolean isLines, boolean leavesMessageOpen) {
+        return enqueue(bytes, bytes == null ? 0 : bytes.length, future, isControl, isLines, leavesMessageOpen);
+    }
+    private boolean enqueue(byte[] bytes, int length, CompletableFuture<Void> future, boolean isControl, boolean isLines, boolean leavesMessageOpen) {
+        boolean wasClosed, isAccepted;
+        synchronized (this) {
+            wasClosed = isClosed;
+            // Only the first lines of a message are checked against the watermarks
+            boolean isAdmitted = isControl || (isLines && isMessageOpen ? !isOpenMessageRejected : isWritable);
+            isAccepted = bytes != null && !isClosed && isAdmitted;
+            // Sending no lines at all neither starts nor ends a message
+            if (isLines && (bytes == null || length > 0)) {
+                isMessageOpen = leavesMessageOpen;
+                isOpenMessageRejected = !isAccepted;
+            }
+            if (isAccepted) {
+                QUEUE.add(new PendingWrite(bytes, length, future));
+                queuedBytes += length;
+                unreleasedBytes += length;
+                if (queuedBytes > highWatermark)
+                    isWritable = false;
+
+                if (isControl || maxDelayMicros <= 0 || unreleasedBytes >= maxBufferedBytes)
+                    flush();
+                else if (!isFlushScheduled) {
+                    isFlushScheduled = true;
+                    FLUSH_SERVICE.schedule(this::flush, maxDelayMicros, TimeUnit.MICROSECONDS);
+                }
+                return true;
+            }
+        }
+        if (bytes == null)
+            future.completeExceptionally(new IllegalArgumentException("Messages cannot be encoded"));
+        else
+            future.completeExceptionally(wasClosed ? new IOException("Connection closed") : new IllegalStateException("Outbound queue is full"));
+        return false;
+    }
+
+    // Runs on the queue's writer thread, writing coalesced batches until no released writes are left
+    private void drain() {
+        boolean hasMore = true;
+        while (hasMore)
+            hasMore = drainBatch();
+    }
+
+    // true iff more released writes are waiting
+    private boolean drainBatch() {
+        List<PendingWrite> batch = new ArrayList<>();
+        int length = 0;
+        synchronized (this) {
+            while (releasedWrites > 0 && (batch.isEmpty() || length + QUEUE.peek().LENGTH <= MAX_COALESCED_WRITE)) {
+                PendingWrite write = QUEUE.poll();
+                batch.add(write);
+                length += write.LENGTH;
+                releasedWrites--;
+            }
+            if (batch.isEmpty()) {
+                isDraining = false;
+                return false;
+            }
+        }
+
+        try {
+            if (batch.size() == 1)
+                SOCKET.getOutputStream().write(batch.get(0).BYTES, 0, length);
+            else {
+                // Batches are bounded by MAX_COALESCED_WRITE, so the coalescing space is always pooled
+                byte[] bytes = BufferPool.SHARED.acquireArray(length);
+                try {
+                    int offset = 0;
+                    for (PendingWrite write : batch) {
+                        System.arraycopy(write.BYTES, 0, bytes, offset, write.LENGTH);
+                        offset += write.LENGTH;
+                    }
+                    SOCKET.getOutputStream().write(bytes, 0, length);
+                } finally {
+                    BufferPool.SHARED.releaseArray(bytes);
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                isDraining = false;
+            }
+            for (PendingWrite write : batch)
+                write.FUTURE.completeExceptionally(e);
+            close();
+            return false;
+        }
+
+        boolean hasMore;
+        synchronized (this) {
+            if (!isClosed)
+                queuedBytes -= length;
+            if (!isWritable && queuedBytes <= lowWatermark)
+                isWritable = true;
+            hasMore = releasedWrites > 0;
+            if (!hasMore)
+                isDraining = false;
+        }
+        for (PendingWrite write : batch)
+            write.FUTURE.complete(null);
+        return hasMore;
+    }
+}
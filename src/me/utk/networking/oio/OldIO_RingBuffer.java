@@ -0,0 +1,109 @@
+package me.utk.networking.oio;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, lock-free ring buffer for a single producer thread and any number of consumer threads.
+ * <p>
+ * Only one thread may offer elements at a time, but consumers may poll and drain concurrently with the producer
+ * and with each other. Every element is delivered to exactly one consumer, in the order it was offered.
+ * <p>
+ * The producer publishes each element by advancing the tail, and consumers claim elements by advancing the head
+ * with a compare-and-set, after having read them. Since the producer never overwrites a slot until the head has
+ * moved past it, a consumer whose compare-and-set succeeds is guaranteed to have read the element it claimed.
+ * Neither side allocates anything per element.
+ */
+class OldIO_RingBuffer<E> {
+    // ---------------------------------------- PRIVATE INSTANCE VARIABLES ---------------------------------------- //
+
+    // Consumers claim at most this many elements per compare-and-set while draining
+    private static final int MAX_DRAIN_BATCH = 64;
+
+    private final AtomicReferenceArray<E> SLOTS;
+    private final int MASK;
+
+    private final AtomicLong HEAD = new AtomicLong(); // next element to consume
+    private volatile long tail = 0; // next slot to fill, only written by the producer
+
+    // ---------------------------------------- PACKAGE-PRIVATE CONSTRUCTOR ---------------------------------------- //
+
+    // The capacity is rounded up to a power of two, so that positions are mapped to slots with a mask
+    OldIO_RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        SLOTS = new AtomicReferenceArray<>(size);
+        MASK = size - 1;
+    }
+
+    // ---------------------------------------- PACKAGE-PRIVATE METHODS ---------------------------------------- //
+
+    // Only called by the producer, and false iff full
+    boolean offer(E element) {
+        long t = tail;
+        if (t - HEAD.get() > MASK)
+            return false;
+        SLOTS.set((int) t & MASK, element);
+        tail = t + 1;
+        return true;
+    }
+
+    boolean isEmpty() {
+        return HEAD.get() >= tail;
+    }
+
+    // null iff empty
+    E poll() {
+        while (true) {
+            long h = HEAD.get();
+            if (h >= tail)
+                return null;
+            E element = SLOTS.get((int) h & MASK);
+            if (HEAD.compareAndSet(h, h + 1)) {
+                // Drop the reference, unless the producer has already reused the slot
+                SLOTS.compareAndSet((int) h & MASK, element, null);
+                return element;
+            }
+        }
+    }
+
+    /*
+     * Delivers up to max elements to the action, in batches claimed with a single compare-and-set each
+     *
+     * If the action throws, the rest of its batch is still delivered, and the first exception is then rethrown
+     */
+    @SuppressWarnings("unchecked")
+    int drainTo(Consumer<? super E> action, int max) {
+        int drained = 0;
+        Object[] batch = null;
+        while (drained < max) {
+            long h = HEAD.get();
+            int count = (int) Math.min(Math.min(tail - h, max - drained), MAX_DRAIN_BATCH);
+            if (count <= 0)
+                break;
+            if (batch == null)
+                batch = new Object[Math.min(max, MAX_DRAIN_BATCH)];
+            for (int i = 0; i < count; i++)
+                batch[i] = SLOTS.get((int) (h + i) & MASK);
+            if (!HEAD.compareAndSet(h, h + count))
+                continue;
+            for (int i = 0; i < count; i++)
+                SLOTS.compareAndSet((int) (h + i) & MASK, (E) batch[i], null);
+
+            RuntimeException failure = null;
+            for (int i = 0; i < count; i++) {
+                try {
+                    action.accept((E) batch[i]);
+                } catch (RuntimeException e) {
+                    if (failure == null)
+                        failure = e;
+                }
+                batch[i] = null;
+            }
+            drained += count;
+            if (failure != null)
+                throw failure;
+        }
+        return drained;
+    }
+}
@@ -1,6 +1,7 @@
 package me.utk.networking.oio;
 
 import me.utk.networking.ServerImplementation;
+import me.utk.networking.ServerOptions;
 
 /**
  * A utility class which provides a default implementation of {@link ServerImplementation}.
@@ -15,6 +16,11 @@ import me.utk.networking.ServerImplementation;
  * @version December 8, 2020
  * @see #defaultImplementation()
  * @see #defaultImplementation(int)
+ * @see #defaultImplementation(int, ServerOptions)
+ * @see #multiAcceptorImplementation(int, int)
+ * @see #virtualThreadImplementation(int)
+ * @see #virtualThreadImplementation(int, ServerOptions)
+ * @see ServerOptions
  * @see ServerImplementation
  */
 public abstract class OldIO_Server {
@@ -33,7 +39,7 @@ public abstract class OldIO_Server {
      * @see ServerImplementation
      */
     public static ServerImplementation defaultImplementation() {
-        return new OldIO_ServerImplementation(0);
+        return defaultImplementation(0);
     }
     /**
      * Creates a new {@link ServerImplementation} with the specified connection port.
@@ -52,6 +58,86 @@ public abstract class OldIO_Server {
      * @see ServerImplementation
      */
     public static ServerImplementation defaultImplementation(int port) {
-        return new OldIO_ServerImplementation(port);
+        return defaultImplementation(port, ServerOptions.DEFAULT);
+    }
+    /**
+     * Creates a new {@link ServerImplementation} with the specified connection port and {@link ServerOptions}.
+     * <p>
+     * This implementation differs from the {@link #defaultImplementation(int)} implementation only
+     * in the socket options of its connections, in the number of its acceptor threads, and in the
+     * timing of its message collection thread, as specified by the given {@code ServerOptions}.
+     *
+     * @param port    The port to create the server on (0 creates on a random port)
+     * @param options The options to create the server with
+     * @return The newly generated {@code ServerImplementation}
+     * @throws IllegalStateException If the {@code ServerImplementation} cannot be created
+     * @see #defaultImplementation(int)
+     * @see ServerOptions
+     * @see ServerImplementation
+     */
+    public static ServerImplementation defaultImplementation(int port, ServerOptions options) {
+        return new OldIO_ServerImplementation(port, options, false);
+    }
+    /**
+     * Creates a new {@link ServerImplementation} with the specified connection port,
+     * which accepts incoming connections on the specified number of threads.
+     * <p>
+     * This is a shorthand for {@link #defaultImplementation(int, ServerOptions)} with the
+     * {@linkplain ServerOptions.Builder#acceptors(int) acceptors} option set, and otherwise default options.
+     *
+     * @param port      The port to create the server on (0 creates on a random port)
+     * @param acceptors The number of threads accepting incoming connections
+     * @return The newly generated {@code ServerImplementation}
+     * @throws IllegalArgumentException If {@code acceptors} is not positive
+     * @throws IllegalStateException    If the {@code ServerImplementation} cannot be created
+     * @see #defaultImplementation(int, ServerOptions)
+     * @see ServerOptions.Builder#acceptors(int)
+     * @see ServerImplementation
+     */
+    public static ServerImplementation multiAcceptorImplementation(int port, int acceptors) {
+        return defaultImplementation(port, ServerOptions.builder().acceptors(acceptors).build());
+    }
+
+    /**
+     * Creates a new {@link ServerImplementation} with the specified connection port,
+     * which reads from each client on its own virtual thread.
+     * <p>
+     * This implementation differs from the {@link #defaultImplementation(int)} implementation
+     * only in how messages are collected from verified clients. Instead of one helper thread
+     * polling every client in turn, each client is given its own thread which blocks until
+     * that client sends a message, so messages are delivered as soon as they arrive. Clients
+     * which send nothing for 5 minutes (by default) are disconnected, as in the default implementation.
+     * <p>
+     * Virtual threads are used when the Java Runtime Environment supports them (Java 21+),
+     * which allows for very large numbers of clients. On older runtimes, each client is
+     * instead given its own daemon platform thread.
+     *
+     * @param port The port to create the server on (0 creates on a random port)
+     * @return The newly generated {@code ServerImplementation}
+     * @throws IllegalStateException If the {@code ServerImplementation} cannot be created
+     * @see #defaultImplementation(int)
+     * @see ServerImplementation
+     */
+    public static ServerImplementation virtualThreadImplementation(int port) {
+        return virtualThreadImplementation(port, ServerOptions.DEFAULT);
+    }
+    /**
+     * Creates a new {@link ServerImplementation} with the specified connection port and {@link ServerOptions},
+     * which reads from each client on its own virtual thread.
+     * <p>
+     * The implementation-specific details of this implementation can be found
+     * in the documentation of the {@link #virtualThreadImplementation(int)} method.
+     * Since no client is ever polled, the poll interval, poll timeout and per-turn limits of the {@code ServerOptions} are ignored.
+     *
+     * @param port    The port to create the server on (0 creates on a random port)
+     * @param options The options to create the server with
+     * @return The newly generated {@code ServerImplementation}
+     * @throws IllegalStateException If the {@code ServerImplementation} cannot be created
+     * @see #virtualThreadImplementation(int)
+     * @see ServerOptions
+     * @see ServerImplementation
+     */
+    public static ServerImplementation virtualThreadImplementation(int port, ServerOptions options) {
+        return new OldIO_ServerImplementation(port, options, true);
     }
 }
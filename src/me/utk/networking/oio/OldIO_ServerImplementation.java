@@ -1,206 +1,358 @@
 package me.utk.networking.oio;
 
+import me.utk.networking.CompressionCounters;
+import me.utk.networking.Compressor;
+import me.utk.networking.CompressionStats;
+import me.utk.networking.ConnectionListener;
+import me.utk.networking.ConnectionRegistry;
+import me.utk.networking.MessageListener;
+import me.utk.networking.MessagePartListener;
+import me.utk.networking.MessageUtil;
 import me.utk.networking.ServerImplementation;
+import me.utk.networking.ServerOptions;
 import me.utk.networking.ServerSideClient;
+import me.utk.networking.StreamListener;
 import me.utk.util.misc.ThreadUtil;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.StandardSocketOptions;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 class OldIO_ServerImplementation implements ServerImplementation {
     // ---------------------------------------- PRIVATE INSTANCE VARIABLES ---------------------------------------- //
 
-    private final ServerSocket SERVER_SOCKET;
+    private static final long MAX_NANOS_PER_TURN = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long HANDSHAKE_POLL_MILLIS = 10;
 
-    private final Semaphore ATTEMPTED_SEMAPHORE, VERIFIED_SEMAPHORE;
-    private final Map<Socket, Integer> ATTEMPTING_CONNECTIONS;
-    private final Map<OldIO_ServerSideClient, Integer> VERIFIED_CONNECTIONS;
+    private final ServerOptions OPTIONS;
+    private final long COLLECTION_PERIOD_NANOS, CONNECTION_TIMEOUT_NANOS;
 
-    private boolean isAcceptingNewConnections = false, isAcceptingAnyConnections = false;
-    private final ThreadUtil.ThreadLocker CONNECTION_THREAD_LOCK = new ThreadUtil.ThreadLocker(false);
-    private boolean connectionThreadTerminationCondition = false;
+    private final ServerSocket[] SERVER_SOCKETS; // all listening on the same port
 
-    private String connectionPasscode = ""; // default is no passcode
-    private final ScheduledExecutorService VERIFICATION_SERVICE;
+    private final Map<Socket, OldIO_Handshake> ATTEMPTING_CONNECTIONS = new ConcurrentHashMap<>();
+    private final ConnectionRegistry<OldIO_ServerSideClient> VERIFIED_CONNECTIONS = new ConnectionRegistry<>();
+    private final AtomicLong NEXT_CONNECTION_ID = new AtomicLong();
 
-    private final ScheduledExecutorService CLIENT_MESSAGE_COLLECTION_SERVICE;
+    private volatile boolean isAcceptingNewConnections = false, isAcceptingAnyConnections = false;
+    private final ThreadUtil.ThreadLocker CONNECTION_THREAD_LOCK = new ThreadUtil.ThreadLocker(false);
+    private volatile boolean connectionThreadTerminationCondition = false;
+
+    private volatile String connectionPasscode = ""; // default is no passcode
+    private volatile long handshakeTimeoutMillis = 300000; // default is 5 mins
+    private volatile int maxBufferedBytes = 0;
+    private volatile long maxFlushDelayMicros = 0;
+    private volatile int lowWatermark = 512 * 1024, highWatermark = 1024 * 1024;
+    private volatile int heartbeatIntervalMillis = 0, maxMissedPongs = 0; // heartbeats are disabled by default
+    private volatile int minCompressedBytes = 0, compressionLevel = 0; // compression is disabled by default
+    private final CompressionCounters COMPRESSION_STATS = new CompressionCounters();
+    private final Compressor BROADCAST_COMPRESSOR;
+
+    private final ScheduledExecutorService HANDSHAKE_SERVICE = Executors.newSingleThreadScheduledExecutor();
+    private final ScheduledExecutorService CLIENT_MESSAGE_COLLECTION_SERVICE; // null if using one thread per connection
+    private final boolean USE_THREAD_PER_CONNECTION;
+
+    private final List<MessageListener<ServerSideClient>> MESSAGE_LISTENERS = new CopyOnWriteArrayList<>();
+    private final List<ConnectionListener<ServerSideClient>> CONNECTION_LISTENERS = new CopyOnWriteArrayList<>();
+    private volatile StreamListener<ServerSideClient> streamListener = null;
+    private volatile MessagePartListener<ServerSideClient> messagePartListener = null;
 
     private final OldIO_NetworkAddress ADDRESS;
 
     // ---------------------------------------- PACKAGE-PRIVATE CONSTRUCTOR ---------------------------------------- //
 
-    OldIO_ServerImplementation(int port) {
+    OldIO_ServerImplementation(int port, ServerOptions options, boolean threadPerConnection) {
+        OPTIONS = options;
+        BROADCAST_COMPRESSOR = new Compressor(COMPRESSION_STATS, options.getMaxFrameLength());
+        COLLECTION_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(options.getPollIntervalMillis());
+        CONNECTION_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(options.getIdleTimeoutMillis());
+        USE_THREAD_PER_CONNECTION = threadPerConnection;
+        int acceptors = options.getAcceptors();
+
         /*
-         * Create new ServerSocket during initialization
+         * Create new ServerSockets during initialization
          */
         try {
-            SERVER_SOCKET = new ServerSocket(port);
-            SERVER_SOCKET.setSoTimeout(1000); // 1s timeouts for making connections
+            SERVER_SOCKETS = openServerSockets(port, acceptors, options);
         } catch (IOException e) {
             e.printStackTrace();
             throw new IllegalStateException("Unable to initialize ServerImplementation for Server class");
         }
 
         /*
-         * Creates the attempting/verified connections maps (mapping to timeout counters) as well as Semaphores for those maps
+         * Creates and runs one thread per acceptor for accepting incoming connections, along with a ThreadLocker for
+         * locking the threads when incoming connections are no longer being accepted. Acceptors block in accept until
+         * a connection arrives or the server is closed.
          */
-        ATTEMPTED_SEMAPHORE = new Semaphore(1, true);
-        ATTEMPTING_CONNECTIONS = new HashMap<>();
-
-        VERIFIED_SEMAPHORE = new Semaphore(1, true);
-        VERIFIED_CONNECTIONS = new HashMap<>();
+        for (int i = 0; i < acceptors; i++) {
+            ServerSocket serverSocket = SERVER_SOCKETS[i % SERVER_SOCKETS.length];
+            new Thread(() -> acceptConnections(serverSocket), "OldIO_Server-" + serverSocket.getLocalPort() + "-acceptor-" + i).start();
+        }
 
         /*
-         * Creates and runs a thread for collecting attempted connections into map along with a
-         * ThreadLocker for locking the thread when incoming connections are no longer being accepted.
+         * Every attempting connection is verified by polling it for its handshake lines on a single thread, so that
+         * connections which never finish their handshake cost no more than their socket until their deadline passes
          */
-        new Thread(() -> {
-            // Loop until thread is terminated
-            while (!connectionThreadTerminationCondition) {
-                // Logic to lock thread if new connections are being rejected
-                if (!isAcceptingNewConnections)
-                    synchronized (CONNECTION_THREAD_LOCK) {
-                        try {
-                            CONNECTION_THREAD_LOCK.wait();
-                        } catch (InterruptedException ignored) {
-                        }
-                    }
-                // Try to connect a new socket, and put into attempting connections map if successful
-                try {
-                    Socket socket = SERVER_SOCKET.accept();
-                    socket.setSoTimeout(100); // 100ms timeout for socket interactions
-                    ATTEMPTED_SEMAPHORE.acquire();
-                    ATTEMPTING_CONNECTIONS.put(socket, 0);
-                    ATTEMPTED_SEMAPHORE.release();
-                } catch (IOException | InterruptedException ignored) {
-                }
-            }
-        }).start();
+        HANDSHAKE_SERVICE.scheduleWithFixedDelay(this::pollHandshakes, HANDSHAKE_POLL_MILLIS, HANDSHAKE_POLL_MILLIS, TimeUnit.MILLISECONDS);
 
         /*
-         * Create a default (lack of) password and a {@link ScheduledExecutorService} to
-         * check if any attempting connections have inputted the correct passcode.
+         * Create message collection ScheduledExecutorService, unless
+         * every client is given its own message collection thread instead
          */
-        // Get a new ScheduledExecutorService
-        VERIFICATION_SERVICE = Executors.newSingleThreadScheduledExecutor();
-        // Schedule verification task to happen once per second
-        VERIFICATION_SERVICE.scheduleAtFixedRate(
-                // Task
-                () -> {
-                    // Logic to stop if connections are being rejected
-                    if (!isAcceptingAnyConnections)
-                        synchronized (VERIFICATION_SERVICE) {
-                            try {
-                                VERIFICATION_SERVICE.wait();
-                            } catch (InterruptedException ignored) {
-                            }
-                        }
-                    // Go through all attempting connections and accept any which put in the right passcode
-                    try {
-                        // Get semaphore to prevent race conditions
-                        ATTEMPTED_SEMAPHORE.acquire();
-
-                        Map.Entry<Socket, Integer> entry;
-                        Socket client;
-                        Iterator<Map.Entry<Socket, Integer>> it = ATTEMPTING_CONNECTIONS.entrySet().iterator();
-                        // Iterate through attempting connections map
-                        while (it.hasNext()) {
-                            entry = it.next();
-                            client = entry.getKey();
-                            // If password matches, move to verified connections
-                            // Otherwise increment timeout counter (fails after 300 secs = 5 mins)
-                            if (verifyPassword(client)) {
-                                it.remove();
-                                // Send confirmation message to client
-                                try {
-                                    // Wrap socket in ServerSideClient object and put into verified connections map
-                                    OldIO_ServerSideClient ssc = new OldIO_ServerSideClient(client);
-                                    VERIFIED_SEMAPHORE.acquire();
-                                    VERIFIED_CONNECTIONS.put(ssc, 0);
-                                    VERIFIED_SEMAPHORE.release();
-                                    ssc.sendMessages("" + OldIO_MessageUtil.CONNECTION_CONFIRMATION);
-                                } catch (InterruptedException ignored) {
-                                }
-                            } else {
-                                // Increment timeout count by 1 and close socket if fails > 300 secs = 5 mins
-                                int fails = entry.getValue() + 1;
-                                if (fails >= 300) { // no correct passcode for 5 mins
-                                    it.remove();
-                                    OldIO_Util.closeSocketUntilSuccess(client);
-                                } else
-                                    entry.setValue(fails);
+        if (USE_THREAD_PER_CONNECTION)
+            CLIENT_MESSAGE_COLLECTION_SERVICE = null;
+        else {
+            // Get new ScheduledExecutorService
+            CLIENT_MESSAGE_COLLECTION_SERVICE = Executors.newSingleThreadScheduledExecutor();
+            // Schedule
+            CLIENT_MESSAGE_COLLECTION_SERVICE.scheduleAtFixedRate(
+                    // Task
+                    () -> {
+                        /*
+                         * Messages are read straight from the registry, without holding any lock,
+                         * so that message listeners may safely use this server
+                         *
+                         * Each client may only use up a limited budget of messages, bytes and time per turn, so that one
+                         * chatty client cannot starve the rest. The first sweep waits briefly on every client, and any
+                         * clients which used up their budget are then continued in round-robin sweeps, alongside any
+                         * other clients which already have input waiting, until either all input is read or the next
+                         * scheduled sweep is due.
+                         *
+                         * Idle clients are timed out by their own deadlines on the timer wheel, rather than here.
+                         *
+                         * Any failure while reading from a client only closes that client, since an exception escaping
+                         * this task would cancel it for good, and with it every other client's messages.
+                         */
+                        List<OldIO_ServerSideClient> disconnected = new ArrayList<>();
+                        long sweepsEnd = System.nanoTime() + COLLECTION_PERIOD_NANOS;
+                        boolean isFirstSweep = true, hasMoreInput = true;
+                        while (hasMoreInput && (isFirstSweep || System.nanoTime() - sweepsEnd < 0)) {
+                            hasMoreInput = false;
+                            for (OldIO_ServerSideClient ssc : VERIFIED_CONNECTIONS.clients()) {
+                                // Outsource reading message logic to Util class
+                                int result = OldIO_Util.readMessages(ssc.getSocket(), ssc.getProtocolVersion(), ssc.getMessageBuilder(), ssc.getHeartbeat(),
+                                        ssc.getCompressor(), ssc.getStreamReceiver(), OPTIONS.getMaxFrameLength(),
+                                        OPTIONS.getMaxMessagesPerTurn(), OPTIONS.getMaxBytesPerTurn(), MAX_NANOS_PER_TURN, !isFirstSweep);
+                                // Backed up clients still have input waiting, so they are neither idle nor drained
+                                if (result == OldIO_Util.READ_SOME || result == OldIO_Util.READ_BUDGET_EXHAUSTED || result == OldIO_Util.READ_BACKED_UP)
+                                    ssc.markActive();
+                                if (result == OldIO_Util.READ_BUDGET_EXHAUSTED)
+                                    hasMoreInput = true;
+                                else if (result != OldIO_Util.READ_CLOSED && result != OldIO_Util.READ_BACKED_UP)
+                                    ssc.getHeartbeat().inputDrained();
+
+                                // Close connection if closed by the client, unless already closed in the meantime
+                                if (result == OldIO_Util.READ_CLOSED && VERIFIED_CONNECTIONS.unregister(ssc))
+                                    disconnected.add(ssc);
                             }
+                            isFirstSweep = false;
                         }
-
-                        // Release attempting connections semaphore
-                        ATTEMPTED_SEMAPHORE.release();
-                    } catch (InterruptedException ignored) {
-                    }
-                },
-                0L,
-                1000L, // Check once every 1s = 1000ms
-                TimeUnit.MILLISECONDS
-        );
-
-        /*
-         * Create message collection ScheduledExecutorService
-         */
-        // Get new ScheduledExecutorService
-        CLIENT_MESSAGE_COLLECTION_SERVICE = Executors.newSingleThreadScheduledExecutor();
-        // Schedule
-        CLIENT_MESSAGE_COLLECTION_SERVICE.scheduleAtFixedRate(
-                // Task
-                () -> {
-                    try {
-                        // Get verified connections semaphore to prevent race conditions
-                        VERIFIED_SEMAPHORE.acquire();
-
-                        // Iterate through all connections for possible messages
-                        Iterator<Map.Entry<OldIO_ServerSideClient, Integer>> it = VERIFIED_CONNECTIONS.entrySet().iterator();
-                        while (it.hasNext()) {
-                            Map.Entry<OldIO_ServerSideClient, Integer> entry = it.next();
-                            OldIO_ServerSideClient ssc = entry.getKey();
-                            // Outsource reading message logic to Util class
-                            int timeoutCounter = OldIO_Util.readMessages(ssc.getSocket(), ssc.getMessageBuilder(), entry.getValue());
-                            // Close connection if timed out -> 5 mins = 300 secs
-                            if (timeoutCounter > 300) { // 5 mins = 300 secs
-                                ssc.sendMessages("" + OldIO_MessageUtil.CONNECTION_CLOSED);
-                                it.remove();
-                                OldIO_Util.closeSocketUntilSuccess(ssc.getSocket());
-                            } else
-                                entry.setValue(timeoutCounter);
-                        }
-
-                        // Release verified connections semaphore
-                        VERIFIED_SEMAPHORE.release();
-                    } catch (InterruptedException ignored) {
-                    }
-                },
-                0L,
-                1000L, // Check for messages every 1s
-                TimeUnit.MILLISECONDS
-        );
+                        closeConnections(disconnected, MessageUtil.CONNECTION_CLOSED);
+                        for (OldIO_ServerSideClient ssc : disconnected)
+                            notifyDisconnected(ssc);
+                    },
+                    0L,
+                    COLLECTION_PERIOD_NANOS, // Check for messages once every poll interval (1s by default)
+                    TimeUnit.NANOSECONDS
+            );
+        }
 
         /*
          * Create a {@link OldIO_NetworkAddress}
          * for this {@link me.utk.networking.Server.ServerImplementation}
          */
-        ADDRESS = new OldIO_NetworkAddress(SERVER_SOCKET);
+        ADDRESS = new OldIO_NetworkAddress(SERVER_SOCKETS[0]);
     }
 
     // ---------------------------------------- PRIVATE HELPER METHODS ---------------------------------------- //
 
     /**
-     * Returns {@code true} iff there is no password or client sent password
+     * Opens the given number of listening sockets on the same port, each with SO_REUSEPORT set, so that the kernel
+     * spreads incoming connections across them. If the platform does not support SO_REUSEPORT, or only one socket
+     * is requested, a single socket is opened instead, which all acceptors then share.
+     * <p>
+     * The receive buffer size is set before binding, so that accepted sockets inherit it from the start.
      */
-    private boolean verifyPassword(Socket client) {
-        return connectionPasscode.isEmpty() || connectionPasscode.equalsIgnoreCase(OldIO_Util.readLine(client));
+    private static ServerSocket[] openServerSockets(int port, int count, ServerOptions options) throws IOException {
+        ServerSocket first = new ServerSocket();
+        boolean reusePort = count > 1 && first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        ServerSocket[] sockets = new ServerSocket[reusePort ? count : 1];
+        sockets[0] = first;
+        try {
+            for (int i = 0; i < sockets.length; i++) {
+                if (sockets[i] == null)
+                    sockets[i] = new ServerSocket();
+                if (reusePort)
+                    sockets[i].setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                if (options.getReceiveBufferSize() > 0)
+                    sockets[i].setReceiveBufferSize(options.getReceiveBufferSize());
+                // Every socket after the first binds to the port which the first one was given
+                sockets[i].bind(new InetSocketAddress(i == 0 ? port : sockets[0].getLocalPort()), options.getBacklog());
+            }
+        } catch (IOException e) {
+            for (ServerSocket socket : sockets)
+                if (socket != null)
+                    socket.close();
+            throw e;
+        }
+        return sockets;
+    }
+
+    /**
+     * Accepts incoming connections on the calling thread until the server is closed, leaving each one to be verified by the handshake service
+     */
+    private void acceptConnections(ServerSocket serverSocket) {
+        // Loop until thread is terminated
+        while (!connectionThreadTerminationCondition) {
+            // Logic to lock thread if new connections are being rejected
+            awaitNewConnections();
+            // Try to connect a new socket, and start its handshake if successful
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (serverSocket.isClosed())
+                    break; // server was closed
+                continue;
+            }
+            try {
+                // Poll timeout for socket interactions (100ms by default)
+                OldIO_Util.configureSocket(socket, OPTIONS.getPollTimeoutMillis(), OPTIONS.isTcpNoDelay(), OPTIONS.isKeepAlive(), OPTIONS.getSendBufferSize());
+            } catch (IOException e) {
+                OldIO_Util.closeSocketUntilSuccess(socket);
+                continue;
+            }
+            // New connections may have been disabled while this thread was blocked, so the connection waits like any other
+            awaitNewConnections();
+            if (connectionThreadTerminationCondition) {
+                OldIO_Util.closeSocketUntilSuccess(socket);
+                break;
+            }
+            ATTEMPTING_CONNECTIONS.put(socket, new OldIO_Handshake(socket, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(handshakeTimeoutMillis)));
+        }
+    }
+
+    private void awaitNewConnections() {
+        synchronized (CONNECTION_THREAD_LOCK) {
+            while (!isAcceptingNewConnections && !connectionThreadTerminationCondition)
+                try {
+                    CONNECTION_THREAD_LOCK.wait();
+                } catch (InterruptedException ignored) {
+                }
+        }
+    }
+
+    /**
+     * Advances the handshake of every attempting connection by whatever it has sent so far, moving verified connections
+     * to the verified connections (once connections are being verified), and closing any which fail their handshake or
+     * miss their deadline
+     */
+    private void pollHandshakes() {
+        long now = System.nanoTime();
+        for (OldIO_Handshake handshake : ATTEMPTING_CONNECTIONS.values()) {
+            Socket client = handshake.getSocket();
+            try {
+                if (!handshake.isVerified() && verifyConnection(handshake))
+                    handshake.verified();
+                // Verified connections are held until connections are being verified again
+                if (handshake.isVerified() && isAcceptingAnyConnections && ATTEMPTING_CONNECTIONS.remove(client) != null)
+                    completeHandshake(client, handshake.getProtocolVersion());
+                else if (handshake.isExpired(now) && ATTEMPTING_CONNECTIONS.remove(client) != null)
+                    OldIO_Util.closeSocketUntilSuccess(client);
+            } catch (IOException | RuntimeException e) {
+                // Otherwise, the connection was closed by closeAllConnections in the meantime
+                if (ATTEMPTING_CONNECTIONS.remove(client) != null)
+                    OldIO_Util.closeSocketUntilSuccess(client);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the given attempting connection has sent the password (or any line, if there is
+     * no password), reading whichever handshake lines it has sent so far without blocking
+     * <p>
+     * Clients supporting framed protocols announce their highest protocol version before sending the password.
+     * Any other line is a wrong password, which fails the handshake at once, so that each connection only ever
+     * gets a single guess.
+     *
+     * @throws IOException if the client disconnects or sends a wrong password
+     */
+    private boolean verifyConnection(OldIO_Handshake handshake) throws IOException {
+        String line;
+        while ((line = handshake.pollLine()) != null) {
+            int announcedVersion = OldIO_Util.parseProtocolLine(line);
+            if (announcedVersion >= 0)
+                handshake.setProtocolVersion(Math.min(announcedVersion, OldIO_Util.PROTOCOL_VERSION));
+            else if (connectionPasscode.isEmpty() || connectionPasscode.equalsIgnoreCase(line))
+                return true;
+            else
+                throw new ProtocolException("Wrong passcode");
+        }
+        return false;
+    }
+
+    /**
+     * Confirms the given verified connection and registers it as a verified connection,
+     * starting its own message collection thread if not polled by the collection service
+     */
+    private void completeHandshake(Socket client, int protocolVersion) {
+        // Wrap socket in ServerSideClient object
+        OldIO_ServerSideClient ssc = new OldIO_ServerSideClient(NEXT_CONNECTION_ID.incrementAndGet(), client, this, protocolVersion, !USE_THREAD_PER_CONNECTION, COMPRESSION_STATS, OPTIONS.getMaxFrameLength());
+        ssc.setFlushPolicy(maxBufferedBytes, maxFlushDelayMicros);
+        ssc.setWriteBufferWatermarks(lowWatermark, highWatermark);
+        // Queue confirmation message ahead of any broadcast, since the client is about to become visible to them
+        // Only clients which announced a protocol version expect one back
+        if (protocolVersion > 0)
+            ssc.queueHandshake(OldIO_Util.protocolLine(protocolVersion), "" + MessageUtil.CONNECTION_CONFIRMATION);
+        else
+            ssc.queueHandshake("" + MessageUtil.CONNECTION_CONFIRMATION);
+        // Register it as a verified connection before confirming it, so that it is visible as soon as it is confirmed
+        VERIFIED_CONNECTIONS.register(ssc);
+        ssc.confirmHandshake();
+        // Applied after the client is visible, so that a concurrent policy change cannot be missed
+        ssc.setHeartbeatPolicy(heartbeatIntervalMillis, maxMissedPongs);
+        ssc.setCompressionPolicy(minCompressedBytes, compressionLevel);
+        if (!USE_THREAD_PER_CONNECTION)
+            ssc.scheduleIdleDeadline(CONNECTION_TIMEOUT_NANOS);
+        OldIO_Util.notifyListeners(CONNECTION_LISTENERS, listener -> listener.onConnect(ssc));
+        // Keep reading on a thread of its own, if not polled by the collection service
+        if (USE_THREAD_PER_CONNECTION)
+            OldIO_Util.startConnectionThread(() -> collectMessagesUntilClosed(ssc));
+    }
+
+    /**
+     * Reads messages from the given client on the calling thread until the client
+     * disconnects or sends nothing for the idle timeout, then removes the client from this server
+     */
+    private void collectMessagesUntilClosed(OldIO_ServerSideClient ssc) {
+        if (OldIO_Util.readMessagesUntilClosed(ssc.getSocket(), ssc.getProtocolVersion(), ssc.getMessageBuilder(), ssc.getHeartbeat(), ssc.getCompressor(),
+                ssc.getStreamReceiver(), OPTIONS.getMaxFrameLength(), OPTIONS.getIdleTimeoutMillis()))
+            OldIO_Util.awaitQuietly(ssc.sendControl(MessageUtil.CONNECTION_CLOSED));
+        boolean removed = VERIFIED_CONNECTIONS.unregister(ssc);
+        ssc.close();
+        // Otherwise, the connection was closed (and listeners notified) by closeAllConnections
+        if (removed)
+            notifyDisconnected(ssc);
+    }
+
+    /**
+     * Notifies this server's and the client's connection listeners that the client disconnected
+     */
+    private void notifyDisconnected(OldIO_ServerSideClient ssc) {
+        OldIO_Util.notifyListeners(CONNECTION_LISTENERS, listener -> listener.onDisconnect(ssc));
+        ssc.notifyDisconnected();
     }
 
     /**
@@ -219,33 +371,87 @@ class OldIO_ServerImplementation implements ServerImplementation {
         return builder.toString();
     }
 
+    /**
+     * Sends the specified reason to every given client, waiting a bounded amount of time for
+     * the writes to finish, and then closes them (without modifying the connection registry)
+     */
+    private void closeConnections(List<OldIO_ServerSideClient> clients, MessageUtil reason) {
+        if (clients.isEmpty())
+            return;
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (OldIO_ServerSideClient ssc : clients)
+            writes.add(ssc.sendControl(reason));
+        OldIO_Util.awaitQuietly(CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])));
+        for (OldIO_ServerSideClient ssc : clients)
+            ssc.close();
+    }
+
     /**
      * Close all connections and give specified reason
      */
-    private void closeAllConnections(OldIO_MessageUtil reason) {
+    private void closeAllConnections(MessageUtil reason) {
         String stringReason = "" + reason;
-        // Close all attempting connections
-        try {
-            ATTEMPTED_SEMAPHORE.acquire();
-            for (Socket client : ATTEMPTING_CONNECTIONS.keySet()) {
-                OldIO_Util.sendMessages(client, stringReason);
-                OldIO_Util.closeSocketUntilSuccess(client);
-            }
-            ATTEMPTING_CONNECTIONS.clear();
-            ATTEMPTED_SEMAPHORE.release();
-        } catch (InterruptedException ignored) {
-        }
-        // close all verified connections
-        try {
-            VERIFIED_SEMAPHORE.acquire();
-            for (OldIO_ServerSideClient ssc : VERIFIED_CONNECTIONS.keySet()) {
-                Socket client = ssc.getSocket();
+        // Close all attempting connections, skipping any which are concurrently being verified
+        for (Socket client : ATTEMPTING_CONNECTIONS.keySet())
+            if (ATTEMPTING_CONNECTIONS.remove(client) != null) {
                 OldIO_Util.sendMessages(client, stringReason);
                 OldIO_Util.closeSocketUntilSuccess(client);
             }
-            VERIFIED_CONNECTIONS.clear();
-            VERIFIED_SEMAPHORE.release();
-        } catch (InterruptedException ignored) {
+        // close all verified connections, skipping any which are concurrently closing themselves
+        List<OldIO_ServerSideClient> disconnected = new ArrayList<>();
+        for (OldIO_ServerSideClient ssc : VERIFIED_CONNECTIONS.clients())
+            if (VERIFIED_CONNECTIONS.unregister(ssc))
+                disconnected.add(ssc);
+        closeConnections(disconnected, reason);
+        for (OldIO_ServerSideClient ssc : disconnected)
+            notifyDisconnected(ssc);
+    }
+
+    // ---------------------------------------- PACKAGE-PRIVATE METHODS ---------------------------------------- //
+
+    List<MessageListener<ServerSideClient>> getMessageListeners() {
+        return MESSAGE_LISTENERS;
+    }
+    // null iff streams are discarded
+    StreamListener<ServerSideClient> getStreamListener() {
+        return streamListener;
+    }
+    // null iff every message is built in full
+    MessagePartListener<ServerSideClient> getMessagePartListener() {
+        return messagePartListener;
+    }
+
+    /**
+     * Closes the given polled client if it has not sent anything for the idle timeout,
+     * and otherwise pushes its deadline back to when it could next be missed
+     * <p>
+     * Reading from the client only updates its last activity time, rather than rescheduling
+     * its deadline every time, so idle deadlines are only ever pushed back here.
+     */
+    void idleDeadlineExpired(OldIO_ServerSideClient ssc) {
+        if (VERIFIED_CONNECTIONS.get(ssc.getId()) != ssc)
+            return;
+        // Clients with an active heartbeat instead time out once they miss too many pongs
+        long remaining = CONNECTION_TIMEOUT_NANOS - (System.nanoTime() - ssc.getLastActivityTime());
+        if (ssc.getHeartbeat().isActive())
+            ssc.scheduleIdleDeadline(CONNECTION_TIMEOUT_NANOS);
+        else if (remaining > 0)
+            ssc.scheduleIdleDeadline(remaining);
+        else if (VERIFIED_CONNECTIONS.unregister(ssc))
+            // Closing waits for the final control message to be written, which must not hold up the timer thread
+            OldIO_Util.startConnectionThread(() -> {
+                closeConnections(Collections.singletonList(ssc), MessageUtil.CONNECTION_CLOSED);
+                notifyDisconnected(ssc);
+            });
+    }
+
+    /**
+     * Closes the given client once it misses too many pongs, without telling it why (since it is no longer answering)
+     */
+    void heartbeatMissed(OldIO_ServerSideClient ssc) {
+        if (VERIFIED_CONNECTIONS.unregister(ssc)) {
+            ssc.close();
+            notifyDisconnected(ssc);
         }
     }
 
@@ -258,15 +464,73 @@ class OldIO_ServerImplementation implements ServerImplementation {
 
     @Override
     public Set<ServerSideClient> getClients() {
-        Set<ServerSideClient> clients;
-        try {
-            VERIFIED_SEMAPHORE.acquire();
-            clients = new HashSet<>(VERIFIED_CONNECTIONS.keySet());
-            VERIFIED_SEMAPHORE.release();
-        } catch (InterruptedException ignored) {
-            clients = new HashSet<>();
-        }
-        return clients;
+        return new HashSet<>(VERIFIED_CONNECTIONS.view());
+    }
+    @Override
+    public Set<ServerSideClient> getClientView() {
+        return VERIFIED_CONNECTIONS.view();
+    }
+    @Override
+    public int getClientCount() {
+        return VERIFIED_CONNECTIONS.size();
+    }
+    @Override
+    public OldIO_ServerSideClient getClient(long id) {
+        return VERIFIED_CONNECTIONS.get(id);
+    }
+    @Override
+    public boolean sendTo(long id, String... messages) {
+        OldIO_ServerSideClient ssc = VERIFIED_CONNECTIONS.get(id);
+        return ssc != null && ssc.sendMessages(messages);
+    }
+
+    @Override
+    public int broadcast(String... messages) {
+        return broadcast(null, messages);
+    }
+    @Override
+    public int broadcast(Predicate<ServerSideClient> filter, String... messages) {
+        // Encode the messages once per protocol version rather than once per client
+        byte[][] encoded = new byte[OldIO_Util.PROTOCOL_VERSION + 1][];
+        for (int version = 0; version < encoded.length; version++)
+            encoded[version] = OldIO_Util.encodeMessages(version, messages);
+        // Likewise, compress them once for every client which negotiated compression
+        for (int version = OldIO_Util.COMPRESSION_PROTOCOL_VERSION; version < encoded.length; version++)
+            encoded[version] = BROADCAST_COMPRESSOR.compress(version, encoded[version]);
+        boolean leavesMessageOpen = OldIO_Util.leavesMessageOpen(messages);
+        AtomicInteger queued = new AtomicInteger();
+        OldIO_Util.fanOut(VERIFIED_CONNECTIONS.clients(), ssc -> {
+            if ((filter == null || filter.test(ssc)) && ssc.sendEncoded(encoded, leavesMessageOpen))
+                queued.incrementAndGet();
+        });
+        return queued.get();
+    }
+
+    @Override
+    public void addMessageListener(MessageListener<ServerSideClient> listener) {
+        if (listener != null)
+            MESSAGE_LISTENERS.add(listener);
+    }
+    @Override
+    public void removeMessageListener(MessageListener<ServerSideClient> listener) {
+        MESSAGE_LISTENERS.remove(listener);
+    }
+    @Override
+    public void addConnectionListener(ConnectionListener<ServerSideClient> listener) {
+        if (listener != null)
+            CONNECTION_LISTENERS.add(listener);
+    }
+    @Override
+    public void removeConnectionListener(ConnectionListener<ServerSideClient> listener) {
+        CONNECTION_LISTENERS.remove(listener);
+    }
+    @Override
+    public void setStreamListener(StreamListener<ServerSideClient> listener) {
+        streamListener = listener;
+    }
+    @Override
+    public void setMessagePartListener(MessagePartListener<ServerSideClient> listener) {
+        messagePartListener = listener;
     }
 
     @Override
@@ -285,6 +549,44 @@ class OldIO_ServerImplementation implements ServerImplementation {
     public void disablePasscode() {
         connectionPasscode = "";
     }
+    @Override
+    public void setHandshakeTimeout(int timeout) {
+        handshakeTimeoutMillis = timeout <= 0 ? 300000 : timeout; // default value -> 300 secs = 5 mins
+    }
+
+    @Override
+    public void setFlushPolicy(int maxBufferedBytes, long maxDelayMicros) {
+        this.maxBufferedBytes = maxBufferedBytes;
+        maxFlushDelayMicros = maxDelayMicros;
+        for (OldIO_ServerSideClient ssc : VERIFIED_CONNECTIONS.clients())
+            ssc.setFlushPolicy(maxBufferedBytes, maxDelayMicros);
+    }
+    @Override
+    public void setWriteBufferWatermarks(int lowWatermark, int highWatermark) {
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        for (OldIO_ServerSideClient ssc : VERIFIED_CONNECTIONS.clients())
+            ssc.setWriteBufferWatermarks(lowWatermark, highWatermark);
+    }
+    @Override
+    public void setHeartbeatPolicy(int intervalMillis, int maxMissedPongs) {
+        heartbeatIntervalMillis = intervalMillis;
+        this.maxMissedPongs = maxMissedPongs;
+        for (OldIO_ServerSideClient ssc : VERIFIED_CONNECTIONS.clients())
+            ssc.setHeartbeatPolicy(intervalMillis, maxMissedPongs);
+    }
+    @Override
+    public void setCompressionPolicy(int minMessageBytes, int level) {
+        minCompressedBytes = minMessageBytes;
+        compressionLevel = level;
+        BROADCAST_COMPRESSOR.setPolicy(minMessageBytes, level);
+        for (OldIO_ServerSideClient ssc : VERIFIED_CONNECTIONS.clients())
+            ssc.setCompressionPolicy(minMessageBytes, level);
+    }
+    @Override
+    public CompressionStats getCompressionStats() {
+        return COMPRESSION_STATS;
+    }
 
     @Override
     public void enableNewConnections() {
@@ -304,9 +606,6 @@ class OldIO_ServerImplementation implements ServerImplementation {
     public void enableAllConnections() {
         isAcceptingAnyConnections = true;
         enableNewConnections();
-        synchronized (VERIFICATION_SERVICE) {
-            VERIFICATION_SERVICE.notifyAll();
-        }
     }
     @Override
     public void disableAllConnections() {
@@ -316,13 +615,23 @@ class OldIO_ServerImplementation implements ServerImplementation {
 
     @Override
     public void closeAllConnections() {
-        closeAllConnections(OldIO_MessageUtil.CONNECTION_CLOSED);
+        closeAllConnections(MessageUtil.CONNECTION_CLOSED);
     }
     @Override
     public void closeServer() {
-        closeAllConnections(OldIO_MessageUtil.SERVER_CLOSED);
+        HANDSHAKE_SERVICE.shutdownNow();
+        closeAllConnections(MessageUtil.SERVER_CLOSED);
         connectionThreadTerminationCondition = true;
-        VERIFICATION_SERVICE.shutdownNow();
-        CLIENT_MESSAGE_COLLECTION_SERVICE.shutdownNow();
+        synchronized (CONNECTION_THREAD_LOCK) {
+            CONNECTION_THREAD_LOCK.notifyAll();
+        }
+        for (ServerSocket serverSocket : SERVER_SOCKETS)
+            try {
+                serverSocket.close();
+            } catch (IOException ignored) {
+            }
+        if (CLIENT_MESSAGE_COLLECTION_SERVICE != null)
+            CLIENT_MESSAGE_COLLECTION_SERVICE.shutdownNow();
+        BROADCAST_COMPRESSOR.end();
     }
 }
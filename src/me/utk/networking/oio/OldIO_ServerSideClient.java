@@ -1,29 +1,228 @@
 package me.utk.networking.oio;
 
+import me.utk.networking.Codec;
+import me.utk.networking.CompressionCounters;
+import me.utk.networking.Compressor;
+import me.utk.networking.ConnectionListener;
+import me.utk.networking.Heartbeat;
+import me.utk.networking.MessageListener;
+import me.utk.networking.MessageUtil;
+import me.utk.networking.PartReceiver;
 import me.utk.networking.ServerSideClient;
+import me.utk.networking.StreamReceiver;
+import me.utk.networking.TimerWheel;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 class OldIO_ServerSideClient implements ServerSideClient {
+    private final long ID;
     private final Socket SOCKET;
+    private final OldIO_OutboundBuffer OUTBOUND;
     private final OldIO_MessageBuilder BUILDER;
+    private final StreamReceiver<ServerSideClient> STREAMS;
+    private final PartReceiver<ServerSideClient> PARTS;
+    private final OldIO_ServerImplementation SERVER;
+    private final int PROTOCOL_VERSION;
+    private final Heartbeat HEARTBEAT;
+    private final Compressor COMPRESSOR;
 
-    OldIO_ServerSideClient(Socket socket) {
+    private volatile long lastActivityTime = System.nanoTime();
+    private final TimerWheel.Timeout IDLE_DEADLINE; // only used by the message collection service
+
+    private final List<MessageListener<ServerSideClient>> MESSAGE_LISTENERS = new CopyOnWriteArrayList<>();
+    private final List<ConnectionListener<ServerSideClient>> CONNECTION_LISTENERS = new CopyOnWriteArrayList<>();
+
+    OldIO_ServerSideClient(long id, Socket socket, OldIO_ServerImplementation server, int protocolVersion, boolean isPolled,
+                           CompressionCounters compressionStats, int maxFrameLength) {
+        ID = id;
         SOCKET = socket;
-        BUILDER = new OldIO_MessageBuilder();
+        OUTBOUND = new OldIO_OutboundBuffer(socket);
+        SERVER = server;
+        PROTOCOL_VERSION = protocolVersion;
+        PARTS = new PartReceiver<>(this, server::getMessagePartListener);
+        BUILDER = new OldIO_MessageBuilder(this::dispatchMessage, PARTS);
+        STREAMS = new StreamReceiver<>(this, server::getStreamListener);
+        HEARTBEAT = new Heartbeat(this::sendControl, () -> server.heartbeatMissed(this), isPolled);
+        COMPRESSOR = new Compressor(compressionStats, maxFrameLength);
+        IDLE_DEADLINE = TimerWheel.SHARED.newTimeout(() -> server.idleDeadlineExpired(this));
     }
 
     Socket getSocket() {
         return SOCKET;
     }
 
+    int getProtocolVersion() {
+        return PROTOCOL_VERSION;
+    }
+
+    Heartbeat getHeartbeat() {
+        return HEARTBEAT;
+    }
+
+    Compressor getCompressor() {
+        return COMPRESSOR;
+    }
+
+    StreamReceiver<ServerSideClient> getStreamReceiver() {
+        return STREAMS;
+    }
+
+    long getLastActivityTime() {
+        return lastActivityTime;
+    }
+    void markActive() {
+        lastActivityTime = System.nanoTime();
+    }
+    void scheduleIdleDeadline(long delayNanos) {
+        IDLE_DEADLINE.schedule(delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Control messages are never rejected, and never held back by the flush policy
+    CompletableFuture<Void> sendControl(MessageUtil type) {
+        return OUTBOUND.writeControl(OldIO_Util.encodeControl(PROTOCOL_VERSION, type));
+    }
+
+    /*
+     * Queues the given handshake lines ahead of anything else sent to the client, but holds them (and anything sent
+     * after them) back until confirmHandshake is called, so that the server can register the client in between
+     */
+    void queueHandshake(String... lines) {
+        OUTBOUND.hold();
+        OUTBOUND.writeControl(OldIO_Util.encodeMessages(0, lines));
+    }
+    void confirmHandshake() {
+        OUTBOUND.resume();
+    }
+
+    // Anything still queued is discarded, so callers should wait for any final control message first
+    void close() {
+        HEARTBEAT.stop();
+        IDLE_DEADLINE.cancel();
+        OUTBOUND.close();
+        OldIO_Util.closeSocketUntilSuccess(SOCKET);
+        COMPRESSOR.end();
+        STREAMS.close();
+        PARTS.close();
+    }
+
+    // Messages pre-encoded (and, where negotiated, pre-compressed) for every protocol version, as indexed by version
+    boolean sendEncoded(byte[][] encoded, boolean leavesMessageOpen) {
+        return OUTBOUND.writeLines(encoded[PROTOCOL_VERSION], leavesMessageOpen, new CompletableFuture<>());
+    }
+    // true iff the messages were queued
+    private boolean sendLines(String[] messages, CompletableFuture<Void> future) {
+        byte[] encoded = COMPRESSOR.compress(PROTOCOL_VERSION, OldIO_Util.encodeMessages(PROTOCOL_VERSION, messages));
+        return OUTBOUND.writeLines(encoded, OldIO_Util.leavesMessageOpen(messages), future);
+    }
+
+    void setFlushPolicy(int maxBufferedBytes, long maxDelayMicros) {
+        OUTBOUND.setFlushPolicy(maxBufferedBytes, maxDelayMicros);
+    }
+    void setWriteBufferWatermarks(int lowWatermark, int highWatermark) {
+        OUTBOUND.setWatermarks(lowWatermark, highWatermark);
+    }
+    // Heartbeats only exist as frames, so they are never started on protocol version 0
+    void setHeartbeatPolicy(int intervalMillis, int maxMissedPongs) {
+        if (PROTOCOL_VERSION != 0)
+            HEARTBEAT.start(intervalMillis, maxMissedPongs);
+    }
+    void setCompressionPolicy(int minMessageBytes, int level) {
+        COMPRESSOR.setPolicy(minMessageBytes, level);
+    }
+
+    // true iff delivered to at least one listener
+    private boolean dispatchMessage(String[] message) {
+        List<MessageListener<ServerSideClient>> serverListeners = SERVER.getMessageListeners();
+        if (serverListeners.isEmpty() && MESSAGE_LISTENERS.isEmpty())
+            return false;
+        OldIO_Util.notifyListeners(serverListeners, listener -> listener.onMessage(this, message));
+        OldIO_Util.notifyListeners(MESSAGE_LISTENERS, listener -> listener.onMessage(this, message));
+        return true;
+    }
+
+    void notifyDisconnected() {
+        OldIO_Util.notifyListeners(CONNECTION_LISTENERS, listener -> listener.onDisconnect(this));
+    }
+
     @Override
-    public void sendMessages(String... messages) {
-        OldIO_Util.sendMessages(SOCKET, messages);
+    public long getId() {
+        return ID;
+    }
+
+    @Override
+    public long getSmoothedRttMicros() {
+        return HEARTBEAT.getSmoothedRttMicros();
+    }
+
+    @Override
+    public boolean sendMessages(String... messages) {
+        return sendLines(messages, new CompletableFuture<>());
+    }
+    @Override
+    public CompletableFuture<Void> sendAsync(String... messages) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        sendLines(messages, future);
+        return future;
+    }
+    @Override
+    public boolean isWritable() {
+        return OUTBOUND.isWritable();
+    }
+
+    @Override
+    public void sendBytes(byte[] bytes) {
+        sendBytes(ByteBuffer.wrap(bytes));
+    }
+    @Override
+    public void sendBytes(ByteBuffer bytes) {
+        OUTBOUND.write(COMPRESSOR.compress(PROTOCOL_VERSION, OldIO_Util.encodeBytes(PROTOCOL_VERSION, bytes)));
+    }
+    @Override
+    public <T> void send(T value, Codec<? super T> codec) {
+        OUTBOUND.write(COMPRESSOR.compress(PROTOCOL_VERSION, OldIO_Util.encodeValue(PROTOCOL_VERSION, value, codec)));
+    }
+    @Override
+    public void sendFile(Path file) throws IOException {
+        OldIO_Util.sendFile(OUTBOUND, PROTOCOL_VERSION, file);
+    }
+    @Override
+    public void sendStream(InputStream in, long length) throws IOException {
+        OldIO_Util.sendStream(OUTBOUND, PROTOCOL_VERSION, in, length);
+    }
+    @Override
+    public void flush() {
+        OUTBOUND.flush();
     }
 
     @Override
     public OldIO_MessageBuilder getMessageBuilder() {
         return BUILDER;
     }
+
+    @Override
+    public void addMessageListener(MessageListener<ServerSideClient> listener) {
+        if (listener != null)
+            MESSAGE_LISTENERS.add(listener);
+    }
+    @Override
+    public void removeMessageListener(MessageListener<ServerSideClient> listener) {
+        MESSAGE_LISTENERS.remove(listener);
+    }
+    @Override
+    public void addConnectionListener(ConnectionListener<ServerSideClient> listener) {
+        if (listener != null)
+            CONNECTION_LISTENERS.add(listener);
+    }
+    @Override
+    public void removeConnectionListener(ConnectionListener<ServerSideClient> listener) {
+        CONNECTION_LISTENERS.remove(listener);
+    }
 }
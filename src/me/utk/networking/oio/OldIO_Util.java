@@ -1,20 +1,333 @@
 package me.utk.networking.oio;
 
+import me.utk.networking.BufferPool;
+import me.utk.networking.Codec;
+import me.utk.networking.Compressor;
+import me.utk.networking.Heartbeat;
+import me.utk.networking.MessageUtil;
+import me.utk.networking.StreamReceiver;
+
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.net.ProtocolException;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 abstract class OldIO_Util {
     private OldIO_Util() {
     }
 
+    // Highest protocol version supported by this implementation
+    static final int PROTOCOL_VERSION = 3;
+    // Lowest protocol version which supports compressed frames
+    static final int COMPRESSION_PROTOCOL_VERSION = Compressor.PROTOCOL_VERSION;
+    // Lowest protocol version which supports streams
+    static final int STREAM_PROTOCOL_VERSION = 3;
+    // Streams are sent as data frames of at most this many bytes, at most two of which are queued at a time
+    static final int MAX_STREAM_CHUNK_LENGTH = 256 << 10;
+    // Stream data frames are read (and handed over) in pieces of at most this many bytes
+    private static final int STREAM_READ_LENGTH = 65536;
+    // Control messages sent right before closing a socket get at most 1s to be written
+    private static final int CONTROL_WRITE_TIMEOUT = 1000;
+    // Once a frame has started arriving, the rest of it must arrive within 30s
+    private static final int FRAME_BODY_TIMEOUT = 30000;
+    // Type byte followed by 4-byte payload length
+    static final int FRAME_HEADER_LENGTH = 5;
+
+    // Always protocol version 0, as used during connection handshakes
     static void sendMessages(Socket socket, String... messages) {
+        byte[] bytes = encodeMessages(0, messages);
+        if (bytes != null)
+            try {
+                socket.getOutputStream().write(bytes);
+            } catch (IOException ignored) {
+            }
+    }
+
+    // null iff the messages cannot be encoded
+    static byte[] encodeMessages(int protocolVersion, String... messages) {
+        if (protocolVersion != 0)
+            return encodeFrames(messages);
         try {
-            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
             for (String message : messages)
                 out.writeUTF(message);
-        } catch (IOException ignored) {
+            return bytes.toByteArray();
+        } catch (IOException e) { // line too long for protocol version 0
+            return null;
+        }
+    }
+    // Applications may send a message over several calls, which only end the message once they end with its marker
+    static boolean leavesMessageOpen(String... messages) {
+        return messages.length > 0 && !MessageUtil.END_MESSAGE.toString().equals(messages[messages.length - 1]);
+    }
+    // Frames are sized up front, so that the queued array is the only one allocated besides each payload
+    private static byte[] encodeFrames(String... messages) {
+        byte[][] payloads = new byte[messages.length][];
+        int total = 0;
+        for (int i = 0; i < messages.length; i++) {
+            // The end message marker is still how applications end a message, so translate it into a frame
+            boolean isEnd = MessageUtil.END_MESSAGE.toString().equals(messages[i]);
+            payloads[i] = isEnd ? null : messages[i].getBytes(StandardCharsets.UTF_8);
+            total += FRAME_HEADER_LENGTH + (isEnd ? 0 : payloads[i].length);
+        }
+        ByteBuffer frames = ByteBuffer.allocate(total);
+        for (byte[] payload : payloads)
+            if (payload == null)
+                frames.put(MessageUtil.END_MESSAGE.toFrameType()).putInt(0);
+            else
+                frames.put(MessageUtil.NONE.toFrameType()).putInt(payload.length).put(payload);
+        return frames.array();
+    }
+    // Control frames have no payload, so each one is only ever encoded once (the queued arrays are never modified)
+    private static final byte[][] CONTROL_FRAMES = new byte[MessageUtil.values().length][];
+    static {
+        for (MessageUtil type : MessageUtil.values())
+            CONTROL_FRAMES[type.ordinal()] = ByteBuffer.allocate(FRAME_HEADER_LENGTH).put(type.toFrameType()).putInt(0).array();
+    }
+
+    static byte[] encodeControl(int protocolVersion, MessageUtil type) {
+        if (protocolVersion == 0)
+            return encodeMessages(0, "" + type);
+        return CONTROL_FRAMES[type.ordinal()];
+    }
+    // Binary messages only exist as frames, so they cannot be sent over protocol version 0
+    static byte[] encodeBytes(int protocolVersion, ByteBuffer bytes) {
+        if (protocolVersion == 0)
+            throw new IllegalStateException("Binary messages require protocol version 1");
+        byte[] frame = new byte[FRAME_HEADER_LENGTH + bytes.remaining()];
+        ByteBuffer.wrap(frame).put(MessageUtil.BINARY_MESSAGE.toFrameType()).putInt(bytes.remaining()).put(bytes.duplicate());
+        return frame;
+    }
+    // Encodes the value straight into its binary message frame
+    static <T> byte[] encodeValue(int protocolVersion, T value, Codec<? super T> codec) {
+        if (protocolVersion == 0)
+            throw new IllegalStateException("Binary messages require protocol version 1");
+        int length = codec.encodedLength(value);
+        if (length < 0)
+            throw new IllegalArgumentException("Negative encoded length: " + length);
+        byte[] frame = new byte[FRAME_HEADER_LENGTH + length];
+        ByteBuffer buffer = ByteBuffer.wrap(frame).put(MessageUtil.BINARY_MESSAGE.toFrameType()).putInt(length);
+        ByteBuffer payload = buffer.slice();
+        codec.encode(value, payload);
+        if (payload.hasRemaining())
+            throw new IllegalArgumentException("Codec wrote " + payload.remaining() + " bytes fewer than its encoded length");
+        return frame;
+    }
+
+    // The payload of a stream start frame is the 8-byte length of the whole stream
+    static byte[] encodeStreamStart(long length) {
+        return ByteBuffer.allocate(FRAME_HEADER_LENGTH + Long.BYTES).put(MessageUtil.STREAM_START.toFrameType()).putInt(Long.BYTES).putLong(length).array();
+    }
+
+    static void sendFile(OldIO_OutboundBuffer outbound, int protocolVersion, Path file) throws IOException {
+        requireStreams(protocolVersion);
+        // Blocking sockets have no channel to transfer the file to, so it is read into the pooled chunks instead
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            outbound.writeStream(channel.size(), (chunk, offset, position, length) -> {
+                ByteBuffer buffer = ByteBuffer.wrap(chunk, offset, length);
+                while (buffer.hasRemaining())
+                    if (channel.read(buffer, position + buffer.position() - offset) < 0)
+                        throw new EOFException("File was truncated while being sent");
+            });
+        }
+    }
+    static void sendStream(OldIO_OutboundBuffer outbound, int protocolVersion, InputStream in, long length) throws IOException {
+        requireStreams(protocolVersion);
+        if (length < 0)
+            throw new IllegalArgumentException("Negative stream length: " + length);
+        outbound.writeStream(length, (chunk, offset, position, chunkLength) -> {
+            int read = in.readNBytes(chunk, offset, chunkLength);
+            if (read < chunkLength)
+                throw new EOFException("Stream ended after " + (position + read) + " of " + length + " bytes");
+        });
+    }
+    // Streams only exist as frames, so they cannot be sent before protocol version 3
+    private static void requireStreams(int protocolVersion) {
+        if (protocolVersion < STREAM_PROTOCOL_VERSION)
+            throw new IllegalStateException("Streams require protocol version " + STREAM_PROTOCOL_VERSION);
+    }
+
+    /*
+     * The body of the frame is read with a longer timeout, since it must be read in full to keep the stream in sync
+     *
+     * Frames longer than maxFrameLength are rejected before anything is allocated for them, other than stream data
+     * frames, which are read in pooled pieces no matter how long they are
+     */
+    private static MessageUtil readFrame(Socket socket, DataInputStream in, OldIO_MessageBuilder builder, Heartbeat heartbeat,
+                                               Compressor compressor, StreamReceiver<?> streams, int maxFrameLength) throws IOException {
+        MessageUtil type = MessageUtil.fromFrameType(in.readByte());
+        int timeout = socket.getSoTimeout();
+        try {
+            socket.setSoTimeout(FRAME_BODY_TIMEOUT);
+            if (type == null)
+                throw new ProtocolException("Unknown frame type");
+            int length = in.readInt();
+            if (length < 0)
+                throw new ProtocolException("Negative frame length");
+            if (length > maxFrameLength && type != MessageUtil.STREAM_DATA)
+                throw new ProtocolException("Frame length " + length + " exceeds the maximum of " + maxFrameLength);
+            // Heartbeats are answered right away, and never reach the message builder
+            if (type == MessageUtil.PING || type == MessageUtil.PONG) {
+                if (length > 0) // heartbeats carry no payload yet, so any payload is ignored
+                    in.skipNBytes(length);
+                if (type == MessageUtil.PING)
+                    heartbeat.pingReceived();
+                else
+                    heartbeat.pongReceived();
+                return type;
+            }
+            // Streams are handed to their receiver as they are read, and never reach the message builder
+            if (type == MessageUtil.STREAM_START || type == MessageUtil.STREAM_DATA || type == MessageUtil.STREAM_ABORT) {
+                readStreamFrame(in, type, length, streams);
+                return type;
+            }
+            // Binary payloads are handed to the application as they are, so only they need an array of their own
+            if (type == MessageUtil.BINARY_MESSAGE) {
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                return builder.addBinaryMessage(payload);
+            }
+            byte[] payload = BufferPool.SHARED.acquireArray(length);
+            try {
+                in.readFully(payload, 0, length);
+                if (type != MessageUtil.COMPRESSED)
+                    return addFrame(type, payload, 0, length, builder);
+                ByteBuffer frames = compressor.decompress(payload, length);
+                try {
+                    return readCompressedFrames(frames, builder);
+                } finally {
+                    BufferPool.SHARED.releaseArray(frames.array());
+                }
+            } finally {
+                BufferPool.SHARED.releaseArray(payload);
+            }
+        } catch (SocketTimeoutException e) {
+            throw new ProtocolException("Timed out while reading frame");
+        } finally {
+            socket.setSoTimeout(timeout);
+        }
+    }
+
+    // Streams are discarded if the receiver is null
+    private static void readStreamFrame(DataInputStream in, MessageUtil type, int length, StreamReceiver<?> streams) throws IOException {
+        if (type == MessageUtil.STREAM_START) {
+            if (length != Long.BYTES)
+                throw new ProtocolException("Malformed stream start frame");
+            long streamLength = in.readLong();
+            if (streams != null)
+                streams.start(streamLength);
+            return;
+        }
+        if (type == MessageUtil.STREAM_ABORT) {
+            in.skipNBytes(length);
+            if (streams != null)
+                streams.abort();
+            return;
+        }
+        // Data frames are read in pooled pieces, so that they never need an array of their own
+        byte[] piece = BufferPool.SHARED.acquireArray(Math.min(length, STREAM_READ_LENGTH));
+        try {
+            for (int remaining = length; remaining > 0; ) {
+                int read = Math.min(remaining, piece.length);
+                in.readFully(piece, 0, read);
+                if (streams != null)
+                    streams.data(ByteBuffer.wrap(piece, 0, read));
+                remaining -= read;
+            }
+        } finally {
+            BufferPool.SHARED.releaseArray(piece);
+        }
+    }
+
+    // Copies the payload out of the given (typically pooled) array
+    private static MessageUtil addFrame(MessageUtil type, byte[] array, int offset, int length, OldIO_MessageBuilder builder) {
+        if (type == MessageUtil.BINARY_MESSAGE)
+            return builder.addBinaryMessage(Arrays.copyOfRange(array, offset, offset + length));
+        return builder.addFrame(type, new String(array, offset, length, StandardCharsets.UTF_8));
+    }
+
+    // Compressed frames only ever hold whole messages, so they may only contain message frames
+    private static MessageUtil readCompressedFrames(ByteBuffer buffer, OldIO_MessageBuilder builder) throws IOException {
+        MessageUtil last = MessageUtil.NONE;
+        while (buffer.hasRemaining()) {
+            if (buffer.remaining() < FRAME_HEADER_LENGTH)
+                throw new ProtocolException("Truncated frame in compressed frame");
+            MessageUtil type = MessageUtil.fromFrameType(buffer.get());
+            int length = buffer.getInt();
+            if (type != MessageUtil.NONE && type != MessageUtil.END_MESSAGE && type != MessageUtil.BINARY_MESSAGE)
+                throw new ProtocolException("Unexpected frame type in compressed frame");
+            if (length < 0 || length > buffer.remaining())
+                throw new ProtocolException("Truncated frame in compressed frame");
+            MessageUtil added = addFrame(type, buffer.array(), buffer.arrayOffset() + buffer.position(), length, builder);
+            buffer.position(buffer.position() + length);
+            // Report the end of the last message, so that it counts towards the read budget
+            if (added != MessageUtil.NONE)
+                last = added;
+        }
+        return last;
+    }
+
+    private static MessageUtil readMessage(Socket socket, DataInputStream in, int protocolVersion, OldIO_MessageBuilder builder, Heartbeat heartbeat,
+                                                 Compressor compressor, StreamReceiver<?> streams, int maxFrameLength) throws IOException {
+        return protocolVersion == 0 ? builder.addLine(in.readUTF()) : readFrame(socket, in, builder, heartbeat, compressor, streams, maxFrameLength);
+    }
+
+    static String protocolLine(int protocolVersion) {
+        return MessageUtil.PROTOCOL_VERSION + " " + protocolVersion;
+    }
+    // -1 iff the line is not a protocol version line
+    static int parseProtocolLine(String line) {
+        String prefix = MessageUtil.PROTOCOL_VERSION + " ";
+        if (line == null || !line.startsWith(prefix))
+            return -1;
+        try {
+            return Math.max(0, Integer.parseInt(line.substring(prefix.length())));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Blocks until the write completes, reporting any failure as the IOException it (typically) was
+    static void awaitWrite(CompletableFuture<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a write");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // Waits a bounded amount of time for (typically control) writes to finish, ignoring failures
+    static void awaitQuietly(CompletableFuture<?> future) {
+        try {
+            future.get(CONTROL_WRITE_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException ignored) {
         }
     }
 
@@ -32,30 +345,174 @@ abstract class OldIO_Util {
         while (!closeSocket(socket)) ;
     }
 
-    // timeout timer count
-    static int readMessages(Socket socket, OldIO_MessageBuilder builder, int timeoutCounter) {
+    // Buffer sizes of 0 leave the platform default in place
+    static void configureSocket(Socket socket, int soTimeout, boolean tcpNoDelay, boolean keepAlive, int sendBufferSize) throws IOException {
+        socket.setSoTimeout(soTimeout);
+        socket.setTcpNoDelay(tcpNoDelay);
+        socket.setKeepAlive(keepAlive);
+        if (sendBufferSize > 0)
+            socket.setSendBufferSize(sendBufferSize);
+    }
+
+    // Results of a single turn of readMessages
+    static final int READ_IDLE = 0, READ_SOME = 1, READ_BUDGET_EXHAUSTED = 2, READ_CLOSED = 3, READ_BACKED_UP = 4;
+
+    /*
+     * Reads messages until the socket times out (or, if onlyIfAvailable, until no more input is already waiting)
+     * or until maxMessages messages or maxBytes bytes are read or maxNanos pass, whichever comes first
+     *
+     * Nothing is read while the builder is backed up, in which case any input is left waiting on the socket
+     *
+     * Any failure while reading is confined to this connection, which is then reported as closed, since the
+     * callers are typically shared threads which must go on to read from every other connection
+     */
+    static int readMessages(Socket socket, int protocolVersion, OldIO_MessageBuilder builder, Heartbeat heartbeat, Compressor compressor,
+                            StreamReceiver<?> streams, int maxFrameLength, int maxMessages, int maxBytes, long maxNanos, boolean onlyIfAvailable) {
+        long start = System.nanoTime();
+        boolean hasRead = false;
         try {
-            DataInputStream in = new DataInputStream(socket.getInputStream());
-            while (true) {
-                String line = in.readUTF();
-                OldIO_MessageUtil type = builder.addLine(line);
-                if (type == OldIO_MessageUtil.CONNECTION_CLOSED) {
-                    timeoutCounter = Integer.MAX_VALUE;
-                    break;
-                }
-                timeoutCounter = 0;
+            CountingInputStream counted = new CountingInputStream(socket.getInputStream());
+            DataInputStream in = new DataInputStream(counted);
+            int messages = 0;
+            // Input trickling in (such as heartbeats) would otherwise keep resetting the socket timeout
+            while (messages < maxMessages && counted.count < maxBytes && System.nanoTime() - start < maxNanos) {
+                if (builder.isBackedUp())
+                    return READ_BACKED_UP;
+                if (onlyIfAvailable && in.available() <= 0)
+                    return hasRead ? READ_SOME : READ_IDLE;
+                MessageUtil type = readMessage(socket, in, protocolVersion, builder, heartbeat, compressor, streams, maxFrameLength);
+                if (type == MessageUtil.CONNECTION_CLOSED)
+                    return READ_CLOSED;
+                hasRead = true;
+                if (type != MessageUtil.NONE && type != MessageUtil.PING && type != MessageUtil.PONG)
+                    messages++;
             }
+            return READ_BUDGET_EXHAUSTED;
+        } catch (SocketTimeoutException e) {
+            return hasRead ? READ_SOME : READ_IDLE;
         } catch (IOException e) {
-            timeoutCounter++;
+            // A broken frame leaves the stream out of sync, so the connection cannot be recovered
+            return protocolVersion != 0 ? READ_CLOSED : hasRead ? READ_SOME : READ_IDLE;
+        } catch (RuntimeException | OutOfMemoryError e) {
+            e.printStackTrace();
+            return READ_CLOSED;
+        }
+    }
+
+    // Counts the bytes read through it, so that reads can be limited to a budget of bytes
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0)
+                count++;
+            return b;
+        }
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0)
+                count += read;
+            return read;
+        }
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
         }
-        return timeoutCounter;
     }
 
-    static String readLine(Socket socket) {
+    // Backed up readers check back this often for room in their builder
+    private static final long BACKED_UP_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // true iff timed out, false iff closed (by either side)
+    static boolean readMessagesUntilClosed(Socket socket, int protocolVersion, OldIO_MessageBuilder builder, Heartbeat heartbeat,
+                                           Compressor compressor, StreamReceiver<?> streams, int maxFrameLength, int timeoutMillis) {
+        try {
+            socket.setSoTimeout(timeoutMillis);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            do {
+                // This thread only serves this connection, so it simply waits for the application to make room
+                while (builder.isBackedUp() && !socket.isClosed())
+                    LockSupport.parkNanos(BACKED_UP_PARK_NANOS);
+            } while (readMessage(socket, in, protocolVersion, builder, heartbeat, compressor, streams, maxFrameLength) != MessageUtil.CONNECTION_CLOSED);
+        } catch (SocketTimeoutException e) {
+            return true;
+        } catch (IOException ignored) {
+        } catch (RuntimeException | OutOfMemoryError e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    // null iff no line arrives before the deadline, or the socket is closed
+    static String readLine(Socket socket, long deadlineNanos) {
         try {
-            return new DataInputStream(socket.getInputStream()).readUTF();
+            int timeout = socket.getSoTimeout();
+            try {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+                if (remainingMillis <= 0)
+                    return null;
+                socket.setSoTimeout((int) Math.min(remainingMillis, Integer.MAX_VALUE));
+                return new DataInputStream(socket.getInputStream()).readUTF();
+            } finally {
+                socket.setSoTimeout(timeout);
+            }
         } catch (IOException ignored) {
         }
         return null;
     }
+
+    // Broadcasts to at least this many clients are sent in parallel
+    private static final int PARALLEL_BROADCAST_THRESHOLD = 64;
+
+    // Returns once the action has been applied to every target
+    static <T> void fanOut(Collection<T> targets, Consumer<T> action) {
+        if (targets.size() >= PARALLEL_BROADCAST_THRESHOLD)
+            targets.parallelStream().forEach(action);
+        else
+            targets.forEach(action);
+    }
+
+    // Exceptions thrown by listeners must not kill the (shared) reading threads
+    static <L> void notifyListeners(Iterable<L> listeners, Consumer<L> notification) {
+        for (L listener : listeners)
+            try {
+                notification.accept(listener);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+    }
+
+    // Thread#startVirtualThread(Runnable) only exists on Java 21+
+    private static final Method START_VIRTUAL_THREAD;
+    static {
+        Method method;
+        try {
+            method = Thread.class.getMethod("startVirtualThread", Runnable.class);
+        } catch (NoSuchMethodException e) {
+            method = null;
+        }
+        START_VIRTUAL_THREAD = method;
+    }
+
+    // Uses a virtual thread if supported by the runtime, and a daemon platform thread otherwise
+    static Thread startConnectionThread(Runnable task) {
+        if (START_VIRTUAL_THREAD != null)
+            try {
+                return (Thread) START_VIRTUAL_THREAD.invoke(null, task);
+            } catch (ReflectiveOperationException ignored) {
+            }
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
 }